@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.binary.v1;
+
+import com.io7m.junreachable.UnreachableCodeException;
+
+/*
+ * The layout of version 1.0 of the binary format. All integers are
+ * big-endian, and all strings are UTF-8.
+ *
+ * Header (64 octets):
+ *   0   magic             8 octets
+ *   8   versionMajor      int32
+ *   12  versionMinor      int32
+ *   16  nodeCount         int32
+ *   20  propertyCount     int32
+ *   24  stringCount       int32
+ *   28  (reserved)        int32
+ *   32  nodesOffset       int64
+ *   40  propertiesOffset  int64
+ *   48  stringsOffset     int64
+ *   56  (reserved)        int64
+ *
+ * Nodes (nodeCount records of 88 octets). The root is the first record, and
+ * every other record follows the record of its parent:
+ *   0   kind              int8
+ *   1   (reserved)        3 octets
+ *   4   parent            int32 (record index, or -1 for the root)
+ *   8   idMost            int64
+ *   16  idLeast           int64
+ *   24  name              int32 (string index)
+ *   28  (reserved)        int32
+ *   32  minimumX          int64
+ *   40  minimumY          int64
+ *   48  maximumX          int64
+ *   56  maximumY          int64
+ *   64  payload           24 octets
+ *
+ * The payload of a channel is its red, green, and blue components as
+ * float64 values. The payload of a text region is the string index of its
+ * text followed by 20 reserved octets. The payload of the root is reserved.
+ *
+ * Properties (propertyCount records of 8 octets):
+ *   0   name              int32 (string index)
+ *   4   value             int32 (string index)
+ *
+ * Strings (stringCount entries, each unique):
+ *   0   length            int32
+ *   4   text              length octets
+ *
+ * Reserved octets are written as zero and ignored on reading.
+ */
+
+final class OBB1Format
+{
+  static final int VERSION_MAJOR = 1;
+  static final int VERSION_MINOR = 0;
+
+  static final int HEADER_SIZE = 64;
+  static final int HEADER_VERSION_MAJOR = 8;
+  static final int HEADER_VERSION_MINOR = 12;
+  static final int HEADER_NODE_COUNT = 16;
+  static final int HEADER_PROPERTY_COUNT = 20;
+  static final int HEADER_STRING_COUNT = 24;
+  static final int HEADER_NODES_OFFSET = 32;
+  static final int HEADER_PROPERTIES_OFFSET = 40;
+  static final int HEADER_STRINGS_OFFSET = 48;
+
+  static final int NODE_SIZE = 88;
+  static final int NODE_KIND = 0;
+  static final int NODE_PARENT = 4;
+  static final int NODE_ID_MOST = 8;
+  static final int NODE_ID_LEAST = 16;
+  static final int NODE_NAME = 24;
+  static final int NODE_AREA = 32;
+  static final int NODE_PAYLOAD = 64;
+  static final int NODE_PAYLOAD_SIZE = 24;
+
+  static final int PROPERTY_SIZE = 8;
+
+  static final byte KIND_ROOT = 0;
+  static final byte KIND_CHANNEL = 1;
+  static final byte KIND_TEXT_REGION = 2;
+
+  private OBB1Format()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  static byte[] magic()
+  {
+    return new byte[]{
+      (byte) 0x89, 'O', 'B', 'B', '\r', '\n', 0x1a, '\n',
+    };
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.binary.v1;
+
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIFormatType;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPISourceType;
+import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A provider of parsers for the 1.0 binary composition format.
+ */
+
+public final class OBB1Parsers implements OBCompositionSPIFormatType
+{
+  /**
+   * Construct a provider.
+   */
+
+  public OBB1Parsers()
+  {
+
+  }
+
+  @Override
+  public byte[] magic()
+  {
+    return OBB1Format.magic();
+  }
+
+  /*
+   * Files are mapped rather than read, so the only copies made of the
+   * contents are the decoded strings. Streams are read in full.
+   */
+
+  @Override
+  public OBCompositionType parse(
+    final OBServiceDirectoryType services,
+    final OBCompositionSPISourceType source)
+    throws Exception
+  {
+    final ByteBuffer data;
+    final var channelOpt = source.channel();
+    if (channelOpt.isPresent()) {
+      final var channel = channelOpt.get();
+      final var size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(
+          String.format("File is too large (%d octets)", Long.valueOf(size)));
+      }
+      data = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+    } else {
+      data = ByteBuffer.wrap(source.stream().readAllBytes());
+    }
+
+    return new OBB1Reader(services, source, data).read();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "[%s %d.%d]",
+      this.getClass().getCanonicalName(),
+      Integer.valueOf(OBB1Format.VERSION_MAJOR),
+      Integer.valueOf(OBB1Format.VERSION_MINOR)
+    );
+  }
+}
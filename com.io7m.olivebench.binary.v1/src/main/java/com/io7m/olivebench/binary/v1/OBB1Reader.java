@@ -0,0 +1,366 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.binary.v1;
+
+import com.io7m.jregions.core.parameterized.areas.PAreaL;
+import com.io7m.jtensors.core.parameterized.vectors.PVector3D;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPISourceType;
+import com.io7m.olivebench.model.OBComposition;
+import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.model.graph.OBChannelMetadata;
+import com.io7m.olivebench.model.graph.OBCompositionGraph;
+import com.io7m.olivebench.model.graph.OBCompositionGraphType;
+import com.io7m.olivebench.model.graph.OBCompositionNodeType;
+import com.io7m.olivebench.model.graph.OBNodeMetadata;
+import com.io7m.olivebench.model.graph.OBTextRegion;
+import com.io7m.olivebench.model.graph.OBTextRegionData;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.metadata.OBMetadataProperty;
+import com.io7m.olivebench.model.names.OBName;
+import com.io7m.olivebench.model.spaces.OBSpaceRegionType;
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_NODES_OFFSET;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_NODE_COUNT;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_PROPERTIES_OFFSET;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_PROPERTY_COUNT;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_SIZE;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_STRINGS_OFFSET;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_STRING_COUNT;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_VERSION_MAJOR;
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_VERSION_MINOR;
+import static com.io7m.olivebench.binary.v1.OBB1Format.KIND_CHANNEL;
+import static com.io7m.olivebench.binary.v1.OBB1Format.KIND_ROOT;
+import static com.io7m.olivebench.binary.v1.OBB1Format.KIND_TEXT_REGION;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_AREA;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_ID_LEAST;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_ID_MOST;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_KIND;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_NAME;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_PARENT;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_PAYLOAD;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_SIZE;
+import static com.io7m.olivebench.binary.v1.OBB1Format.PROPERTY_SIZE;
+import static com.io7m.olivebench.binary.v1.OBB1Format.VERSION_MAJOR;
+
+/*
+ * Reads a composition from a buffer using absolute reads only, so the
+ * buffer may be a read-only mapping of a file. Every count, offset, and
+ * index is checked against the size of the buffer before it is used.
+ *
+ * Reading a mapping does not read the source's stream, and so progress is
+ * reported to the source every PROGRESS_NODES nodes instead. This is also
+ * the point at which a cancelled parse stops.
+ */
+
+final class OBB1Reader
+{
+  private static final int PROGRESS_NODES = 4096;
+
+  private final OBServiceDirectoryType services;
+  private final OBCompositionSPISourceType source;
+  private final ByteBuffer data;
+  private final CharsetDecoder decoder;
+  private String[] strings;
+
+  OBB1Reader(
+    final OBServiceDirectoryType inServices,
+    final OBCompositionSPISourceType inSource,
+    final ByteBuffer inData)
+  {
+    this.services =
+      Objects.requireNonNull(inServices, "services");
+    this.source =
+      Objects.requireNonNull(inSource, "source");
+    this.data =
+      Objects.requireNonNull(inData, "data");
+    this.decoder =
+      StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+  }
+
+  OBCompositionType read()
+    throws Exception
+  {
+    this.checkHeader();
+
+    final var nodeCount =
+      this.count(HEADER_NODE_COUNT);
+    final var propertyCount =
+      this.count(HEADER_PROPERTY_COUNT);
+    final var stringCount =
+      this.count(HEADER_STRING_COUNT);
+
+    final var nodesOffset =
+      this.section(HEADER_NODES_OFFSET, nodeCount, NODE_SIZE);
+    final var propertiesOffset =
+      this.section(HEADER_PROPERTIES_OFFSET, propertyCount, PROPERTY_SIZE);
+    final var stringsOffset =
+      this.section(HEADER_STRINGS_OFFSET, stringCount, Integer.BYTES);
+
+    this.strings = this.readStrings(stringsOffset, stringCount);
+
+    final var composition =
+      OBComposition.createWith(
+        this.services,
+        this.readNodes(nodesOffset, nodeCount));
+
+    composition.metadata()
+      .set(this.readProperties(propertiesOffset, propertyCount));
+    return composition;
+  }
+
+  private void checkHeader()
+    throws IOException
+  {
+    if (this.data.limit() < HEADER_SIZE) {
+      throw new IOException("File is too short to contain a header");
+    }
+
+    final var expected = OBB1Format.magic();
+    final var received = new byte[expected.length];
+    final var header = this.data.duplicate();
+    header.position(0);
+    header.get(received);
+    if (!Arrays.equals(expected, received)) {
+      throw new IOException("File does not begin with the expected magic");
+    }
+
+    final var major = this.data.getInt(HEADER_VERSION_MAJOR);
+    final var minor = this.data.getInt(HEADER_VERSION_MINOR);
+    if (major != VERSION_MAJOR) {
+      throw new IOException(
+        String.format(
+          "Unsupported format version %d.%d",
+          Integer.valueOf(major),
+          Integer.valueOf(minor)));
+    }
+  }
+
+  private int count(
+    final int offset)
+    throws IOException
+  {
+    final var count = this.data.getInt(offset);
+    if (count < 0) {
+      throw new IOException(
+        String.format("Negative count at offset %d", Integer.valueOf(offset)));
+    }
+    return count;
+  }
+
+  private int section(
+    final int offset,
+    final int count,
+    final int recordSize)
+    throws IOException
+  {
+    final var start = this.data.getLong(offset);
+    final var end = start + ((long) count * (long) recordSize);
+    if (start < HEADER_SIZE || end > this.data.limit()) {
+      throw new IOException(
+        String.format(
+          "Section at offset %d with %d records lies outside the file",
+          Long.valueOf(start),
+          Integer.valueOf(count)));
+    }
+    return (int) start;
+  }
+
+  private String[] readStrings(
+    final int offset,
+    final int count)
+    throws IOException
+  {
+    final var results = new String[count];
+    var position = offset;
+    for (int index = 0; index < count; ++index) {
+      if (position > this.data.limit() - Integer.BYTES) {
+        throw new IOException(
+          String.format("String %d lies outside the file",
+                        Integer.valueOf(index)));
+      }
+
+      final var length = this.data.getInt(position);
+      position += Integer.BYTES;
+      if (length < 0 || length > this.data.limit() - position) {
+        throw new IOException(
+          String.format("String %d has an invalid length %d",
+                        Integer.valueOf(index),
+                        Integer.valueOf(length)));
+      }
+
+      final var text = this.data.duplicate();
+      text.position(position);
+      text.limit(position + length);
+      results[index] = this.decoder.decode(text).toString();
+      position += length;
+    }
+    return results;
+  }
+
+  private String string(
+    final int offset)
+    throws IOException
+  {
+    final var index = this.data.getInt(offset);
+    if (index < 0 || index >= this.strings.length) {
+      throw new IOException(
+        String.format(
+          "Invalid string index %d at offset %d",
+          Integer.valueOf(index),
+          Integer.valueOf(offset)));
+    }
+    return this.strings[index];
+  }
+
+  private OBCompositionGraphType readNodes(
+    final int offset,
+    final int count)
+    throws Exception
+  {
+    if (count == 0 || this.data.get(offset + NODE_KIND) != KIND_ROOT) {
+      throw new IOException("The first node is not a root node");
+    }
+
+    final var graph =
+      OBCompositionGraph.createWith(this.services, this.id(offset));
+    final var nodes = new OBCompositionNodeType[count];
+    nodes[0] = graph.root();
+
+    for (int index = 1; index < count; ++index) {
+      if (index % PROGRESS_NODES == 0) {
+        this.source.reportProgress(index, count);
+      }
+
+      final var base = offset + (index * NODE_SIZE);
+      final var parent = this.data.getInt(base + NODE_PARENT);
+      if (parent < 0 || parent >= index) {
+        throw new IOException(
+          String.format(
+            "Node %d has an invalid parent %d",
+            Integer.valueOf(index),
+            Integer.valueOf(parent)));
+      }
+
+      final var kind = this.data.get(base + NODE_KIND);
+      switch (kind) {
+        case KIND_CHANNEL: {
+          if (parent != 0) {
+            throw new IOException(
+              String.format(
+                "Channel %d is not a child of the root",
+                Integer.valueOf(index)));
+          }
+          nodes[index] = graph.createChannel(
+            this.id(base),
+            this.nodeMetadata(base),
+            this.channelMetadata(base)
+          );
+          break;
+        }
+        case KIND_TEXT_REGION: {
+          nodes[index] = graph.createRegion(
+            nodes[parent],
+            this.id(base),
+            this.nodeMetadata(base),
+            OBTextRegion::create,
+            OBTextRegionData.builder()
+              .setText(this.string(base + NODE_PAYLOAD))
+              .build()
+          );
+          break;
+        }
+        default: {
+          throw new IOException(
+            String.format(
+              "Node %d has an unrecognized kind %d",
+              Integer.valueOf(index),
+              Integer.valueOf(kind)));
+        }
+      }
+    }
+
+    this.source.reportProgress(count, count);
+    return graph;
+  }
+
+  private UUID id(
+    final int base)
+  {
+    return new UUID(
+      this.data.getLong(base + NODE_ID_MOST),
+      this.data.getLong(base + NODE_ID_LEAST)
+    );
+  }
+
+  private OBNodeMetadata nodeMetadata(
+    final int base)
+    throws IOException
+  {
+    final var area = base + NODE_AREA;
+    return OBNodeMetadata.builder()
+      .setName(OBName.of(this.string(base + NODE_NAME)))
+      .setArea(
+        PAreaL.<OBSpaceRegionType>builder()
+          .setMinimumX(this.data.getLong(area))
+          .setMinimumY(this.data.getLong(area + 8))
+          .setMaximumX(this.data.getLong(area + 16))
+          .setMaximumY(this.data.getLong(area + 24))
+          .build())
+      .build();
+  }
+
+  private OBChannelMetadata channelMetadata(
+    final int base)
+  {
+    final var color = base + NODE_PAYLOAD;
+    return OBChannelMetadata.builder()
+      .setColor(PVector3D.of(
+        this.data.getDouble(color),
+        this.data.getDouble(color + 8),
+        this.data.getDouble(color + 16)))
+      .build();
+  }
+
+  private OBCompositionMetadata readProperties(
+    final int offset,
+    final int count)
+    throws IOException
+  {
+    final var builder = OBCompositionMetadata.builder();
+    for (int index = 0; index < count; ++index) {
+      final var base = offset + (index * PROPERTY_SIZE);
+      builder.addProperties(
+        OBMetadataProperty.of(
+          this.string(base),
+          this.string(base + Integer.BYTES)));
+    }
+    return builder.build();
+  }
+}
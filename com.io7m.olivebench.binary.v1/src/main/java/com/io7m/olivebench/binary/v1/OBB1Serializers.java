@@ -0,0 +1,303 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.binary.v1;
+
+import com.io7m.junreachable.UnimplementedCodeException;
+import com.io7m.olivebench.composition_serializer.spi.OBCompositionSPISerializerType;
+import com.io7m.olivebench.composition_serializer.spi.OBCompositionSPISerializersType;
+import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBCompositionGraphReadableType;
+import com.io7m.olivebench.model.graph.OBCompositionNodeType;
+import com.io7m.olivebench.model.graph.OBNodeMetadata;
+import com.io7m.olivebench.model.graph.OBRegionType;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.UUID;
+
+import static com.io7m.olivebench.binary.v1.OBB1Format.HEADER_SIZE;
+import static com.io7m.olivebench.binary.v1.OBB1Format.KIND_CHANNEL;
+import static com.io7m.olivebench.binary.v1.OBB1Format.KIND_ROOT;
+import static com.io7m.olivebench.binary.v1.OBB1Format.KIND_TEXT_REGION;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_PAYLOAD_SIZE;
+import static com.io7m.olivebench.binary.v1.OBB1Format.NODE_SIZE;
+import static com.io7m.olivebench.binary.v1.OBB1Format.PROPERTY_SIZE;
+import static com.io7m.olivebench.binary.v1.OBB1Format.VERSION_MAJOR;
+import static com.io7m.olivebench.binary.v1.OBB1Format.VERSION_MINOR;
+import static com.io7m.olivebench.model.graph.OBRegionType.OBDecorativeRegionType.OBTextRegionType;
+
+/**
+ * A provider of serializers for the 1.0 binary composition format.
+ */
+
+public final class OBB1Serializers implements OBCompositionSPISerializersType
+{
+  /**
+   * Construct a provider.
+   */
+
+  public OBB1Serializers()
+  {
+
+  }
+
+  @Override
+  public String formatName()
+  {
+    return "binary";
+  }
+
+  @Override
+  public int versionMajor()
+  {
+    return VERSION_MAJOR;
+  }
+
+  @Override
+  public int versionMinor()
+  {
+    return VERSION_MINOR;
+  }
+
+  @Override
+  public OBCompositionSPISerializerType create(
+    final URI target,
+    final OutputStream output,
+    final OBCompositionReadableType composition)
+  {
+    return new Serializer(output, composition);
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "[%s %d.%d]",
+      this.getClass().getCanonicalName(),
+      Integer.valueOf(this.versionMajor()),
+      Integer.valueOf(this.versionMinor())
+    );
+  }
+
+  private static final class Serializer implements
+    OBCompositionSPISerializerType
+  {
+    private final OutputStream output;
+    private final OBCompositionReadableType composition;
+    private final HashMap<String, Integer> stringIndices;
+    private final ArrayList<byte[]> strings;
+    private final ArrayList<OBCompositionNodeType> nodes;
+    private final ArrayList<Integer> parents;
+
+    Serializer(
+      final OutputStream inOutput,
+      final OBCompositionReadableType inComposition)
+    {
+      this.output =
+        Objects.requireNonNull(inOutput, "output");
+      this.composition =
+        Objects.requireNonNull(inComposition, "composition");
+      this.stringIndices = new HashMap<>();
+      this.strings = new ArrayList<>();
+      this.nodes = new ArrayList<>();
+      this.parents = new ArrayList<>();
+    }
+
+    /*
+     * The nodes are collected in depth-first order from the root, with
+     * siblings ordered by their IDs, so that every node is written after
+     * its parent and a composition is always written as the same bytes. The
+     * string table is collected from the nodes and properties before
+     * anything is written, and so the sizes of all sections are known when
+     * the header is written.
+     */
+
+    @Override
+    public void execute()
+      throws Exception
+    {
+      final var graph = this.composition.graph();
+      final var properties = this.composition.metadata().read().properties();
+
+      this.collectNodes(graph);
+      for (final var property : properties) {
+        this.intern(property.name());
+        this.intern(property.value());
+      }
+
+      final var nodesOffset = (long) HEADER_SIZE;
+      final var propertiesOffset =
+        nodesOffset + ((long) this.nodes.size() * NODE_SIZE);
+      final var stringsOffset =
+        propertiesOffset + ((long) properties.size() * PROPERTY_SIZE);
+
+      final var data =
+        new DataOutputStream(new BufferedOutputStream(this.output, 65536));
+
+      data.write(OBB1Format.magic());
+      data.writeInt(VERSION_MAJOR);
+      data.writeInt(VERSION_MINOR);
+      data.writeInt(this.nodes.size());
+      data.writeInt(properties.size());
+      data.writeInt(this.strings.size());
+      data.writeInt(0);
+      data.writeLong(nodesOffset);
+      data.writeLong(propertiesOffset);
+      data.writeLong(stringsOffset);
+      data.writeLong(0L);
+
+      for (int index = 0; index < this.nodes.size(); ++index) {
+        this.writeNode(
+          data,
+          this.nodes.get(index),
+          this.parents.get(index).intValue());
+      }
+
+      for (final var property : properties) {
+        data.writeInt(this.intern(property.name()));
+        data.writeInt(this.intern(property.value()));
+      }
+
+      for (final var text : this.strings) {
+        data.writeInt(text.length);
+        data.write(text);
+      }
+
+      data.flush();
+    }
+
+    private void collectNodes(
+      final OBCompositionGraphReadableType graph)
+    {
+      final var indices = new HashMap<UUID, Integer>();
+      indices.put(graph.root().id(), Integer.valueOf(0));
+      this.collectNode(graph.root(), Integer.valueOf(-1));
+
+      for (final var edge : graph.descendantEdgesOf(graph.root())) {
+        final var node = edge.nodeTarget();
+        indices.put(node.id(), Integer.valueOf(this.nodes.size()));
+        this.collectNode(node, indices.get(edge.nodeSource().id()));
+      }
+    }
+
+    private void collectNode(
+      final OBCompositionNodeType node,
+      final Integer parent)
+    {
+      this.nodes.add(node);
+      this.parents.add(parent);
+      this.collectStrings(node);
+    }
+
+    private void collectStrings(
+      final OBCompositionNodeType node)
+    {
+      this.intern(node.nodeMetadata().read().name().value());
+      if (node instanceof OBTextRegionType) {
+        this.intern(((OBTextRegionType) node).text());
+      }
+    }
+
+    private int intern(
+      final String text)
+    {
+      final var existing = this.stringIndices.get(text);
+      if (existing != null) {
+        return existing.intValue();
+      }
+
+      final var index = this.strings.size();
+      this.strings.add(text.getBytes(StandardCharsets.UTF_8));
+      this.stringIndices.put(text, Integer.valueOf(index));
+      return index;
+    }
+
+    private void writeNode(
+      final DataOutputStream data,
+      final OBCompositionNodeType node,
+      final int parent)
+      throws IOException
+    {
+      final var nodeMetadata = node.nodeMetadata().read();
+      data.writeByte(kindOf(node));
+      data.write(new byte[3]);
+      data.writeInt(parent);
+      data.writeLong(node.id().getMostSignificantBits());
+      data.writeLong(node.id().getLeastSignificantBits());
+      data.writeInt(this.intern(nodeMetadata.name().value()));
+      data.writeInt(0);
+      this.writeArea(data, nodeMetadata);
+
+      if (node instanceof OBChannelType) {
+        final var color =
+          ((OBChannelType) node).channelMetadata().read().color();
+        data.writeDouble(color.x());
+        data.writeDouble(color.y());
+        data.writeDouble(color.z());
+      } else if (node instanceof OBTextRegionType) {
+        data.writeInt(this.intern(((OBTextRegionType) node).text()));
+        data.write(new byte[NODE_PAYLOAD_SIZE - Integer.BYTES]);
+      } else {
+        data.write(new byte[NODE_PAYLOAD_SIZE]);
+      }
+    }
+
+    private void writeArea(
+      final DataOutputStream data,
+      final OBNodeMetadata nodeMetadata)
+      throws IOException
+    {
+      final var area = nodeMetadata.area();
+      data.writeLong(area.minimumX());
+      data.writeLong(area.minimumY());
+      data.writeLong(area.maximumX());
+      data.writeLong(area.maximumY());
+    }
+
+    private static byte kindOf(
+      final OBCompositionNodeType node)
+    {
+      if (node instanceof OBChannelType) {
+        return KIND_CHANNEL;
+      }
+      if (node instanceof OBTextRegionType) {
+        return KIND_TEXT_REGION;
+      }
+      if (node instanceof OBRegionType) {
+        throw new UnimplementedCodeException();
+      }
+      return KIND_ROOT;
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      this.output.flush();
+      this.output.close();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.composition_parser.api;
+
+import com.io7m.olivebench.model.graph.OBChannelContentsType;
+import com.io7m.olivebench.model.graph.OBCompositionGraphReadableType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The contents of a channel as stored by the composition that a parser
+ * read. Parsers place these in the graphs they produce, for channels that
+ * are deferred and for channels whose contents have not changed since.
+ *
+ * @see com.io7m.olivebench.model.graph.OBCompositionGraphReadableType#channelsDeferred()
+ * @see com.io7m.olivebench.model.graph.OBCompositionGraphReadableType#channelOrigins()
+ */
+
+public interface OBChannelStoredContentsType extends OBChannelContentsType
+{
+  /**
+   * @param contents The contents held by a graph
+   *
+   * @return The given contents as stored contents
+   *
+   * @throws IllegalArgumentException If the contents were not produced by a
+   *                                  parser
+   */
+
+  static OBChannelStoredContentsType of(
+    final OBChannelContentsType contents)
+    throws IllegalArgumentException
+  {
+    Objects.requireNonNull(contents, "contents");
+
+    if (contents instanceof OBChannelStoredContentsType) {
+      return (OBChannelStoredContentsType) contents;
+    }
+    throw new IllegalArgumentException(
+      String.format("%s was not produced by a parser", contents));
+  }
+
+  /**
+   * Parse the stored contents.
+   *
+   * @return A graph containing the channel and its contents
+   *
+   * @throws Exception On errors
+   */
+
+  OBCompositionGraphReadableType load()
+    throws Exception;
+
+  /**
+   * Copy the stored contents, as they are, to the given stream.
+   *
+   * @param output The output stream
+   *
+   * @throws IOException On I/O errors
+   */
+
+  void copyTo(OutputStream output)
+    throws IOException;
+
+  /**
+   * @return The container chunk holding the contents, if any
+   */
+
+  default Optional<OBCompositionContainerChunk> chunk()
+  {
+    return Optional.empty();
+  }
+}
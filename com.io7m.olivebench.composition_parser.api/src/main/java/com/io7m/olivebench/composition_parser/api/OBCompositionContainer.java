@@ -0,0 +1,887 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_parser.api;
+
+import com.io7m.jaffirm.core.Preconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A composition container. A container holds the same documents as a
+ * partitioned composition (a manifest, and one part per channel), but as
+ * chunks of a single file. Chunks are only ever appended: a save appends
+ * the chunks of the channels that changed, followed by a new index, and
+ * then commits by writing a superblock that points at the new index.
+ *
+ * <p>There are two superblock slots, used alternately, each carrying a
+ * sequence number and a checksum. Everything a superblock refers to is
+ * forced to disk before the superblock is written, so a save interrupted
+ * at any point leaves the previous superblock, index, and chunks intact.
+ * Superseded chunks are garbage until the container is rewritten.</p>
+ *
+ * <pre>
+ *   byte[8]   magic
+ *   byte[128] superblock slot 0
+ *   byte[128] superblock slot 1
+ *   ...       chunks and indexes
+ * </pre>
+ *
+ * <p>A superblock is:</p>
+ *
+ * <pre>
+ *   int32 version | int64 sequence | uuid container | int64 end |
+ *   int64 manifest offset | int64 manifest length | int32 manifest crc32 |
+ *   int64 index offset | int32 index length | int32 index crc32 |
+ *   int32 crc32
+ * </pre>
+ *
+ * <p>An index is an int32 count followed by, for each channel:</p>
+ *
+ * <pre>
+ *   uuid channel | int64 offset | int64 length | int32 crc32
+ * </pre>
+ *
+ * @see OBCompositionPartitions
+ */
+
+public final class OBCompositionContainer implements Closeable
+{
+  private static final byte[] MAGIC = {
+    (byte) 0x89, 'O', 'B', 'C', '\r', '\n', 0x1a, '\n',
+  };
+
+  private static final String SUFFIX = ".obc";
+  private static final int VERSION = 1;
+  private static final int SUPERBLOCK_SIZE = 128;
+  private static final int SUPERBLOCK_USED = 76;
+  private static final int INDEX_ENTRY_SIZE = 36;
+  private static final long DATA_START =
+    MAGIC.length + 2L * SUPERBLOCK_SIZE;
+
+  private final Path file;
+  private final FileChannel channel;
+  private final Superblock superblock;
+  private final Map<UUID, OBCompositionContainerChunk> channels;
+
+  private OBCompositionContainer(
+    final Path inFile,
+    final FileChannel inChannel,
+    final Superblock inSuperblock,
+    final Map<UUID, OBCompositionContainerChunk> inChannels)
+  {
+    this.file =
+      Objects.requireNonNull(inFile, "file");
+    this.channel =
+      Objects.requireNonNull(inChannel, "channel");
+    this.superblock =
+      Objects.requireNonNull(inSuperblock, "superblock");
+    this.channels =
+      Collections.unmodifiableMap(
+        Objects.requireNonNull(inChannels, "channels"));
+  }
+
+  /**
+   * @param path The path
+   *
+   * @return {@code true} if {@code path} has the name of a container
+   */
+
+  public static boolean isContainerName(
+    final Path path)
+  {
+    final var name = Objects.requireNonNull(path, "path").getFileName();
+    return name != null && name.toString().endsWith(SUFFIX);
+  }
+
+  /**
+   * @param path The path
+   *
+   * @return {@code true} if {@code path} is a container
+   */
+
+  public static boolean isContainer(
+    final Path path)
+  {
+    Objects.requireNonNull(path, "path");
+
+    if (!Files.isRegularFile(path)) {
+      return false;
+    }
+
+    try (var channel = FileChannel.open(path, READ)) {
+      final var buffer = ByteBuffer.allocate(MAGIC.length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, buffer.position()) < 0) {
+          return false;
+        }
+      }
+      return Arrays.equals(buffer.array(), MAGIC);
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Open a container for reading.
+   *
+   * @param file The container file
+   *
+   * @return The container
+   *
+   * @throws IOException On I/O errors, or if no superblock is intact
+   */
+
+  public static OBCompositionContainer open(
+    final Path file)
+    throws IOException
+  {
+    return openWith(file, FileChannel.open(file, READ));
+  }
+
+  /**
+   * Open a container for reading and updating.
+   *
+   * @param file The container file
+   *
+   * @return The container
+   *
+   * @throws IOException On I/O errors, or if no superblock is intact
+   * @see #update()
+   */
+
+  public static OBCompositionContainer openForUpdate(
+    final Path file)
+    throws IOException
+  {
+    return openWith(file, FileChannel.open(file, READ, WRITE));
+  }
+
+  /**
+   * Create a new, empty container.
+   *
+   * @param file The container file, which must not exist
+   *
+   * @return A writer for the first revision of the container
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static Writer create(
+    final Path file)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var channel = FileChannel.open(file, CREATE_NEW, READ, WRITE);
+    try {
+      writeFully(channel, ByteBuffer.wrap(MAGIC), 0L);
+      writeFully(
+        channel,
+        ByteBuffer.allocate(2 * SUPERBLOCK_SIZE),
+        MAGIC.length);
+      return new Writer(file, channel, UUID.randomUUID(), 1L, DATA_START);
+    } catch (final IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Read a chunk from whichever container now occupies its file.
+   *
+   * @param chunk The chunk
+   *
+   * @return The contents of the chunk
+   *
+   * @throws IOException On I/O errors, or if the chunk is no longer held
+   */
+
+  public static byte[] readChunk(
+    final OBCompositionContainerChunk chunk)
+    throws IOException
+  {
+    Objects.requireNonNull(chunk, "chunk");
+
+    try (var container = open(chunk.file())) {
+      return container.read(chunk);
+    }
+  }
+
+  /**
+   * Read the manifest of the container that holds the given chunk.
+   *
+   * @param chunk The chunk
+   *
+   * @return The contents of the manifest
+   *
+   * @throws IOException On I/O errors, or if the chunk is no longer held
+   */
+
+  public static byte[] readManifestOf(
+    final OBCompositionContainerChunk chunk)
+    throws IOException
+  {
+    Objects.requireNonNull(chunk, "chunk");
+
+    try (var container = open(chunk.file())) {
+      container.checkContains(chunk);
+      return container.read(container.manifest());
+    }
+  }
+
+  private static OBCompositionContainer openWith(
+    final Path file,
+    final FileChannel channel)
+    throws IOException
+  {
+    try {
+      final var magic = readFully(channel, 0L, MAGIC.length);
+      if (!Arrays.equals(magic.array(), MAGIC)) {
+        throw new IOException(
+          String.format("%s is not a composition container", file));
+      }
+
+      final var size = channel.size();
+      final var candidates = new ArrayList<Superblock>(2);
+      for (int slot = 0; slot < 2; ++slot) {
+        final var position = MAGIC.length + (long) slot * SUPERBLOCK_SIZE;
+        parseSuperblock(readFully(channel, position, SUPERBLOCK_SIZE), size)
+          .ifPresent(candidates::add);
+      }
+
+      /*
+       * The newest superblock whose index is intact wins. An index that
+       * fails its checksum can only belong to a superblock that should
+       * never have been written, but falling back costs nothing.
+       */
+
+      candidates.sort((x, y) -> Long.compare(y.sequence, x.sequence));
+      for (final var superblock : candidates) {
+        final var channels = readIndex(file, channel, superblock);
+        if (channels.isPresent()) {
+          return new OBCompositionContainer(
+            file, channel, superblock, channels.get());
+        }
+      }
+
+      throw new IOException(
+        String.format("%s has no intact superblock", file));
+    } catch (final IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static Optional<Superblock> parseSuperblock(
+    final ByteBuffer buffer,
+    final long size)
+  {
+    final var crc = new CRC32();
+    crc.update(buffer.array(), 0, SUPERBLOCK_USED - 4);
+    if ((int) crc.getValue() != buffer.getInt(SUPERBLOCK_USED - 4)) {
+      return Optional.empty();
+    }
+
+    buffer.rewind();
+    if (buffer.getInt() != VERSION) {
+      return Optional.empty();
+    }
+
+    final var superblock = new Superblock();
+    superblock.sequence = buffer.getLong();
+    superblock.id = new UUID(buffer.getLong(), buffer.getLong());
+    superblock.end = buffer.getLong();
+    superblock.manifestOffset = buffer.getLong();
+    superblock.manifestLength = buffer.getLong();
+    superblock.manifestChecksum = buffer.getInt();
+    superblock.indexOffset = buffer.getLong();
+    superblock.indexLength = buffer.getInt();
+    superblock.indexChecksum = buffer.getInt();
+
+    final var end = superblock.end;
+    final var valid =
+      end <= size
+        && inBounds(superblock.manifestOffset, superblock.manifestLength, end)
+        && inBounds(superblock.indexOffset, superblock.indexLength, end);
+
+    return valid ? Optional.of(superblock) : Optional.empty();
+  }
+
+  private static boolean inBounds(
+    final long offset,
+    final long length,
+    final long end)
+  {
+    return offset >= DATA_START && length >= 0L && offset + length <= end;
+  }
+
+  private static Optional<Map<UUID, OBCompositionContainerChunk>> readIndex(
+    final Path file,
+    final FileChannel channel,
+    final Superblock superblock)
+    throws IOException
+  {
+    final var buffer =
+      readFully(channel, superblock.indexOffset, superblock.indexLength);
+
+    final var crc = new CRC32();
+    crc.update(buffer.array());
+    if ((int) crc.getValue() != superblock.indexChecksum) {
+      return Optional.empty();
+    }
+
+    final var count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining() / INDEX_ENTRY_SIZE) {
+      return Optional.empty();
+    }
+
+    final var channels = new HashMap<UUID, OBCompositionContainerChunk>(count);
+    for (int index = 0; index < count; ++index) {
+      final var id = new UUID(buffer.getLong(), buffer.getLong());
+      final var offset = buffer.getLong();
+      final var length = buffer.getLong();
+      final var checksum = buffer.getInt();
+      if (!inBounds(offset, length, superblock.end)) {
+        return Optional.empty();
+      }
+      channels.put(
+        id,
+        OBCompositionContainerChunk.of(
+          file, superblock.id, offset, length, checksum)
+      );
+    }
+    return Optional.of(channels);
+  }
+
+  private static ByteBuffer readFully(
+    final FileChannel channel,
+    final long position,
+    final int size)
+    throws IOException
+  {
+    final var buffer = ByteBuffer.allocate(size);
+    while (buffer.hasRemaining()) {
+      final var read =
+        channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new IOException("Unexpected end of container");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void writeFully(
+    final FileChannel channel,
+    final ByteBuffer buffer,
+    final long position)
+    throws IOException
+  {
+    final var start = buffer.position();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + (buffer.position() - start));
+    }
+  }
+
+  /**
+   * @return The container file
+   */
+
+  public Path file()
+  {
+    return this.file;
+  }
+
+  /**
+   * @return The identifier of the container
+   */
+
+  public UUID id()
+  {
+    return this.superblock.id;
+  }
+
+  /**
+   * @return The chunk holding the manifest
+   */
+
+  public OBCompositionContainerChunk manifest()
+  {
+    return OBCompositionContainerChunk.of(
+      this.file,
+      this.superblock.id,
+      this.superblock.manifestOffset,
+      this.superblock.manifestLength,
+      this.superblock.manifestChecksum
+    );
+  }
+
+  /**
+   * @return The chunks holding the contents of each channel
+   */
+
+  public Map<UUID, OBCompositionContainerChunk> channels()
+  {
+    return this.channels;
+  }
+
+  /**
+   * @return The size of the current revision
+   */
+
+  public long size()
+  {
+    return this.superblock.end;
+  }
+
+  /**
+   * @return The total size of the chunks that the current revision uses
+   */
+
+  public long liveSize()
+  {
+    var live = this.superblock.manifestLength + this.superblock.indexLength;
+    for (final var chunk : this.channels.values()) {
+      live += chunk.length();
+    }
+    return live;
+  }
+
+  /**
+   * Read and check a chunk.
+   *
+   * @param chunk The chunk
+   *
+   * @return The contents of the chunk
+   *
+   * @throws IOException On I/O errors, or if the chunk is corrupt or not
+   *                     held by this container
+   */
+
+  public byte[] read(
+    final OBCompositionContainerChunk chunk)
+    throws IOException
+  {
+    Objects.requireNonNull(chunk, "chunk");
+
+    if (!Objects.equals(chunk.container(), this.superblock.id)) {
+      throw new IOException(
+        String.format(
+          "%s no longer contains container %s",
+          this.file,
+          chunk.container()));
+    }
+    if (!inBounds(chunk.offset(), chunk.length(), this.superblock.end)
+      || chunk.length() > Integer.MAX_VALUE - 8) {
+      throw new IOException(
+        String.format(
+          "Chunk at offset %d of %s is out of bounds",
+          Long.valueOf(chunk.offset()),
+          this.file));
+    }
+
+    final var buffer =
+      readFully(this.channel, chunk.offset(), (int) chunk.length());
+
+    final var crc = new CRC32();
+    crc.update(buffer.array());
+    if ((int) crc.getValue() != chunk.checksum()) {
+      throw new IOException(
+        String.format(
+          "Chunk at offset %d of %s is corrupt",
+          Long.valueOf(chunk.offset()),
+          this.file));
+    }
+    return buffer.array();
+  }
+
+  /**
+   * @param chunk The chunk
+   *
+   * @return {@code true} if this container holds the given chunk
+   */
+
+  public boolean contains(
+    final OBCompositionContainerChunk chunk)
+  {
+    Objects.requireNonNull(chunk, "chunk");
+
+    return Objects.equals(chunk.container(), this.superblock.id)
+      && inBounds(chunk.offset(), chunk.length(), this.superblock.end);
+  }
+
+  private void checkContains(
+    final OBCompositionContainerChunk chunk)
+    throws IOException
+  {
+    if (!this.contains(chunk)) {
+      throw new IOException(
+        String.format(
+          "%s no longer contains container %s",
+          this.file,
+          chunk.container()));
+    }
+  }
+
+  /**
+   * Start a new revision of this container. The writer appends after the
+   * end of the current revision; anything beyond that is the remains of
+   * an interrupted save, and is overwritten.
+   *
+   * @return A writer for the new revision
+   */
+
+  public Writer update()
+  {
+    return new Writer(
+      this.file,
+      this.channel,
+      this.superblock.id,
+      this.superblock.sequence + 1L,
+      this.superblock.end
+    );
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    this.channel.close();
+  }
+
+  /**
+   * A function that writes the contents of a chunk.
+   */
+
+  public interface ChunkWriterType
+  {
+    /**
+     * Write the contents of a chunk.
+     *
+     * @param output The chunk stream
+     *
+     * @throws Exception On errors
+     */
+
+    void write(OutputStream output)
+      throws Exception;
+  }
+
+  private static final class Superblock
+  {
+    private long sequence;
+    private UUID id;
+    private long end;
+    private long manifestOffset;
+    private long manifestLength;
+    private int manifestChecksum;
+    private long indexOffset;
+    private int indexLength;
+    private int indexChecksum;
+
+    Superblock()
+    {
+
+    }
+  }
+
+  /**
+   * A writer of a single revision of a container. Nothing written is
+   * visible to readers until the revision is committed.
+   */
+
+  public static final class Writer implements Closeable
+  {
+    private final Path file;
+    private final FileChannel channel;
+    private final UUID id;
+    private final long sequence;
+    private final LinkedHashMap<UUID, OBCompositionContainerChunk> channels;
+    private OBCompositionContainerChunk manifest;
+    private long position;
+
+    private Writer(
+      final Path inFile,
+      final FileChannel inChannel,
+      final UUID inId,
+      final long inSequence,
+      final long inPosition)
+    {
+      this.file = Objects.requireNonNull(inFile, "file");
+      this.channel = Objects.requireNonNull(inChannel, "channel");
+      this.id = Objects.requireNonNull(inId, "id");
+      this.sequence = inSequence;
+      this.position = inPosition;
+      this.channels = new LinkedHashMap<>();
+    }
+
+    /**
+     * Append the manifest.
+     *
+     * @param writer A function that writes the manifest
+     *
+     * @return The chunk holding the manifest
+     *
+     * @throws Exception On errors
+     */
+
+    public OBCompositionContainerChunk appendManifest(
+      final ChunkWriterType writer)
+      throws Exception
+    {
+      this.manifest = this.append(writer);
+      return this.manifest;
+    }
+
+    /**
+     * Append the contents of a channel.
+     *
+     * @param channelId The channel
+     * @param writer    A function that writes the contents
+     *
+     * @return The chunk holding the contents
+     *
+     * @throws Exception On errors
+     */
+
+    public OBCompositionContainerChunk appendChannel(
+      final UUID channelId,
+      final ChunkWriterType writer)
+      throws Exception
+    {
+      Objects.requireNonNull(channelId, "channelId");
+
+      final var chunk = this.append(writer);
+      this.channels.put(channelId, chunk);
+      return chunk;
+    }
+
+    /**
+     * Keep a chunk of the current revision as the contents of a channel.
+     *
+     * @param channelId The channel
+     * @param chunk     A chunk of this container
+     */
+
+    public void retainChannel(
+      final UUID channelId,
+      final OBCompositionContainerChunk chunk)
+    {
+      Objects.requireNonNull(channelId, "channelId");
+      Objects.requireNonNull(chunk, "chunk");
+
+      Preconditions.checkPreconditionV(
+        Objects.equals(chunk.container(), this.id),
+        "Chunk must belong to container %s",
+        this.id
+      );
+      this.channels.put(channelId, chunk.withFile(this.file));
+    }
+
+    /*
+     * A chunk that fails part way through is abandoned; the position is
+     * only advanced once the chunk is complete, so the next chunk simply
+     * overwrites it.
+     */
+
+    private OBCompositionContainerChunk append(
+      final ChunkWriterType writer)
+      throws Exception
+    {
+      Objects.requireNonNull(writer, "writer");
+
+      final var start = this.position;
+      try (var output = new ChunkOutputStream(this.channel, start)) {
+        writer.write(output);
+        output.flush();
+        this.position = start + output.count;
+        return OBCompositionContainerChunk.of(
+          this.file,
+          this.id,
+          start,
+          output.count,
+          (int) output.crc.getValue()
+        );
+      }
+    }
+
+    /**
+     * Commit the revision.
+     *
+     * @return The chunks holding the contents of each channel
+     *
+     * @throws IOException On I/O errors
+     */
+
+    public Map<UUID, OBCompositionContainerChunk> commit()
+      throws IOException
+    {
+      Preconditions.checkPreconditionV(
+        this.manifest != null,
+        "A manifest must have been written"
+      );
+
+      final var index =
+        ByteBuffer.allocate(4 + this.channels.size() * INDEX_ENTRY_SIZE);
+      index.putInt(this.channels.size());
+      for (final var entry : this.channels.entrySet()) {
+        final var chunk = entry.getValue();
+        index.putLong(entry.getKey().getMostSignificantBits());
+        index.putLong(entry.getKey().getLeastSignificantBits());
+        index.putLong(chunk.offset());
+        index.putLong(chunk.length());
+        index.putInt(chunk.checksum());
+      }
+      index.flip();
+
+      final var indexCrc = new CRC32();
+      indexCrc.update(index.array(), 0, index.limit());
+
+      final var indexOffset = this.position;
+      final var end = indexOffset + index.limit();
+      writeFully(this.channel, index, indexOffset);
+      this.channel.force(true);
+
+      final var superblock = ByteBuffer.allocate(SUPERBLOCK_SIZE);
+      superblock.putInt(VERSION);
+      superblock.putLong(this.sequence);
+      superblock.putLong(this.id.getMostSignificantBits());
+      superblock.putLong(this.id.getLeastSignificantBits());
+      superblock.putLong(end);
+      superblock.putLong(this.manifest.offset());
+      superblock.putLong(this.manifest.length());
+      superblock.putInt(this.manifest.checksum());
+      superblock.putLong(indexOffset);
+      superblock.putInt(index.limit());
+      superblock.putInt((int) indexCrc.getValue());
+
+      final var crc = new CRC32();
+      crc.update(superblock.array(), 0, superblock.position());
+      superblock.putInt((int) crc.getValue());
+      superblock.rewind();
+
+      final var slot = this.sequence % 2L;
+      writeFully(
+        this.channel,
+        superblock,
+        MAGIC.length + slot * SUPERBLOCK_SIZE);
+      this.channel.force(true);
+      this.channel.truncate(end);
+      return Collections.unmodifiableMap(new HashMap<>(this.channels));
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      this.channel.close();
+    }
+  }
+
+  private static final class ChunkOutputStream extends OutputStream
+  {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32 crc;
+    private final long start;
+    private long count;
+
+    ChunkOutputStream(
+      final FileChannel inChannel,
+      final long inStart)
+    {
+      this.channel = Objects.requireNonNull(inChannel, "channel");
+      this.buffer = ByteBuffer.allocate(65536);
+      this.crc = new CRC32();
+      this.count = 0L;
+      this.start = inStart;
+    }
+
+    @Override
+    public void write(
+      final int b)
+      throws IOException
+    {
+      if (!this.buffer.hasRemaining()) {
+        this.flush();
+      }
+      this.buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(
+      final byte[] data,
+      final int offset,
+      final int length)
+      throws IOException
+    {
+      var at = offset;
+      var remaining = length;
+      while (remaining > 0) {
+        if (!this.buffer.hasRemaining()) {
+          this.flush();
+        }
+        final var size = Math.min(remaining, this.buffer.remaining());
+        this.buffer.put(data, at, size);
+        at += size;
+        remaining -= size;
+      }
+    }
+
+    @Override
+    public void flush()
+      throws IOException
+    {
+      this.buffer.flip();
+      this.crc.update(this.buffer.array(), 0, this.buffer.limit());
+      final var size = this.buffer.limit();
+      writeFully(this.channel, this.buffer, this.start + this.count);
+      this.count += size;
+      this.buffer.clear();
+    }
+
+    /*
+     * Closing a chunk must not close the container.
+     */
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      this.flush();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_parser.api;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * A chunk of a composition container.
+ *
+ * @see OBCompositionContainer
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface OBCompositionContainerChunkType
+{
+  /**
+   * @return The container file
+   */
+
+  @Value.Parameter
+  Path file();
+
+  /**
+   * @return The identifier of the container that holds the chunk
+   */
+
+  @Value.Parameter
+  UUID container();
+
+  /**
+   * @return The offset of the chunk within the file
+   */
+
+  @Value.Parameter
+  long offset();
+
+  /**
+   * @return The length of the chunk
+   */
+
+  @Value.Parameter
+  long length();
+
+  /**
+   * @return The CRC32 checksum of the chunk
+   */
+
+  @Value.Parameter
+  int checksum();
+}
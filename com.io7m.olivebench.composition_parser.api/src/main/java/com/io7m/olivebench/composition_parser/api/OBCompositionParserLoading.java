@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.composition_parser.api;
+
+/**
+ * The point at which the contents of channels are loaded.
+ */
+
+public enum OBCompositionParserLoading
+{
+  /**
+   * The contents of every channel are loaded when the composition is
+   * parsed.
+   */
+
+  EAGER,
+
+  /**
+   * Only the composition metadata and the channels themselves are loaded
+   * when the composition is parsed. Where the format allows it, the
+   * contents of each channel are deferred until they are explicitly
+   * loaded.
+   *
+   * @see com.io7m.olivebench.model.graph.OBCompositionGraphReadableType#channelsDeferred()
+   */
+
+  LAZY
+}
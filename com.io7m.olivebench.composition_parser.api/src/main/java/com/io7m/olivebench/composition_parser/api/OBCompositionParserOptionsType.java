@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.composition_parser.api;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.io.InputStream;
+import java.util.function.UnaryOperator;
+
+/**
+ * The options for a parser.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface OBCompositionParserOptionsType
+{
+  /**
+   * Implementations that do not support skipping validation are permitted
+   * to validate regardless of the degree of validation requested.
+   *
+   * @return The degree of validation required
+   */
+
+  @Value.Default
+  default OBCompositionParserValidation validation()
+  {
+    return OBCompositionParserValidation.VALIDATE;
+  }
+
+  /**
+   * @return The point at which the contents of channels are loaded
+   */
+
+  @Value.Default
+  default OBCompositionParserLoading loading()
+  {
+    return OBCompositionParserLoading.EAGER;
+  }
+
+  /**
+   * The filter is applied to the stream of a composition held in a single
+   * file or given as a stream, before anything reads it. The parts of a
+   * partitioned composition and the chunks of a container are measured
+   * by {@link #progress()} instead.
+   *
+   * @return A filter applied to the input stream
+   */
+
+  @Value.Default
+  default UnaryOperator<InputStream> filter()
+  {
+    return UnaryOperator.identity();
+  }
+
+  /**
+   * Progress is reported in units of work that suit the input: the parts
+   * of a partitioned composition, the chunks of a container, or the nodes
+   * of a file that a format reads directly.
+   *
+   * @return A receiver of progress
+   */
+
+  @Value.Default
+  default OBCompositionParserProgressType progress()
+  {
+    return OBCompositionParserProgressType.ignoring();
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_parser.api;
+
+import java.io.IOException;
+
+/**
+ * A receiver of the progress of a parser. Progress is reported in whatever
+ * units of work suit the input, such as the parts of a partitioned
+ * composition or the chunks of a container.
+ */
+
+@FunctionalInterface
+public interface OBCompositionParserProgressType
+{
+  /**
+   * @return A receiver that ignores all progress
+   */
+
+  static OBCompositionParserProgressType ignoring()
+  {
+    return (completed, total) -> {
+
+    };
+  }
+
+  /**
+   * Parsing has progressed. Receivers may abort parsing by raising an
+   * exception, in which case the parser stops at the next unit of work
+   * and reports the exception as an error.
+   *
+   * @param completed The number of units of work completed
+   * @param total     The total number of units of work
+   *
+   * @throws IOException To abort parsing
+   */
+
+  void onProgress(
+    long completed,
+    long total)
+    throws IOException;
+}
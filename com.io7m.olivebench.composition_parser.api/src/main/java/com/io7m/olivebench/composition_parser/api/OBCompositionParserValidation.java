@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.composition_parser.api;
+
+/**
+ * The degree of validation applied to documents.
+ */
+
+public enum OBCompositionParserValidation
+{
+  /**
+   * Documents are validated against the schema of the format.
+   */
+
+  VALIDATE,
+
+  /**
+   * Schema validation is skipped. This is only appropriate for documents
+   * that are known to have been produced by a serializer, such as files
+   * whose content is unchanged since they were last saved. Documents are
+   * still checked for well-formedness, and the element handlers still
+   * reject structurally invalid content.
+   */
+
+  TRUSTED
+}
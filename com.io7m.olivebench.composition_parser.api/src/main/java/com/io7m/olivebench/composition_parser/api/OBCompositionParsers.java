@@ -17,36 +17,62 @@
 package com.io7m.olivebench.composition_parser.api;
 
 import com.io7m.blackthorne.api.BTContentHandler;
+import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.blackthorne.api.BTParseError;
 import com.io7m.blackthorne.api.BTQualifiedName;
 import com.io7m.jlexing.core.LexicalPosition;
 import com.io7m.jlexing.core.LexicalPositions;
-import com.io7m.jxe.core.JXEHardenedSAXParsers;
-import com.io7m.jxe.core.JXESchemaResolutionMappings;
-import com.io7m.jxe.core.JXEXInclude;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIFormatType;
 import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIParsersType;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIPartType;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPISourceType;
+import com.io7m.olivebench.metrics.OBMetrics;
 import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBCompositionGraphReadableType;
+import com.io7m.olivebench.model.graph.OBCompositionGraphType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
 
 /**
  * The default implementation of the parser API.
@@ -57,15 +83,28 @@ public final class OBCompositionParsers implements OBCompositionParsersType
   private static final Logger LOG =
     LoggerFactory.getLogger(OBCompositionParsers.class);
 
-  private static final JXEHardenedSAXParsers PARSERS =
-    new JXEHardenedSAXParsers();
+  private static final int GZIP_MAGIC_0 = 0x1f;
+  private static final int GZIP_MAGIC_1 = 0x8b;
 
   private final List<OBCompositionSPIParsersType> parsers;
+  private final List<OBCompositionSPIFormatType> formats;
+  private final int probeSize;
+  private final Object factoryLock;
+  private SAXParserFactory factoryValidating;
+  private SAXParserFactory factoryTrusted;
 
   private OBCompositionParsers(
-    final List<OBCompositionSPIParsersType> inParsers)
+    final List<OBCompositionSPIParsersType> inParsers,
+    final List<OBCompositionSPIFormatType> inFormats)
   {
     this.parsers = inParsers;
+    this.formats = inFormats;
+    this.probeSize =
+      inFormats.stream()
+        .mapToInt(OBCompositionSPIFormatType::probeSize)
+        .max()
+        .orElse(0);
+    this.factoryLock = new Object();
   }
 
   /**
@@ -77,13 +116,10 @@ public final class OBCompositionParsers implements OBCompositionParsersType
 
   public static OBCompositionParsersType create()
   {
-    final var loader =
-      ServiceLoader.load(OBCompositionSPIParsersType.class);
-    final var iterator =
-      loader.spliterator();
     final var parsers =
-      StreamSupport.stream(iterator, false)
-        .collect(Collectors.toList());
+      load(OBCompositionSPIParsersType.class);
+    final var formats =
+      load(OBCompositionSPIFormatType.class);
 
     LOG.debug("{} parsers available", Integer.valueOf(parsers.size()));
     for (int index = 0; index < parsers.size(); ++index) {
@@ -91,7 +127,24 @@ public final class OBCompositionParsers implements OBCompositionParsersType
       LOG.debug("[{}] {}", Integer.valueOf(index), parser);
     }
 
-    return createWith(parsers);
+    LOG.debug("{} formats available", Integer.valueOf(formats.size()));
+    for (int index = 0; index < formats.size(); ++index) {
+      final var format = formats.get(index);
+      LOG.debug("[{}] {}", Integer.valueOf(index), format);
+    }
+
+    return createWith(parsers, formats);
+  }
+
+  private static <T> List<T> load(
+    final Class<T> clazz)
+  {
+    final var loader =
+      ServiceLoader.load(clazz);
+    final var iterator =
+      loader.spliterator();
+    return StreamSupport.stream(iterator, false)
+      .collect(Collectors.toList());
   }
 
   /**
@@ -105,7 +158,23 @@ public final class OBCompositionParsers implements OBCompositionParsersType
   public static OBCompositionParsersType createWith(
     final List<OBCompositionSPIParsersType> parsers)
   {
-    return new OBCompositionParsers(parsers);
+    return createWith(parsers, List.of());
+  }
+
+  /**
+   * Construct a new API using the given parsers and formats.
+   *
+   * @param parsers The set of available XML parsers
+   * @param formats The set of available non-XML formats
+   *
+   * @return A parser API
+   */
+
+  public static OBCompositionParsersType createWith(
+    final List<OBCompositionSPIParsersType> parsers,
+    final List<OBCompositionSPIFormatType> formats)
+  {
+    return new OBCompositionParsers(parsers, formats);
   }
 
   private static OBCompositionParserError errorBrokenXMLParser(
@@ -134,22 +203,47 @@ public final class OBCompositionParsers implements OBCompositionParsersType
     final URI uri,
     final Exception e)
   {
+    /*
+     * An exception raised while stitching the parts of a composition carries
+     * the file of the part it refers to, rather than that of the composition.
+     */
+
     if (e instanceof SAXParseException) {
       final var parseEx = (SAXParseException) e;
+      final var systemId = parseEx.getSystemId();
       return LexicalPosition.<URI>builder()
         .setColumn(parseEx.getColumnNumber())
         .setLine(parseEx.getLineNumber())
-        .setFile(uri)
+        .setFile(systemId == null ? uri : URI.create(systemId))
         .build();
     }
     return LexicalPositions.zeroWithFile(uri);
   }
 
+  /*
+   * Handlers may raise errors that refer to an earlier position in the
+   * document than the one the parser has reached, and so the position
+   * carried by the exception takes precedence.
+   */
+
   private static OBCompositionParserError blackthorneToRV(
     final BTParseError error)
   {
+    var lexical = error.lexical();
+    final var exception = error.exception();
+    if (exception.isPresent() && exception.get() instanceof SAXParseException) {
+      final var parseEx = (SAXParseException) exception.get();
+      if (parseEx.getLineNumber() > 0) {
+        lexical = LexicalPosition.<URI>builder()
+          .from(lexical)
+          .setLine(parseEx.getLineNumber())
+          .setColumn(parseEx.getColumnNumber())
+          .build();
+      }
+    }
+
     return OBCompositionParserError.builder()
-      .setLexical(error.lexical())
+      .setLexical(lexical)
       .setMessage(error.message())
       .setException(error.exception())
       .build();
@@ -166,37 +260,435 @@ public final class OBCompositionParsers implements OBCompositionParsersType
       .build();
   }
 
+  private static SAXParserFactory createParserFactory(
+    final Optional<Schema> schema)
+    throws ParserConfigurationException, SAXException
+  {
+    final var factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    factory.setValidating(false);
+    factory.setXIncludeAware(false);
+    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    factory.setFeature(
+      "http://xml.org/sax/features/external-general-entities", false);
+    factory.setFeature(
+      "http://xml.org/sax/features/external-parameter-entities", false);
+    factory.setFeature(
+      "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+    schema.ifPresent(factory::setSchema);
+    return factory;
+  }
+
+  private Schema compileSchema()
+    throws SAXException, IOException
+  {
+    final var schemas =
+      SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+
+    schemas.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    schemas.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+    schemas.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+
+    final var streams = new ArrayList<InputStream>(this.parsers.size());
+    try {
+      final var sources = new Source[this.parsers.size()];
+      for (int index = 0; index < sources.length; ++index) {
+        final var location = this.parsers.get(index).schema().location();
+        final var stream = location.openStream();
+        streams.add(stream);
+        sources[index] = new StreamSource(stream, location.toString());
+      }
+
+      final var timeThen = Instant.now();
+      final var schema = schemas.newSchema(sources);
+      final var timeNow = Instant.now();
+      LOG.debug(
+        "compiled {} schemas in {}",
+        Integer.valueOf(sources.length),
+        Duration.between(timeThen, timeNow));
+      return schema;
+    } finally {
+      for (final var stream : streams) {
+        stream.close();
+      }
+    }
+  }
+
+  /*
+   * Compiling the schemas costs far more than parsing a typical composition,
+   * so the compiled schema is held by a parser factory that lives as long as
+   * this API (and therefore, as a service, as long as the process). Parser
+   * factories are not required to be thread-safe, so readers are created
+   * under a lock.
+   */
+
+  private XMLReader createXMLReader(
+    final OBCompositionParserValidation validation)
+    throws ParserConfigurationException, SAXException, IOException
+  {
+    synchronized (this.factoryLock) {
+      final SAXParserFactory factory;
+      if (validation == OBCompositionParserValidation.TRUSTED) {
+        if (this.factoryTrusted == null) {
+          this.factoryTrusted = createParserFactory(Optional.empty());
+        }
+        factory = this.factoryTrusted;
+      } else {
+        if (this.factoryValidating == null) {
+          this.factoryValidating =
+            createParserFactory(Optional.of(this.compileSchema()));
+        }
+        factory = this.factoryValidating;
+      }
+
+      final var parser = factory.newSAXParser();
+      parser.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+      parser.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+      return parser.getXMLReader();
+    }
+  }
+
   @Override
   public OBCompositionParserType createParser(
     final OBServiceDirectoryType services,
     final URI source,
+    final InputStream stream,
+    final OBCompositionParserOptions options)
+  {
+    Objects.requireNonNull(stream, "stream");
+    Objects.requireNonNull(options, "options");
+
+    return new Parser(
+      this,
+      services,
+      source,
+      options.filter().apply(stream),
+      Optional.empty(),
+      options.validation(),
+      options.progress()
+    );
+  }
+
+  @Override
+  public OBCompositionParserType createParser(
+    final OBServiceDirectoryType services,
+    final Path file,
+    final OBCompositionParserOptions options)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+    Objects.requireNonNull(options, "options");
+
+    if (Files.isDirectory(file)) {
+      return new PartitionedParser(this, services, file, options);
+    }
+    if (OBCompositionContainer.isContainer(file)) {
+      return new ContainerParser(this, services, file, options);
+    }
+
+    final var channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      final var stream =
+        options.filter()
+          .apply(new BufferedInputStream(Channels.newInputStream(channel)));
+
+      if (isCompressed(channel)) {
+        return new Parser(
+          this,
+          services,
+          file.toUri(),
+          decompressed(stream),
+          Optional.empty(),
+          options.validation(),
+          options.progress()
+        );
+      }
+
+      return new Parser(
+        this,
+        services,
+        file.toUri(),
+        stream,
+        Optional.of(channel),
+        options.validation(),
+        options.progress()
+      );
+    } catch (final Exception e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /*
+   * Compressed files are recognized by the gzip magic number, which cannot
+   * begin a document in any of the formats. They are decompressed before
+   * anything else reads them, and so formats never see compressed data.
+   * Formats that would otherwise read a file directly read the stream of
+   * decompressed data instead. The stream filter sees the compressed data,
+   * so progress is measured against the size of the file.
+   */
+
+  private static boolean isCompressed(
+    final FileChannel channel)
+    throws IOException
+  {
+    final var header = ByteBuffer.allocate(2);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        return false;
+      }
+    }
+    return isGzipMagic(header.get(0), header.get(1));
+  }
+
+  private static boolean isCompressed(
     final InputStream stream)
+    throws IOException
+  {
+    stream.mark(2);
+    try {
+      final var header = stream.readNBytes(2);
+      return header.length == 2 && isGzipMagic(header[0], header[1]);
+    } finally {
+      stream.reset();
+    }
+  }
+
+  private static boolean isGzipMagic(
+    final byte b0,
+    final byte b1)
+  {
+    return (b0 & 0xff) == GZIP_MAGIC_0 && (b1 & 0xff) == GZIP_MAGIC_1;
+  }
+
+  private static InputStream decompressed(
+    final InputStream stream)
+    throws IOException
+  {
+    return new BufferedInputStream(new GZIPInputStream(stream, 65536));
+  }
+
+  /*
+   * Formats are selected by the first few bytes of the input. Files are
+   * probed with positional reads, which leave the channel (and therefore
+   * the stream reading from it) at the start of the file. Streams are
+   * probed by marking and resetting them.
+   */
+
+  private Optional<OBCompositionSPIFormatType> sniff(
+    final InputStream stream,
+    final Optional<FileChannel> channel)
+    throws IOException
+  {
+    if (this.formats.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final var header = ByteBuffer.allocate(this.probeSize);
+    if (channel.isPresent()) {
+      final var fileChannel = channel.get();
+      while (header.hasRemaining()) {
+        if (fileChannel.read(header, header.position()) < 0) {
+          break;
+        }
+      }
+    } else {
+      stream.mark(this.probeSize);
+      try {
+        header.put(stream.readNBytes(this.probeSize));
+      } finally {
+        stream.reset();
+      }
+    }
+    header.flip();
+
+    for (final var format : this.formats) {
+      final var view = header.asReadOnlyBuffer();
+      view.limit(Math.min(view.limit(), format.probeSize()));
+      if (format.probe(view)) {
+        LOG.debug("format {} claimed the input", format);
+        return Optional.of(format);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static void recordParse(
+    final OBServiceDirectoryType services,
+    final OBJFRCompositionParse event,
+    final String source,
+    final Instant timeThen,
+    final List<OBCompositionParserError> errors,
+    final boolean validated)
+  {
+    final var timeNow = Instant.now();
+    final var elapsed = Duration.between(timeThen, timeNow);
+    LOG.debug("parsed {} in {}", source, elapsed);
+
+    OBMetrics.findOrDisabled(services)
+      .histogram("composition.parseTimeNanos")
+      .record(elapsed.toNanos());
+
+    if (event.shouldCommit()) {
+      event.source = source;
+      event.errors = errors.size();
+      event.validated = validated;
+      event.commit();
+    }
+  }
+
+  private static Optional<OBCompositionType> parseFormat(
+    final OBCompositionSPIFormatType format,
+    final OBServiceDirectoryType services,
+    final OBCompositionSPISourceType source,
+    final List<OBCompositionParserError> errors)
+  {
+    try {
+      final var event = new OBJFRCompositionParse();
+      event.begin();
+      final var timeThen = Instant.now();
+      final var composition = format.parse(services, source);
+      recordParse(
+        services,
+        event,
+        source.uri().toString(),
+        timeThen,
+        errors,
+        false);
+      return Optional.of(composition);
+    } catch (final Exception e) {
+      errors.add(errorIO(source.uri(), e));
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public OBChannelStoredContentsType createContainerContents(
+    final OBServiceDirectoryType services,
+    final OBCompositionContainerChunk chunk)
   {
-    return new Parser(this.parsers, services, source, stream);
+    return new ChunkContents(
+      this,
+      services,
+      chunk,
+      OBCompositionParserValidation.VALIDATE);
+  }
+
+  /*
+   * Parse a single document with whichever provider claims its root
+   * element. The provider that claimed the document is recorded in
+   * {@code provider}, if one is given.
+   */
+
+  private <T> Optional<T> parseDocument(
+    final URI source,
+    final InputStream stream,
+    final OBCompositionParserValidation validation,
+    final Function<OBCompositionSPIParsersType, BTElementHandlerType<?, T>> handlers,
+    final AtomicReference<OBCompositionSPIParsersType> provider,
+    final OBServiceDirectoryType services,
+    final List<OBCompositionParserError> errors)
+  {
+    try {
+      final var contentHandlerBuilder =
+        BTContentHandler.<T>builder();
+
+      LOG.debug(
+        "{} providers available",
+        Integer.valueOf(this.parsers.size()));
+
+      for (final var candidate : this.parsers) {
+        final var schemaNamespace = candidate.schema().namespace();
+
+        LOG.debug("adding schema {}", schemaNamespace);
+        contentHandlerBuilder.addHandler(
+          BTQualifiedName.of(schemaNamespace.toString(), "Composition"),
+          context -> {
+            provider.set(candidate);
+            return handlers.apply(candidate);
+          }
+        );
+      }
+
+      final var inputSource = new InputSource(stream);
+      final var urlText = source.toString();
+      inputSource.setPublicId(urlText);
+
+      final var contentHandler =
+        contentHandlerBuilder.build(
+          source,
+          parseError -> errors.add(blackthorneToRV(parseError)));
+
+      final var parser = this.createXMLReader(validation);
+      parser.setErrorHandler(contentHandler);
+      parser.setContentHandler(contentHandler);
+
+      final var event = new OBJFRCompositionParse();
+      event.begin();
+      final var timeThen = Instant.now();
+      parser.parse(inputSource);
+      recordParse(
+        services,
+        event,
+        urlText,
+        timeThen,
+        errors,
+        validation == OBCompositionParserValidation.VALIDATE);
+
+      return contentHandler.result().map(Function.identity());
+    } catch (final ParserConfigurationException e) {
+      errors.add(errorBrokenXMLParser(source, e));
+      return Optional.empty();
+    } catch (final SAXException e) {
+      errors.add(errorMalformedXML(source, e));
+      return Optional.empty();
+    } catch (final Exception e) {
+      errors.add(errorIO(source, e));
+      return Optional.empty();
+    }
   }
 
   private static final class Parser implements OBCompositionParserType
   {
-    private final List<OBCompositionSPIParsersType> providers;
+    private final OBCompositionParsers owner;
     private final OBServiceDirectoryType services;
     private final URI source;
-    private final InputStream stream;
+    private final Optional<FileChannel> channel;
+    private final OBCompositionParserValidation validation;
+    private final OBCompositionParserProgressType progress;
     private final ArrayList<OBCompositionParserError> errors;
+    private InputStream stream;
 
     private Parser(
-      final List<OBCompositionSPIParsersType> inProviders,
+      final OBCompositionParsers inOwner,
       final OBServiceDirectoryType inServices,
       final URI inSource,
-      final InputStream inStream)
+      final InputStream inStream,
+      final Optional<FileChannel> inChannel,
+      final OBCompositionParserValidation inValidation,
+      final OBCompositionParserProgressType inProgress)
     {
-      this.providers =
-        Objects.requireNonNull(inProviders, "inProviders");
+      this.owner =
+        Objects.requireNonNull(inOwner, "inOwner");
       this.services =
         Objects.requireNonNull(inServices, "services");
       this.source =
         Objects.requireNonNull(inSource, "inSource");
-      this.stream =
+
+      final var streamGiven =
         Objects.requireNonNull(inStream, "inStream");
+      if (streamGiven.markSupported() || inChannel.isPresent()) {
+        this.stream = streamGiven;
+      } else {
+        this.stream = new BufferedInputStream(streamGiven);
+      }
+
+      this.channel =
+        Objects.requireNonNull(inChannel, "inChannel");
+      this.validation =
+        Objects.requireNonNull(inValidation, "inValidation");
+      this.progress =
+        Objects.requireNonNull(inProgress, "inProgress");
       this.errors = new ArrayList<>();
     }
 
@@ -209,71 +701,704 @@ public final class OBCompositionParsers implements OBCompositionParsersType
     @Override
     public Optional<OBCompositionType> execute()
     {
+      final Optional<OBCompositionSPIFormatType> format;
       try {
-        final var contentHandlerBuilder =
-          BTContentHandler.<OBCompositionType>builder();
-        final var mappingsBuilder =
-          JXESchemaResolutionMappings.builder();
+        if (this.channel.isEmpty() && isCompressed(this.stream)) {
+          this.stream = decompressed(this.stream);
+        }
+        format = this.owner.sniff(this.stream, this.channel);
+      } catch (final IOException e) {
+        this.errors.add(errorIO(this.source, e));
+        return Optional.empty();
+      }
 
-        LOG.debug(
-          "{} providers available",
-          Integer.valueOf(this.providers.size()));
-
-        for (final var candidate : this.providers) {
-          final var schema = candidate.schema();
-          final var schemaNamespace = schema.namespace();
-          mappingsBuilder.putMappings(schemaNamespace, schema);
-
-          LOG.debug("adding schema {}", schemaNamespace);
-          contentHandlerBuilder.addHandler(
-            BTQualifiedName.of(schemaNamespace.toString(), "Composition"),
-            context -> candidate.createHandler(this.services)
-          );
+      if (format.isPresent()) {
+        return parseFormat(
+          format.get(),
+          this.services,
+          new FormatSource(
+            this.source,
+            this.stream,
+            this.channel,
+            this.progress),
+          this.errors
+        );
+      }
+
+      return this.owner.parseDocument(
+        this.source,
+        this.stream,
+        this.validation,
+        candidate -> candidate.createHandler(this.services),
+        new AtomicReference<>(),
+        this.services,
+        this.errors
+      );
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      try {
+        this.stream.close();
+      } finally {
+        if (this.channel.isPresent()) {
+          this.channel.get().close();
         }
+      }
+    }
+  }
 
-        final var inputSource = new InputSource(this.stream);
-        final var urlText = this.source.toString();
-        inputSource.setPublicId(urlText);
+  /*
+   * Formats that read the stream have their progress measured by the
+   * filter applied to the stream, and so progress reported by a format is
+   * only passed on when the format has been given the file channel.
+   */
 
-        final var contentHandler =
-          contentHandlerBuilder.build(
-            this.source,
-            parseError -> this.errors.add(blackthorneToRV(parseError)));
+  private static final class FormatSource
+    implements OBCompositionSPISourceType
+  {
+    private final URI uri;
+    private final InputStream stream;
+    private final Optional<FileChannel> channel;
+    private final OBCompositionParserProgressType progress;
+
+    FormatSource(
+      final URI inUri,
+      final InputStream inStream,
+      final Optional<FileChannel> inChannel,
+      final OBCompositionParserProgressType inProgress)
+    {
+      this.uri = Objects.requireNonNull(inUri, "uri");
+      this.stream = Objects.requireNonNull(inStream, "stream");
+      this.channel = Objects.requireNonNull(inChannel, "channel");
+      this.progress = Objects.requireNonNull(inProgress, "progress");
+    }
+
+    @Override
+    public void reportProgress(
+      final long completed,
+      final long total)
+      throws IOException
+    {
+      if (this.channel.isPresent()) {
+        this.progress.onProgress(completed, total);
+      }
+    }
+
+    @Override
+    public URI uri()
+    {
+      return this.uri;
+    }
 
-        final var parser =
-          PARSERS.createXMLReader(
-            Optional.empty(),
-            JXEXInclude.XINCLUDE_DISABLED,
-            mappingsBuilder.build());
+    @Override
+    public InputStream stream()
+    {
+      return this.stream;
+    }
 
-        parser.setErrorHandler(contentHandler);
-        parser.setContentHandler(contentHandler);
+    @Override
+    public Optional<FileChannel> channel()
+    {
+      return this.channel;
+    }
+  }
+
+  /*
+   * The manifest of a partitioned composition is parsed first, and then
+   * all of the channel parts are parsed concurrently. Each part is parsed
+   * by the provider that claims it, into a form that only that provider
+   * understands, and so every part must be claimed by the same provider
+   * as the manifest. The provider then stitches the parts together.
+   *
+   * When loading lazily, the manifest is stitched on its own, and each
+   * channel that has a part is deferred. Manifests written by earlier
+   * versions do not contain the channels, and are loaded eagerly.
+   */
+
+  private static final class PartitionedParser
+    implements OBCompositionParserType
+  {
+    private final OBCompositionParsers owner;
+    private final OBServiceDirectoryType services;
+    private final Path directory;
+    private final OBCompositionParserOptions options;
+    private final ArrayList<OBCompositionParserError> errors;
+
+    private PartitionedParser(
+      final OBCompositionParsers inOwner,
+      final OBServiceDirectoryType inServices,
+      final Path inDirectory,
+      final OBCompositionParserOptions inOptions)
+    {
+      this.owner =
+        Objects.requireNonNull(inOwner, "inOwner");
+      this.services =
+        Objects.requireNonNull(inServices, "services");
+      this.directory =
+        Objects.requireNonNull(inDirectory, "inDirectory");
+      this.options =
+        Objects.requireNonNull(inOptions, "inOptions");
+      this.errors = new ArrayList<>();
+    }
+
+    @Override
+    public List<OBCompositionParserError> errors()
+    {
+      return List.copyOf(this.errors);
+    }
+
+    @Override
+    public Optional<OBCompositionType> execute()
+    {
+      final var source = this.directory.toUri();
+      final var validation = this.options.validation();
+      final var progress = this.options.progress();
+
+      try {
+        final var manifest =
+          this.owner.parsePart(
+            this.services,
+            OBCompositionPartitions.manifestOf(this.directory),
+            validation);
+        this.errors.addAll(manifest.errors);
+        if (manifest.part.isEmpty()) {
+          return Optional.empty();
+        }
+
+        final var provider = manifest.provider.get();
+        if (this.options.loading() == OBCompositionParserLoading.LAZY) {
+          final var composition =
+            provider.stitch(this.services, manifest.part.get(), List.of());
+          if (this.defer(composition.graph(), provider, manifest.part.get())) {
+            progress.onProgress(1L, 1L);
+            return Optional.of(composition);
+          }
+        }
+
+        final var tasks =
+          OBCompositionPartitions.channelParts(this.directory)
+            .stream()
+            .map(file -> CompletableFuture.supplyAsync(
+              () -> this.owner.parsePart(this.services, file, validation),
+              ForkJoinPool.commonPool()))
+            .collect(Collectors.toList());
+
+        final var parts =
+          awaitParts(tasks, provider, progress, this.errors);
+
+        if (!this.errors.isEmpty()) {
+          return Optional.empty();
+        }
 
         final var timeThen = Instant.now();
-        parser.parse(inputSource);
+        final var composition =
+          provider.stitch(this.services, manifest.part.get(), parts);
         final var timeNow = Instant.now();
         LOG.debug(
-          "parsed collection in {}",
+          "stitched {} parts in {}",
+          Integer.valueOf(parts.size()),
           Duration.between(timeThen, timeNow));
-
-        return contentHandler.result().map(Function.identity());
-      } catch (final ParserConfigurationException e) {
-        this.errors.add(errorBrokenXMLParser(this.source, e));
-        return Optional.empty();
-      } catch (final SAXException e) {
-        this.errors.add(errorMalformedXML(this.source, e));
+        return Optional.of(composition);
+      } catch (final Exception e) {
+        this.errors.add(errorIO(source, e));
         return Optional.empty();
+      }
+    }
+
+    private boolean defer(
+      final OBCompositionGraphType graph,
+      final OBCompositionSPIParsersType provider,
+      final OBCompositionSPIPartType manifest)
+    {
+      final var channels =
+        graph.nodes()
+          .values()
+          .stream()
+          .filter(node -> node instanceof OBChannelType)
+          .map(OBChannelType.class::cast)
+          .collect(Collectors.toList());
+
+      if (channels.isEmpty()) {
+        return false;
+      }
+
+      for (final var channel : channels) {
+        final var file =
+          OBCompositionPartitions.channelOf(this.directory, channel.id());
+        if (Files.isRegularFile(file)) {
+          graph.channelDefer(
+            channel,
+            new DeferredChannel(
+              this.owner,
+              this.services,
+              provider,
+              manifest,
+              file,
+              this.options.validation())
+          );
+        }
+      }
+
+      LOG.debug(
+        "deferred {} channels",
+        Integer.valueOf(graph.channelsDeferred().size()));
+      return true;
+    }
+
+    @Override
+    public void close()
+    {
+
+    }
+  }
+
+  private PartResult parsePart(
+    final OBServiceDirectoryType services,
+    final Path file,
+    final OBCompositionParserValidation validation)
+  {
+    final var source = file.toUri();
+    try (var stream = new BufferedInputStream(Files.newInputStream(file))) {
+      return this.parsePart(services, source, stream, validation);
+    } catch (final IOException e) {
+      final var result = new PartResult(source);
+      result.errors.add(errorIO(source, e));
+      return result;
+    }
+  }
+
+  private PartResult parsePart(
+    final OBServiceDirectoryType services,
+    final URI source,
+    final InputStream stream,
+    final OBCompositionParserValidation validation)
+  {
+    final var result = new PartResult(source);
+    result.part = this.parseDocument(
+      source,
+      stream,
+      validation,
+      candidate -> candidate.createPartHandler(services),
+      result.provider,
+      services,
+      result.errors
+    );
+
+    if (!result.errors.isEmpty()) {
+      result.part = Optional.empty();
+    }
+    return result;
+  }
+
+  private static URI chunkSource(
+    final Path file,
+    final String name)
+  {
+    return URI.create(file.toUri() + "#" + name);
+  }
+
+  private PartResult parseChunk(
+    final OBServiceDirectoryType services,
+    final OBCompositionContainer container,
+    final OBCompositionContainerChunk chunk,
+    final String name,
+    final OBCompositionParserValidation validation)
+  {
+    final var source = chunkSource(container.file(), name);
+    try {
+      return this.parsePart(
+        services,
+        source,
+        new ByteArrayInputStream(container.read(chunk)),
+        validation);
+    } catch (final IOException e) {
+      final var result = new PartResult(source);
+      result.errors.add(errorIO(source, e));
+      return result;
+    }
+  }
+
+  private static OBCompositionSPIPartType partOrFail(
+    final PartResult result,
+    final OBCompositionSPIParsersType provider)
+    throws IOException
+  {
+    if (result.part.isEmpty()) {
+      final var error = result.errors.get(0);
+      throw new IOException(
+        String.format("%s: %s", result.source, error.message()),
+        error.exception().orElse(null));
+    }
+
+    if (result.provider.get() != provider) {
+      throw new IOException(
+        String.format(
+          "%s: The part is not in the same format as the manifest",
+          result.source));
+    }
+    return result.part.get();
+  }
+
+  /*
+   * The parts of a composition are parsed concurrently, and are collected
+   * in order. The manifest counts as the first unit of work, and each part
+   * as one more. A receiver of progress that raises an exception cancels
+   * the parts that have not yet started, and the parts that are already
+   * being parsed are left to finish in the background.
+   */
+
+  private static List<OBCompositionSPIPartType> awaitParts(
+    final List<CompletableFuture<PartResult>> tasks,
+    final OBCompositionSPIParsersType provider,
+    final OBCompositionParserProgressType progress,
+    final List<OBCompositionParserError> errors)
+    throws IOException
+  {
+    final var total = (long) tasks.size() + 1L;
+    final var parts = new ArrayList<OBCompositionSPIPartType>(tasks.size());
+
+    try {
+      progress.onProgress(1L, total);
+      for (int index = 0; index < tasks.size(); ++index) {
+        final var result = tasks.get(index).join();
+        errors.addAll(result.errors);
+        if (result.part.isPresent()) {
+          if (result.provider.get() != provider) {
+            errors.add(errorIO(
+              result.source,
+              new IllegalArgumentException(
+                "The part is not in the same format as the manifest")));
+          }
+          parts.add(result.part.get());
+        }
+        progress.onProgress((long) index + 2L, total);
+      }
+    } catch (final IOException e) {
+      tasks.forEach(task -> task.cancel(false));
+      throw e;
+    }
+    return parts;
+  }
+
+  /*
+   * The contents of a deferred channel are loaded by parsing its part and
+   * stitching it to the manifest that was parsed when the composition was
+   * opened. The part file is not held open between loads.
+   */
+
+  private static final class DeferredChannel
+    implements OBChannelStoredContentsType
+  {
+    private final OBCompositionParsers owner;
+    private final OBServiceDirectoryType services;
+    private final OBCompositionSPIParsersType provider;
+    private final OBCompositionSPIPartType manifest;
+    private final Path file;
+    private final OBCompositionParserValidation validation;
+
+    DeferredChannel(
+      final OBCompositionParsers inOwner,
+      final OBServiceDirectoryType inServices,
+      final OBCompositionSPIParsersType inProvider,
+      final OBCompositionSPIPartType inManifest,
+      final Path inFile,
+      final OBCompositionParserValidation inValidation)
+    {
+      this.owner =
+        Objects.requireNonNull(inOwner, "inOwner");
+      this.services =
+        Objects.requireNonNull(inServices, "inServices");
+      this.provider =
+        Objects.requireNonNull(inProvider, "inProvider");
+      this.manifest =
+        Objects.requireNonNull(inManifest, "inManifest");
+      this.file =
+        Objects.requireNonNull(inFile, "inFile");
+      this.validation =
+        Objects.requireNonNull(inValidation, "inValidation");
+    }
+
+    @Override
+    public OBCompositionGraphReadableType load()
+      throws Exception
+    {
+      final var result =
+        this.owner.parsePart(this.services, this.file, this.validation);
+      return this.provider.stitch(
+        this.services,
+        this.manifest,
+        List.of(partOrFail(result, this.provider))
+      ).graph();
+    }
+
+    @Override
+    public void copyTo(
+      final OutputStream output)
+      throws IOException
+    {
+      Files.copy(this.file, output);
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("[DeferredChannel %s]", this.file);
+    }
+  }
+
+  /*
+   * A container is parsed in the same way as a partitioned composition,
+   * with the chunks of the container taking the place of files. The chunks
+   * are read with positional reads, and so can be read concurrently from
+   * the one open container.
+   *
+   * Channels that are loaded eagerly record the chunk they were read from
+   * as their origin, so that saving the composition back to the container
+   * can keep the chunks of any channels that have not changed since.
+   */
+
+  private static final class ContainerParser
+    implements OBCompositionParserType
+  {
+    private final OBCompositionParsers owner;
+    private final OBServiceDirectoryType services;
+    private final Path file;
+    private final OBCompositionParserOptions options;
+    private final ArrayList<OBCompositionParserError> errors;
+
+    private ContainerParser(
+      final OBCompositionParsers inOwner,
+      final OBServiceDirectoryType inServices,
+      final Path inFile,
+      final OBCompositionParserOptions inOptions)
+    {
+      this.owner =
+        Objects.requireNonNull(inOwner, "inOwner");
+      this.services =
+        Objects.requireNonNull(inServices, "services");
+      this.file =
+        Objects.requireNonNull(inFile, "inFile");
+      this.options =
+        Objects.requireNonNull(inOptions, "inOptions");
+      this.errors = new ArrayList<>();
+    }
+
+    @Override
+    public List<OBCompositionParserError> errors()
+    {
+      return List.copyOf(this.errors);
+    }
+
+    @Override
+    public Optional<OBCompositionType> execute()
+    {
+      final var validation = this.options.validation();
+      final var progress = this.options.progress();
+
+      try (var container = OBCompositionContainer.open(this.file)) {
+        final var manifest =
+          this.owner.parseChunk(
+            this.services,
+            container,
+            container.manifest(),
+            "manifest",
+            validation);
+        this.errors.addAll(manifest.errors);
+        if (manifest.part.isEmpty()) {
+          return Optional.empty();
+        }
+
+        final var provider = manifest.provider.get();
+        final var chunks =
+          container.channels()
+            .entrySet()
+            .stream()
+            .sorted(Comparator.comparing(e -> e.getKey().toString()))
+            .collect(Collectors.toList());
+
+        if (this.options.loading() == OBCompositionParserLoading.LAZY
+          && !chunks.isEmpty()) {
+          final var composition =
+            provider.stitch(this.services, manifest.part.get(), List.of());
+          final var graph = composition.graph();
+          for (final var entry : chunks) {
+            final var node = graph.nodes().get(entry.getKey());
+            if (node instanceof OBChannelType) {
+              graph.channelDefer(
+                (OBChannelType) node,
+                new ChunkContents(
+                  this.owner,
+                  this.services,
+                  entry.getValue(),
+                  validation)
+              );
+            }
+          }
+          LOG.debug(
+            "deferred {} channels",
+            Integer.valueOf(graph.channelsDeferred().size()));
+          progress.onProgress(1L, 1L);
+          return Optional.of(composition);
+        }
+
+        final var tasks =
+          chunks.stream()
+            .map(entry -> CompletableFuture.supplyAsync(
+              () -> this.owner.parseChunk(
+                this.services,
+                container,
+                entry.getValue(),
+                entry.getKey().toString(),
+                validation),
+              ForkJoinPool.commonPool()))
+            .collect(Collectors.toList());
+
+        final var parts =
+          awaitParts(tasks, provider, progress, this.errors);
+
+        if (!this.errors.isEmpty()) {
+          return Optional.empty();
+        }
+
+        final var composition =
+          provider.stitch(this.services, manifest.part.get(), parts);
+        final var graph = composition.graph();
+        for (final var entry : chunks) {
+          final var node = graph.nodes().get(entry.getKey());
+          if (node instanceof OBChannelType) {
+            graph.channelSetOrigin(
+              (OBChannelType) node,
+              graph.channelRevisions().get(node.id()).longValue(),
+              new ChunkContents(
+                this.owner,
+                this.services,
+                entry.getValue(),
+                validation)
+            );
+          }
+        }
+        return Optional.of(composition);
       } catch (final Exception e) {
-        this.errors.add(errorIO(this.source, e));
+        this.errors.add(errorIO(this.file.toUri(), e));
         return Optional.empty();
       }
     }
 
     @Override
     public void close()
+    {
+
+    }
+  }
+
+  /*
+   * The contents of a channel held in a container. Loading the contents
+   * parses the chunk and stitches it to the manifest that the container
+   * currently holds; a container that has since been rewritten (and so
+   * no longer holds the chunk) is detected by its identifier.
+   */
+
+  private static final class ChunkContents
+    implements OBChannelStoredContentsType
+  {
+    private final OBCompositionParsers owner;
+    private final OBServiceDirectoryType services;
+    private final OBCompositionContainerChunk chunk;
+    private final OBCompositionParserValidation validation;
+
+    ChunkContents(
+      final OBCompositionParsers inOwner,
+      final OBServiceDirectoryType inServices,
+      final OBCompositionContainerChunk inChunk,
+      final OBCompositionParserValidation inValidation)
+    {
+      this.owner =
+        Objects.requireNonNull(inOwner, "inOwner");
+      this.services =
+        Objects.requireNonNull(inServices, "inServices");
+      this.chunk =
+        Objects.requireNonNull(inChunk, "inChunk");
+      this.validation =
+        Objects.requireNonNull(inValidation, "inValidation");
+    }
+
+    @Override
+    public OBCompositionGraphReadableType load()
+      throws Exception
+    {
+      final var file = this.chunk.file();
+      final var manifestResult =
+        this.owner.parsePart(
+          this.services,
+          chunkSource(file, "manifest"),
+          new ByteArrayInputStream(
+            OBCompositionContainer.readManifestOf(this.chunk)),
+          this.validation);
+
+      if (manifestResult.part.isEmpty()) {
+        final var error = manifestResult.errors.get(0);
+        throw new IOException(
+          String.format("%s: %s", manifestResult.source, error.message()),
+          error.exception().orElse(null));
+      }
+
+      final var provider = manifestResult.provider.get();
+      final var bytes = OBCompositionContainer.readChunk(this.chunk);
+      final var result =
+        this.owner.parsePart(
+          this.services,
+          chunkSource(file, String.format("%d", this.chunk.offset())),
+          new ByteArrayInputStream(bytes),
+          this.validation);
+
+      return provider.stitch(
+        this.services,
+        manifestResult.part.get(),
+        List.of(partOrFail(result, provider))
+      ).graph();
+    }
+
+    @Override
+    public void copyTo(
+      final OutputStream output)
       throws IOException
     {
-      this.stream.close();
+      output.write(OBCompositionContainer.readChunk(this.chunk));
+    }
+
+    @Override
+    public Optional<OBCompositionContainerChunk> chunk()
+    {
+      return Optional.of(this.chunk);
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format(
+        "[ChunkContents %s %d]",
+        this.chunk.file(),
+        Long.valueOf(this.chunk.offset()));
+    }
+  }
+
+  private static final class PartResult
+  {
+    private final URI source;
+    private final AtomicReference<OBCompositionSPIParsersType> provider;
+    private final ArrayList<OBCompositionParserError> errors;
+    private Optional<OBCompositionSPIPartType> part;
+
+    PartResult(
+      final URI inSource)
+    {
+      this.source = Objects.requireNonNull(inSource, "source");
+      this.provider = new AtomicReference<>();
+      this.errors = new ArrayList<>();
+      this.part = Optional.empty();
     }
   }
 
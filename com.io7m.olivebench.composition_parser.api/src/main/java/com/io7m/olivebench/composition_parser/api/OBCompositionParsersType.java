@@ -19,8 +19,10 @@ package com.io7m.olivebench.composition_parser.api;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import com.io7m.olivebench.services.api.OBServiceType;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Path;
 
 /**
  * A provider of parsers.
@@ -34,6 +36,7 @@ public interface OBCompositionParsersType extends OBServiceType
    * @param services A service directory
    * @param source   The source of the stream, for diagnostic messages
    * @param stream   The input stream
+   * @param options  The parser options
    *
    * @return A new parser
    *
@@ -43,6 +46,48 @@ public interface OBCompositionParsersType extends OBServiceType
   OBCompositionParserType createParser(
     OBServiceDirectoryType services,
     URI source,
-    InputStream stream)
+    InputStream stream,
+    OBCompositionParserOptions options)
     throws UnsupportedOperationException;
+
+  /**
+   * Create a new parser for the given file. The file may be a composition
+   * held in a single file, a partitioned composition, or a composition
+   * container. A directory is always parsed as a partitioned composition,
+   * and so a directory without a manifest is reported as a parse error.
+   * Formats that read files directly are given access to the
+   * file itself, rather than only to the filtered stream. The parts of a
+   * partitioned composition, and the chunks of a container, are parsed
+   * concurrently.
+   *
+   * @param services A service directory
+   * @param file     The file
+   * @param options  The parser options
+   *
+   * @return A new parser
+   *
+   * @throws IOException                   On I/O errors
+   * @throws UnsupportedOperationException If no formats are available
+   * @see OBCompositionPartitions
+   * @see OBCompositionContainer
+   */
+
+  OBCompositionParserType createParser(
+    OBServiceDirectoryType services,
+    Path file,
+    OBCompositionParserOptions options)
+    throws IOException, UnsupportedOperationException;
+
+  /**
+   * Create channel contents that load from the given container chunk.
+   *
+   * @param services A service directory
+   * @param chunk    The chunk holding the contents of a channel
+   *
+   * @return The channel contents
+   */
+
+  OBChannelStoredContentsType createContainerContents(
+    OBServiceDirectoryType services,
+    OBCompositionContainerChunk chunk);
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.composition_parser.api;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The layout of a partitioned composition. A partitioned composition is a
+ * directory containing a manifest that holds the composition metadata, the
+ * root node, and the channels, and a directory of parts, each of which
+ * holds the root node and the subtree of exactly one channel. Every file is
+ * a complete document in the format of the provider that wrote it, so parts
+ * can be parsed independently of each other, and only when needed.
+ */
+
+public final class OBCompositionPartitions
+{
+  private static final String MANIFEST = "manifest";
+  private static final String CHANNELS = "channels";
+
+  private OBCompositionPartitions()
+  {
+
+  }
+
+  /**
+   * @param directory The composition directory
+   *
+   * @return The manifest of the composition
+   */
+
+  public static Path manifestOf(
+    final Path directory)
+  {
+    return Objects.requireNonNull(directory, "directory").resolve(MANIFEST);
+  }
+
+  /**
+   * @param directory The composition directory
+   *
+   * @return The directory holding the channel parts
+   */
+
+  public static Path channelsOf(
+    final Path directory)
+  {
+    return Objects.requireNonNull(directory, "directory").resolve(CHANNELS);
+  }
+
+  /**
+   * @param directory The composition directory
+   * @param channel   The channel
+   *
+   * @return The part holding the contents of the given channel
+   */
+
+  public static Path channelOf(
+    final Path directory,
+    final UUID channel)
+  {
+    Objects.requireNonNull(channel, "channel");
+    return channelsOf(directory).resolve(channel.toString());
+  }
+
+  /**
+   * @param path The path
+   *
+   * @return {@code true} if {@code path} is a partitioned composition
+   */
+
+  public static boolean isPartitioned(
+    final Path path)
+  {
+    return Files.isDirectory(path) && Files.isRegularFile(manifestOf(path));
+  }
+
+  /**
+   * @param directory The composition directory
+   *
+   * @return The channel parts of the composition, in name order
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static List<Path> channelParts(
+    final Path directory)
+    throws IOException
+  {
+    final var channels = channelsOf(directory);
+    if (!Files.isDirectory(channels)) {
+      return List.of();
+    }
+
+    try (var stream = Files.list(channels)) {
+      return stream.filter(Files::isRegularFile)
+        .sorted()
+        .collect(Collectors.toList());
+    }
+  }
+}
@@ -14,6 +14,7 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIFormatType;
 import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIParsersType;
 
 /**
@@ -27,13 +28,17 @@ module com.io7m.olivebench.composition_parser.api
   requires static org.osgi.annotation.bundle;
   requires static org.osgi.annotation.versioning;
 
+  requires com.io7m.jaffirm.core;
   requires com.io7m.jlexing.core;
   requires com.io7m.olivebench.composition_parser.spi;
+  requires com.io7m.olivebench.metrics;
   requires com.io7m.olivebench.model;
   requires com.io7m.olivebench.services.api;
   requires com.io7m.olivebench.strings;
+  requires jdk.jfr;
   requires org.slf4j;
 
+  uses OBCompositionSPIFormatType;
   uses OBCompositionSPIParsersType;
 
   exports com.io7m.olivebench.composition_parser.api;
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.composition_parser.spi;
+
+import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The SPI implemented by parsers for formats that are not XML.
+ *
+ * A format implementation is selected by examining the first few bytes of
+ * the input. An implementation either declares a fixed sequence of
+ * <i>magic</i> bytes that must appear at the start of the input, or
+ * overrides {@link #probe(ByteBuffer)} to examine the input itself. Input
+ * that is not claimed by any format is assumed to be XML, and is handled by
+ * the {@link OBCompositionSPIParsersType} implementations.
+ */
+
+public interface OBCompositionSPIFormatType
+{
+  /**
+   * The bytes that appear at the start of all documents in this format.
+   * The default implementation returns an empty array, in which case the
+   * implementation must override {@link #probe(ByteBuffer)}.
+   *
+   * @return The magic bytes
+   */
+
+  default byte[] magic()
+  {
+    return new byte[0];
+  }
+
+  /**
+   * @return The number of bytes that {@link #probe(ByteBuffer)} needs to see
+   */
+
+  default int probeSize()
+  {
+    return this.magic().length;
+  }
+
+  /**
+   * Determine whether this implementation can parse the input. The default
+   * implementation compares the start of the input to {@link #magic()}.
+   *
+   * @param header The start of the input; at most {@link #probeSize()} bytes,
+   *               and fewer if the input is shorter
+   *
+   * @return {@code true} if this implementation can parse the input
+   */
+
+  default boolean probe(
+    final ByteBuffer header)
+  {
+    final var magic = this.magic();
+    if (magic.length == 0 || header.remaining() < magic.length) {
+      return false;
+    }
+
+    final var bytes = new byte[magic.length];
+    header.duplicate().get(bytes);
+    return Arrays.equals(bytes, magic);
+  }
+
+  /**
+   * Parse a composition.
+   *
+   * @param services A service directory
+   * @param source   The input
+   *
+   * @return A composition
+   *
+   * @throws Exception On errors
+   */
+
+  OBCompositionType parse(
+    OBServiceDirectoryType services,
+    OBCompositionSPISourceType source)
+    throws Exception;
+}
@@ -21,13 +21,17 @@ import com.io7m.jxe.core.JXESchemaDefinition;
 import com.io7m.olivebench.model.OBCompositionType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 
+import java.util.List;
+
 /**
- * The SPI implemented by parsers.
+ * The SPI implemented by XML parsers.
  *
  * A parser implementation is required to produce a <i>schema</i> indicating
  * which XML format it supports. It is also required to produce a <i>handler</i>
  * on demand that is capable of parsing formats that conform to the schema
  * the parser returned.
+ *
+ * @see OBCompositionSPIFormatType
  */
 
 public interface OBCompositionSPIParsersType
@@ -49,4 +53,49 @@ public interface OBCompositionSPIParsersType
 
   BTElementHandlerType<?, OBCompositionType> createHandler(
     OBServiceDirectoryType services);
+
+  /**
+   * Create a handler for one part of a partitioned composition. Parts are
+   * documents that conform to the same schema as complete compositions, and
+   * may be parsed concurrently with each other.
+   *
+   * @param services A service directory
+   *
+   * @return A content handler for parsing parts
+   *
+   * @throws UnsupportedOperationException If partitioned compositions are
+   *                                       not supported
+   */
+
+  default BTElementHandlerType<?, OBCompositionSPIPartType> createPartHandler(
+    final OBServiceDirectoryType services)
+    throws UnsupportedOperationException
+  {
+    throw new UnsupportedOperationException(
+      "Partitioned compositions are not supported");
+  }
+
+  /**
+   * Combine the parts of a partitioned composition into a composition.
+   *
+   * @param services A service directory
+   * @param manifest The manifest part
+   * @param parts    The channel parts
+   *
+   * @return A composition
+   *
+   * @throws Exception                     On errors
+   * @throws UnsupportedOperationException If partitioned compositions are
+   *                                       not supported
+   */
+
+  default OBCompositionType stitch(
+    final OBServiceDirectoryType services,
+    final OBCompositionSPIPartType manifest,
+    final List<OBCompositionSPIPartType> parts)
+    throws Exception, UnsupportedOperationException
+  {
+    throw new UnsupportedOperationException(
+      "Partitioned compositions are not supported");
+  }
 }
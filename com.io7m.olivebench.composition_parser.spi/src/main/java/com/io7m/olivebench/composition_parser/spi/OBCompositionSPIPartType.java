@@ -14,16 +14,14 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
-package com.io7m.olivebench.xml.v1;
+package com.io7m.olivebench.composition_parser.spi;
 
-import com.io7m.immutables.styles.ImmutablesStyleType;
-import org.immutables.value.Value;
-
-import java.util.List;
+/**
+ * One parsed part of a partitioned composition. The contents of a part are
+ * private to the parser implementation that produced it.
+ */
 
-@ImmutablesStyleType
-@Value.Immutable
-public interface OB1EdgesType
+public interface OBCompositionSPIPartType
 {
-  List<OB1CompositionEdge> edges();
+
 }
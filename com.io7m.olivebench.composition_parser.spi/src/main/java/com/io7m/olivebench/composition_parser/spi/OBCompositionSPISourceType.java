@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.composition_parser.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.util.Optional;
+
+/**
+ * The input to a format implementation.
+ */
+
+public interface OBCompositionSPISourceType
+{
+  /**
+   * @return The source of the input, for diagnostic messages
+   */
+
+  URI uri();
+
+  /**
+   * @return The input, positioned at the start
+   */
+
+  InputStream stream();
+
+  /**
+   * The file channel underlying {@link #stream()}, if the input is a file.
+   * Implementations may read or map the channel directly instead of
+   * reading the stream, but must not close it.
+   *
+   * @return The file channel, if any
+   */
+
+  Optional<FileChannel> channel();
+
+  /**
+   * Report the progress of an implementation that reads or maps
+   * {@link #channel()} directly, and so does not read the stream through
+   * which progress is otherwise measured. The units of work are chosen by
+   * the implementation.
+   *
+   * @param completed The number of units of work completed
+   * @param total     The total number of units of work
+   *
+   * @throws IOException If parsing should stop, such as when the parse has
+   *                     been cancelled
+   */
+
+  default void reportProgress(
+    final long completed,
+    final long total)
+    throws IOException
+  {
+
+  }
+}
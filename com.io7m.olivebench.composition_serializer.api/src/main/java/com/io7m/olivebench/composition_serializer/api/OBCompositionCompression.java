@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_serializer.api;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The compression applied to a composition file. Parsers recognize
+ * compressed files by their contents, and so the compression of a file
+ * never needs to be specified when it is opened.
+ */
+
+public enum OBCompositionCompression
+{
+  /**
+   * The file is not compressed.
+   */
+
+  NONE,
+
+  /**
+   * The file is compressed with gzip.
+   */
+
+  GZIP;
+
+  /**
+   * Determine the compression used for the given file when it is saved.
+   * Files with names ending in {@code .gz} are compressed with gzip.
+   *
+   * @param file The file
+   *
+   * @return The compression for the file
+   */
+
+  public static OBCompositionCompression ofFile(
+    final Path file)
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var name = file.getFileName();
+    if (name != null
+      && name.toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+      return GZIP;
+    }
+    return NONE;
+  }
+}
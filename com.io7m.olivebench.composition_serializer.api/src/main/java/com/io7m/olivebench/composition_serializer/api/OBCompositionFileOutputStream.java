@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_serializer.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * An output stream that writes to a file channel through a large direct
+ * buffer. The serializers write many small pieces, and a direct buffer can
+ * be handed to the channel without being copied again. Direct buffers are
+ * expensive to allocate and are only freed by the garbage collector, and
+ * so a few of them are kept and reused rather than allocated per file.
+ */
+
+final class OBCompositionFileOutputStream extends OutputStream
+{
+  private static final int BUFFER_SIZE = 1024 * 1024;
+  private static final int BUFFERS_KEPT = 4;
+  private static final ConcurrentLinkedQueue<ByteBuffer> BUFFERS =
+    new ConcurrentLinkedQueue<>();
+
+  private final FileChannel channel;
+  private ByteBuffer buffer;
+
+  OBCompositionFileOutputStream(
+    final FileChannel inChannel)
+  {
+    this.channel = Objects.requireNonNull(inChannel, "channel");
+
+    final var existing = BUFFERS.poll();
+    if (existing != null) {
+      this.buffer = existing;
+    } else {
+      this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+  }
+
+  private ByteBuffer open()
+    throws IOException
+  {
+    final var current = this.buffer;
+    if (current == null) {
+      throw new IOException("Stream is closed");
+    }
+    return current;
+  }
+
+  private void drain(
+    final ByteBuffer current)
+    throws IOException
+  {
+    current.flip();
+    while (current.hasRemaining()) {
+      this.channel.write(current);
+    }
+    current.clear();
+  }
+
+  @Override
+  public void write(
+    final int b)
+    throws IOException
+  {
+    final var current = this.open();
+    current.put((byte) b);
+    if (!current.hasRemaining()) {
+      this.drain(current);
+    }
+  }
+
+  @Override
+  public void write(
+    final byte[] data,
+    final int offset,
+    final int length)
+    throws IOException
+  {
+    Objects.checkFromIndexSize(offset, length, data.length);
+
+    final var current = this.open();
+    var position = offset;
+    var remaining = length;
+    while (remaining > 0) {
+      final var count = Math.min(remaining, current.remaining());
+      current.put(data, position, count);
+      position += count;
+      remaining -= count;
+      if (!current.hasRemaining()) {
+        this.drain(current);
+      }
+    }
+  }
+
+  @Override
+  public void flush()
+    throws IOException
+  {
+    this.drain(this.open());
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    final var current = this.buffer;
+    if (current == null) {
+      return;
+    }
+
+    try {
+      this.drain(current);
+    } finally {
+      this.buffer = null;
+      this.channel.close();
+      current.clear();
+      if (BUFFERS.size() < BUFFERS_KEPT) {
+        BUFFERS.add(current);
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_serializer.api;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * The state of a composition file immediately after it was saved. A file
+ * that still has the same size and modification time is assumed to still
+ * have the same contents, and so a later save of a composition with the
+ * same hash can leave the file as it is without reading it back.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface OBCompositionFileStampType
+{
+  /**
+   * @return The file
+   */
+
+  Path file();
+
+  /**
+   * @return The lowercase hexadecimal SHA-256 hash of the file
+   */
+
+  String hash();
+
+  /**
+   * @return The size of the file in bytes
+   */
+
+  long size();
+
+  /**
+   * @return The time that the file was last modified
+   */
+
+  FileTime lastModified();
+}
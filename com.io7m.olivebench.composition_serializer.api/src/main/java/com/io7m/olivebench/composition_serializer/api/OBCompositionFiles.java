@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_serializer.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/*
+ * The streams that compositions are written to. Files are written through
+ * file channels with large direct buffers, and compressed streams are
+ * layered on top of those, so that the bytes that reach the file can be
+ * observed separately from the bytes that were serialized.
+ */
+
+public final class OBCompositionFiles
+{
+  private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+  private OBCompositionFiles()
+  {
+
+  }
+
+  public static OutputStream create(
+    final Path file)
+    throws IOException
+  {
+    Objects.requireNonNull(file, "file");
+    return new OBCompositionFileOutputStream(
+      FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE));
+  }
+
+  public static OutputStream compress(
+    final OutputStream output,
+    final OBCompositionCompression compression)
+    throws IOException
+  {
+    Objects.requireNonNull(output, "output");
+    Objects.requireNonNull(compression, "compression");
+
+    switch (compression) {
+      case NONE:
+        return output;
+      case GZIP:
+        return new GZIPOutputStream(output, COMPRESSION_BUFFER_SIZE);
+    }
+    throw new IllegalStateException("Unreachable code");
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_serializer.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/*
+ * SHA-256 hashes of serialized compositions. Compositions are always
+ * serialized as the same bytes for the same contents, and so the hash of a
+ * serialized composition identifies its contents.
+ */
+
+final class OBCompositionHashes
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBCompositionHashes.class);
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private OBCompositionHashes()
+  {
+
+  }
+
+  static MessageDigest createDigest()
+  {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String hex(
+    final MessageDigest digest)
+  {
+    final var bytes = digest.digest();
+    final var text = new StringBuilder(bytes.length * 2);
+    for (final var b : bytes) {
+      text.append(HEX[(b >>> 4) & 0xf]);
+      text.append(HEX[b & 0xf]);
+    }
+    return text.toString();
+  }
+
+  static OBCompositionFileStamp stampOf(
+    final Path output,
+    final String hash)
+    throws IOException
+  {
+    return OBCompositionFileStamp.builder()
+      .setFile(output)
+      .setHash(hash)
+      .setSize(Files.size(output))
+      .setLastModified(Files.getLastModifiedTime(output))
+      .build();
+  }
+
+  /*
+   * The previous stamp is only a hint from the caller, and the output file
+   * may have been changed by something else since it was written. Reading
+   * the file back to check would cost as much as writing it again, and so
+   * the file is assumed to be unchanged if it still has the size and
+   * modification time that it had when it was written.
+   */
+
+  static boolean isUnchanged(
+    final Path output,
+    final String hash,
+    final OBCompositionFileStamp previous)
+    throws IOException
+  {
+    if (!Objects.equals(previous.file(), output)) {
+      return false;
+    }
+    if (!Objects.equals(previous.hash(), hash)) {
+      return false;
+    }
+    if (!Files.isRegularFile(output)) {
+      return false;
+    }
+    if (Files.size(output) != previous.size()) {
+      return false;
+    }
+    if (!Objects.equals(
+      Files.getLastModifiedTime(output), previous.lastModified())) {
+      return false;
+    }
+
+    LOG.debug("{}: unchanged ({}), leaving in place", output, hash);
+    return true;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.composition_serializer.api;
+
+import com.io7m.immutables.styles.ImmutablesStyleType;
+import org.immutables.value.Value;
+
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * The options for an atomic save.
+ */
+
+@ImmutablesStyleType
+@Value.Immutable
+public interface OBCompositionSerializerOptionsType
+{
+  /**
+   * The filter is applied to each stream that the composition is encoded
+   * to, allowing callers to observe (or abort) the bytes being written.
+   *
+   * @return A filter applied to the output stream
+   */
+
+  @Value.Default
+  default UnaryOperator<OutputStream> filter()
+  {
+    return UnaryOperator.identity();
+  }
+
+  /**
+   * @return The name of the format, or nothing for the highest supported
+   * format version
+   */
+
+  Optional<String> format();
+
+  /**
+   * @return The stamp of the output file when it was last saved
+   */
+
+  Optional<OBCompositionFileStamp> previous();
+}
@@ -16,46 +16,92 @@
 
 package com.io7m.olivebench.composition_serializer.api;
 
+import com.io7m.olivebench.composition_parser.api.OBChannelStoredContentsType;
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainer;
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainerChunk;
+import com.io7m.olivebench.composition_parser.api.OBCompositionPartitions;
 import com.io7m.olivebench.composition_serializer.spi.OBCompositionSPISerializerType;
 import com.io7m.olivebench.composition_serializer.spi.OBCompositionSPISerializersType;
+import com.io7m.olivebench.metrics.OBHistogramType;
+import com.io7m.olivebench.metrics.OBMetrics;
+import com.io7m.olivebench.metrics.OBMetricsType;
 import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.graph.OBChannelType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
 public final class OBCompositionSerializers implements
   OBCompositionSerializersType
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(OBCompositionSerializers.class);
 
+  /*
+   * Compositions are written as XML unless another format is explicitly
+   * requested.
+   */
+
+  private static final String DEFAULT_FORMAT = "xml";
+
   private final List<OBCompositionSPISerializersType> serializers;
+  private final OBHistogramType serializeTime;
 
   private OBCompositionSerializers(
-    final List<OBCompositionSPISerializersType> inSerializers)
+    final List<OBCompositionSPISerializersType> inSerializers,
+    final OBMetricsType inMetrics)
   {
     this.serializers = inSerializers;
+    this.serializeTime =
+      inMetrics.histogram("composition.serializeTimeNanos");
   }
 
   public static OBCompositionSerializersType create()
   {
-    return createWith(fromServiceLoader());
+    return create(OBMetrics.disabled());
+  }
+
+  public static OBCompositionSerializersType create(
+    final OBMetricsType metrics)
+  {
+    return createWith(fromServiceLoader(), metrics);
   }
 
   public static OBCompositionSerializersType createWith(
     final List<OBCompositionSPISerializersType> serializers)
   {
-    return new OBCompositionSerializers(serializers);
+    return createWith(serializers, OBMetrics.disabled());
+  }
+
+  public static OBCompositionSerializersType createWith(
+    final List<OBCompositionSPISerializersType> serializers,
+    final OBMetricsType metrics)
+  {
+    return new OBCompositionSerializers(
+      serializers,
+      Objects.requireNonNull(metrics, "metrics"));
   }
 
   private static List<OBCompositionSPISerializersType> fromServiceLoader()
@@ -77,24 +123,384 @@ public final class OBCompositionSerializers implements
     return serializers;
   }
 
-  @Override
-  public OBCompositionSerializerType createSerializer(
-    final URI target,
-    final OutputStream stream,
-    final OBCompositionReadableType composition)
+  private OBCompositionSPISerializersType highestVersion(
+    final String formatName)
   {
     final var matchingOpt =
       this.serializers.stream()
+        .filter(candidate -> Objects.equals(candidate.formatName(), formatName))
         .max(
           Comparator.comparingInt(OBCompositionSPISerializersType::versionMajor)
             .thenComparingInt(OBCompositionSPISerializersType::versionMinor));
 
     if (matchingOpt.isEmpty()) {
-      throw new UnsupportedOperationException("No serializer is available");
+      throw new UnsupportedOperationException(
+        String.format("No serializer is available for format %s", formatName));
     }
+    return matchingOpt.get();
+  }
 
-    final var matching = matchingOpt.get();
-    return new Serializer(matching.create(target, stream, composition));
+  @Override
+  public OBCompositionSerializerType createSerializer(
+    final URI target,
+    final OutputStream stream,
+    final OBCompositionReadableType composition)
+  {
+    return this.createSerializer(DEFAULT_FORMAT, target, stream, composition);
+  }
+
+  @Override
+  public OBCompositionSerializerType createSerializer(
+    final String formatName,
+    final URI target,
+    final OutputStream stream,
+    final OBCompositionReadableType composition)
+  {
+    checkLoaded(composition);
+    return new Serializer(
+      this.serializeTime,
+      target,
+      this.highestVersion(formatName).create(target, stream, composition));
+  }
+
+  /*
+   * Only partitioned compositions can hold deferred channels, and a single
+   * document would silently lose their contents.
+   */
+
+  private static void checkLoaded(
+    final OBCompositionReadableType composition)
+  {
+    final var deferred = composition.graph().channelsDeferred();
+    if (!deferred.isEmpty()) {
+      throw new IllegalArgumentException(
+        String.format(
+          "The composition has %d channels that have not been loaded",
+          Integer.valueOf(deferred.size())));
+    }
+  }
+
+  @Override
+  public OBCompositionSerializerType createPartSerializer(
+    final URI target,
+    final OutputStream stream,
+    final OBCompositionReadableType composition,
+    final Optional<OBChannelType> channel)
+  {
+    return new Serializer(
+      this.serializeTime,
+      target,
+      this.highestVersion(DEFAULT_FORMAT)
+        .createPart(target, stream, composition, channel));
+  }
+
+  /*
+   * A directory cannot be replaced atomically. The new composition is
+   * written in full to the temporary directory, the existing composition is
+   * moved aside, the new composition is moved into place, and only then is
+   * the old composition deleted. At every point, at least one complete copy
+   * of the composition exists on disk.
+   */
+
+  @Override
+  public void serializePartitionedAtomically(
+    final Path output,
+    final Path outputTmp,
+    final OBCompositionReadableType composition,
+    final UnaryOperator<OutputStream> filter)
+    throws Exception
+  {
+    Objects.requireNonNull(output, "output");
+    Objects.requireNonNull(outputTmp, "outputTmp");
+    Objects.requireNonNull(composition, "composition");
+    Objects.requireNonNull(filter, "filter");
+
+    final var outputOld =
+      output.resolveSibling(output.getFileName() + ".old");
+
+    try {
+      deleteTree(outputTmp);
+      Files.createDirectories(OBCompositionPartitions.channelsOf(outputTmp));
+
+      this.serializePart(
+        OBCompositionPartitions.manifestOf(outputTmp),
+        composition,
+        Optional.empty(),
+        filter);
+
+      /*
+       * The parts of channels whose contents were never loaded are copied
+       * from the source as they are, without being parsed.
+       */
+
+      final var graph = composition.graph();
+      final var deferred = graph.channelsDeferred();
+      for (final var edge : graph.childEdgesOf(graph.root())) {
+        final var node = edge.nodeTarget();
+        final var contents = deferred.get(node.id());
+        if (contents != null) {
+          copyPart(
+            OBCompositionPartitions.channelOf(outputTmp, node.id()),
+            OBChannelStoredContentsType.of(contents),
+            filter);
+        } else if (node instanceof OBChannelType) {
+          this.serializePart(
+            OBCompositionPartitions.channelOf(outputTmp, node.id()),
+            composition,
+            Optional.of((OBChannelType) node),
+            filter);
+        }
+      }
+
+      deleteTree(outputOld);
+      if (Files.exists(output)) {
+        Files.move(output, outputOld, ATOMIC_MOVE);
+      }
+      Files.move(outputTmp, output, ATOMIC_MOVE);
+      deleteTree(outputOld);
+    } finally {
+      deleteTree(outputTmp);
+    }
+  }
+
+  private void serializePart(
+    final Path file,
+    final OBCompositionReadableType composition,
+    final Optional<OBChannelType> channel,
+    final UnaryOperator<OutputStream> filter)
+    throws Exception
+  {
+    try (var stream =
+           filter.apply(OBCompositionFiles.create(file))) {
+      try (var serializer =
+             this.createPartSerializer(
+               file.toUri(),
+               stream,
+               composition,
+               channel)) {
+        serializer.execute();
+      }
+    }
+  }
+
+  private static void copyPart(
+    final Path file,
+    final OBChannelStoredContentsType contents,
+    final UnaryOperator<OutputStream> filter)
+    throws IOException
+  {
+    try (var stream =
+           filter.apply(OBCompositionFiles.create(file))) {
+      contents.copyTo(stream);
+    }
+  }
+
+  /*
+   * A container is committed in place when it already holds the contents
+   * of at least one channel, so that only the manifest and the channels
+   * that changed since they were last read from or written to it are
+   * appended. Otherwise, or once superseded chunks outweigh the live ones,
+   * the container is rewritten in full to the temporary file and moved
+   * into place.
+   */
+
+  @Override
+  public Map<UUID, OBCompositionContainerChunk> serializeContainer(
+    final Path output,
+    final Path outputTmp,
+    final OBCompositionReadableType composition,
+    final UnaryOperator<OutputStream> filter)
+    throws Exception
+  {
+    Objects.requireNonNull(output, "output");
+    Objects.requireNonNull(outputTmp, "outputTmp");
+    Objects.requireNonNull(composition, "composition");
+    Objects.requireNonNull(filter, "filter");
+
+    final var existing = openContainer(output);
+    if (existing.isPresent()) {
+      try (var container = existing.get()) {
+        final var retained = retainable(container, composition);
+        final var garbage = container.size() - container.liveSize();
+        if (retained > 0 && garbage <= container.liveSize()) {
+          LOG.debug(
+            "updating {} ({} channels unchanged)",
+            output,
+            Integer.valueOf(retained));
+          return this.writeContainer(
+            container.update(),
+            output.toUri(),
+            composition,
+            filter,
+            Optional.of(container));
+        }
+      }
+    }
+
+    LOG.debug("rewriting {}", output);
+    try {
+      Files.deleteIfExists(outputTmp);
+      final Map<UUID, OBCompositionContainerChunk> chunks;
+      try (var writer = OBCompositionContainer.create(outputTmp)) {
+        chunks = this.writeContainer(
+          writer,
+          output.toUri(),
+          composition,
+          filter,
+          Optional.empty());
+      }
+      Files.move(outputTmp, output, ATOMIC_MOVE, REPLACE_EXISTING);
+
+      final var moved =
+        new HashMap<UUID, OBCompositionContainerChunk>(chunks.size());
+      for (final var entry : chunks.entrySet()) {
+        moved.put(entry.getKey(), entry.getValue().withFile(output));
+      }
+      return Map.copyOf(moved);
+    } finally {
+      Files.deleteIfExists(outputTmp);
+    }
+  }
+
+  private static Optional<OBCompositionContainer> openContainer(
+    final Path file)
+  {
+    if (!OBCompositionContainer.isContainer(file)) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(OBCompositionContainer.openForUpdate(file));
+    } catch (final IOException e) {
+      LOG.debug("unable to update {}: ", file, e);
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<OBChannelStoredContentsType> storedContents(
+    final OBCompositionReadableType composition,
+    final UUID channel)
+  {
+    final var graph = composition.graph();
+    final var deferred = graph.channelsDeferred().get(channel);
+    if (deferred != null) {
+      return Optional.of(OBChannelStoredContentsType.of(deferred));
+    }
+    return Optional.ofNullable(graph.channelOrigins().get(channel))
+      .map(OBChannelStoredContentsType::of);
+  }
+
+  private static int retainable(
+    final OBCompositionContainer container,
+    final OBCompositionReadableType composition)
+  {
+    int count = 0;
+    for (final var node : composition.graph().nodes().values()) {
+      if (node instanceof OBChannelType) {
+        final var chunk =
+          storedContents(composition, node.id())
+            .flatMap(OBChannelStoredContentsType::chunk);
+        if (chunk.isPresent() && container.contains(chunk.get())) {
+          ++count;
+        }
+      }
+    }
+    return count;
+  }
+
+  private Map<UUID, OBCompositionContainerChunk> writeContainer(
+    final OBCompositionContainer.Writer writer,
+    final URI target,
+    final OBCompositionReadableType composition,
+    final UnaryOperator<OutputStream> filter,
+    final Optional<OBCompositionContainer> existing)
+    throws Exception
+  {
+    writer.appendManifest(output -> this.serializeChunk(
+      target, output, composition, Optional.empty(), filter));
+
+    final var graph = composition.graph();
+    for (final var edge : graph.childEdgesOf(graph.root())) {
+      final var node = edge.nodeTarget();
+      if (!(node instanceof OBChannelType)) {
+        continue;
+      }
+
+      final var id = node.id();
+      final var channel = Optional.of((OBChannelType) node);
+      final var stored = storedContents(composition, id);
+      if (stored.isEmpty()) {
+        writer.appendChannel(id, output -> this.serializeChunk(
+          target, output, composition, channel, filter));
+        continue;
+      }
+
+      final var contents = stored.get();
+      final var chunk = contents.chunk();
+      if (chunk.isPresent()
+        && existing.isPresent()
+        && existing.get().contains(chunk.get())) {
+        writer.retainChannel(id, chunk.get());
+        continue;
+      }
+
+      /*
+       * The stored contents of a loaded channel are only a shortcut; if
+       * they can no longer be read, the channel is encoded instead. The
+       * contents of a deferred channel exist nowhere else.
+       */
+
+      try {
+        writer.appendChannel(id, output -> {
+          try (var stream = filter.apply(output)) {
+            contents.copyTo(stream);
+          }
+        });
+      } catch (final IOException e) {
+        if (graph.channelsDeferred().containsKey(id)) {
+          throw e;
+        }
+        LOG.debug("unable to copy {}; encoding: ", contents, e);
+        writer.appendChannel(id, output -> this.serializeChunk(
+          target, output, composition, channel, filter));
+      }
+    }
+
+    return writer.commit();
+  }
+
+  private void serializeChunk(
+    final URI target,
+    final OutputStream output,
+    final OBCompositionReadableType composition,
+    final Optional<OBChannelType> channel,
+    final UnaryOperator<OutputStream> filter)
+    throws Exception
+  {
+    try (var stream = filter.apply(output)) {
+      try (var serializer =
+             this.createPartSerializer(target, stream, composition, channel)) {
+        serializer.execute();
+      }
+    }
+  }
+
+  private static void deleteTree(
+    final Path path)
+    throws IOException
+  {
+    if (!Files.exists(path, NOFOLLOW_LINKS)) {
+      return;
+    }
+
+    try (var stream = Files.walk(path)) {
+      final var paths =
+        stream.sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList());
+      for (final var file : paths) {
+        Files.deleteIfExists(file);
+      }
+    }
   }
 
   @Override
@@ -105,8 +511,11 @@ public final class OBCompositionSerializers implements
     final OutputStream stream,
     final OBCompositionReadableType composition)
   {
+    checkLoaded(composition);
+
     final var matchingOpt =
       this.serializers.stream()
+        .filter(candidate -> DEFAULT_FORMAT.equals(candidate.formatName()))
         .filter(candidate -> candidate.versionMajor() == versionMajor
           && candidate.versionMinor() == versionMinor).findFirst();
 
@@ -119,16 +528,25 @@ public final class OBCompositionSerializers implements
     }
 
     final var matching = matchingOpt.get();
-    return new Serializer(matching.create(target, stream, composition));
+    return new Serializer(
+      this.serializeTime,
+      target,
+      matching.create(target, stream, composition));
   }
 
   private static final class Serializer implements OBCompositionSerializerType
   {
+    private final OBHistogramType serializeTime;
+    private final URI target;
     private final OBCompositionSPISerializerType serializer;
 
     Serializer(
+      final OBHistogramType inSerializeTime,
+      final URI inTarget,
       final OBCompositionSPISerializerType inSerializer)
     {
+      this.serializeTime = inSerializeTime;
+      this.target = inTarget;
       this.serializer = inSerializer;
     }
 
@@ -136,10 +554,20 @@ public final class OBCompositionSerializers implements
     public void execute()
       throws Exception
     {
+      final var event = new OBJFRCompositionSerialize();
+      event.begin();
       final var timeThen = Instant.now();
       this.serializer.execute();
       final var timeNow = Instant.now();
-      LOG.debug("wrote composition in {}", Duration.between(timeThen, timeNow));
+      final var elapsed = Duration.between(timeThen, timeNow);
+      LOG.debug("wrote composition in {}", elapsed);
+      this.serializeTime.record(elapsed.toNanos());
+
+      if (event.shouldCommit()) {
+        event.target = this.target.toString();
+        event.serializer = this.serializer.getClass();
+        event.commit();
+      }
     }
 
     @Override
@@ -16,18 +16,23 @@
 
 package com.io7m.olivebench.composition_serializer.api;
 
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainerChunk;
 import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.graph.OBChannelType;
 import com.io7m.olivebench.services.api.OBServiceType;
 
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
-import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * A provider of serializers.
@@ -77,30 +82,170 @@ public interface OBCompositionSerializersType extends OBServiceType
     throws UnsupportedOperationException;
 
   /**
-   * A convenience method to serialize the given composition atomically to
-   * the given output file, using the given temporary file and the highest
-   * supported format version. For atomicity, both files should be on the
-   * same filesystem.
+   * Create a new serializer using whatever is the highest supported version
+   * of the named format.
+   *
+   * @param formatName  The format name
+   * @param target      The target URI
+   * @param stream      The output stream
+   * @param composition The composition
+   *
+   * @return A new serializer
+   *
+   * @throws UnsupportedOperationException If the given format is not available
+   */
+
+  OBCompositionSerializerType createSerializer(
+    String formatName,
+    URI target,
+    OutputStream stream,
+    OBCompositionReadableType composition)
+    throws UnsupportedOperationException;
+
+  /**
+   * Create a new serializer for one part of a partitioned composition, using
+   * whatever is the highest supported format version.
+   *
+   * @param target      The target URI
+   * @param stream      The output stream
+   * @param composition The composition
+   * @param channel     The channel, or nothing for the manifest
+   *
+   * @return A new serializer
+   *
+   * @throws UnsupportedOperationException If no formats are available
+   * @see com.io7m.olivebench.composition_parser.api.OBCompositionPartitions
+   */
+
+  OBCompositionSerializerType createPartSerializer(
+    URI target,
+    OutputStream stream,
+    OBCompositionReadableType composition,
+    Optional<OBChannelType> channel)
+    throws UnsupportedOperationException;
+
+  /**
+   * Serialize the given composition as a partitioned composition in the
+   * given output directory, using the given temporary directory. For
+   * atomicity, both directories should be on the same filesystem. Each
+   * stream opened for a part is passed through {@code filter} before being
+   * written. The parts of deferred channels are copied without being
+   * parsed.
+   *
+   * @param output      The output directory
+   * @param outputTmp   The temporary directory
+   * @param composition The composition
+   * @param filter      A function applied to each output stream
+   *
+   * @throws Exception On errors
+   */
+
+  void serializePartitionedAtomically(
+    Path output,
+    Path outputTmp,
+    OBCompositionReadableType composition,
+    UnaryOperator<OutputStream> filter)
+    throws Exception;
+
+  /**
+   * Serialize the given composition to the given container file. If the
+   * file is already a container that holds the contents of some of the
+   * channels, only the manifest and the channels that have changed are
+   * written, and the container is committed in place. Otherwise, the
+   * container is written in full to the temporary file and moved into
+   * place. Each stream opened for a chunk is passed through {@code filter}
+   * before being written.
+   *
+   * @param output      The output file
+   * @param outputTmp   The temporary file
+   * @param composition The composition
+   * @param filter      A function applied to each output stream
+   *
+   * @return The chunks that hold the contents of each channel
+   *
+   * @throws Exception On errors
+   * @see com.io7m.olivebench.composition_parser.api.OBCompositionContainer
+   */
+
+  Map<UUID, OBCompositionContainerChunk> serializeContainer(
+    Path output,
+    Path outputTmp,
+    OBCompositionReadableType composition,
+    UnaryOperator<OutputStream> filter)
+    throws Exception;
+
+  /**
+   * Serialize the given composition atomically to the given output file,
+   * using the given temporary file. For atomicity, both files should be on
+   * the same filesystem. The named format is used if one is given, and the
+   * highest supported format version is used otherwise. The file is
+   * compressed if {@link OBCompositionCompression#ofFile(Path)} says that
+   * it should be.
+   *
+   * <p>A SHA-256 hash of the serialized bytes is computed as they are
+   * written. A composition is always serialized as the same bytes for the
+   * same contents, and so the hash identifies the contents and can be used
+   * as a cache key. If a previous stamp is given in {@code options}, the
+   * composition is first encoded only to compute its hash, and the
+   * temporary file is only written if the hash differs from the stamp or
+   * the output file no longer has the size and modification time in the
+   * stamp. Otherwise, the output file is left as it is.</p>
    *
    * @param output      The output file
    * @param outputTmp   The temporary file
    * @param composition The composition
+   * @param options     The options
+   *
+   * @return The stamp of the output file
    *
    * @throws Exception On errors
    */
 
-  default void serializeAtomically(
+  default OBCompositionFileStamp serializeAtomically(
     final Path output,
     final Path outputTmp,
-    final OBCompositionReadableType composition)
+    final OBCompositionReadableType composition,
+    final OBCompositionSerializerOptions options)
     throws Exception
   {
-    try (var stream = Files.newOutputStream(outputTmp, CREATE_NEW, WRITE)) {
-      try (var serializer =
-             this.createSerializer(outputTmp.toUri(), stream, composition)) {
-        serializer.execute();
-        Files.move(outputTmp, output, ATOMIC_MOVE, REPLACE_EXISTING);
+    final var target = outputTmp.toUri();
+    final var format = options.format();
+    final var compression = OBCompositionCompression.ofFile(output);
+
+    final var previous = options.previous();
+    if (previous.isPresent()) {
+      final var digest = OBCompositionHashes.createDigest();
+      try (var stream = options.filter().apply(OBCompositionFiles.compress(
+        new DigestOutputStream(OutputStream.nullOutputStream(), digest),
+        compression))) {
+        try (var serializer = format.isPresent()
+          ? this.createSerializer(format.get(), target, stream, composition)
+          : this.createSerializer(target, stream, composition)) {
+          serializer.execute();
+        }
+      }
+
+      final var hash = OBCompositionHashes.hex(digest);
+      if (OBCompositionHashes.isUnchanged(output, hash, previous.get())) {
+        return previous.get();
       }
+    }
+
+    final var digest = OBCompositionHashes.createDigest();
+    try {
+      try (var stream = options.filter().apply(OBCompositionFiles.compress(
+        new DigestOutputStream(OBCompositionFiles.create(outputTmp), digest),
+        compression))) {
+        try (var serializer = format.isPresent()
+          ? this.createSerializer(format.get(), target, stream, composition)
+          : this.createSerializer(target, stream, composition)) {
+          serializer.execute();
+        }
+      }
+
+      final var hash = OBCompositionHashes.hex(digest);
+      Files.move(outputTmp, output, ATOMIC_MOVE, REPLACE_EXISTING);
+      return OBCompositionHashes.stampOf(output, hash);
     } finally {
       Files.deleteIfExists(outputTmp);
     }
@@ -22,12 +22,17 @@ import com.io7m.olivebench.composition_serializer.spi.OBCompositionSPISerializer
 
 module com.io7m.olivebench.composition.serializer.api
 {
+  requires static com.io7m.immutables.style;
+  requires static org.immutables.value;
   requires static org.osgi.annotation.bundle;
   requires static org.osgi.annotation.versioning;
 
   requires com.io7m.olivebench.composition.serializer.spi;
+  requires com.io7m.olivebench.composition_parser.api;
+  requires com.io7m.olivebench.metrics;
   requires com.io7m.olivebench.model;
   requires com.io7m.olivebench.services.api;
+  requires jdk.jfr;
   requires org.slf4j;
 
   uses OBCompositionSPISerializersType;
@@ -17,9 +17,11 @@
 package com.io7m.olivebench.composition_serializer.spi;
 
 import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.graph.OBChannelType;
 
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.Optional;
 
 /**
  * A serializer provider.
@@ -27,6 +29,18 @@ import java.net.URI;
 
 public interface OBCompositionSPISerializersType
 {
+  /**
+   * The name of the format produced by this provider. Versions are only
+   * comparable between providers of the same format.
+   *
+   * @return The format name
+   */
+
+  default String formatName()
+  {
+    return "xml";
+  }
+
   /**
    * @return The supported major format version
    */
@@ -53,4 +67,32 @@ public interface OBCompositionSPISerializersType
     URI target,
     OutputStream output,
     OBCompositionReadableType composition);
+
+  /**
+   * Create a new serializer for one part of a partitioned composition. If
+   * {@code channel} is empty, the part is the manifest, and contains the
+   * composition metadata, the root node, and the channel nodes. Otherwise,
+   * the part contains the root node and the subtree of the given channel.
+   *
+   * @param target      The target URI
+   * @param output      The output stream
+   * @param composition The composition
+   * @param channel     The channel, if any
+   *
+   * @return A new serializer
+   *
+   * @throws UnsupportedOperationException If partitioned compositions are
+   *                                       not supported
+   */
+
+  default OBCompositionSPISerializerType createPart(
+    final URI target,
+    final OutputStream output,
+    final OBCompositionReadableType composition,
+    final Optional<OBChannelType> channel)
+    throws UnsupportedOperationException
+  {
+    throw new UnsupportedOperationException(
+      "Partitioned compositions are not supported");
+  }
 }
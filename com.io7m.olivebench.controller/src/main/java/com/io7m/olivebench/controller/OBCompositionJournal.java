@@ -0,0 +1,655 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import com.io7m.jregions.core.parameterized.areas.PAreaL;
+import com.io7m.jtensors.core.parameterized.vectors.PVector3D;
+import com.io7m.olivebench.exceptions.OBException;
+import com.io7m.olivebench.model.OBChannelEventType;
+import com.io7m.olivebench.model.OBChannelEventRemoved;
+import com.io7m.olivebench.model.OBCompositionEventType;
+import com.io7m.olivebench.model.OBCompositionMetadataChangedEvent;
+import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.model.OBRegionEventRemoved;
+import com.io7m.olivebench.model.OBRegionEventType;
+import com.io7m.olivebench.model.graph.OBChannelMetadata;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBNodeMetadata;
+import com.io7m.olivebench.model.graph.OBTextRegion;
+import com.io7m.olivebench.model.graph.OBTextRegionData;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.metadata.OBMetadataProperty;
+import com.io7m.olivebench.model.names.OBName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static com.io7m.olivebench.model.graph.OBRegionType.OBDecorativeRegionType.OBTextRegionType;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/*
+ * An append-only journal of the edits made to a composition since it was
+ * last saved. The journal lives beside the composition file and is memory
+ * mapped, so each edit costs a small encoded record rather than a full
+ * serialization, and records survive the process crashing.
+ *
+ * Each record describes the state of an object after an edit (rather than
+ * the operation that produced it), so replaying the journal on top of the
+ * last saved file is idempotent. Records are framed as:
+ *
+ *   int32 length | int32 crc32 | byte[length] payload
+ *
+ * A zero length marks the end of the journal; a torn record at the end
+ * of the journal fails its checksum and is ignored along with anything
+ * after it.
+ *
+ * The controller also uses a journal, in a temporary file, to hold the
+ * undo entries that it spills out of memory. Each spilled entry is a
+ * single payload holding the records that restore the state from before
+ * the entry's task ran, and is applied in place when it is undone.
+ */
+
+final class OBCompositionJournal implements Closeable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBCompositionJournal.class);
+
+  private static final int MAGIC = 0x4f424a31;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  private static final int FRAME_SIZE = 8;
+  private static final long SIZE_INITIAL = 64L * 1024L;
+
+  private static final byte RECORD_CHANNEL = 1;
+  private static final byte RECORD_NODE_DELETE = 2;
+  private static final byte RECORD_METADATA = 3;
+  private static final byte RECORD_TEXT_REGION = 4;
+  private static final byte RECORD_CHANNEL_METADATA = 5;
+
+  private final Path file;
+  private final FileChannel channel;
+  private final CRC32 crc;
+  private MappedByteBuffer map;
+  private int position;
+  private boolean replaying;
+
+  private OBCompositionJournal(
+    final Path inFile,
+    final FileChannel inChannel,
+    final MappedByteBuffer inMap)
+  {
+    this.file =
+      Objects.requireNonNull(inFile, "inFile");
+    this.channel =
+      Objects.requireNonNull(inChannel, "inChannel");
+    this.map =
+      Objects.requireNonNull(inMap, "inMap");
+    this.crc =
+      new CRC32();
+    this.position = HEADER_SIZE;
+  }
+
+  static Path journalFileFor(
+    final Path compositionFile)
+  {
+    final var absolute = compositionFile.toAbsolutePath();
+    return absolute.resolveSibling(absolute.getFileName() + ".journal");
+  }
+
+  /*
+   * Determine whether the journal for the given composition file holds
+   * any records, without creating or mapping it.
+   */
+
+  static boolean hasRecords(
+    final Path compositionFile)
+    throws IOException
+  {
+    final var file = journalFileFor(compositionFile);
+    if (!Files.isRegularFile(file)) {
+      return false;
+    }
+
+    try (var channel = FileChannel.open(file, READ)) {
+      final var buffer = ByteBuffer.allocate(HEADER_SIZE + 4);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) == -1) {
+          return false;
+        }
+      }
+      return buffer.getInt(0) == MAGIC
+        && buffer.getInt(4) == VERSION
+        && buffer.getInt(HEADER_SIZE) != 0;
+    }
+  }
+
+  static OBCompositionJournal open(
+    final Path compositionFile)
+    throws IOException
+  {
+    return openFile(journalFileFor(compositionFile));
+  }
+
+  static OBCompositionJournal openFile(
+    final Path file)
+    throws IOException
+  {
+    final var channel = FileChannel.open(file, CREATE, READ, WRITE);
+
+    try {
+      final var size = Math.max(channel.size(), SIZE_INITIAL);
+      final var map = channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+      final var journal = new OBCompositionJournal(file, channel, map);
+      if (map.getInt(0) == MAGIC && map.getInt(4) == VERSION) {
+        journal.position = journal.scan();
+      } else {
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        journal.reset();
+      }
+
+      LOG.debug(
+        "opened journal {} ({} bytes of records)",
+        file,
+        Integer.valueOf(journal.position - HEADER_SIZE));
+      return journal;
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private int scan()
+  {
+    int offset = HEADER_SIZE;
+    while (offset + FRAME_SIZE <= this.map.capacity()) {
+      final var length = this.map.getInt(offset);
+      if (length <= 0 || offset + FRAME_SIZE + length > this.map.capacity()) {
+        break;
+      }
+
+      final var payload = this.payloadAt(offset, length);
+      this.crc.reset();
+      this.crc.update(payload);
+      if ((int) this.crc.getValue() != this.map.getInt(offset + 4)) {
+        LOG.warn(
+          "journal {}: discarding corrupt record at offset {}",
+          this.file,
+          Integer.valueOf(offset));
+        break;
+      }
+      offset += FRAME_SIZE + length;
+    }
+    return offset;
+  }
+
+  private byte[] payloadAt(
+    final int offset,
+    final int length)
+  {
+    final var payload = new byte[length];
+    final var view = this.map.duplicate();
+    view.position(offset + FRAME_SIZE);
+    view.get(payload);
+    return payload;
+  }
+
+  Path file()
+  {
+    return this.file;
+  }
+
+  boolean isEmpty()
+  {
+    return this.position == HEADER_SIZE;
+  }
+
+  void reset()
+  {
+    this.position = HEADER_SIZE;
+    this.map.putInt(HEADER_SIZE, 0);
+  }
+
+  void record(
+    final OBCompositionEventType event)
+    throws IOException
+  {
+    if (this.replaying) {
+      return;
+    }
+
+    final var bytes = new ByteArrayOutputStream(128);
+    try (var output = new DataOutputStream(bytes)) {
+      if (!encode(output, event)) {
+        return;
+      }
+    }
+    this.append(bytes.toByteArray());
+  }
+
+  int append(
+    final byte[] payload)
+    throws IOException
+  {
+    final var required = this.position + FRAME_SIZE + payload.length + 4;
+    if (required > this.map.capacity()) {
+      long size = this.map.capacity();
+      while (size < required) {
+        size *= 2L;
+      }
+      this.map.force();
+      this.map = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+    }
+
+    this.crc.reset();
+    this.crc.update(payload);
+
+    /*
+     * The terminator following the record is written before the record's
+     * length, so that a crash part way through an append cannot leave a
+     * valid length pointing into stale data.
+     */
+
+    final var offset = this.position;
+    this.map.putInt(offset + FRAME_SIZE + payload.length, 0);
+    final var view = this.map.duplicate();
+    view.position(offset + FRAME_SIZE);
+    view.put(payload);
+    this.map.putInt(offset + 4, (int) this.crc.getValue());
+    this.map.putInt(offset, payload.length);
+    this.position = offset + FRAME_SIZE + payload.length;
+    return offset;
+  }
+
+  /*
+   * Discard the record at the given offset and every record after it.
+   */
+
+  void truncate(
+    final int offset)
+  {
+    if (offset < HEADER_SIZE || offset > this.position) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Offset %d is not within the journal",
+          Integer.valueOf(offset)));
+    }
+    this.map.putInt(offset, 0);
+    this.position = offset;
+  }
+
+  private static boolean encode(
+    final DataOutputStream output,
+    final OBCompositionEventType event)
+    throws IOException
+  {
+    if (event instanceof OBChannelEventRemoved) {
+      writeNodeDelete(output, ((OBChannelEventRemoved) event).channel().id());
+      return true;
+    }
+
+    if (event instanceof OBRegionEventRemoved) {
+      writeNodeDelete(output, ((OBRegionEventRemoved) event).region().id());
+      return true;
+    }
+
+    if (event instanceof OBChannelEventType) {
+      final var channel = ((OBChannelEventType) event).channel();
+      output.writeByte(RECORD_CHANNEL);
+      writeUUID(output, channel.id());
+      writeNodeMetadata(output, channel.nodeMetadata().read());
+      final var color = channel.channelMetadata().read().color();
+      output.writeDouble(color.x());
+      output.writeDouble(color.y());
+      output.writeDouble(color.z());
+      return true;
+    }
+
+    if (event instanceof OBCompositionMetadataChangedEvent) {
+      writeMetadata(
+        output,
+        ((OBCompositionMetadataChangedEvent) event).metadata());
+      return true;
+    }
+
+    if (event instanceof OBRegionEventType) {
+      final var regionEvent = (OBRegionEventType) event;
+      final var region = regionEvent.region();
+      if (region instanceof OBTextRegionType) {
+        final var text = (OBTextRegionType) region;
+        output.writeByte(RECORD_TEXT_REGION);
+        writeUUID(output, text.id());
+        writeUUID(output, regionEvent.channel().id());
+        writeNodeMetadata(output, text.nodeMetadata().read());
+        writeString(output, text.text());
+        return true;
+      }
+    }
+
+    LOG.debug("journal: no record for event {}", event.getClass());
+    return false;
+  }
+
+  static void writeNodeDelete(
+    final DataOutputStream output,
+    final UUID id)
+    throws IOException
+  {
+    output.writeByte(RECORD_NODE_DELETE);
+    writeUUID(output, id);
+  }
+
+  static void writeChannelMetadata(
+    final DataOutputStream output,
+    final UUID id,
+    final OBChannelMetadata metadata)
+    throws IOException
+  {
+    output.writeByte(RECORD_CHANNEL_METADATA);
+    writeUUID(output, id);
+    final var color = metadata.color();
+    output.writeDouble(color.x());
+    output.writeDouble(color.y());
+    output.writeDouble(color.z());
+  }
+
+  static void writeMetadata(
+    final DataOutputStream output,
+    final OBCompositionMetadata metadata)
+    throws IOException
+  {
+    final var properties = metadata.properties();
+    output.writeByte(RECORD_METADATA);
+    output.writeInt(properties.size());
+    for (final var property : properties) {
+      writeString(output, property.name());
+      writeString(output, property.value());
+    }
+  }
+
+  private static void writeNodeMetadata(
+    final DataOutputStream output,
+    final OBNodeMetadata metadata)
+    throws IOException
+  {
+    writeString(output, metadata.name().value());
+    final var area = metadata.area();
+    output.writeLong(area.minimumX());
+    output.writeLong(area.maximumX());
+    output.writeLong(area.minimumY());
+    output.writeLong(area.maximumY());
+  }
+
+  private static OBNodeMetadata readNodeMetadata(
+    final DataInputStream input)
+    throws IOException
+  {
+    final var name = readString(input);
+    final var x0 = input.readLong();
+    final var x1 = input.readLong();
+    final var y0 = input.readLong();
+    final var y1 = input.readLong();
+    return OBNodeMetadata.builder()
+      .setName(OBName.of(name))
+      .setArea(PAreaL.of(x0, x1, y0, y1))
+      .build();
+  }
+
+  private static void writeString(
+    final DataOutputStream output,
+    final String text)
+    throws IOException
+  {
+    final var bytes = text.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(
+    final DataInputStream input)
+    throws IOException
+  {
+    final var bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeUUID(
+    final DataOutputStream output,
+    final UUID id)
+    throws IOException
+  {
+    output.writeLong(id.getMostSignificantBits());
+    output.writeLong(id.getLeastSignificantBits());
+  }
+
+  private static UUID readUUID(
+    final DataInputStream input)
+    throws IOException
+  {
+    final var msb = input.readLong();
+    final var lsb = input.readLong();
+    return new UUID(msb, lsb);
+  }
+
+  int replay(
+    final OBCompositionType composition)
+    throws IOException, OBException
+  {
+    this.replaying = true;
+    try {
+      int count = 0;
+      int offset = HEADER_SIZE;
+      while (offset < this.position) {
+        final var length = this.map.getInt(offset);
+        applyPayload(composition, this.payloadAt(offset, length));
+        offset += FRAME_SIZE + length;
+        ++count;
+      }
+
+      LOG.debug("replayed {} journal records", Integer.valueOf(count));
+      return count;
+    } finally {
+      this.replaying = false;
+    }
+  }
+
+  /*
+   * Apply the records held in the payload at the given offset, checking
+   * the payload against its checksum first.
+   */
+
+  void applyAt(
+    final OBCompositionType composition,
+    final int offset)
+    throws IOException, OBException
+  {
+    final var length = this.map.getInt(offset);
+    if (length < 0 || offset + FRAME_SIZE + length > this.position) {
+      throw new IOException(
+        String.format(
+          "Journal %s: no record at offset %d",
+          this.file,
+          Integer.valueOf(offset)));
+    }
+
+    final var payload = this.payloadAt(offset, length);
+    this.crc.reset();
+    this.crc.update(payload);
+    if ((int) this.crc.getValue() != this.map.getInt(offset + 4)) {
+      throw new IOException(
+        String.format(
+          "Journal %s: corrupt record at offset %d",
+          this.file,
+          Integer.valueOf(offset)));
+    }
+    applyPayload(composition, payload);
+  }
+
+  private static void applyPayload(
+    final OBCompositionType composition,
+    final byte[] payload)
+    throws IOException, OBException
+  {
+    try (var input = new DataInputStream(new ByteArrayInputStream(payload))) {
+      while (input.available() > 0) {
+        apply(composition, input);
+      }
+    }
+  }
+
+  private static void apply(
+    final OBCompositionType composition,
+    final DataInputStream input)
+    throws IOException, OBException
+  {
+    final var graph = composition.graph();
+    final var kind = input.readByte();
+    switch (kind) {
+      case RECORD_CHANNEL: {
+        final var id = readUUID(input);
+        final var nodeMetadata = readNodeMetadata(input);
+        final var r = input.readDouble();
+        final var g = input.readDouble();
+        final var b = input.readDouble();
+        final var channelMetadata =
+          OBChannelMetadata.builder()
+            .setColor(PVector3D.of(r, g, b))
+            .build();
+
+        final var existing = graph.nodes().get(id);
+        if (existing instanceof OBChannelType) {
+          final var channel = (OBChannelType) existing;
+          channel.nodeMetadata().set(nodeMetadata);
+          channel.channelMetadata().set(channelMetadata);
+        } else {
+          graph.createChannel(id, nodeMetadata, channelMetadata);
+        }
+        return;
+      }
+
+      case RECORD_CHANNEL_METADATA: {
+        final var id = readUUID(input);
+        final var r = input.readDouble();
+        final var g = input.readDouble();
+        final var b = input.readDouble();
+
+        final var existing = graph.nodes().get(id);
+        if (existing instanceof OBChannelType) {
+          ((OBChannelType) existing).channelMetadata()
+            .set(
+              OBChannelMetadata.builder()
+                .setColor(PVector3D.of(r, g, b))
+                .build());
+        }
+        return;
+      }
+
+      case RECORD_NODE_DELETE: {
+        final var existing = graph.nodes().get(readUUID(input));
+        if (existing != null && !graph.nodeIsDeleted(existing)) {
+          graph.nodeDelete(existing);
+        }
+        return;
+      }
+
+      case RECORD_METADATA: {
+        final var count = input.readInt();
+        final var properties = new ArrayList<OBMetadataProperty>(count);
+        for (int index = 0; index < count; ++index) {
+          final var name = readString(input);
+          final var value = readString(input);
+          properties.add(OBMetadataProperty.of(name, value));
+        }
+        composition.metadata().set(OBCompositionMetadata.of(properties));
+        return;
+      }
+
+      case RECORD_TEXT_REGION: {
+        final var id = readUUID(input);
+        final var ownerId = readUUID(input);
+        final var nodeMetadata = readNodeMetadata(input);
+        final var data =
+          OBTextRegionData.builder()
+            .setText(readString(input))
+            .build();
+
+        final var existing = graph.nodes().get(id);
+        if (existing instanceof OBTextRegionType) {
+          final var region = (OBTextRegionType) existing;
+          region.nodeMetadata().set(nodeMetadata);
+          region.data().set(data);
+          return;
+        }
+
+        final var owner = graph.nodes().get(ownerId);
+        if (owner == null) {
+          LOG.warn("journal: text region {} has no owner {}", id, ownerId);
+          return;
+        }
+
+        graph.createRegion(
+          owner,
+          id,
+          nodeMetadata,
+          OBTextRegion::create,
+          data
+        );
+        return;
+      }
+
+      default: {
+        LOG.warn("journal: unrecognized record kind {}", Byte.valueOf(kind));
+      }
+    }
+  }
+
+  void delete()
+    throws IOException
+  {
+    this.close();
+    Files.deleteIfExists(this.file);
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (this.channel.isOpen()) {
+      this.map.force();
+      this.channel.close();
+    }
+  }
+}
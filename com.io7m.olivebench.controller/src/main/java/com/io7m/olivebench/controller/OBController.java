@@ -17,7 +17,13 @@
 package com.io7m.olivebench.controller;
 
 import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionFileStamp;
 import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
+import com.io7m.olivebench.exceptions.OBException;
+import com.io7m.olivebench.metrics.OBCounterType;
+import com.io7m.olivebench.metrics.OBHistogramType;
+import com.io7m.olivebench.metrics.OBMetrics;
+import com.io7m.olivebench.metrics.OBMetricsType;
 import com.io7m.olivebench.model.LoadedSaved;
 import com.io7m.olivebench.model.LoadedUnsaved;
 import com.io7m.olivebench.model.NotLoaded;
@@ -29,6 +35,8 @@ import com.io7m.olivebench.model.graph.OBChannelMetadata;
 import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
 import com.io7m.olivebench.model.names.OBName;
 import com.io7m.olivebench.preferences.OBPreferencesControllerType;
+import com.io7m.olivebench.preferences.OBPreferencesReadableType;
+import com.io7m.olivebench.preferences.OBPreferencesType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import com.io7m.olivebench.strings.OBStringsType;
 import io.reactivex.rxjava3.core.Observable;
@@ -39,26 +47,49 @@ import io.reactivex.rxjava3.subjects.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.io7m.olivebench.controller.OBControllerEventCompositionStatusChangedType.Status;
 import static com.io7m.olivebench.model.OBCompositionStatusType.Kind.LOADED_UNSAVED;
+import static com.io7m.olivebench.model.OBCompositionStatusType.Kind.NOT_LOADED;
 
 public final class OBController implements OBControllerType
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(OBController.class);
 
+  private static final int READ_THREADS = 2;
+  private static final int IO_THREADS = 4;
+
   private final CompositeDisposable subscriptions;
   private final ExecutorService executor;
+  private final ExecutorService readExecutor;
+  private final ExecutorService ioExecutor;
   private final LinkedList<OBControllerTaskType> redoStack;
   private final LinkedList<OBControllerTaskType> undoStack;
   private final OBCompositionParsersType parsers;
@@ -67,8 +98,21 @@ public final class OBController implements OBControllerType
   private final OBServiceDirectoryType services;
   private final OBStringsType strings;
   private final Subject<OBControllerEventType> events;
+  private final AtomicLong compositionVersion;
+  private final AtomicReference<VersionedSnapshot> compositionSnapshot;
+  private final AtomicBoolean compositionSnapshotRefreshing;
+  private final Map<Path, CompletableFuture<Void>> readTargetQueues;
+  private final Map<Path, ReadTarget> readTargets;
+  private final AtomicInteger metricQueueDepth;
+  private final AtomicLong metricUndoRetained;
+  private final OBHistogramType metricTaskRunTime;
+  private final OBHistogramType metricTaskQueueWait;
+  private final OBHistogramType metricSnapshotNodes;
+  private final OBCounterType metricCompositionEvents;
   private volatile Disposable compositionSub;
-  private volatile OBCompositionReadableType compositionLatestSnapshot;
+  private volatile OBCompositionFileStamp compositionStamp;
+  private OBCompositionJournal journal;
+  private OBCompositionJournal undoSpillJournal;
   private volatile OBCompositionStatusType composition;
 
   private OBController(
@@ -77,7 +121,10 @@ public final class OBController implements OBControllerType
     final OBCompositionParsersType inParsers,
     final OBCompositionSerializersType inSerializers,
     final OBPreferencesControllerType inPreferences,
-    final ExecutorService inExecutor)
+    final OBMetricsType inMetrics,
+    final ExecutorService inExecutor,
+    final ExecutorService inReadExecutor,
+    final ExecutorService inIOExecutor)
   {
     this.services =
       Objects.requireNonNull(inServices, "services");
@@ -89,6 +136,10 @@ public final class OBController implements OBControllerType
       Objects.requireNonNull(inSerializers, "inSerializers");
     this.executor =
       Objects.requireNonNull(inExecutor, "executor");
+    this.readExecutor =
+      Objects.requireNonNull(inReadExecutor, "readExecutor");
+    this.ioExecutor =
+      Objects.requireNonNull(inIOExecutor, "ioExecutor");
     this.preferences =
       Objects.requireNonNull(inPreferences, "inPreferences");
 
@@ -96,6 +147,29 @@ public final class OBController implements OBControllerType
       new CompositeDisposable();
 
     this.composition = NotLoaded.of(0);
+    this.compositionVersion = new AtomicLong(0L);
+    this.compositionSnapshot = new AtomicReference<>();
+    this.compositionSnapshotRefreshing = new AtomicBoolean(false);
+    this.readTargetQueues = new ConcurrentHashMap<>();
+    this.readTargets = new HashMap<>();
+
+    Objects.requireNonNull(inMetrics, "inMetrics");
+    this.metricQueueDepth = new AtomicInteger(0);
+    this.metricUndoRetained = new AtomicLong(0L);
+    this.metricTaskRunTime =
+      inMetrics.histogram("controller.taskRunTimeNanos");
+    this.metricTaskQueueWait =
+      inMetrics.histogram("controller.taskQueueWaitNanos");
+    this.metricSnapshotNodes =
+      inMetrics.histogram("controller.snapshotNodes");
+    this.metricCompositionEvents =
+      inMetrics.counter("controller.compositionEvents");
+    inMetrics.gauge(
+      "controller.queueDepth",
+      () -> (long) this.metricQueueDepth.get());
+    inMetrics.gauge(
+      "controller.undoRetainedBytes",
+      this.metricUndoRetained::get);
     this.undoStack = new LinkedList<>();
     this.redoStack = new LinkedList<>();
 
@@ -120,13 +194,52 @@ public final class OBController implements OBControllerType
         return thread;
       });
 
+    /*
+     * Read tasks (saves, mostly) encode a snapshot and write it out, and
+     * are limited to a small pool so that a burst of saves cannot occupy
+     * every core. Opening files and loading channels spend most of their
+     * time blocked on file I/O, and run on a separate pool so that a slow
+     * device delays neither the controller thread nor any save. Both pools
+     * are bounded: tasks beyond the limit wait in the queue rather than
+     * each creating a thread of their own.
+     */
+
+    final var readExecutor =
+      Executors.newFixedThreadPool(READ_THREADS, runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.setName(
+          String.format(
+            "com.io7m.olivebench.OBController.reader[%d]",
+            Long.valueOf(thread.getId())
+          )
+        );
+        return thread;
+      });
+
+    final var ioExecutor =
+      Executors.newFixedThreadPool(IO_THREADS, runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.setName(
+          String.format(
+            "com.io7m.olivebench.OBController.io[%d]",
+            Long.valueOf(thread.getId())
+          )
+        );
+        return thread;
+      });
+
     return new OBController(
       inServices,
       inServices.requireService(OBStringsType.class),
       inServices.requireService(OBCompositionParsersType.class),
       inServices.requireService(OBCompositionSerializersType.class),
       inServices.requireService(OBPreferencesControllerType.class),
-      executor
+      OBMetrics.findOrDisabled(inServices),
+      executor,
+      readExecutor,
+      ioExecutor
     );
   }
 
@@ -168,19 +281,42 @@ public final class OBController implements OBControllerType
     return this.executeTask(new OBTaskCreateChannel(this, name));
   }
 
+  @Override
+  public CompletableFuture<?> batch(
+    final Consumer<OBControllerBatchType> operations)
+  {
+    Objects.requireNonNull(operations, "operations");
+
+    final var task = new OBTaskBatch(this);
+    operations.accept(task);
+    if (task.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return this.executeTask(task);
+  }
+
   @Override
   public CompletableFuture<?> openComposition(
     final Path file)
   {
-    return this.executeTask(
+    return this.executeIOTask(
       OBTaskOpenComposition.create(this.services, this, file)
     );
   }
 
+  @Override
+  public CompletableFuture<?> recoverComposition(
+    final Path file)
+  {
+    return this.executeIOTask(
+      OBTaskOpenComposition.createRecovery(this.services, this, file)
+    );
+  }
+
   @Override
   public CompletableFuture<?> saveComposition()
   {
-    return this.executeTask(
+    return this.executeReadTask(
       OBTaskSaveComposition.create(this.services, this)
     );
   }
@@ -189,11 +325,92 @@ public final class OBController implements OBControllerType
   public CompletableFuture<?> saveAsComposition(
     final Path file)
   {
-    return this.executeTask(
-      OBTaskSaveAsComposition.create(this.services, this, file)
+    final var task =
+      OBTaskSaveAsComposition.create(this.services, this, file);
+
+    /*
+     * Deferred channels can only be copied through to the partitioned
+     * composition that they were deferred from. Saving anywhere else
+     * requires that the contents of every channel are loaded first. The
+     * composition is inspected on the controller thread, in order with the
+     * tasks submitted before this one.
+     */
+
+    final CompletableFuture<Boolean> deferred;
+    try {
+      deferred = CompletableFuture.supplyAsync(
+        () -> Boolean.valueOf(this.hasDeferredChannelsFrom(file)),
+        this.executor
+      );
+    } catch (final RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return deferred.thenCompose(loadFirst -> {
+      if (loadFirst.booleanValue()) {
+        return this.executeIOTask(OBTaskLoadChannels.createAll(this))
+          .thenCompose(ignored -> this.executeReadTask(task));
+      }
+      return this.executeReadTask(task);
+    });
+  }
+
+  private boolean hasDeferredChannelsFrom(
+    final Path file)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    if (this.composition.status() == NOT_LOADED) {
+      return false;
+    }
+
+    final var current = this.composition();
+    if (current.graph().channelsDeferred().isEmpty()) {
+      return false;
+    }
+
+    final var target = file.toAbsolutePath();
+    return current.fileName()
+      .read()
+      .map(existing -> !existing.toAbsolutePath().equals(target))
+      .orElse(Boolean.TRUE)
+      .booleanValue();
+  }
+
+  @Override
+  public CompletableFuture<?> loadChannel(
+    final UUID channelId)
+  {
+    Objects.requireNonNull(channelId, "channelId");
+    return this.executeIOTask(
+      OBTaskLoadChannels.create(this, Set.of(channelId))
     );
   }
 
+  /*
+   * Recent files may be on removable or network devices that take a long
+   * time to answer, and so they are probed on the I/O executor. Files that
+   * no longer exist are not offered.
+   */
+
+  @Override
+  public CompletableFuture<List<Path>> recentFiles()
+  {
+    try {
+      return CompletableFuture.supplyAsync(
+        () -> this.preferences.preferences()
+          .recentItems()
+          .recentFiles()
+          .stream()
+          .filter(Files::exists)
+          .collect(Collectors.toList()),
+        this.ioExecutor
+      );
+    } catch (final RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
   @Override
   public CompletableFuture<?> updateChannelMetadata(
     final UUID channelId,
@@ -302,23 +519,137 @@ public final class OBController implements OBControllerType
     return this.strings;
   }
 
+  OBPreferencesReadableType preferences()
+  {
+    return this.preferences.preferences();
+  }
+
   @Override
   public Observable<OBControllerEventType> events()
   {
     return this.events;
   }
 
+  /*
+   * The composition graph may only be read on the controller thread, and
+   * so snapshots are only ever built there. A caller on any other thread
+   * never waits for the controller: it receives the most recently built
+   * snapshot, which may be out of date, and a rebuild is scheduled so that
+   * a later call receives a current snapshot. Callers that need a current
+   * snapshot use compositionSnapshotAsync() instead.
+   */
+
   @Override
   public Optional<OBCompositionReadableType> compositionSnapshot()
   {
-    return Optional.ofNullable(this.compositionLatestSnapshot);
+    if (this.composition.status() == NOT_LOADED) {
+      return Optional.empty();
+    }
+
+    final var cached = this.compositionSnapshot.get();
+    if (cached != null && cached.version == this.compositionVersion.get()) {
+      return Optional.of(cached.snapshot);
+    }
+
+    if (Thread.currentThread() instanceof OBControllerThread) {
+      return this.compositionSnapshotBuild();
+    }
+
+    this.compositionSnapshotRefresh();
+    return Optional.ofNullable(cached).map(c -> c.snapshot);
+  }
+
+  @Override
+  public CompletableFuture<Optional<OBCompositionReadableType>>
+  compositionSnapshotAsync()
+  {
+    if (Thread.currentThread() instanceof OBControllerThread) {
+      return CompletableFuture.completedFuture(
+        this.compositionSnapshotBuild());
+    }
+
+    try {
+      return CompletableFuture.supplyAsync(
+        this::compositionSnapshotBuild,
+        this.executor
+      );
+    } catch (final RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private void compositionSnapshotRefresh()
+  {
+    if (!this.compositionSnapshotRefreshing.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      this.executor.execute(() -> {
+        this.compositionSnapshotRefreshing.set(false);
+        this.compositionSnapshotVersioned();
+      });
+    } catch (final RejectedExecutionException e) {
+      this.compositionSnapshotRefreshing.set(false);
+    }
+  }
+
+  private Optional<OBCompositionReadableType> compositionSnapshotBuild()
+  {
+    return Optional.ofNullable(this.compositionSnapshotVersioned())
+      .map(versioned -> versioned.snapshot);
+  }
+
+  private VersionedSnapshot compositionSnapshotVersioned()
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var version = this.compositionVersion.get();
+    final var cached = this.compositionSnapshot.get();
+    if (cached != null && cached.version == version) {
+      return cached;
+    }
+
+    switch (this.composition.status()) {
+      case NOT_LOADED: {
+        this.compositionSnapshot.set(null);
+        return null;
+      }
+      case LOADED_UNSAVED:
+      case LOADED_SAVED: {
+        final var event = new OBJFRCompositionSnapshot();
+        event.begin();
+        final var snapshot =
+          new VersionedSnapshot(version, this.composition().snapshot());
+        this.compositionSnapshot.set(snapshot);
+        final var nodes = snapshot.snapshot.graph().nodes().size();
+        this.metricSnapshotNodes.record(nodes);
+        if (event.shouldCommit()) {
+          event.version = version;
+          event.nodes = nodes;
+          event.commit();
+        }
+        LOG.debug("created snapshot (version {})", Long.valueOf(version));
+        return snapshot;
+      }
+    }
+
+    throw new IllegalStateException("Unreachable code");
   }
 
   @Override
   public void close()
   {
     LOG.debug("shutting down controller");
+    if (!this.executor.isShutdown()) {
+      this.executor.execute(() -> {
+        this.journalDetach(false);
+        this.undoSpillDelete();
+      });
+    }
     this.executor.shutdown();
+    this.readExecutor.shutdown();
+    this.ioExecutor.shutdown();
     this.unsubscribeComposition();
     this.events.onComplete();
   }
@@ -329,8 +660,11 @@ public final class OBController implements OBControllerType
 
     final var statusThen = enumStatusOf(this.composition.status());
     this.composition = NotLoaded.of(0);
-    this.compositionLatestSnapshot = null;
+    this.compositionInvalidateSnapshot();
+    this.compositionSnapshot.set(null);
+    this.compositionStamp = null;
     this.unsubscribeComposition();
+    this.journalDetach(true);
     final var statusNow = enumStatusOf(this.composition.status());
     this.events.onNext(
       OBControllerEventCompositionStatusChanged.builder()
@@ -354,13 +688,16 @@ public final class OBController implements OBControllerType
     {
       final var statusThen = enumStatusOf(this.composition.status());
       this.composition = LoadedSaved.of(inComposition);
-      this.publishNewCompositionSnapshot();
+      this.compositionInvalidateSnapshot();
 
       this.compositionSub =
         inComposition.events()
-          .subscribe(
-            event -> this.executor.execute(
-              () -> this.onCompositionEvent(event)));
+          .subscribe(event -> {
+            this.metricCompositionEvents.increment();
+            this.compositionInvalidateSnapshot();
+            this.journalRecord(event);
+            this.executor.execute(() -> this.onCompositionEvent(event));
+          });
 
       final var statusNow = enumStatusOf(this.composition.status());
       this.events.onNext(
@@ -378,8 +715,6 @@ public final class OBController implements OBControllerType
   {
     OBControllerThread.checkIsControllerThread();
 
-    this.publishNewCompositionSnapshot();
-
     this.events.onNext(
       OBControllerEventCompositionChanged.builder()
         .setMessage(event.message())
@@ -399,32 +734,143 @@ public final class OBController implements OBControllerType
     }
   }
 
-  private void publishNewCompositionSnapshot()
+  int journalAttach(
+    final Path file)
   {
-    switch (this.composition.status()) {
-      case NOT_LOADED: {
-        this.compositionLatestSnapshot = null;
-        LOG.debug("dropped snapshot");
-        break;
-      }
-      case LOADED_UNSAVED: {
-        this.compositionLatestSnapshot =
-          ((LoadedUnsaved) this.composition).composition()
-            .snapshot();
-        LOG.debug("published new snapshot");
-        break;
+    OBControllerThread.checkIsControllerThread();
+
+    this.journalDetach(false);
+
+    try {
+      this.journal = OBCompositionJournal.open(file);
+      return this.journal.replay(this.composition());
+    } catch (final IOException | OBException e) {
+      LOG.error("unable to replay journal for {}: ", file, e);
+      this.journalDetach(false);
+      return 0;
+    }
+  }
+
+  void journalRestart(
+    final Path file)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var existing = this.journal;
+    final var journalFile = OBCompositionJournal.journalFileFor(file);
+    if (existing != null && existing.file().equals(journalFile)) {
+      existing.reset();
+      return;
+    }
+
+    this.journalDetach(true);
+
+    try {
+      this.journal = OBCompositionJournal.open(file);
+      this.journal.reset();
+    } catch (final IOException e) {
+      LOG.error("unable to open journal for {}: ", file, e);
+      this.journal = null;
+    }
+  }
+
+  void journalRetarget(
+    final Path file)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var existing = this.journal;
+    final var journalFile = OBCompositionJournal.journalFileFor(file);
+    if (existing == null || !existing.file().equals(journalFile)) {
+      this.journalRestart(file);
+    }
+  }
+
+  private void journalRecord(
+    final OBCompositionEventType event)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var existing = this.journal;
+    if (existing != null) {
+      try {
+        existing.record(event);
+      } catch (final IOException e) {
+        LOG.error("unable to write journal; journalling disabled: ", e);
+        this.journalDetach(false);
       }
-      case LOADED_SAVED: {
-        this.compositionLatestSnapshot =
-          ((LoadedSaved) this.composition).composition()
-            .snapshot();
-        LOG.debug("published new snapshot");
-        break;
+    }
+  }
+
+  private void journalDetach(
+    final boolean delete)
+  {
+    final var existing = this.journal;
+    this.journal = null;
+
+    if (existing != null) {
+      try {
+        if (delete) {
+          existing.delete();
+        } else {
+          existing.close();
+        }
+      } catch (final IOException e) {
+        LOG.error("unable to close journal: ", e);
       }
     }
   }
 
-  private void setUnsaved()
+  private void compositionInvalidateSnapshot()
+  {
+    this.compositionVersion.incrementAndGet();
+  }
+
+  /*
+   * Loading channels, recording where the contents of channels are
+   * stored, and naming the file that a composition was saved to, change
+   * the composition without publishing composition events, and so do not
+   * advance the composition version. The cached snapshot is
+   * discarded so that the next snapshot includes the changes, without
+   * causing any running read task to believe that the composition was
+   * edited underneath it.
+   */
+
+  void compositionDiscardSnapshot()
+  {
+    OBControllerThread.checkIsControllerThread();
+    this.compositionSnapshot.set(null);
+  }
+
+  /*
+   * The stamp of the file that the composition was last saved to. A save
+   * of a composition that has not changed since then only has to encode
+   * the composition to confirm that its hash is unchanged. A save of a
+   * composition with unsaved changes would certainly not match, and so
+   * would encode the composition twice for nothing.
+   */
+
+  Optional<OBCompositionFileStamp> compositionStampOf(
+    final Path file)
+  {
+    final var stamp = this.compositionStamp;
+    if (stamp == null || this.unsavedChanges()) {
+      return Optional.empty();
+    }
+    if (!Objects.equals(stamp.file(), file)) {
+      return Optional.empty();
+    }
+    return Optional.of(stamp);
+  }
+
+  void setCompositionStamp(
+    final OBCompositionFileStamp stamp)
+  {
+    OBControllerThread.checkIsControllerThread();
+    this.compositionStamp = stamp;
+  }
+
+  void setUnsaved()
   {
     OBControllerThread.checkIsControllerThread();
 
@@ -475,9 +921,25 @@ public final class OBController implements OBControllerType
     OBControllerThread.checkIsControllerThread();
 
     this.undoStack.clear();
+    this.undoSpillDelete();
+    this.metricUndoRetained.set(0L);
     this.undoStackPublish();
   }
 
+  private void undoSpillDelete()
+  {
+    final var existing = this.undoSpillJournal;
+    this.undoSpillJournal = null;
+
+    if (existing != null) {
+      try {
+        existing.delete();
+      } catch (final IOException e) {
+        LOG.error("unable to delete undo spill journal: ", e);
+      }
+    }
+  }
+
   private void undoStackPublish()
   {
     final var topTask = this.undoStack.peek();
@@ -505,17 +967,118 @@ public final class OBController implements OBControllerType
 
     final var undoSettings = this.preferences.preferences().undo();
     if (this.undoStack.size() >= undoSettings.historySize()) {
-      this.undoStack.removeFirst();
+      this.undoStack.removeLast();
     }
     this.undoStack.push(task);
     this.undoStackPublish();
   }
 
+  private long undoStackRetained()
+  {
+    long retained = 0L;
+    for (final var task : this.undoStack) {
+      retained += task.retainedSizeEstimate();
+    }
+    return retained;
+  }
+
+  /*
+   * Once the estimated size of the undo stack exceeds the configured
+   * limit, the oldest entries are spilled to a journal in a temporary
+   * file. Each spilled entry is replaced by the journal records that undo
+   * it, and a small entry that applies those records when it is undone.
+   * An entry that cannot be written as records is evicted along with every
+   * entry older than it, as undoing the older entries without it would
+   * apply them to the wrong state.
+   */
+
+  private void undoStackTrim()
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var undoSettings = this.preferences.preferences().undo();
+    final var limit = undoSettings.historyMemoryLimit();
+
+    long retained = this.undoStackRetained();
+
+    /*
+     * The most recent task is always kept in memory, regardless of its
+     * size, so that the operation the user just performed can be undone
+     * without a trip to storage.
+     */
+
+    int spilled = 0;
+    int evicted = 0;
+    for (int index = this.undoStack.size() - 1;
+         index > 0 && retained > limit;
+         --index) {
+      final var task = this.undoStack.get(index);
+      if (task instanceof OBTaskUndoSpilled) {
+        continue;
+      }
+
+      final var replacement = this.undoStackSpill(task);
+      if (replacement.isPresent()) {
+        final var spilledTask = replacement.get();
+        this.undoStack.set(index, spilledTask);
+        retained -= task.retainedSizeEstimate();
+        retained += spilledTask.retainedSizeEstimate();
+        ++spilled;
+      } else {
+        while (this.undoStack.size() > index) {
+          retained -= this.undoStack.removeLast().retainedSizeEstimate();
+          ++evicted;
+        }
+      }
+    }
+
+    this.metricUndoRetained.set(retained);
+
+    LOG.debug(
+      "undo: {} entries, {} bytes retained, {} spilled, {} evicted",
+      Integer.valueOf(this.undoStack.size()),
+      Long.valueOf(retained),
+      Integer.valueOf(spilled),
+      Integer.valueOf(evicted)
+    );
+  }
+
+  private Optional<OBControllerTaskType> undoStackSpill(
+    final OBControllerTaskType task)
+  {
+    try {
+      final var bytes = new ByteArrayOutputStream(128);
+      try (var output = new DataOutputStream(bytes)) {
+        if (!task.taskUndoSpill(output)) {
+          LOG.debug(
+            "undo: cannot spill {}",
+            task.getClass().getCanonicalName());
+          return Optional.empty();
+        }
+      }
+
+      if (this.undoSpillJournal == null) {
+        this.undoSpillJournal =
+          OBCompositionJournal.openFile(
+            Files.createTempFile("olivebench-undo-", ".journal"));
+      }
+
+      final var offset = this.undoSpillJournal.append(bytes.toByteArray());
+      return Optional.of(
+        new OBTaskUndoSpilled(this, this.undoSpillJournal, task.name(), offset)
+      );
+    } catch (final IOException e) {
+      LOG.error("unable to spill undo entry: ", e);
+      return Optional.empty();
+    }
+  }
+
   private OBControllerTaskType undoStackPop()
   {
     OBControllerThread.checkIsControllerThread();
 
     final var result = this.undoStack.pop();
+    this.metricUndoRetained.set(this.undoStackRetained());
     this.undoStackPublish();
     return result;
   }
@@ -524,20 +1087,48 @@ public final class OBController implements OBControllerType
     final OBControllerTaskType task)
   {
     final var future = new CompletableFuture<>();
+    future.whenComplete((ignored, exception) -> {
+      if (future.isCancelled()) {
+        task.taskCancel();
+      }
+    });
 
-    this.executor.execute(() -> {
-      switch (task.undoStyle()) {
-        case CAN_UNDO: {
-          this.undoStackAdd(task);
-          break;
-        }
-        case CANNOT_UNDO:
-        case CLEARS_UNDO_STACK: {
-          break;
-        }
+    final var queued = System.nanoTime();
+    this.metricQueueDepth.incrementAndGet();
+    this.executor.execute(() -> this.taskExecute(task, future, true, queued));
+    return future;
+  }
+
+  /*
+   * I/O tasks perform their blocking work (reading and parsing files) on
+   * the I/O executor and then hand the result back to the controller
+   * thread, where the rest of the task runs as an ordinary task. Tasks
+   * submitted while the blocking work is in progress are not held up by
+   * it, and therefore run against whatever composition is loaded at the
+   * time.
+   */
+
+  private CompletableFuture<Object> executeIOTask(
+    final OBControllerIOTaskType task)
+  {
+    final var future = new CompletableFuture<>();
+    future.whenComplete((ignored, exception) -> {
+      if (future.isCancelled()) {
+        task.taskCancel();
       }
+    });
+
+    final var queued = System.nanoTime();
+    this.metricQueueDepth.incrementAndGet();
+
+    try {
+      this.ioExecutor.execute(() -> {
+        this.metricQueueDepth.decrementAndGet();
+        if (future.isCancelled()) {
+          LOG.debug("cancelled: {}", task.getClass().getCanonicalName());
+          return;
+        }
 
-      try {
         this.publishEvent(
           OBControllerEventTaskStarted.builder()
             .setMessage(this.strings.controllerTaskStarted())
@@ -546,47 +1137,431 @@ public final class OBController implements OBControllerType
             .build()
         );
 
-        LOG.debug("execute: {}", task.getClass().getCanonicalName());
-        task.taskDo();
+        LOG.debug("execute (i/o): {}", task.getClass().getCanonicalName());
+
+        final var event =
+          OBJFRControllerTask.start("i/o", task.name(), task.getClass(), queued);
+
+        final var started = System.nanoTime();
+        this.metricTaskQueueWait.record(started - queued);
+
+        Exception failure = null;
+        try {
+          task.taskLoad();
+        } catch (final Exception e) {
+          failure = e;
+        }
 
+        event.finish(failure == null);
+
+        final var loadFailure = failure;
+        final var loaded = System.nanoTime();
+        this.metricTaskRunTime.record(loaded - started);
+
+        try {
+          this.metricQueueDepth.incrementAndGet();
+          this.executor.execute(() -> {
+            if (loadFailure != null) {
+              this.metricQueueDepth.decrementAndGet();
+              this.taskFailed(task.name(), future, loadFailure);
+            } else {
+              this.taskExecute(task, future, false, loaded);
+            }
+          });
+        } catch (final RejectedExecutionException e) {
+          this.metricQueueDepth.decrementAndGet();
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      this.metricQueueDepth.decrementAndGet();
+      future.completeExceptionally(e);
+    }
+
+    return future;
+  }
+
+  private void taskExecute(
+    final OBControllerTaskType task,
+    final CompletableFuture<Object> future,
+    final boolean announce,
+    final long queued)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    this.metricQueueDepth.decrementAndGet();
+    if (future.isCancelled()) {
+      LOG.debug("cancelled: {}", task.getClass().getCanonicalName());
+      return;
+    }
+
+    final var event =
+      OBJFRControllerTask.start("task", task.name(), task.getClass(), queued);
+    final var started = System.nanoTime();
+    this.metricTaskQueueWait.record(started - queued);
+
+    switch (task.undoStyle()) {
+      case CAN_UNDO: {
+        this.undoStackAdd(task);
+        break;
+      }
+      case CANNOT_UNDO:
+      case CLEARS_UNDO_STACK: {
+        break;
+      }
+    }
+
+    try {
+      if (announce) {
         this.publishEvent(
-          OBControllerEventTaskFinished.builder()
-            .setMessage(this.strings.controllerTaskFinished())
+          OBControllerEventTaskStarted.builder()
+            .setMessage(this.strings.controllerTaskStarted())
             .setName(task.name())
+            .setLongRunning(task.isLongRunning())
             .build()
         );
+      }
 
-        future.complete(null);
+      LOG.debug("execute: {}", task.getClass().getCanonicalName());
+      task.taskDo();
+      event.finish(true);
+      this.metricTaskRunTime.record(System.nanoTime() - started);
+
+      this.publishEvent(
+        OBControllerEventTaskFinished.builder()
+          .setMessage(this.strings.controllerTaskFinished())
+          .setName(task.name())
+          .build()
+      );
 
-        switch (task.undoStyle()) {
-          case CLEARS_UNDO_STACK: {
-            this.undoStackClear();
-            break;
-          }
-          case CAN_UNDO:
-          case CANNOT_UNDO: {
-            break;
-          }
+      future.complete(null);
+
+      switch (task.undoStyle()) {
+        case CLEARS_UNDO_STACK: {
+          this.undoStackClear();
+          break;
+        }
+        case CAN_UNDO: {
+          this.undoStackTrim();
+          break;
+        }
+        case CANNOT_UNDO: {
+          break;
         }
+      }
+    } catch (final Exception e) {
+      event.finish(false);
+      this.metricTaskRunTime.record(System.nanoTime() - started);
+      this.taskFailed(task.name(), future, e);
+    }
+  }
+
+  private void taskFailed(
+    final String name,
+    final CompletableFuture<Object> future,
+    final Exception e)
+  {
+    if (isCancellation(future, e)) {
+      this.publishCancelled(name, future);
+      return;
+    }
+
+    LOG.error("task exception: ", e);
+    if (!future.isCompletedExceptionally()) {
+      future.completeExceptionally(e);
+
+      this.publishEvent(
+        OBControllerEventTaskFailed.builder()
+          .setException(e)
+          .setMessage(e.getMessage())
+          .setTitle(name)
+          .build()
+      );
+    }
+  }
+
+  /*
+   * The preferences controller applies updates in memory and writes them
+   * to storage on its own writer thread, so tasks running on the controller
+   * thread never wait for the disk.
+   */
+
+  void preferencesUpdate(
+    final Consumer<OBPreferencesType> updater)
+  {
+    Objects.requireNonNull(updater, "updater");
+    this.preferences.updateQuietly(updater);
+  }
+
+  private static boolean isCancellation(
+    final CompletableFuture<?> future,
+    final Exception exception)
+  {
+    return future.isCancelled() || exception instanceof CancellationException;
+  }
+
+  private void publishCancelled(
+    final String name,
+    final CompletableFuture<?> future)
+  {
+    LOG.debug("task cancelled: {}", name);
+    future.completeExceptionally(new CancellationException());
+
+    this.publishEvent(
+      OBControllerEventTaskFinished.builder()
+        .setMessage(this.strings.controllerTaskCancelled())
+        .setName(name)
+        .build()
+    );
+  }
+
+  /*
+   * Read tasks take a snapshot of the composition on the controller thread,
+   * run against that snapshot on the I/O executor so that edits can
+   * continue in the meantime, and then complete back on the controller
+   * thread. The task is told whether the composition was edited while it
+   * was running, so that (for example) a save does not mark a composition
+   * as saved when the file does not contain the most recent edits.
+   *
+   * A snapshot copies the structure of the graph, but shares its nodes with
+   * the live composition, and so a task may observe edits made to existing
+   * nodes after the snapshot was taken. Any such edit advances the
+   * composition version, and so the task is always told that the
+   * composition changed underneath it.
+   *
+   * Read tasks that write to the same target run one at a time, in the
+   * order in which their snapshots were taken, so that an older snapshot
+   * can never overwrite a newer one. A completion for a snapshot older than
+   * the last completed write to the same target is ignored.
+   */
+
+  private CompletableFuture<Object> executeReadTask(
+    final OBControllerReadTaskType task)
+  {
+    final var future = new CompletableFuture<>();
+    future.whenComplete((ignored, exception) -> {
+      if (future.isCancelled()) {
+        task.taskCancel();
+      }
+    });
+
+    final var queued = System.nanoTime();
+    this.metricQueueDepth.incrementAndGet();
+    this.executor.execute(() -> {
+      this.metricQueueDepth.decrementAndGet();
+      if (future.isCancelled()) {
+        LOG.debug("cancelled: {}", task.getClass().getCanonicalName());
+        return;
+      }
+
+      final OBCompositionType target;
+      final VersionedSnapshot snapshot;
+      final Optional<Path> targetFile;
+
+      try {
+        target = this.composition();
+        snapshot = this.compositionSnapshotVersioned();
+        targetFile = task.target(snapshot.snapshot);
       } catch (final Exception e) {
-        LOG.error("task exception: ", e);
-        if (!future.isCompletedExceptionally()) {
+        this.readTaskFinish(task, future, null, Optional.empty(), 0L, e);
+        return;
+      }
+
+      this.publishEvent(
+        OBControllerEventTaskStarted.builder()
+          .setMessage(this.strings.controllerTaskStarted())
+          .setName(task.name())
+          .setLongRunning(task.isLongRunning())
+          .build()
+      );
+
+      LOG.debug("execute (read): {}", task.getClass().getCanonicalName());
+
+      final Runnable run = () -> {
+        final var event =
+          OBJFRControllerTask.start(
+            "read", task.name(), task.getClass(), queued);
+
+        final var started = System.nanoTime();
+        this.metricTaskQueueWait.record(started - queued);
+
+        Exception failure = null;
+        try {
+          task.taskRun(snapshot.snapshot);
+        } catch (final Exception e) {
+          failure = e;
+        }
+
+        event.finish(failure == null);
+        this.metricTaskRunTime.record(System.nanoTime() - started);
+
+        final var taskFailure = failure;
+        try {
+          this.executor.execute(() -> {
+            this.readTaskFinish(
+              task, future, target, targetFile, snapshot.version, taskFailure);
+          });
+        } catch (final RejectedExecutionException e) {
           future.completeExceptionally(e);
+        }
+      };
 
-          this.publishEvent(
-            OBControllerEventTaskFailed.builder()
-              .setException(e)
-              .setMessage(e.getMessage())
-              .setTitle(task.name())
-              .build()
-          );
+      try {
+        if (targetFile.isPresent()) {
+          this.readTargetAcquire(targetFile.get());
+          this.readTaskEnqueue(targetFile.get(), run, future);
+        } else {
+          this.readExecutor.execute(run);
         }
+      } catch (final RejectedExecutionException e) {
+        this.readTaskFinish(
+          task, future, target, targetFile, snapshot.version, e);
       }
     });
 
     return future;
   }
 
+  private void readTaskEnqueue(
+    final Path file,
+    final Runnable run,
+    final CompletableFuture<Object> future)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var previous =
+      this.readTargetQueues.getOrDefault(
+        file, CompletableFuture.completedFuture(null));
+
+    final CompletableFuture<Void> next =
+      previous.handleAsync((ignored, exception) -> {
+        run.run();
+        return null;
+      }, this.readExecutor);
+
+    this.readTargetQueues.put(file, next);
+    next.whenComplete((ignored, exception) -> {
+      this.readTargetQueues.remove(file, next);
+      if (exception != null) {
+        future.completeExceptionally(exception);
+      }
+    });
+  }
+
+  private void readTaskFinish(
+    final OBControllerReadTaskType task,
+    final CompletableFuture<Object> future,
+    final OBCompositionType target,
+    final Optional<Path> targetFile,
+    final long version,
+    final Exception failure)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var readTarget = this.readTargetRelease(targetFile);
+    if (future.isCancelled()
+      || failure instanceof CancellationException) {
+      this.publishCancelled(task.name(), future);
+      return;
+    }
+
+    var exception = failure;
+    if (exception == null) {
+      try {
+        final var loaded = this.composition.status() != NOT_LOADED;
+        if (loaded
+          && this.composition() == target
+          && readTargetLatest(readTarget, version)) {
+          task.taskCompleted(this.compositionVersion.get() == version);
+        }
+      } catch (final Exception e) {
+        exception = e;
+      }
+    }
+
+    if (exception == null) {
+      this.publishEvent(
+        OBControllerEventTaskFinished.builder()
+          .setMessage(this.strings.controllerTaskFinished())
+          .setName(task.name())
+          .build()
+      );
+      future.complete(null);
+      return;
+    }
+
+    LOG.error("task exception: ", exception);
+    future.completeExceptionally(exception);
+    this.publishEvent(
+      OBControllerEventTaskFailed.builder()
+        .setException(exception)
+        .setMessage(exception.getMessage())
+        .setTitle(task.name())
+        .build()
+    );
+  }
+
+  private void readTargetAcquire(
+    final Path file)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    final var target =
+      this.readTargets.computeIfAbsent(file, ReadTarget::new);
+    ++target.pending;
+  }
+
+  /*
+   * The entry for a target file is removed when the last task queued for
+   * the file finishes. Any task queued after that point captured a
+   * composition version at least as new as every completed task, and so
+   * has nothing to be compared against.
+   */
+
+  private Optional<ReadTarget> readTargetRelease(
+    final Optional<Path> targetFile)
+  {
+    OBControllerThread.checkIsControllerThread();
+
+    if (targetFile.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final var file = targetFile.get();
+    final var target = this.readTargets.get(file);
+    if (target == null) {
+      return Optional.empty();
+    }
+
+    --target.pending;
+    if (target.pending == 0) {
+      this.readTargets.remove(file);
+    }
+    return Optional.of(target);
+  }
+
+  private static boolean readTargetLatest(
+    final Optional<ReadTarget> readTarget,
+    final long version)
+  {
+    if (readTarget.isEmpty()) {
+      return true;
+    }
+
+    final var target = readTarget.get();
+    if (target.completed > version) {
+      LOG.debug(
+        "{}: ignoring completion of version {} (already completed {})",
+        target.file,
+        Long.valueOf(version),
+        Long.valueOf(target.completed));
+      return false;
+    }
+
+    target.completed = version;
+    return true;
+  }
+
   OBCompositionType composition()
   {
     switch (this.composition.status()) {
@@ -600,4 +1575,32 @@ public final class OBController implements OBControllerType
 
     throw new IllegalStateException("Unreachable code");
   }
+
+  private static final class ReadTarget
+  {
+    private final Path file;
+    private int pending;
+    private long completed;
+
+    ReadTarget(
+      final Path inFile)
+    {
+      this.file = Objects.requireNonNull(inFile, "file");
+      this.completed = Long.MIN_VALUE;
+    }
+  }
+
+  private static final class VersionedSnapshot
+  {
+    private final long version;
+    private final OBCompositionReadableType snapshot;
+
+    VersionedSnapshot(
+      final long inVersion,
+      final OBCompositionReadableType inSnapshot)
+    {
+      this.version = inVersion;
+      this.snapshot = Objects.requireNonNull(inSnapshot, "snapshot");
+    }
+  }
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializerOptions;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
+import com.io7m.olivebench.preferences.OBPreferencesControllerType;
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+import com.io7m.olivebench.services.api.OBServiceType;
+import io.reactivex.rxjava3.disposables.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.io7m.olivebench.controller.OBControllerEventCompositionStatusChangedType.Status.STATUS_UNSAVED;
+
+/*
+ * A service that periodically writes unsaved compositions to recovery
+ * files. The work is done on a single minimum-priority thread from
+ * composition snapshots, so the only time taken from the controller thread
+ * is that needed to take a snapshot. Autosaves happen at most once per
+ * configured interval, only when the composition has changed since the last
+ * autosave, and only once edits have paused for a short quiet period (unless
+ * edits have been continuous for a whole further interval).
+ *
+ * Recovery files are left behind only when the application exits without
+ * saving or closing the composition. They are offered for recovery on the
+ * next start: a recovered composition is opened as an unsaved composition,
+ * and its recovery file then belongs to this session, and is replaced by
+ * later autosaves and deleted once the composition is saved or closed.
+ *
+ * Each autosave writes a complete document. The edits made to a
+ * composition that has a file are recorded incrementally by the journal;
+ * the autosave exists for compositions that have never been saved, and
+ * the serializer only encodes the channels that have changed since the
+ * last autosave.
+ */
+
+public final class OBControllerAutosave implements OBServiceType, Closeable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBControllerAutosave.class);
+
+  private static final long TICK_MILLISECONDS = 1_000L;
+  private static final long QUIET_NANOSECONDS =
+    TimeUnit.SECONDS.toNanos(2L);
+
+  private final OBControllerType controller;
+  private final OBCompositionSerializersType serializers;
+  private final OBPreferencesControllerType preferences;
+  private final Path directory;
+  private final ScheduledExecutorService executor;
+  private final AtomicBoolean dirty;
+  private final Disposable subscription;
+  private volatile long lastEditTime;
+  private long lastWriteTime;
+  private Path lastWriteFile;
+
+  private OBControllerAutosave(
+    final OBControllerType inController,
+    final OBCompositionSerializersType inSerializers,
+    final OBPreferencesControllerType inPreferences,
+    final Path inDirectory,
+    final ScheduledExecutorService inExecutor)
+  {
+    this.controller =
+      Objects.requireNonNull(inController, "inController");
+    this.serializers =
+      Objects.requireNonNull(inSerializers, "inSerializers");
+    this.preferences =
+      Objects.requireNonNull(inPreferences, "inPreferences");
+    this.directory =
+      Objects.requireNonNull(inDirectory, "inDirectory");
+    this.executor =
+      Objects.requireNonNull(inExecutor, "inExecutor");
+
+    this.dirty = new AtomicBoolean(false);
+    this.lastWriteTime = System.nanoTime();
+    this.subscription =
+      this.controller.events().subscribe(this::onControllerEvent);
+  }
+
+  public static OBControllerAutosave create(
+    final OBServiceDirectoryType services,
+    final Path directory)
+  {
+    final var executor =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setName(
+          String.format(
+            "com.io7m.olivebench.OBControllerAutosave[%d]",
+            Long.valueOf(thread.getId())
+          )
+        );
+        return thread;
+      });
+
+    final var autosave =
+      new OBControllerAutosave(
+        services.requireService(OBControllerType.class),
+        services.requireService(OBCompositionSerializersType.class),
+        services.requireService(OBPreferencesControllerType.class),
+        directory,
+        executor
+      );
+
+    executor.scheduleWithFixedDelay(
+      autosave::tick,
+      TICK_MILLISECONDS,
+      TICK_MILLISECONDS,
+      TimeUnit.MILLISECONDS
+    );
+    return autosave;
+  }
+
+  public List<Path> recoveryFiles()
+    throws IOException
+  {
+    if (!Files.isDirectory(this.directory)) {
+      return List.of();
+    }
+
+    final var files = new ArrayList<Path>();
+    try (var stream = Files.list(this.directory)) {
+      stream.filter(Files::isRegularFile)
+        .filter(file -> file.getFileName().toString().endsWith(".xml"))
+        .forEach(files::add);
+    }
+
+    final var times = new HashMap<Path, FileTime>(files.size());
+    for (final var file : files) {
+      times.put(file, Files.getLastModifiedTime(file));
+    }
+    files.sort(Comparator.comparing(times::get).reversed());
+    return files;
+  }
+
+  public CompletableFuture<?> recover(
+    final Path file)
+  {
+    final var recoveryFile = this.checkRecoveryFile(file);
+    return this.controller.recoverComposition(recoveryFile)
+      .thenRunAsync(() -> this.lastWriteFile = recoveryFile, this.executor);
+  }
+
+  public void discardRecovery(
+    final Path file)
+    throws IOException
+  {
+    final var recoveryFile = this.checkRecoveryFile(file);
+    Files.deleteIfExists(recoveryFile);
+    LOG.debug("discarded recovery file {}", recoveryFile);
+  }
+
+  private Path checkRecoveryFile(
+    final Path file)
+  {
+    Objects.requireNonNull(file, "file");
+
+    final var absolute = file.toAbsolutePath().normalize();
+    final var parent = absolute.getParent();
+    if (parent == null
+      || !parent.equals(this.directory.toAbsolutePath().normalize())) {
+      throw new IllegalArgumentException(
+        String.format("Not a recovery file: %s", file));
+    }
+    return this.directory.resolve(absolute.getFileName());
+  }
+
+  private void onControllerEvent(
+    final OBControllerEventType event)
+  {
+    if (event instanceof OBControllerEventCompositionChanged) {
+      this.lastEditTime = System.nanoTime();
+      this.dirty.set(true);
+      return;
+    }
+
+    if (event instanceof OBControllerEventCompositionStatusChanged) {
+      final var status = (OBControllerEventCompositionStatusChanged) event;
+      if (status.statusNow() != STATUS_UNSAVED) {
+        this.dirty.set(false);
+        this.executor.execute(this::discard);
+      }
+    }
+  }
+
+  private void tick()
+  {
+    try {
+      final var interval =
+        this.preferences.preferences().autosave().intervalSeconds();
+      if (interval == 0 || !this.dirty.get()) {
+        return;
+      }
+      if (!this.controller.unsavedChanges()) {
+        return;
+      }
+
+      final var intervalNanos = TimeUnit.SECONDS.toNanos(interval);
+      final var now = System.nanoTime();
+      if (now - this.lastWriteTime < intervalNanos) {
+        return;
+      }
+
+      final var quiet = now - this.lastEditTime >= QUIET_NANOSECONDS;
+      final var overdue = now - this.lastWriteTime >= 2L * intervalNanos;
+      if (!quiet && !overdue) {
+        return;
+      }
+
+      this.write();
+    } catch (final Exception e) {
+      LOG.error("autosave failed: ", e);
+    }
+  }
+
+  private void write()
+    throws Exception
+  {
+    /*
+     * The dirty flag is cleared before the snapshot is taken so that any
+     * edit made after the snapshot causes a further autosave.
+     */
+
+    this.dirty.set(false);
+
+    final var snapshotOpt =
+      this.controller.compositionSnapshotAsync().get();
+    if (snapshotOpt.isEmpty()) {
+      return;
+    }
+
+    /*
+     * An autosave is a single document, and cannot hold channels whose
+     * contents have not been loaded. Compositions with deferred channels
+     * are partitioned compositions that were opened lazily, and their edits
+     * are still protected by the journal.
+     */
+
+    final var snapshot = snapshotOpt.get();
+    if (!snapshot.graph().channelsDeferred().isEmpty()) {
+      LOG.debug("composition has deferred channels; not autosaving");
+      return;
+    }
+
+    final var file =
+      this.directory.resolve(snapshot.graph().root().id() + ".xml");
+    final var fileTmp =
+      this.directory.resolve(snapshot.graph().root().id() + ".xml.tmp");
+
+    try {
+      Files.createDirectories(this.directory);
+      this.serializers.serializeAtomically(
+        file,
+        fileTmp,
+        snapshot,
+        OBCompositionSerializerOptions.builder().build()
+      );
+    } catch (final Exception e) {
+      this.dirty.set(true);
+      throw e;
+    } finally {
+      this.lastWriteTime = System.nanoTime();
+    }
+
+    if (this.lastWriteFile != null && !this.lastWriteFile.equals(file)) {
+      this.discard();
+    }
+    this.lastWriteFile = file;
+    LOG.info("autosaved {}", file);
+  }
+
+  private void discard()
+  {
+    final var file = this.lastWriteFile;
+    if (file != null) {
+      try {
+        Files.deleteIfExists(file);
+        LOG.debug("discarded autosave {}", file);
+      } catch (final IOException e) {
+        LOG.error("unable to delete autosave {}: ", file, e);
+      }
+      this.lastWriteFile = null;
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    this.subscription.dispose();
+    this.executor.shutdown();
+  }
+}
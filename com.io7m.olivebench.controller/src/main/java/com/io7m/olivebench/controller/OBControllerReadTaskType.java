@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import com.io7m.olivebench.model.OBCompositionReadableType;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface OBControllerReadTaskType
+{
+  String name();
+
+  boolean isLongRunning();
+
+  default Optional<Path> target(
+    final OBCompositionReadableType composition)
+  {
+    return Optional.empty();
+  }
+
+  void taskRun(OBCompositionReadableType composition)
+    throws OBTaskFailureException;
+
+  void taskCompleted(boolean compositionUnchanged)
+    throws OBTaskFailureException;
+
+  default void taskCancel()
+  {
+
+  }
+}
@@ -16,6 +16,9 @@
 
 package com.io7m.olivebench.controller;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 public interface OBControllerTaskType
 {
   String name();
@@ -24,12 +27,35 @@ public interface OBControllerTaskType
 
   boolean isLongRunning();
 
+  default long retainedSizeEstimate()
+  {
+    return 0L;
+  }
+
   void taskDo()
     throws OBTaskFailureException;
 
   void taskUndo()
     throws OBTaskFailureException;
 
+  /*
+   * Write the journal records that undo this task, so that the task can
+   * be spilled out of the undo stack in memory. A task that cannot be
+   * written as records returns false, and is evicted instead.
+   */
+
+  default boolean taskUndoSpill(
+    final DataOutputStream output)
+    throws IOException
+  {
+    return false;
+  }
+
+  default void taskCancel()
+  {
+
+  }
+
   enum UndoStyle
   {
     CAN_UNDO,
@@ -26,9 +26,11 @@ import io.reactivex.rxjava3.core.Observable;
 
 import java.io.Closeable;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public interface OBControllerType extends Closeable, OBServiceType
@@ -39,12 +41,20 @@ public interface OBControllerType extends Closeable, OBServiceType
 
   CompletableFuture<?> createChannel(OBName name);
 
+  CompletableFuture<?> batch(Consumer<OBControllerBatchType> operations);
+
   CompletableFuture<?> openComposition(Path file);
 
+  CompletableFuture<?> recoverComposition(Path file);
+
   CompletableFuture<?> saveComposition();
 
   CompletableFuture<?> saveAsComposition(Path file);
 
+  CompletableFuture<?> loadChannel(UUID channelId);
+
+  CompletableFuture<List<Path>> recentFiles();
+
   Optional<Path> currentFilename();
 
   boolean unsavedChanges();
@@ -57,6 +67,9 @@ public interface OBControllerType extends Closeable, OBServiceType
 
   Optional<OBCompositionReadableType> compositionSnapshot();
 
+  CompletableFuture<Optional<OBCompositionReadableType>>
+  compositionSnapshotAsync();
+
   CompletableFuture<?> updateChannelMetadata(
     UUID channelId,
     Function<OBChannelMetadata, OBChannelMetadata> updater
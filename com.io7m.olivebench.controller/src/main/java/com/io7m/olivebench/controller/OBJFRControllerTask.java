@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.io7m.olivebench.ControllerTask")
+@Label("Controller Task")
+@Category({"Olivebench", "Controller"})
+@Description("A controller task ran on one of the controller lanes")
+@StackTrace(false)
+final class OBJFRControllerTask extends Event
+{
+  @Label("Lane")
+  @Description("The lane on which the task ran (task, read, or i/o)")
+  String lane;
+
+  @Label("Task")
+  String taskName;
+
+  @Label("Task Class")
+  Class<?> taskClass;
+
+  @Label("Queue Wait")
+  @Description("The time the task spent queued before it started running")
+  @Timespan(Timespan.NANOSECONDS)
+  long queueWait;
+
+  @Label("Succeeded")
+  boolean succeeded;
+
+  OBJFRControllerTask()
+  {
+
+  }
+
+  static OBJFRControllerTask start(
+    final String lane,
+    final String taskName,
+    final Class<?> taskClass,
+    final long queuedAtNanos)
+  {
+    final var event = new OBJFRControllerTask();
+    if (event.isEnabled()) {
+      event.lane = lane;
+      event.taskName = taskName;
+      event.taskClass = taskClass;
+      event.queueWait = System.nanoTime() - queuedAtNanos;
+      event.begin();
+    }
+    return event;
+  }
+
+  void finish(
+    final boolean taskSucceeded)
+  {
+    if (this.shouldCommit()) {
+      this.succeeded = taskSucceeded;
+      this.commit();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import com.io7m.olivebench.model.graph.OBChannelMetadata;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.names.OBName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+
+public final class OBTaskBatch
+  implements OBControllerTaskType, OBControllerBatchType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBTaskBatch.class);
+
+  private final OBController controller;
+  private final List<OBControllerTaskType> tasks;
+
+  public OBTaskBatch(
+    final OBController inController)
+  {
+    this.controller =
+      Objects.requireNonNull(inController, "inController");
+    this.tasks =
+      new ArrayList<>();
+  }
+
+  public boolean isEmpty()
+  {
+    return this.tasks.isEmpty();
+  }
+
+  @Override
+  public OBControllerBatchType createChannel(
+    final OBName name)
+  {
+    this.tasks.add(new OBTaskCreateChannel(this.controller, name));
+    return this;
+  }
+
+  @Override
+  public OBControllerBatchType updateChannelMetadata(
+    final UUID channelId,
+    final Function<OBChannelMetadata, OBChannelMetadata> updater)
+  {
+    this.tasks.add(
+      new OBTaskUpdateChannelMetadata(this.controller, channelId, updater));
+    return this;
+  }
+
+  @Override
+  public OBControllerBatchType updateMetadata(
+    final Function<OBCompositionMetadata, OBCompositionMetadata> updater)
+  {
+    this.tasks.add(new OBTaskUpdateMetadata(this.controller, updater));
+    return this;
+  }
+
+  @Override
+  public String name()
+  {
+    return this.controller.strings().controllerBatch(this.tasks.size());
+  }
+
+  @Override
+  public UndoStyle undoStyle()
+  {
+    var style = UndoStyle.CAN_UNDO;
+    for (final var task : this.tasks) {
+      switch (task.undoStyle()) {
+        case CAN_UNDO: {
+          break;
+        }
+        case CANNOT_UNDO: {
+          style = UndoStyle.CANNOT_UNDO;
+          break;
+        }
+        case CLEARS_UNDO_STACK: {
+          return UndoStyle.CLEARS_UNDO_STACK;
+        }
+      }
+    }
+    return style;
+  }
+
+  @Override
+  public boolean isLongRunning()
+  {
+    return this.tasks.stream().anyMatch(OBControllerTaskType::isLongRunning);
+  }
+
+  @Override
+  public long retainedSizeEstimate()
+  {
+    return this.tasks.stream()
+      .mapToLong(OBControllerTaskType::retainedSizeEstimate)
+      .sum();
+  }
+
+  @Override
+  public void taskDo()
+    throws OBTaskFailureException
+  {
+    for (int index = 0; index < this.tasks.size(); ++index) {
+      final var task = this.tasks.get(index);
+      try {
+        task.taskDo();
+      } catch (final OBTaskFailureException | RuntimeException e) {
+        this.rollback(index, e);
+        throw e;
+      }
+    }
+  }
+
+  private void rollback(
+    final int failedIndex,
+    final Exception cause)
+  {
+    /*
+     * Undo the tasks that completed before the failing task, so that a
+     * batch is applied either completely or not at all.
+     */
+
+    for (int index = failedIndex - 1; index >= 0; --index) {
+      final var task = this.tasks.get(index);
+      try {
+        task.taskUndo();
+      } catch (final OBTaskFailureException | RuntimeException e) {
+        LOG.error("rollback: {}: ", task.getClass().getCanonicalName(), e);
+        cause.addSuppressed(e);
+      }
+    }
+  }
+
+  @Override
+  public boolean taskUndoSpill(
+    final DataOutputStream output)
+    throws IOException
+  {
+    for (int index = this.tasks.size() - 1; index >= 0; --index) {
+      if (!this.tasks.get(index).taskUndoSpill(output)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void taskUndo()
+    throws OBTaskFailureException
+  {
+    for (int index = this.tasks.size() - 1; index >= 0; --index) {
+      this.tasks.get(index).taskUndo();
+    }
+  }
+}
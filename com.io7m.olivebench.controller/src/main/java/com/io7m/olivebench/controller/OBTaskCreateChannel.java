@@ -22,6 +22,8 @@ import com.io7m.olivebench.model.graph.OBChannelType;
 import com.io7m.olivebench.model.graph.OBNodeMetadata;
 import com.io7m.olivebench.model.names.OBName;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Objects;
 
 public final class OBTaskCreateChannel implements OBControllerTaskType
@@ -101,6 +103,28 @@ public final class OBTaskCreateChannel implements OBControllerTaskType
     return false;
   }
 
+  @Override
+  public long retainedSizeEstimate()
+  {
+    final var created = this.channelCreated;
+    if (created != null) {
+      return OBTaskSizes.channel(created);
+    }
+    return OBTaskSizes.name(this.name);
+  }
+
+  @Override
+  public boolean taskUndoSpill(
+    final DataOutputStream output)
+    throws IOException
+  {
+    final var created = this.channelCreated;
+    if (created != null) {
+      OBCompositionJournal.writeNodeDelete(output, created.id());
+    }
+    return true;
+  }
+
   @Override
   public void taskUndo()
     throws OBTaskFailureException
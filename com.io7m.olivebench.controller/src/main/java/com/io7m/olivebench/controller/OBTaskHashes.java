@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/*
+ * Content hashes of saved compositions. A file whose hash matches the hash
+ * recorded when it was last saved has not been modified by anything else,
+ * and so can be trusted to conform to the schema of its format.
+ */
+
+final class OBTaskHashes
+{
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private OBTaskHashes()
+  {
+
+  }
+
+  static MessageDigest createDigest()
+  {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String hex(
+    final MessageDigest digest)
+  {
+    final var bytes = digest.digest();
+    final var text = new StringBuilder(bytes.length * 2);
+    for (final var b : bytes) {
+      text.append(HEX[(b >>> 4) & 0xf]);
+      text.append(HEX[b & 0xf]);
+    }
+    return text.toString();
+  }
+
+  static String hashOf(
+    final Path file,
+    final OBTaskCancellation cancellation)
+    throws IOException
+  {
+    final var digest = createDigest();
+    final var buffer = new byte[64 * 1024];
+    try (var stream = Files.newInputStream(file)) {
+      while (true) {
+        cancellation.check();
+        final var count = stream.read(buffer);
+        if (count == -1) {
+          break;
+        }
+        digest.update(buffer, 0, count);
+      }
+    }
+    return hex(digest);
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import com.io7m.olivebench.composition_parser.api.OBChannelStoredContentsType;
+import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.graph.OBChannelContentsType;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBCompositionGraphReadableType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/*
+ * Load the contents of deferred channels. The contents are parsed on the
+ * I/O executor, and then grafted onto the composition on the controller
+ * thread. A channel is only grafted if it is still deferred with the same
+ * contents, so a load that races with another load, or with the
+ * composition being closed or replaced, does nothing.
+ */
+
+public final class OBTaskLoadChannels implements OBControllerIOTaskType
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBTaskLoadChannels.class);
+
+  private final OBController controller;
+  private final Optional<Set<UUID>> channels;
+  private final OBTaskCancellation cancellation;
+  private final Map<UUID, Loaded> loaded;
+
+  private OBTaskLoadChannels(
+    final OBController inController,
+    final Optional<Set<UUID>> inChannels)
+  {
+    this.controller =
+      Objects.requireNonNull(inController, "inController");
+    this.channels =
+      Objects.requireNonNull(inChannels, "inChannels");
+    this.cancellation =
+      new OBTaskCancellation();
+    this.loaded =
+      new HashMap<>();
+  }
+
+  public static OBControllerIOTaskType create(
+    final OBController controller,
+    final Set<UUID> channels)
+  {
+    return new OBTaskLoadChannels(
+      controller,
+      Optional.of(Set.copyOf(channels)));
+  }
+
+  public static OBControllerIOTaskType createAll(
+    final OBController controller)
+  {
+    return new OBTaskLoadChannels(controller, Optional.empty());
+  }
+
+  @Override
+  public String name()
+  {
+    return this.controller.strings().controllerLoadChannels();
+  }
+
+  @Override
+  public void taskLoad()
+    throws OBTaskFailureException
+  {
+    final var snapshotOpt = this.currentSnapshot();
+    if (snapshotOpt.isEmpty()) {
+      return;
+    }
+
+    final var deferred =
+      snapshotOpt.get().graph().channelsDeferred();
+    final var requested =
+      this.channels.orElse(deferred.keySet());
+
+    var index = 0;
+    for (final var channel : requested) {
+      if (this.cancellation.isCancelled()) {
+        throw new CancellationException();
+      }
+
+      final var contents = deferred.get(channel);
+      if (contents == null) {
+        continue;
+      }
+
+      this.controller.publishEvent(
+        OBControllerEventTaskProgressChanged.of(
+          this.name(),
+          this.name(),
+          OptionalDouble.of((double) index / (double) requested.size()),
+          OptionalDouble.empty()
+        ));
+
+      try {
+        final var graph = OBChannelStoredContentsType.of(contents).load();
+        this.loaded.put(channel, new Loaded(contents, graph));
+      } catch (final Exception e) {
+        LOG.error("unable to load channel {}: ", channel, e);
+        throw new OBTaskFailureException(
+          e,
+          OBControllerEventTaskFailed.builder()
+            .setTitle(this.controller.strings().controllerLoadChannelsFailed())
+            .setMessage(e.getMessage())
+            .setException(e)
+            .build()
+        );
+      }
+      ++index;
+    }
+  }
+
+  private Optional<OBCompositionReadableType> currentSnapshot()
+  {
+    try {
+      return this.controller.compositionSnapshotAsync().get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException();
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public void taskDo()
+    throws OBTaskFailureException
+  {
+    if (this.loaded.isEmpty()) {
+      return;
+    }
+
+    final var graph = this.controller.composition().graph();
+    final var deferred = graph.channelsDeferred();
+
+    try {
+      for (final var entry : this.loaded.entrySet()) {
+        final var id = entry.getKey();
+        final var result = entry.getValue();
+        if (deferred.get(id) != result.source) {
+          LOG.debug("channel {} is no longer deferred", id);
+          continue;
+        }
+
+        final var channel = (OBChannelType) graph.nodes().get(id);
+        graph.channelLoad(channel, result.graph);
+      }
+    } catch (final Exception e) {
+      throw new OBTaskFailureException(
+        e,
+        OBControllerEventTaskFailed.builder()
+          .setTitle(this.controller.strings().controllerLoadChannelsFailed())
+          .setMessage(e.getMessage())
+          .setException(e)
+          .build()
+      );
+    } finally {
+      this.controller.compositionDiscardSnapshot();
+    }
+  }
+
+  @Override
+  public UndoStyle undoStyle()
+  {
+    return UndoStyle.CANNOT_UNDO;
+  }
+
+  @Override
+  public boolean isLongRunning()
+  {
+    return true;
+  }
+
+  @Override
+  public void taskCancel()
+  {
+    this.cancellation.cancel();
+  }
+
+  @Override
+  public void taskUndo()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  private static final class Loaded
+  {
+    private final OBChannelContentsType source;
+    private final OBCompositionGraphReadableType graph;
+
+    Loaded(
+      final OBChannelContentsType inSource,
+      final OBCompositionGraphReadableType inGraph)
+    {
+      this.source = inSource;
+      this.graph = inGraph;
+    }
+  }
+}
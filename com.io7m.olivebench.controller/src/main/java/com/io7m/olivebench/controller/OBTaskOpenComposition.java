@@ -16,14 +16,20 @@
 
 package com.io7m.olivebench.controller;
 
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainer;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserLoading;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserOptions;
 import com.io7m.olivebench.composition_parser.api.OBCompositionParserType;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserValidation;
 import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
-import com.io7m.olivebench.preferences.OBPreferencesControllerType;
+import com.io7m.olivebench.composition_parser.api.OBCompositionPartitions;
+import com.io7m.olivebench.model.OBCompositionType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
@@ -33,24 +39,27 @@ import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalDouble;
+import java.util.concurrent.CancellationException;
 
-public final class OBTaskOpenComposition implements OBControllerTaskType
+public final class OBTaskOpenComposition implements OBControllerIOTaskType
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(OBTaskOpenComposition.class);
 
   private final OBCompositionParsersType parsers;
   private final OBController controller;
-  private final OBPreferencesControllerType preferences;
   private final OBServiceDirectoryType services;
   private final Path file;
+  private final boolean recovery;
+  private final OBTaskCancellation cancellation;
+  private volatile OBCompositionType loaded;
 
   private OBTaskOpenComposition(
     final OBServiceDirectoryType inServices,
     final OBController inController,
     final OBCompositionParsersType inParsers,
-    final OBPreferencesControllerType inPreferences,
-    final Path inFile)
+    final Path inFile,
+    final boolean inRecovery)
   {
     this.services =
       Objects.requireNonNull(inServices, "inServices");
@@ -58,13 +67,37 @@ public final class OBTaskOpenComposition implements OBControllerTaskType
       Objects.requireNonNull(inController, "inController");
     this.parsers =
       Objects.requireNonNull(inParsers, "inParsers");
-    this.preferences =
-      Objects.requireNonNull(inPreferences, "inPreferences");
     this.file =
       Objects.requireNonNull(inFile, "file");
+    this.recovery =
+      inRecovery;
+    this.cancellation =
+      new OBTaskCancellation();
+  }
+
+  public static OBControllerIOTaskType create(
+    final OBServiceDirectoryType inServices,
+    final OBController inController,
+    final Path inFile)
+  {
+    return new OBTaskOpenComposition(
+      inServices,
+      inController,
+      inServices.requireService(OBCompositionParsersType.class),
+      inFile,
+      false
+    );
   }
 
-  public static OBControllerTaskType create(
+  /*
+   * A recovery file holds a composition that had unsaved changes when it
+   * was autosaved. The composition is opened as an unsaved composition with
+   * no file name, so that saving it asks where it should be saved rather
+   * than overwriting the recovery file, and the recovery file is neither
+   * journalled nor added to the recent files.
+   */
+
+  public static OBControllerIOTaskType createRecovery(
     final OBServiceDirectoryType inServices,
     final OBController inController,
     final Path inFile)
@@ -73,19 +106,22 @@ public final class OBTaskOpenComposition implements OBControllerTaskType
       inServices,
       inController,
       inServices.requireService(OBCompositionParsersType.class),
-      inServices.requireService(OBPreferencesControllerType.class),
-      inFile
+      inFile,
+      true
     );
   }
 
   @Override
   public String name()
   {
+    if (this.recovery) {
+      return this.controller.strings().controllerRecoverComposition();
+    }
     return this.controller.strings().controllerOpenComposition();
   }
 
   @Override
-  public void taskDo()
+  public void taskLoad()
     throws OBTaskFailureException
   {
     final var strings = this.controller.strings();
@@ -98,26 +134,21 @@ public final class OBTaskOpenComposition implements OBControllerTaskType
         OptionalDouble.empty()
       ));
 
-    try (var stream = Files.newInputStream(this.file)) {
-      try (var parser =
-             this.parsers.createParser(
-               this.services,
-               this.file.toUri(),
-               stream)) {
-        final var compositionOpt = parser.execute();
-        if (!parser.errors().isEmpty()) {
-          throw this.publishParseErrors(parser);
-        }
-
-        final var composition = compositionOpt.get();
-        composition.fileName().set(Optional.of(this.file));
-        this.controller.setComposition(composition);
-
-        this.preferences.updateQuietly(prefs -> {
-          prefs.recentItems().addRecentFile(this.file);
-        });
+    try (var parser = this.createParser()) {
+      final var compositionOpt = parser.execute();
+      if (this.cancellation.isCancelled()) {
+        throw new CancellationException();
       }
+      if (!parser.errors().isEmpty()) {
+        throw this.publishParseErrors(parser);
+      }
+
+      this.loaded = compositionOpt.get();
     } catch (final IOException e) {
+      if (this.cancellation.isCancelled()) {
+        throw new CancellationException();
+      }
+
       LOG.error("i/o error: ", e);
       throw new OBTaskFailureException(
         e,
@@ -130,6 +161,140 @@ public final class OBTaskOpenComposition implements OBControllerTaskType
     }
   }
 
+  private OBCompositionParserType createParser()
+    throws IOException
+  {
+    final var options =
+      OBCompositionParserOptions.builder()
+        .setProgress(this::onProgress);
+
+    if (OBCompositionPartitions.isPartitioned(this.file)
+      || OBCompositionContainer.isContainer(this.file)) {
+      options.setLoading(this.loading());
+    } else {
+      final var size = (double) Math.max(1L, Files.size(this.file));
+      options.setValidation(this.validation());
+      options.setFilter(stream -> this.withProgress(stream, size));
+    }
+
+    return this.parsers.createParser(
+      this.services,
+      this.file,
+      options.build()
+    );
+  }
+
+  /*
+   * Partitioned compositions and containers are opened lazily, and the
+   * contents of each channel are loaded when the channel is first used. A
+   * journal replays edits against nodes that would otherwise not have been
+   * loaded, and so a composition with a non-empty journal is opened
+   * eagerly.
+   */
+
+  private OBCompositionParserLoading loading()
+    throws IOException
+  {
+    if (OBCompositionJournal.hasRecords(this.file)) {
+      LOG.debug("{}: journal has records, loading eagerly", this.file);
+      return OBCompositionParserLoading.EAGER;
+    }
+    return OBCompositionParserLoading.LAZY;
+  }
+
+  /*
+   * Schema validation can be skipped for files that are byte-for-byte
+   * identical to the file that was last saved to the same path. Hashing
+   * the file is a cheap sequential read compared to validation, and it
+   * leaves the file in the page cache for the parse that follows.
+   */
+
+  private OBCompositionParserValidation validation()
+    throws IOException
+  {
+    final var trusted = this.controller.preferences().trustedFiles();
+    if (!trusted.isEnabled()) {
+      return OBCompositionParserValidation.VALIDATE;
+    }
+
+    final var expected = trusted.savedHashOf(this.file.toAbsolutePath());
+    if (expected.isEmpty()) {
+      return OBCompositionParserValidation.VALIDATE;
+    }
+
+    final var received = OBTaskHashes.hashOf(this.file, this.cancellation);
+    if (!Objects.equals(expected.get(), received)) {
+      LOG.debug("{}: modified since last saved, validating", this.file);
+      return OBCompositionParserValidation.VALIDATE;
+    }
+
+    LOG.debug("{}: unmodified since last saved, trusting", this.file);
+    return OBCompositionParserValidation.TRUSTED;
+  }
+
+  @Override
+  public void taskDo()
+  {
+    final var composition = this.loaded;
+    if (this.recovery) {
+      this.controller.setComposition(composition);
+      this.controller.setUnsaved();
+      return;
+    }
+
+    composition.fileName().set(Optional.of(this.file));
+    this.controller.setComposition(composition);
+    this.controller.journalAttach(this.file);
+
+    this.controller.preferencesUpdate(prefs -> {
+      prefs.recentItems().addRecentFile(this.file);
+    });
+  }
+
+  private InputStream withProgress(
+    final InputStream stream,
+    final double size)
+  {
+    final var message =
+      this.controller.strings().controllerOpenCompositionParsing(this.file);
+
+    return new OBTaskProgressInputStream(
+      stream,
+      this.cancellation,
+      count -> {
+        this.controller.publishEvent(
+          OBControllerEventTaskProgressChanged.of(
+            this.name(),
+            message,
+            OptionalDouble.of(Math.min(1.0, (double) count / size)),
+            OptionalDouble.empty()
+          ));
+      }
+    );
+  }
+
+  /*
+   * Inputs that are not read as a stream, such as partitioned compositions,
+   * containers, and mapped binary files, report progress in their own units
+   * of work: parts, chunks, or nodes. They are cancelled between units.
+   */
+
+  private void onProgress(
+    final long completed,
+    final long total)
+    throws IOException
+  {
+    this.cancellation.check();
+
+    this.controller.publishEvent(
+      OBControllerEventTaskProgressChanged.of(
+        this.name(),
+        this.controller.strings().controllerOpenCompositionParsing(this.file),
+        OptionalDouble.of((double) completed / (double) Math.max(1L, total)),
+        OptionalDouble.empty()
+      ));
+  }
+
   private OBTaskFailureException publishParseErrors(
     final OBCompositionParserType parser)
   {
@@ -188,6 +353,12 @@ public final class OBTaskOpenComposition implements OBControllerTaskType
     return true;
   }
 
+  @Override
+  public void taskCancel()
+  {
+    this.cancellation.cancel();
+  }
+
   @Override
   public void taskUndo()
   {
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/*
+ * An input stream that counts the bytes read through it, periodically
+ * reports the count, and fails with an InterruptedIOException as soon as
+ * the owning task is cancelled.
+ */
+
+final class OBTaskProgressInputStream extends FilterInputStream
+{
+  private static final long REPORT_INTERVAL = 64L * 1024L;
+
+  private final OBTaskCancellation cancellation;
+  private final LongConsumer onProgress;
+  private long count;
+  private long countReported;
+
+  OBTaskProgressInputStream(
+    final InputStream inStream,
+    final OBTaskCancellation inCancellation,
+    final LongConsumer inOnProgress)
+  {
+    super(Objects.requireNonNull(inStream, "inStream"));
+    this.cancellation =
+      Objects.requireNonNull(inCancellation, "inCancellation");
+    this.onProgress =
+      Objects.requireNonNull(inOnProgress, "inOnProgress");
+  }
+
+  private void advance(
+    final long bytes)
+  {
+    if (bytes > 0L) {
+      this.count += bytes;
+      if (this.count - this.countReported >= REPORT_INTERVAL) {
+        this.countReported = this.count;
+        this.onProgress.accept(this.count);
+      }
+    }
+  }
+
+  @Override
+  public int read()
+    throws IOException
+  {
+    this.cancellation.check();
+    final var result = super.read();
+    if (result != -1) {
+      this.advance(1L);
+    }
+    return result;
+  }
+
+  @Override
+  public int read(
+    final byte[] buffer,
+    final int offset,
+    final int length)
+    throws IOException
+  {
+    this.cancellation.check();
+    final var result = super.read(buffer, offset, length);
+    this.advance(result);
+    return result;
+  }
+
+  @Override
+  public long skip(
+    final long bytes)
+    throws IOException
+  {
+    this.cancellation.check();
+    final var result = super.skip(bytes);
+    this.advance(result);
+    return result;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/*
+ * An output stream that counts the bytes written through it, periodically
+ * reports the count, and fails with an InterruptedIOException as soon as
+ * the owning task is cancelled.
+ */
+
+final class OBTaskProgressOutputStream extends FilterOutputStream
+{
+  private static final long REPORT_INTERVAL = 64L * 1024L;
+
+  private final OBTaskCancellation cancellation;
+  private final LongConsumer onProgress;
+  private long count;
+  private long countReported;
+
+  OBTaskProgressOutputStream(
+    final OutputStream inStream,
+    final OBTaskCancellation inCancellation,
+    final LongConsumer inOnProgress)
+  {
+    super(Objects.requireNonNull(inStream, "inStream"));
+    this.cancellation =
+      Objects.requireNonNull(inCancellation, "inCancellation");
+    this.onProgress =
+      Objects.requireNonNull(inOnProgress, "inOnProgress");
+  }
+
+  private void advance(
+    final long bytes)
+  {
+    this.count += bytes;
+    if (this.count - this.countReported >= REPORT_INTERVAL) {
+      this.countReported = this.count;
+      this.onProgress.accept(this.count);
+    }
+  }
+
+  @Override
+  public void write(
+    final int b)
+    throws IOException
+  {
+    this.cancellation.check();
+    this.out.write(b);
+    this.advance(1L);
+  }
+
+  @Override
+  public void write(
+    final byte[] buffer,
+    final int offset,
+    final int length)
+    throws IOException
+  {
+    this.cancellation.check();
+    this.out.write(buffer, offset, length);
+    this.advance(length);
+  }
+}
@@ -16,50 +16,68 @@
 
 package com.io7m.olivebench.controller;
 
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainer;
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainerChunk;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
+import com.io7m.olivebench.composition_parser.api.OBCompositionPartitions;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionFileStamp;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializerOptions;
 import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
-import com.io7m.olivebench.preferences.OBPreferencesControllerType;
+import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.graph.OBChannelType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import com.io7m.olivebench.strings.OBStringsType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
 import java.util.OptionalDouble;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
-public final class OBTaskSaveAsComposition implements OBControllerTaskType
+public final class OBTaskSaveAsComposition implements OBControllerReadTaskType
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(OBTaskSaveAsComposition.class);
 
+  private final OBServiceDirectoryType services;
   private final OBController controller;
   private final OBCompositionSerializersType serializers;
   private final Path file;
-  private final OBPreferencesControllerType preferences;
   private final OBStringsType strings;
+  private final OBTaskCancellation cancellation;
+  private volatile OBCompositionFileStamp stamp;
+  private volatile Map<UUID, Long> revisions;
+  private volatile Map<UUID, OBCompositionContainerChunk> chunks;
 
   public OBTaskSaveAsComposition(
+    final OBServiceDirectoryType inServices,
     final OBController inController,
     final OBCompositionSerializersType inSerializers,
-    final OBPreferencesControllerType inPreferences,
     final OBStringsType inStrings,
     final Path inFile)
   {
+    this.services = inServices;
     this.controller = inController;
     this.serializers = inSerializers;
-    this.preferences = inPreferences;
     this.strings = inStrings;
-    this.file = inFile;
+    this.file = inFile.toAbsolutePath();
+    this.cancellation = new OBTaskCancellation();
   }
 
-  public static OBControllerTaskType create(
+  public static OBControllerReadTaskType create(
     final OBServiceDirectoryType services,
     final OBController controller,
     final Path file)
   {
     return new OBTaskSaveAsComposition(
+      services,
       controller,
       services.requireService(OBCompositionSerializersType.class),
-      services.requireService(OBPreferencesControllerType.class),
       services.requireService(OBStringsType.class),
       file
     );
@@ -72,7 +90,8 @@ public final class OBTaskSaveAsComposition implements OBControllerTaskType
   }
 
   @Override
-  public void taskDo()
+  public void taskRun(
+    final OBCompositionReadableType composition)
     throws OBTaskFailureException
   {
     this.controller.publishEvent(
@@ -83,51 +102,210 @@ public final class OBTaskSaveAsComposition implements OBControllerTaskType
         OptionalDouble.empty()
       ));
 
-    final var compositionFile =
-      this.file.toAbsolutePath();
-    final var compositionFileTmp =
-      this.file.resolveSibling(compositionFile.getFileName() + ".tmp");
-
-    LOG.debug("write {} (temporary {})", compositionFile, compositionFileTmp);
-
+    Path compositionFileTmp = null;
     try {
-      this.serializers.serializeAtomically(
-        compositionFile,
-        compositionFileTmp,
-        this.controller.composition());
-      this.controller.setSaved();
+      compositionFileTmp = this.temporaryFile();
+      LOG.debug("write {} (temporary {})", this.file, compositionFileTmp);
 
-      this.preferences.updateQuietly(prefs -> {
-        prefs.recentItems().addRecentFile(this.file);
-      });
+      if (OBCompositionPartitions.isPartitioned(this.file)) {
+        this.serializers.serializePartitionedAtomically(
+          this.file,
+          compositionFileTmp,
+          composition,
+          stream -> new OBTaskProgressOutputStream(
+            stream,
+            this.cancellation,
+            this::publishWritten)
+        );
+        this.stamp = null;
+      } else if (OBCompositionContainer.isContainer(this.file)
+        || OBCompositionContainer.isContainerName(this.file)) {
+        this.revisions = composition.graph().channelRevisions();
+        this.chunks = this.serializers.serializeContainer(
+          this.file,
+          compositionFileTmp,
+          composition,
+          stream -> new OBTaskProgressOutputStream(
+            stream,
+            this.cancellation,
+            this::publishWritten)
+        );
+        this.stamp = null;
+      } else {
+        this.stamp = this.serializers.serializeAtomically(
+          this.file,
+          compositionFileTmp,
+          composition,
+          OBCompositionSerializerOptions.builder()
+            .setFilter(stream -> new OBTaskProgressOutputStream(
+              stream,
+              this.cancellation,
+              this::publishWritten))
+            .setPrevious(this.controller.compositionStampOf(this.file))
+            .build()
+        );
+      }
     } catch (final Exception e) {
+      if (this.cancellation.isCancelled()) {
+        throw new CancellationException();
+      }
+
       LOG.error("i/o error: ", e);
       throw new OBTaskFailureException(
         e,
         OBControllerEventTaskFailed.builder()
-          .setTitle(this.strings.controllerOpenCompositionFailed())
+          .setTitle(this.strings.controllerSaveCompositionFailed())
           .setMessage(e.getMessage())
           .setException(e)
           .build()
       );
+    } finally {
+      deleteTemporaryFile(compositionFileTmp);
+    }
+  }
+
+  /*
+   * The serializers remove the temporary file once they are finished with
+   * it, except where a container is updated in place and the temporary
+   * file is never used.
+   */
+
+  private static void deleteTemporaryFile(
+    final Path file)
+  {
+    if (file == null || !Files.isRegularFile(file)) {
+      return;
+    }
+
+    try {
+      Files.deleteIfExists(file);
+    } catch (final IOException e) {
+      LOG.error("unable to delete {}: ", file, e);
     }
   }
 
+  /*
+   * Each save writes to its own temporary file beside the target, so that
+   * a save never truncates or deletes a temporary file that another save,
+   * or another instance of the application, is still writing.
+   */
+
+  private Path temporaryFile()
+    throws IOException
+  {
+    final var directory = this.file.getParent();
+    final var prefix = this.file.getFileName() + ".";
+    if (OBCompositionPartitions.isPartitioned(this.file)) {
+      return Files.createTempDirectory(directory, prefix);
+    }
+    return Files.createTempFile(directory, prefix, ".tmp");
+  }
+
   @Override
-  public UndoStyle undoStyle()
+  public Optional<Path> target(
+    final OBCompositionReadableType composition)
   {
-    return UndoStyle.CANNOT_UNDO;
+    return Optional.of(this.file);
+  }
+
+  private void publishWritten(
+    final long count)
+  {
+    this.controller.publishEvent(
+      OBControllerEventTaskProgressChanged.of(
+        this.name(),
+        this.strings.controllerSaveCompositionWritten(this.file, count),
+        OptionalDouble.empty(),
+        OptionalDouble.empty()
+      ));
   }
 
   @Override
-  public boolean isLongRunning()
+  public void taskCancel()
   {
-    return true;
+    this.cancellation.cancel();
+  }
+
+  @Override
+  public void taskCompleted(
+    final boolean compositionUnchanged)
+  {
+    this.controller.composition()
+      .fileName()
+      .set(Optional.of(this.file));
+    this.controller.compositionDiscardSnapshot();
+
+    /*
+     * If the composition was edited while it was being written, the file
+     * does not contain the latest edits and so the composition remains
+     * unsaved. The journal records the state of each object after an edit,
+     * so if it already belongs to this file it can be kept as it is and
+     * will still replay correctly on top of the file just written.
+     */
+
+    if (compositionUnchanged) {
+      this.controller.setSaved();
+      this.controller.journalRestart(this.file);
+    } else {
+      LOG.debug("composition changed during save; remaining unsaved");
+      this.controller.journalRetarget(this.file);
+    }
+
+    this.recordChunks();
+
+    /*
+     * Partitioned compositions are directories and have no single content
+     * hash, and containers change in place, and so neither is ever opened
+     * as trusted.
+     */
+
+    final var savedStamp = this.stamp;
+    this.controller.setCompositionStamp(savedStamp);
+    this.controller.preferencesUpdate(prefs -> {
+      prefs.recentItems().addRecentFile(this.file);
+      if (savedStamp != null) {
+        prefs.trustedFiles().setSavedHash(this.file, savedStamp.hash());
+      } else {
+        prefs.trustedFiles().clearSavedHash(this.file);
+      }
+    });
+  }
+
+  /*
+   * Each channel written to a container records the chunk that now holds
+   * its contents, so that the next save can keep that chunk. A channel
+   * that was edited while the container was being written has moved on
+   * from the revision that was written, and keeps no chunk.
+   */
+
+  private void recordChunks()
+  {
+    final var savedChunks = this.chunks;
+    if (savedChunks == null) {
+      return;
+    }
+
+    final var parsers =
+      this.services.requireService(OBCompositionParsersType.class);
+    final var graph = this.controller.composition().graph();
+    for (final var entry : savedChunks.entrySet()) {
+      final var id = entry.getKey();
+      final var node = graph.nodes().get(id);
+      final var revision = this.revisions.get(id);
+      if (node instanceof OBChannelType && revision != null) {
+        graph.channelSetOrigin(
+          (OBChannelType) node,
+          revision.longValue(),
+          parsers.createContainerContents(this.services, entry.getValue())
+        );
+      }
+    }
+    this.controller.compositionDiscardSnapshot();
   }
 
   @Override
-  public void taskUndo()
+  public boolean isLongRunning()
   {
-    throw new UnsupportedOperationException();
+    return true;
   }
 }
@@ -16,80 +16,101 @@
 
 package com.io7m.olivebench.controller;
 
-import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
-import com.io7m.olivebench.preferences.OBPreferencesControllerType;
+import com.io7m.olivebench.model.OBCompositionReadableType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import com.io7m.olivebench.strings.OBStringsType;
 
 import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
 
-public final class OBTaskSaveComposition implements OBControllerTaskType
+public final class OBTaskSaveComposition implements OBControllerReadTaskType
 {
   private final OBController controller;
-  private final OBCompositionSerializersType serializers;
-  private final OBPreferencesControllerType preferences;
   private final OBServiceDirectoryType services;
   private final OBStringsType strings;
+  private final OBTaskCancellation cancellation;
+  private volatile OBControllerReadTaskType saveAs;
 
   private OBTaskSaveComposition(
     final OBServiceDirectoryType inServices,
     final OBController inController,
-    final OBStringsType inStrings,
-    final OBCompositionSerializersType inSerializers,
-    final OBPreferencesControllerType inPreferences)
+    final OBStringsType inStrings)
   {
-    this.services = inServices;
-    this.strings = inStrings;
-    this.controller = inController;
-    this.serializers = inSerializers;
-    this.preferences = inPreferences;
+    this.services =
+      Objects.requireNonNull(inServices, "inServices");
+    this.controller =
+      Objects.requireNonNull(inController, "inController");
+    this.strings =
+      Objects.requireNonNull(inStrings, "inStrings");
+    this.cancellation =
+      new OBTaskCancellation();
   }
 
-  public static OBControllerTaskType create(
+  public static OBControllerReadTaskType create(
     final OBServiceDirectoryType services,
     final OBController inController)
   {
     return new OBTaskSaveComposition(
       services,
       inController,
-      services.requireService(OBStringsType.class),
-      services.requireService(OBCompositionSerializersType.class),
-      services.requireService(OBPreferencesControllerType.class)
+      services.requireService(OBStringsType.class)
     );
   }
 
   @Override
   public String name()
   {
-    return this.controller.strings().controllerSaveComposition();
+    return this.strings.controllerSaveComposition();
   }
 
   @Override
-  public void taskDo()
+  public Optional<Path> target(
+    final OBCompositionReadableType composition)
+  {
+    return composition.fileName()
+      .read()
+      .map(Path::toAbsolutePath);
+  }
+
+  @Override
+  public void taskRun(
+    final OBCompositionReadableType composition)
     throws OBTaskFailureException
   {
     final var fileName =
-      this.controller.composition().fileName().read().orElseThrow();
+      composition.fileName().read().orElseThrow();
 
-    OBTaskSaveAsComposition.create(this.services, this.controller, fileName)
-      .taskDo();
+    final var task =
+      OBTaskSaveAsComposition.create(this.services, this.controller, fileName);
+    this.saveAs = task;
+    if (this.cancellation.isCancelled()) {
+      task.taskCancel();
+    }
+    task.taskRun(composition);
   }
 
   @Override
-  public UndoStyle undoStyle()
+  public void taskCancel()
   {
-    return UndoStyle.CANNOT_UNDO;
+    this.cancellation.cancel();
+    final var task = this.saveAs;
+    if (task != null) {
+      task.taskCancel();
+    }
   }
 
   @Override
-  public boolean isLongRunning()
+  public void taskCompleted(
+    final boolean compositionUnchanged)
+    throws OBTaskFailureException
   {
-    return true;
+    this.saveAs.taskCompleted(compositionUnchanged);
   }
 
   @Override
-  public void taskUndo()
+  public boolean isLongRunning()
   {
-    throw new UnsupportedOperationException();
+    return true;
   }
 }
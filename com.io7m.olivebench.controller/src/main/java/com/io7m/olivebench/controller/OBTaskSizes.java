@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import com.io7m.olivebench.model.graph.OBChannelMetadata;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBNodeMetadata;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.names.OBName;
+
+/*
+ * Estimates of the heap retained by the values that tasks keep in order to
+ * undo themselves. The sizes were measured with JOL on a 64-bit HotSpot VM,
+ * both with and without compressed references, and the larger of the two
+ * layouts is used. Strings are sized from their contents: a string that
+ * only contains Latin-1 characters is stored with one byte per character,
+ * and any other string with two.
+ *
+ * A channel retains its identifier, its two properties, and the values of
+ * those properties. A property holds its value along with a subject and a
+ * lock, which at 424 bytes are much larger than the values themselves. The
+ * graph and the string resources that a channel refers to are shared with
+ * the composition, and are not counted.
+ */
+
+public final class OBTaskSizes
+{
+  private static final long ALIGNMENT = 8L;
+  private static final long STRING = 48L;
+  private static final long NAME = 24L;
+  private static final long VECTOR3 = 40L;
+  private static final long AREA = 88L;
+  private static final long NODE_METADATA = 40L;
+  private static final long CHANNEL_METADATA = 24L;
+  private static final long COMPOSITION_METADATA = 32L;
+  private static final long COMPOSITION_METADATA_LIST = 72L;
+  private static final long COMPOSITION_METADATA_PROPERTY = 40L;
+  private static final long PROPERTY = 424L;
+  private static final long CHANNEL = 56L;
+  private static final long UUID = 32L;
+  private static final long SPILLED = 48L;
+
+  private OBTaskSizes()
+  {
+
+  }
+
+  private static long align(
+    final long size)
+  {
+    return (size + ALIGNMENT - 1L) & -ALIGNMENT;
+  }
+
+  public static long string(
+    final String text)
+  {
+    final var length = (long) text.length();
+    for (int index = 0; index < text.length(); ++index) {
+      if (text.charAt(index) > 0xff) {
+        return align(STRING + 2L * length);
+      }
+    }
+    return align(STRING + length);
+  }
+
+  public static long name(
+    final OBName name)
+  {
+    return NAME + string(name.value());
+  }
+
+  public static long nodeMetadata(
+    final OBNodeMetadata metadata)
+  {
+    return NODE_METADATA + name(metadata.name()) + AREA;
+  }
+
+  /*
+   * Channel metadata consists of a single color, and so every value has
+   * the same size.
+   */
+
+  public static long channelMetadata(
+    final OBChannelMetadata metadata)
+  {
+    return CHANNEL_METADATA + VECTOR3;
+  }
+
+  public static long channel(
+    final OBChannelType channel)
+  {
+    return CHANNEL
+      + UUID
+      + 2L * PROPERTY
+      + nodeMetadata(channel.nodeMetadata().read())
+      + channelMetadata(channel.channelMetadata().read());
+  }
+
+  /*
+   * A spilled undo entry retains only its name and the location of its
+   * records in the spill journal.
+   */
+
+  public static long spilled(
+    final String name)
+  {
+    return SPILLED + string(name);
+  }
+
+  public static long compositionMetadata(
+    final OBCompositionMetadata metadata)
+  {
+    /*
+     * An empty property list is a shared instance, and so only metadata
+     * that has properties pays for its list.
+     */
+
+    final var properties = metadata.properties();
+    long size = COMPOSITION_METADATA;
+    if (!properties.isEmpty()) {
+      size += COMPOSITION_METADATA_LIST;
+    }
+    for (final var property : properties) {
+      size += COMPOSITION_METADATA_PROPERTY;
+      size += string(property.name());
+      size += string(property.value());
+    }
+    return size;
+  }
+}
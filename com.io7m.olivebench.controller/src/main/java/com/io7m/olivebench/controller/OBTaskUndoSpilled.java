@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.controller;
+
+import com.io7m.olivebench.exceptions.OBException;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/*
+ * An undo entry that has been spilled out of memory into the controller's
+ * spill journal. Undoing the entry applies its records to the composition
+ * and then discards them; spilled entries are always undone in the reverse
+ * of the order in which they were spilled, and so discarding the records
+ * of one entry never discards the records of another.
+ */
+
+final class OBTaskUndoSpilled implements OBControllerTaskType
+{
+  private final OBController controller;
+  private final OBCompositionJournal spill;
+  private final String name;
+  private final int offset;
+
+  OBTaskUndoSpilled(
+    final OBController inController,
+    final OBCompositionJournal inSpill,
+    final String inName,
+    final int inOffset)
+  {
+    this.controller =
+      Objects.requireNonNull(inController, "inController");
+    this.spill =
+      Objects.requireNonNull(inSpill, "inSpill");
+    this.name =
+      Objects.requireNonNull(inName, "inName");
+    this.offset = inOffset;
+  }
+
+  @Override
+  public String name()
+  {
+    return this.name;
+  }
+
+  @Override
+  public UndoStyle undoStyle()
+  {
+    return UndoStyle.CAN_UNDO;
+  }
+
+  @Override
+  public boolean isLongRunning()
+  {
+    return false;
+  }
+
+  @Override
+  public long retainedSizeEstimate()
+  {
+    return OBTaskSizes.spilled(this.name);
+  }
+
+  @Override
+  public void taskDo()
+  {
+    throw new UnsupportedOperationException(
+      "Spilled undo entries cannot be redone");
+  }
+
+  @Override
+  public void taskUndo()
+    throws OBTaskFailureException
+  {
+    try {
+      this.spill.applyAt(this.controller.composition(), this.offset);
+    } catch (final IOException | OBException e) {
+      throw new OBTaskFailureException(
+        e,
+        OBControllerEventTaskFailed.builder()
+          .setTitle(this.name)
+          .setException(e)
+          .setMessage(e.getMessage())
+          .build()
+      );
+    } finally {
+      this.spill.truncate(this.offset);
+    }
+  }
+}
@@ -19,6 +19,8 @@ package com.io7m.olivebench.controller;
 import com.io7m.olivebench.model.graph.OBChannelMetadata;
 import com.io7m.olivebench.model.graph.OBChannelType;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.function.Function;
@@ -73,6 +75,31 @@ public final class OBTaskUpdateChannelMetadata implements OBControllerTaskType
     return false;
   }
 
+  @Override
+  public long retainedSizeEstimate()
+  {
+    final var existing = this.existingMetadata;
+    if (existing != null) {
+      return OBTaskSizes.channelMetadata(existing);
+    }
+    return 0L;
+  }
+
+  @Override
+  public boolean taskUndoSpill(
+    final DataOutputStream output)
+    throws IOException
+  {
+    final var existing = this.existingMetadata;
+    if (existing != null) {
+      OBCompositionJournal.writeChannelMetadata(
+        output,
+        this.channelId,
+        existing);
+    }
+    return true;
+  }
+
   @Override
   public void taskUndo()
   {
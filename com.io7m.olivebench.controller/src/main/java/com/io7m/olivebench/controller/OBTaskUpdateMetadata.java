@@ -18,6 +18,8 @@ package com.io7m.olivebench.controller;
 
 import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Objects;
 import java.util.function.Function;
 
@@ -62,6 +64,28 @@ public final class OBTaskUpdateMetadata implements OBControllerTaskType
     return false;
   }
 
+  @Override
+  public long retainedSizeEstimate()
+  {
+    final var existing = this.existingMetadata;
+    if (existing != null) {
+      return OBTaskSizes.compositionMetadata(existing);
+    }
+    return 0L;
+  }
+
+  @Override
+  public boolean taskUndoSpill(
+    final DataOutputStream output)
+    throws IOException
+  {
+    final var existing = this.existingMetadata;
+    if (existing != null) {
+      OBCompositionJournal.writeMetadata(output, existing);
+    }
+    return true;
+  }
+
   @Override
   public void taskUndo()
   {
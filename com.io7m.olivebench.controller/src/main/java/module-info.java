@@ -24,14 +24,17 @@ module com.io7m.olivebench.controller
   requires com.io7m.jregions.core;
   requires com.io7m.jspatial.api;
   requires com.io7m.jspatial.implementation;
+  requires com.io7m.jtensors.core;
   requires com.io7m.olivebench.composition.serializer.api;
   requires com.io7m.olivebench.composition_parser.api;
   requires com.io7m.olivebench.events;
   requires com.io7m.olivebench.exceptions;
+  requires com.io7m.olivebench.metrics;
   requires com.io7m.olivebench.model;
   requires com.io7m.olivebench.presentable;
   requires com.io7m.olivebench.strings;
   requires io.reactivex.rxjava3;
+  requires jdk.jfr;
   requires org.jgrapht.core;
   requires org.slf4j;
   requires com.io7m.olivebench.preferences;
@@ -23,7 +23,10 @@ import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
 import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializers;
 import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
 import com.io7m.olivebench.controller.OBController;
+import com.io7m.olivebench.controller.OBControllerAutosave;
 import com.io7m.olivebench.controller.OBControllerType;
+import com.io7m.olivebench.metrics.OBMetrics;
+import com.io7m.olivebench.metrics.OBMetricsType;
 import com.io7m.olivebench.preferences.OBPreferencesController;
 import com.io7m.olivebench.preferences.OBPreferencesControllerType;
 import com.io7m.olivebench.services.api.OBServiceDirectory;
@@ -33,6 +36,8 @@ import com.io7m.olivebench.strings.OBStringsType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+
 public final class MainServices
 {
   private static final Logger LOG = LoggerFactory.getLogger(MainServices.class);
@@ -42,7 +47,7 @@ public final class MainServices
 
   }
 
-  private static OBPreferencesControllerType startPreferencesController()
+  private static Path configurationDirectory()
   {
     final var configuration =
       ApplicationDirectoryConfiguration.builder()
@@ -52,8 +57,12 @@ public final class MainServices
 
     final var directories =
       ApplicationDirectories.get(configuration);
-    final var configurationDirectory =
-      directories.configurationDirectory();
+    return directories.configurationDirectory();
+  }
+
+  private static OBPreferencesControllerType startPreferencesController(
+    final Path configurationDirectory)
+  {
     final var configurationFile =
       configurationDirectory.resolve("preferences.xml");
     final var configurationFileTmp =
@@ -69,16 +78,25 @@ public final class MainServices
   public static OBServiceDirectoryType create()
   {
     final var services = new OBServiceDirectory();
+    final var configurationDirectory = configurationDirectory();
+    final var metrics = OBMetrics.create();
+    services.register(OBMetricsType.class, metrics);
     final var strings = OBStrings.of(OBStrings.getResourceBundle());
     services.register(OBStringsType.class, strings);
-    final var preferencesController = startPreferencesController();
+    final var preferencesController =
+      startPreferencesController(configurationDirectory);
     services.register(OBPreferencesControllerType.class, preferencesController);
     final var parsers = OBCompositionParsers.create();
     services.register(OBCompositionParsersType.class, parsers);
-    final var serializers = OBCompositionSerializers.create();
+    final var serializers = OBCompositionSerializers.create(metrics);
     services.register(OBCompositionSerializersType.class, serializers);
     final var controller = OBController.create(services);
     services.register(OBControllerType.class, controller);
+    final var autosave =
+      OBControllerAutosave.create(
+        services,
+        configurationDirectory.resolve("autosave"));
+    services.register(OBControllerAutosave.class, autosave);
     return services;
   }
 }
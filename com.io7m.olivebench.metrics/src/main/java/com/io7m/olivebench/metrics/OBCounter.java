@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counters keep a ring of one-second buckets covering the last minute in
+ * addition to the running total. The rate is taken over the complete
+ * seconds in the ring, excluding the second in progress. A bucket is reset
+ * by whichever thread first increments it in a new second; an increment
+ * racing with that reset may be lost from the rate, but never from the
+ * total.
+ */
+
+final class OBCounter implements OBCounterType, OBCounterMXBean
+{
+  private static final int WINDOW_SECONDS = 60;
+  private static final int WINDOW_COMPLETE = WINDOW_SECONDS - 1;
+
+  private final LongAdder total;
+  private final AtomicLongArray windowSeconds;
+  private final AtomicLongArray windowCounts;
+
+  OBCounter()
+  {
+    this.total = new LongAdder();
+    this.windowSeconds = new AtomicLongArray(WINDOW_SECONDS);
+    this.windowCounts = new AtomicLongArray(WINDOW_SECONDS);
+  }
+
+  private static long nowSeconds()
+  {
+    return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+  }
+
+  @Override
+  public void add(
+    final long delta)
+  {
+    this.total.add(delta);
+
+    final var second = nowSeconds();
+    final var index = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+    final var stamp = this.windowSeconds.get(index);
+    if (stamp != second) {
+      if (this.windowSeconds.compareAndSet(index, stamp, second)) {
+        this.windowCounts.set(index, 0L);
+      }
+    }
+    this.windowCounts.addAndGet(index, delta);
+  }
+
+  @Override
+  public long count()
+  {
+    return this.total.sum();
+  }
+
+  @Override
+  public double ratePerSecond()
+  {
+    final var second = nowSeconds();
+
+    long sum = 0L;
+    for (int index = 0; index < WINDOW_SECONDS; ++index) {
+      final var stamp = this.windowSeconds.get(index);
+      if (stamp < second && stamp >= second - WINDOW_COMPLETE) {
+        sum += this.windowCounts.get(index);
+      }
+    }
+    return (double) sum / (double) WINDOW_COMPLETE;
+  }
+
+  @Override
+  public long getCount()
+  {
+    return this.count();
+  }
+
+  @Override
+  public double getRatePerSecond()
+  {
+    return this.ratePerSecond();
+  }
+}
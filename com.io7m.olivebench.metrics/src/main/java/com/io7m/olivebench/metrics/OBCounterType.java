@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+/**
+ * A monotonically increasing counter.
+ */
+
+public interface OBCounterType
+{
+  /**
+   * Increment the counter by one.
+   */
+
+  default void increment()
+  {
+    this.add(1L);
+  }
+
+  /**
+   * Increment the counter.
+   *
+   * @param delta The amount by which to increment the counter
+   */
+
+  void add(long delta);
+
+  /**
+   * @return The current value of the counter
+   */
+
+  long count();
+
+  /**
+   * @return The average number of increments per second over the last minute
+   */
+
+  double ratePerSecond();
+}
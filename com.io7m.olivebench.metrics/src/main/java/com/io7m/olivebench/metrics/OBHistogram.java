@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A log-linear histogram in the style of HdrHistogram. Values below
+ * SUB_BUCKETS are counted exactly; every power of two above that is split
+ * into SUB_BUCKETS equally sized buckets, giving a relative error of under
+ * one percent across the whole range of non-negative longs. Recording a
+ * value is a handful of arithmetic operations and three lock-free atomic
+ * updates.
+ */
+
+final class OBHistogram implements OBHistogramType, OBHistogramMXBean
+{
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS =
+    SUB_BUCKETS + ((63 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+
+  private final AtomicLongArray counts;
+  private final LongAdder count;
+  private final LongAdder sum;
+  private final AtomicLong max;
+
+  OBHistogram()
+  {
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.count = new LongAdder();
+    this.sum = new LongAdder();
+    this.max = new AtomicLong(0L);
+  }
+
+  static int indexOf(
+    final long value)
+  {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    final var exponent = 63 - Long.numberOfLeadingZeros(value);
+    final var shift = exponent - SUB_BUCKET_BITS;
+    final var sub = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    return SUB_BUCKETS + (shift * SUB_BUCKETS) + sub;
+  }
+
+  static long highestValueOf(
+    final int index)
+  {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+
+    final var shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    final var sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    final var lowest = (long) (SUB_BUCKETS + sub) << shift;
+    return lowest + ((1L << shift) - 1L);
+  }
+
+  @Override
+  public void record(
+    final long value)
+  {
+    final var clamped = Math.max(0L, value);
+    this.counts.incrementAndGet(indexOf(clamped));
+    this.count.increment();
+    this.sum.add(clamped);
+    this.max.accumulateAndGet(clamped, Math::max);
+  }
+
+  @Override
+  public long count()
+  {
+    return this.count.sum();
+  }
+
+  @Override
+  public long max()
+  {
+    return this.max.get();
+  }
+
+  @Override
+  public double mean()
+  {
+    final var n = this.count.sum();
+    if (n == 0L) {
+      return 0.0;
+    }
+    return (double) this.sum.sum() / (double) n;
+  }
+
+  @Override
+  public long percentile(
+    final double percentile)
+  {
+    final var clamped = Math.min(100.0, Math.max(0.0, percentile));
+
+    long total = 0L;
+    for (int index = 0; index < BUCKETS; ++index) {
+      total += this.counts.get(index);
+    }
+    if (total == 0L) {
+      return 0L;
+    }
+
+    final var target =
+      Math.max(1L, (long) Math.ceil((clamped / 100.0) * (double) total));
+
+    long cumulative = 0L;
+    for (int index = 0; index < BUCKETS; ++index) {
+      cumulative += this.counts.get(index);
+      if (cumulative >= target) {
+        return Math.min(highestValueOf(index), this.max.get());
+      }
+    }
+    return this.max.get();
+  }
+
+  @Override
+  public long getCount()
+  {
+    return this.count();
+  }
+
+  @Override
+  public long getMax()
+  {
+    return this.max();
+  }
+
+  @Override
+  public double getMean()
+  {
+    return this.mean();
+  }
+
+  @Override
+  public long getP50()
+  {
+    return this.percentile(50.0);
+  }
+
+  @Override
+  public long getP90()
+  {
+    return this.percentile(90.0);
+  }
+
+  @Override
+  public long getP99()
+  {
+    return this.percentile(99.0);
+  }
+
+  @Override
+  public long getP999()
+  {
+    return this.percentile(99.9);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+/**
+ * The management interface for histograms.
+ */
+
+public interface OBHistogramMXBean
+{
+  /**
+   * @return The number of recorded values
+   */
+
+  long getCount();
+
+  /**
+   * @return The largest recorded value
+   */
+
+  long getMax();
+
+  /**
+   * @return The arithmetic mean of the recorded values
+   */
+
+  double getMean();
+
+  /**
+   * @return The 50th percentile
+   */
+
+  long getP50();
+
+  /**
+   * @return The 90th percentile
+   */
+
+  long getP90();
+
+  /**
+   * @return The 99th percentile
+   */
+
+  long getP99();
+
+  /**
+   * @return The 99.9th percentile
+   */
+
+  long getP999();
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+/**
+ * A histogram of non-negative values. Recorded values are kept to within
+ * roughly one percent of their true value.
+ */
+
+public interface OBHistogramType
+{
+  /**
+   * Record a value. Negative values are recorded as zero.
+   *
+   * @param value The value
+   */
+
+  void record(long value);
+
+  /**
+   * @return The number of recorded values
+   */
+
+  long count();
+
+  /**
+   * @return The largest recorded value
+   */
+
+  long max();
+
+  /**
+   * @return The arithmetic mean of the recorded values
+   */
+
+  double mean();
+
+  /**
+   * @param percentile A percentile in the range {@code [0, 100]}
+   *
+   * @return The value below which the given percentage of values fall
+   */
+
+  long percentile(double percentile);
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The default metrics registry. Every metric is published as a JMX MXBean
+ * named {@code com.io7m.olivebench:type=<type>,name=<name>} on the platform
+ * MBean server.
+ */
+
+public final class OBMetrics implements OBMetricsType, Closeable
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBMetrics.class);
+
+  private static final String DOMAIN = "com.io7m.olivebench";
+
+  private final MBeanServer server;
+  private final ConcurrentHashMap<String, OBCounter> counters;
+  private final ConcurrentHashMap<String, OBHistogram> histograms;
+  private final Set<ObjectName> registered;
+
+  private OBMetrics(
+    final MBeanServer inServer)
+  {
+    this.server =
+      Objects.requireNonNull(inServer, "server");
+    this.counters =
+      new ConcurrentHashMap<>();
+    this.histograms =
+      new ConcurrentHashMap<>();
+    this.registered =
+      ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Create a new metrics registry that publishes metrics on the platform
+   * MBean server.
+   *
+   * @return A new registry
+   */
+
+  public static OBMetrics create()
+  {
+    return new OBMetrics(ManagementFactory.getPlatformMBeanServer());
+  }
+
+  /**
+   * @return A registry that discards everything recorded to it
+   */
+
+  public static OBMetricsType disabled()
+  {
+    return OBMetricsDisabled.INSTANCE;
+  }
+
+  /**
+   * Find the metrics registry in the given service directory, or a disabled
+   * registry if there is none.
+   *
+   * @param services The service directory
+   *
+   * @return A registry
+   */
+
+  public static OBMetricsType findOrDisabled(
+    final OBServiceDirectoryType services)
+  {
+    return services.optionalService(OBMetricsType.class)
+      .orElseGet(OBMetrics::disabled);
+  }
+
+  @Override
+  public OBCounterType counter(
+    final String name)
+  {
+    Objects.requireNonNull(name, "name");
+    return this.counters.computeIfAbsent(name, key -> {
+      final var counter = new OBCounter();
+      this.publish("Counter", key, counter);
+      return counter;
+    });
+  }
+
+  @Override
+  public OBHistogramType histogram(
+    final String name)
+  {
+    Objects.requireNonNull(name, "name");
+    return this.histograms.computeIfAbsent(name, key -> {
+      final var histogram = new OBHistogram();
+      this.publish("Histogram", key, histogram);
+      return histogram;
+    });
+  }
+
+  @Override
+  public void gauge(
+    final String name,
+    final LongSupplier supplier)
+  {
+    Objects.requireNonNull(name, "name");
+    Objects.requireNonNull(supplier, "supplier");
+    this.publish("Gauge", name, new OBGauge(supplier));
+  }
+
+  private void publish(
+    final String type,
+    final String name,
+    final Object bean)
+  {
+    try {
+      final var objectName =
+        new ObjectName(String.format(
+          "%s:type=%s,name=%s",
+          DOMAIN,
+          type,
+          ObjectName.quote(name)));
+
+      /*
+       * A newer registry (or a newer gauge of the same name) replaces
+       * whatever was published before it.
+       */
+
+      synchronized (this.server) {
+        if (this.server.isRegistered(objectName)) {
+          this.server.unregisterMBean(objectName);
+        }
+        this.server.registerMBean(bean, objectName);
+      }
+      this.registered.add(objectName);
+    } catch (final JMException e) {
+      LOG.error("unable to publish metric {}: ", name, e);
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    for (final var objectName : this.registered) {
+      try {
+        if (this.server.isRegistered(objectName)) {
+          this.server.unregisterMBean(objectName);
+        }
+      } catch (final JMException e) {
+        LOG.error("unable to unpublish metric {}: ", objectName, e);
+      }
+    }
+    this.registered.clear();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "[OBMetrics 0x%s]",
+      Integer.toUnsignedString(System.identityHashCode(this), 16)
+    );
+  }
+}
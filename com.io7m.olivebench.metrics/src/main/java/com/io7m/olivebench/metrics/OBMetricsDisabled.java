@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+import java.util.function.LongSupplier;
+
+final class OBMetricsDisabled implements OBMetricsType
+{
+  static final OBMetricsDisabled INSTANCE = new OBMetricsDisabled();
+
+  private static final OBCounterType COUNTER = new Counter();
+  private static final OBHistogramType HISTOGRAM = new Histogram();
+
+  private OBMetricsDisabled()
+  {
+
+  }
+
+  @Override
+  public OBCounterType counter(
+    final String name)
+  {
+    return COUNTER;
+  }
+
+  @Override
+  public OBHistogramType histogram(
+    final String name)
+  {
+    return HISTOGRAM;
+  }
+
+  @Override
+  public void gauge(
+    final String name,
+    final LongSupplier supplier)
+  {
+
+  }
+
+  private static final class Counter implements OBCounterType
+  {
+    Counter()
+    {
+
+    }
+
+    @Override
+    public void add(
+      final long delta)
+    {
+
+    }
+
+    @Override
+    public long count()
+    {
+      return 0L;
+    }
+
+    @Override
+    public double ratePerSecond()
+    {
+      return 0.0;
+    }
+  }
+
+  private static final class Histogram implements OBHistogramType
+  {
+    Histogram()
+    {
+
+    }
+
+    @Override
+    public void record(
+      final long value)
+    {
+
+    }
+
+    @Override
+    public long count()
+    {
+      return 0L;
+    }
+
+    @Override
+    public long max()
+    {
+      return 0L;
+    }
+
+    @Override
+    public double mean()
+    {
+      return 0.0;
+    }
+
+    @Override
+    public long percentile(
+      final double percentile)
+    {
+      return 0L;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.metrics;
+
+import com.io7m.olivebench.services.api.OBServiceType;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A registry of application metrics.
+ */
+
+public interface OBMetricsType extends OBServiceType
+{
+  /**
+   * Find or create a counter.
+   *
+   * @param name The counter name
+   *
+   * @return The counter with the given name
+   */
+
+  OBCounterType counter(String name);
+
+  /**
+   * Find or create a histogram.
+   *
+   * @param name The histogram name
+   *
+   * @return The histogram with the given name
+   */
+
+  OBHistogramType histogram(String name);
+
+  /**
+   * Register a gauge, replacing any existing gauge with the same name.
+   *
+   * @param name     The gauge name
+   * @param supplier A function that yields the current value of the gauge
+   */
+
+  void gauge(
+    String name,
+    LongSupplier supplier);
+}
@@ -246,7 +246,8 @@ public final class OBComposition implements OBCompositionType
   {
     return new OBCompositionSnapshot(
       this.graph.snapshot(),
-      this.metadata.read()
+      this.metadata.read(),
+      this.fileName.read()
     );
   }
 
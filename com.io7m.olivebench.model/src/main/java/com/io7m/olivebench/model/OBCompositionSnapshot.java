@@ -30,15 +30,19 @@ final class OBCompositionSnapshot implements OBCompositionReadableType
 {
   private final OBCompositionGraphReadableType graph;
   private final OBCompositionMetadata metadata;
+  private final Optional<Path> fileName;
 
   OBCompositionSnapshot(
     final OBCompositionGraphReadableType inGraph,
-    final OBCompositionMetadata inMetadata)
+    final OBCompositionMetadata inMetadata,
+    final Optional<Path> inFileName)
   {
     this.graph =
       Objects.requireNonNull(inGraph, "graph");
     this.metadata =
       Objects.requireNonNull(inMetadata, "metadata");
+    this.fileName =
+      Objects.requireNonNull(inFileName, "fileName");
   }
 
   @Override
@@ -68,6 +72,6 @@ final class OBCompositionSnapshot implements OBCompositionReadableType
   @Override
   public OBPropertyReadableType<Optional<Path>> fileName()
   {
-    return OBProperty.create(Optional.empty());
+    return OBProperty.create(this.fileName);
   }
 }
@@ -18,9 +18,13 @@ package com.io7m.olivebench.model.graph;
 
 import com.io7m.jaffirm.core.Invariants;
 import com.io7m.jaffirm.core.Preconditions;
+import com.io7m.junreachable.UnimplementedCodeException;
 import com.io7m.olivebench.exceptions.OBDuplicateException;
 import com.io7m.olivebench.exceptions.OBException;
+import com.io7m.olivebench.metrics.OBCounterType;
+import com.io7m.olivebench.metrics.OBMetrics;
 import com.io7m.olivebench.model.OBCompositionEvents;
+import com.io7m.olivebench.model.graph.OBRegionType.OBDecorativeRegionType.OBTextRegionType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import com.io7m.olivebench.strings.OBStringsType;
 import io.reactivex.rxjava3.core.Observable;
@@ -33,15 +37,21 @@ import org.jgrapht.Graphs;
 import org.jgrapht.graph.AsUnmodifiableGraph;
 import org.jgrapht.graph.DirectedAcyclicGraph;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 @NotThreadSafe
 public final class OBCompositionGraph implements OBCompositionGraphType
 {
+  private static final AtomicLong REVISIONS = new AtomicLong();
+
   private final AsUnmodifiableGraph<OBCompositionNodeType, OBCompositionEdge> graphRead;
   private final DirectedAcyclicGraph<OBCompositionNodeType, OBCompositionEdge> graph;
   private final HashMap<UUID, Disposable> subscriptions;
@@ -51,7 +61,15 @@ public final class OBCompositionGraph implements OBCompositionGraphType
   private final OBServiceDirectoryType services;
   private final OBStringsType strings;
   private final Subject<OBGraphEventType> eventSubject;
+  private final OBCounterType eventCounter;
+  private final HashMap<UUID, OBChannelContentsType> deferred;
+  private final Map<UUID, OBChannelContentsType> deferredRead;
+  private final HashMap<UUID, OBChannelContentsType> origins;
+  private final Map<UUID, OBChannelContentsType> originsRead;
+  private final HashMap<UUID, Long> revisions;
+  private final Map<UUID, Long> revisionsRead;
   private volatile OBCompositionRoot root;
+  private boolean grafting;
 
   private OBCompositionGraph(
     final AsUnmodifiableGraph<OBCompositionNodeType, OBCompositionEdge> graphRead,
@@ -62,7 +80,8 @@ public final class OBCompositionGraph implements OBCompositionGraphType
     final OBCompositionEvents eventFactory,
     final Subject<OBGraphEventType> eventSubject,
     final OBServiceDirectoryType services,
-    final OBStringsType strings)
+    final OBStringsType strings,
+    final OBCounterType eventCounter)
   {
     this.eventFactory =
       Objects.requireNonNull(eventFactory, "eventFactory");
@@ -82,6 +101,15 @@ public final class OBCompositionGraph implements OBCompositionGraphType
       Objects.requireNonNull(subscriptions, "subscriptions");
     this.strings =
       Objects.requireNonNull(strings, "strings");
+    this.eventCounter =
+      Objects.requireNonNull(eventCounter, "eventCounter");
+
+    this.deferred = new HashMap<>();
+    this.deferredRead = Collections.unmodifiableMap(this.deferred);
+    this.origins = new HashMap<>();
+    this.originsRead = Collections.unmodifiableMap(this.origins);
+    this.revisions = new HashMap<>();
+    this.revisionsRead = Collections.unmodifiableMap(this.revisions);
   }
 
   public static OBCompositionGraphType create(
@@ -128,7 +156,8 @@ public final class OBCompositionGraph implements OBCompositionGraphType
         eventFactory,
         eventSubject,
         services,
-        strings
+        strings,
+        OBMetrics.findOrDisabled(services).counter("graph.events")
       );
 
     final var root = new OBCompositionRoot(compositionGraph, strings, id);
@@ -152,7 +181,15 @@ public final class OBCompositionGraph implements OBCompositionGraphType
   private void announce(
     final OBGraphEventType event)
   {
+    this.eventCounter.increment();
+
+    final var recording = new OBJFRGraphEventFanOut();
+    recording.begin();
     this.eventSubject.onNext(event);
+    if (recording.shouldCommit()) {
+      recording.eventType = event.getClass();
+      recording.commit();
+    }
   }
 
   @Override
@@ -190,7 +227,10 @@ public final class OBCompositionGraph implements OBCompositionGraphType
       Map.copyOf(this.nodes),
       new AsUnmodifiableGraph<>(graphCopy),
       this.root,
-      this.type()
+      this.type(),
+      Map.copyOf(this.deferred),
+      Map.copyOf(this.origins),
+      Map.copyOf(this.revisions)
     );
   }
 
@@ -208,6 +248,20 @@ public final class OBCompositionGraph implements OBCompositionGraphType
     );
   }
 
+  @Override
+  public List<OBCompositionEdge> childEdgesOf(
+    final OBCompositionNodeType node)
+  {
+    return OBCompositionGraphs.childEdgesOf(this.graph, node);
+  }
+
+  @Override
+  public List<OBCompositionEdge> descendantEdgesOf(
+    final OBCompositionNodeType node)
+  {
+    return OBCompositionGraphs.descendantEdgesOf(this.graph, node);
+  }
+
   @Override
   public OBChannelType createChannel(
     final UUID id,
@@ -229,6 +283,7 @@ public final class OBCompositionGraph implements OBCompositionGraphType
     }
 
     final var channel = this.makeChannel(id, nodeMetadata, channelMetadata);
+    this.touch(channel);
     this.announce(this.eventFactory.graphNodeAdded(this.root, channel));
     this.subscribe(channel);
     return channel;
@@ -245,7 +300,13 @@ public final class OBCompositionGraph implements OBCompositionGraphType
 
     final var nodeSub =
       node.changes().subscribe(ignored -> {
-        this.eventSubject.onNext(
+        if (this.grafting) {
+          return;
+        }
+        if (node instanceof OBRegionType) {
+          this.touch(node);
+        }
+        this.announce(
           OBGraphNodeModifiedEvent.builder()
             .setMessage(this.strings.nodeModified())
             .setNodeTarget(node)
@@ -266,6 +327,7 @@ public final class OBCompositionGraph implements OBCompositionGraphType
 
     final var channel =
       this.makeChannel(this.createId(), nodeMetadata, channelMetadata);
+    this.touch(channel);
     this.announce(this.eventFactory.graphNodeAdded(this.root, channel));
     this.subscribe(channel);
     return channel;
@@ -299,12 +361,208 @@ public final class OBCompositionGraph implements OBCompositionGraphType
       target,
       node);
 
+    if (node instanceof OBChannelType) {
+      this.revisions.remove(node.id());
+      this.origins.remove(node.id());
+    } else {
+      this.touch(node);
+    }
+
     this.graph.removeVertex(node);
     this.nodes.remove(node.id());
+    this.deferred.remove(node.id());
     this.unsubscribe(node);
     this.announce(this.eventFactory.graphNodeRemoved(edge.nodeSource(), node));
   }
 
+  @Override
+  public Map<UUID, OBChannelContentsType> channelsDeferred()
+  {
+    return this.deferredRead;
+  }
+
+  @Override
+  public Map<UUID, OBChannelContentsType> channelOrigins()
+  {
+    return this.originsRead;
+  }
+
+  @Override
+  public Map<UUID, Long> channelRevisions()
+  {
+    return this.revisionsRead;
+  }
+
+  @Override
+  public boolean channelSetOrigin(
+    final OBChannelType channel,
+    final long channelRevision,
+    final OBChannelContentsType contents)
+  {
+    Objects.requireNonNull(channel, "channel");
+    Objects.requireNonNull(contents, "contents");
+
+    if (this.nodeIsDeleted(channel)) {
+      return false;
+    }
+
+    /*
+     * The contents of a deferred channel cannot change until they are
+     * loaded, so newly stored contents simply replace the old ones.
+     */
+
+    final var id = channel.id();
+    if (this.deferred.containsKey(id)) {
+      this.deferred.put(id, contents);
+      return true;
+    }
+
+    final var current = this.revisions.get(id);
+    if (current != null && current.longValue() == channelRevision) {
+      this.origins.put(id, contents);
+      return true;
+    }
+    return false;
+  }
+
+  /*
+   * Every change to the regions of a channel gives the channel a new
+   * revision and invalidates the stored contents it was known to match.
+   * Changes to the channel node itself do not: the channel nodes are
+   * always written with the composition rather than with the contents.
+   * Revisions are never reused, even across graphs, so that anything
+   * derived from the contents of a channel can be cached by revision.
+   */
+
+  private void touch(
+    final OBCompositionNodeType node)
+  {
+    var current = node;
+    while (!(current instanceof OBChannelType)) {
+      final var incoming = this.graph.incomingEdgesOf(current);
+      if (incoming.isEmpty()) {
+        return;
+      }
+      current = incoming.iterator().next().nodeSource();
+    }
+
+    final var id = current.id();
+    this.revisions.put(id, Long.valueOf(REVISIONS.incrementAndGet()));
+    this.origins.remove(id);
+  }
+
+  @Override
+  public void channelDefer(
+    final OBChannelType channel,
+    final OBChannelContentsType contents)
+  {
+    Objects.requireNonNull(channel, "channel");
+    Objects.requireNonNull(contents, "contents");
+
+    OBCompositionGraphs.checkExistsAndNotRoot(
+      this.root,
+      this.nodes,
+      this.graph,
+      channel
+    );
+
+    Preconditions.checkPreconditionV(
+      this.graph.outDegreeOf(channel) == 0,
+      "Deferred channel %s must have no regions",
+      channel.id()
+    );
+
+    this.deferred.put(channel.id(), contents);
+  }
+
+  @Override
+  public void channelLoad(
+    final OBChannelType channel,
+    final OBCompositionGraphReadableType contents)
+    throws OBException
+  {
+    Objects.requireNonNull(channel, "channel");
+    Objects.requireNonNull(contents, "contents");
+
+    Preconditions.checkPreconditionV(
+      this.deferred.containsKey(channel.id()),
+      "Channel %s must be deferred",
+      channel.id()
+    );
+
+    final var source = contents.nodes().get(channel.id());
+    Preconditions.checkPreconditionV(
+      source instanceof OBChannelType,
+      "Contents must contain channel %s",
+      channel.id()
+    );
+
+    /*
+     * Collect the subtree parents-first, and check every identifier before
+     * changing anything so that a failure leaves the channel deferred.
+     */
+
+    final var sourceGraph = contents.graph();
+    final var edges = new ArrayList<OBCompositionEdge>();
+    final var queue = new LinkedList<OBCompositionNodeType>();
+    queue.add(source);
+    while (!queue.isEmpty()) {
+      final var node = queue.removeFirst();
+      for (final var edge : sourceGraph.outgoingEdgesOf(node)) {
+        final var target = edge.nodeTarget();
+        final var existing = this.nodes.get(target.id());
+        if (existing != null) {
+          throw OBDuplicateException.objectDuplicate(
+            this.strings,
+            existing.type(),
+            target.id().toString()
+          );
+        }
+        edges.add(edge);
+        queue.add(target);
+      }
+    }
+
+    /*
+     * Loading the contents of a channel restores state that is already
+     * part of the composition, and so no events are announced. Announcing
+     * them would mark the composition as unsaved and journal every region.
+     * Node properties publish their current values to new subscribers, and
+     * those are suppressed too.
+     */
+
+    this.grafting = true;
+    try {
+      for (final var edge : edges) {
+        final var owner = this.nodes.get(edge.nodeSource().id());
+        final var region = this.copyRegion(owner, edge.nodeTarget());
+        this.subscribe(region);
+      }
+    } finally {
+      this.grafting = false;
+    }
+
+    this.touch(channel);
+    this.origins.put(channel.id(), this.deferred.remove(channel.id()));
+  }
+
+  private OBRegionType<?> copyRegion(
+    final OBCompositionNodeType owner,
+    final OBCompositionNodeType node)
+  {
+    if (node instanceof OBTextRegionType) {
+      final var text = (OBTextRegionType) node;
+      return this.makeRegion(
+        owner,
+        text.id(),
+        text.nodeMetadata().read(),
+        OBTextRegion::create,
+        text.data().read()
+      );
+    }
+    throw new UnimplementedCodeException();
+  }
+
   private void unsubscribe(
     final OBCompositionNodeType node)
   {
@@ -396,6 +654,7 @@ public final class OBCompositionGraph implements OBCompositionGraphType
         constructor,
         regionData
       );
+    this.touch(region);
     this.announce(this.eventFactory.graphNodeAdded(owner, region));
     this.subscribe(region);
     return region;
@@ -433,6 +692,7 @@ public final class OBCompositionGraph implements OBCompositionGraphType
         constructor,
         regionData
       );
+    this.touch(region);
     this.announce(this.eventFactory.graphNodeAdded(owner, region));
     this.subscribe(region);
     return region;
@@ -456,6 +716,12 @@ public final class OBCompositionGraph implements OBCompositionGraphType
       owner
     );
 
+    Preconditions.checkPreconditionV(
+      this.grafting || !this.deferred.containsKey(owner.id()),
+      "Owner %s must not be deferred",
+      owner
+    );
+
     final var region =
       constructor.construct(this.services, this, id, nodeMetadata, regionData);
     final var edge = OBCompositionEdge.of(owner, region);
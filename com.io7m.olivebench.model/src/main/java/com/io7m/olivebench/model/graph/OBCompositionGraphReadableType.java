@@ -20,6 +20,7 @@ import com.io7m.olivebench.model.OBIdentifiableType;
 import io.reactivex.rxjava3.core.Observable;
 import org.jgrapht.Graph;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -36,4 +37,14 @@ public interface OBCompositionGraphReadableType extends OBIdentifiableType
   OBCompositionGraphReadableType snapshot();
 
   OBChannelType channelOf(OBCompositionNodeType node);
+
+  List<OBCompositionEdge> childEdgesOf(OBCompositionNodeType node);
+
+  List<OBCompositionEdge> descendantEdgesOf(OBCompositionNodeType node);
+
+  Map<UUID, OBChannelContentsType> channelsDeferred();
+
+  Map<UUID, OBChannelContentsType> channelOrigins();
+
+  Map<UUID, Long> channelRevisions();
 }
@@ -19,6 +19,7 @@ package com.io7m.olivebench.model.graph;
 import io.reactivex.rxjava3.core.Observable;
 import org.jgrapht.Graph;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -30,12 +31,18 @@ final class OBCompositionGraphSnapshot implements OBCompositionGraphReadableType
   private final Graph<OBCompositionNodeType, OBCompositionEdge> graph;
   private final OBCompositionNodeType root;
   private final String type;
+  private final Map<UUID, OBChannelContentsType> deferred;
+  private final Map<UUID, OBChannelContentsType> origins;
+  private final Map<UUID, Long> revisions;
 
   OBCompositionGraphSnapshot(
     final Map<UUID, OBCompositionNodeType> inNodes,
     final Graph<OBCompositionNodeType, OBCompositionEdge> inGraph,
     final OBCompositionNodeType inRoot,
-    final String inType)
+    final String inType,
+    final Map<UUID, OBChannelContentsType> inDeferred,
+    final Map<UUID, OBChannelContentsType> inOrigins,
+    final Map<UUID, Long> inRevisions)
   {
     this.nodes =
       Objects.requireNonNull(inNodes, "inNodes");
@@ -45,6 +52,12 @@ final class OBCompositionGraphSnapshot implements OBCompositionGraphReadableType
       Objects.requireNonNull(inRoot, "inRoot");
     this.type =
       Objects.requireNonNull(inType, "inType");
+    this.deferred =
+      Objects.requireNonNull(inDeferred, "inDeferred");
+    this.origins =
+      Objects.requireNonNull(inOrigins, "inOrigins");
+    this.revisions =
+      Objects.requireNonNull(inRevisions, "inRevisions");
 
     this.events = Observable.empty();
   }
@@ -93,6 +106,38 @@ final class OBCompositionGraphSnapshot implements OBCompositionGraphReadableType
     );
   }
 
+  @Override
+  public List<OBCompositionEdge> childEdgesOf(
+    final OBCompositionNodeType node)
+  {
+    return OBCompositionGraphs.childEdgesOf(this.graph, node);
+  }
+
+  @Override
+  public List<OBCompositionEdge> descendantEdgesOf(
+    final OBCompositionNodeType node)
+  {
+    return OBCompositionGraphs.descendantEdgesOf(this.graph, node);
+  }
+
+  @Override
+  public Map<UUID, OBChannelContentsType> channelsDeferred()
+  {
+    return this.deferred;
+  }
+
+  @Override
+  public Map<UUID, OBChannelContentsType> channelOrigins()
+  {
+    return this.origins;
+  }
+
+  @Override
+  public Map<UUID, Long> channelRevisions()
+  {
+    return this.revisions;
+  }
+
   @Override
   public UUID id()
   {
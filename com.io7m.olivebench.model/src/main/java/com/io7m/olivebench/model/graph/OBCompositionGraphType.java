@@ -67,6 +67,20 @@ public interface OBCompositionGraphType extends OBCompositionGraphReadableType
     OBCompositionNodeType node)
     throws OBException;
 
+  void channelDefer(
+    OBChannelType channel,
+    OBChannelContentsType contents);
+
+  boolean channelSetOrigin(
+    OBChannelType channel,
+    long channelRevision,
+    OBChannelContentsType contents);
+
+  void channelLoad(
+    OBChannelType channel,
+    OBCompositionGraphReadableType contents)
+    throws OBException;
+
   boolean nodeIsDeleted(
     OBCompositionNodeType node);
 
@@ -20,12 +20,19 @@ import com.io7m.jaffirm.core.Invariants;
 import com.io7m.jaffirm.core.Preconditions;
 import org.jgrapht.Graph;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
 final class OBCompositionGraphs
 {
+  private static final Comparator<OBCompositionEdge> EDGE_ORDER =
+    Comparator.comparing(edge -> edge.nodeTarget().id());
+
   private OBCompositionGraphs()
   {
 
@@ -105,4 +112,51 @@ final class OBCompositionGraphs
       currentNode = edge.nodeSource();
     }
   }
+
+  /*
+   * The edges of the graph are held in whatever order they happened to be
+   * added, and the nodes in a hash map, and so neither says anything about
+   * the contents of a composition. Siblings are ordered by their IDs, so
+   * that two graphs with the same contents are always traversed in the same
+   * order, however they were built.
+   */
+
+  static List<OBCompositionEdge> childEdgesOf(
+    final Graph<OBCompositionNodeType, OBCompositionEdge> graph,
+    final OBCompositionNodeType node)
+  {
+    Objects.requireNonNull(graph, "graph");
+    Objects.requireNonNull(node, "node");
+
+    final var edges = new ArrayList<>(graph.outgoingEdgesOf(node));
+    edges.sort(EDGE_ORDER);
+    return edges;
+  }
+
+  static List<OBCompositionEdge> descendantEdgesOf(
+    final Graph<OBCompositionNodeType, OBCompositionEdge> graph,
+    final OBCompositionNodeType node)
+  {
+    Objects.requireNonNull(graph, "graph");
+    Objects.requireNonNull(node, "node");
+
+    final var edges = new ArrayList<OBCompositionEdge>(graph.edgeSet().size());
+    final var stack = new LinkedList<OBCompositionEdge>();
+    pushReversed(stack, childEdgesOf(graph, node));
+    while (!stack.isEmpty()) {
+      final var edge = stack.pop();
+      edges.add(edge);
+      pushReversed(stack, childEdgesOf(graph, edge.nodeTarget()));
+    }
+    return edges;
+  }
+
+  private static void pushReversed(
+    final LinkedList<OBCompositionEdge> stack,
+    final List<OBCompositionEdge> edges)
+  {
+    for (int index = edges.size() - 1; index >= 0; --index) {
+      stack.push(edges.get(index));
+    }
+  }
 }
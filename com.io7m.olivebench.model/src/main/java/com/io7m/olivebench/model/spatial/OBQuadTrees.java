@@ -60,6 +60,18 @@ public final class OBQuadTrees
   }
 
   public QuadTreeReadableLType<OBCompositionNodeType> process()
+  {
+    final var event = new OBJFRQuadTreeBuild();
+    event.begin();
+    final var tree = this.processGraph();
+    if (event.shouldCommit()) {
+      event.nodes = this.graphSize;
+      event.commit();
+    }
+    return tree;
+  }
+
+  private QuadTreeReadableLType<OBCompositionNodeType> processGraph()
   {
     this.accumXMin = Long.MAX_VALUE;
     this.accumXMax = Long.MIN_VALUE;
@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.model.spatial;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/*
+ * A grid of square tiles, each of which holds a value. The grid covers an
+ * unbounded plane, and tiles are addressed by their integer coordinates,
+ * such that the tile (x, y) covers the half-open range
+ * [x * size, (x + 1) * size) on the X axis, and likewise on the Y axis.
+ *
+ * Values that are removed from the grid, either because they have been
+ * replaced, invalidated, or evicted, are passed to a release function so
+ * that the owner of the grid can reuse them.
+ */
+
+public final class OBTileGrid<T>
+{
+  private final int tileSize;
+  private final Consumer<T> release;
+  private final Map<Long, T> tiles;
+
+  public OBTileGrid(
+    final int inTileSize,
+    final Consumer<T> inRelease)
+  {
+    if (inTileSize <= 0) {
+      throw new IllegalArgumentException(
+        String.format(
+          "Tile size %d must be positive",
+          Integer.valueOf(inTileSize))
+      );
+    }
+
+    this.tileSize = inTileSize;
+    this.release = Objects.requireNonNull(inRelease, "release");
+    this.tiles = new HashMap<>();
+  }
+
+  public static long tileKey(
+    final int tileX,
+    final int tileY)
+  {
+    return ((long) tileX << 32) | (tileY & 0xffffffffL);
+  }
+
+  public static int tileKeyX(
+    final long key)
+  {
+    return (int) (key >> 32);
+  }
+
+  public static int tileKeyY(
+    final long key)
+  {
+    return (int) key;
+  }
+
+  public int tileSize()
+  {
+    return this.tileSize;
+  }
+
+  public int size()
+  {
+    return this.tiles.size();
+  }
+
+  public int tileIndex(
+    final double coordinate)
+  {
+    return (int) Math.floor(coordinate / this.tileSize);
+  }
+
+  public Optional<T> find(
+    final int tileX,
+    final int tileY)
+  {
+    final var key = Long.valueOf(tileKey(tileX, tileY));
+    return Optional.ofNullable(this.tiles.get(key));
+  }
+
+  public void put(
+    final int tileX,
+    final int tileY,
+    final T value)
+  {
+    Objects.requireNonNull(value, "value");
+
+    final var existing =
+      this.tiles.put(Long.valueOf(tileKey(tileX, tileY)), value);
+    if (existing != null && existing != value) {
+      this.release.accept(existing);
+    }
+  }
+
+  public void clear()
+  {
+    this.tiles.values().forEach(this.release);
+    this.tiles.clear();
+  }
+
+  /*
+   * Remove the tiles that intersect the given area. An area with no extent
+   * still removes the tile that contains it.
+   */
+
+  public void invalidateArea(
+    final double x,
+    final double y,
+    final double width,
+    final double height)
+  {
+    final int tileMinX = this.tileIndex(x);
+    final int tileMinY = this.tileIndex(y);
+    final int tileMaxX = this.tileIndexExclusive(x, width);
+    final int tileMaxY = this.tileIndexExclusive(y, height);
+
+    for (int tileY = tileMinY; tileY <= tileMaxY; ++tileY) {
+      for (int tileX = tileMinX; tileX <= tileMaxX; ++tileX) {
+        final var existing =
+          this.tiles.remove(Long.valueOf(tileKey(tileX, tileY)));
+        if (existing != null) {
+          this.release.accept(existing);
+        }
+      }
+    }
+  }
+
+  /*
+   * Remove the tiles that lie outside of the given inclusive range of tile
+   * coordinates.
+   */
+
+  public void evictOutside(
+    final int tileMinX,
+    final int tileMinY,
+    final int tileMaxX,
+    final int tileMaxY)
+  {
+    final var iterator = this.tiles.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final var entry = iterator.next();
+      final long key = entry.getKey().longValue();
+      final int tileX = tileKeyX(key);
+      final int tileY = tileKeyY(key);
+      if (tileX < tileMinX || tileX > tileMaxX
+        || tileY < tileMinY || tileY > tileMaxY) {
+        this.release.accept(entry.getValue());
+        iterator.remove();
+      }
+    }
+  }
+
+  private int tileIndexExclusive(
+    final double coordinate,
+    final double extent)
+  {
+    final int first = this.tileIndex(coordinate);
+    if (extent <= 0.0) {
+      return first;
+    }
+    final double end = (coordinate + extent) / this.tileSize;
+    return Math.max(first, (int) Math.ceil(end) - 1);
+  }
+}
@@ -32,9 +32,11 @@ module com.io7m.olivebench.model
   requires com.io7m.junreachable.core;
   requires com.io7m.olivebench.events;
   requires com.io7m.olivebench.exceptions;
+  requires com.io7m.olivebench.metrics;
   requires com.io7m.olivebench.presentable;
   requires com.io7m.olivebench.strings;
   requires io.reactivex.rxjava3;
+  requires jdk.jfr;
   requires org.jgrapht.core;
 
   exports com.io7m.olivebench.model.graph;
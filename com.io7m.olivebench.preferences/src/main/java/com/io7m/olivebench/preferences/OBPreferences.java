@@ -23,20 +23,27 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class OBPreferences implements OBPreferencesType
 {
   private final OBPreferencesUndo undo;
   private final OBPreferencesRecentItems recents;
+  private final OBPreferencesAutosave autosave;
+  private final OBPreferencesTrustedFiles trustedFiles;
 
   private OBPreferences()
   {
     this.undo = new OBPreferencesUndo();
     this.recents = new OBPreferencesRecentItems();
+    this.autosave = new OBPreferencesAutosave();
+    this.trustedFiles = new OBPreferencesTrustedFiles();
   }
 
   public static OBPreferencesType create()
@@ -61,6 +68,23 @@ public final class OBPreferences implements OBPreferencesType
     }
   }
 
+  private static long longKey(
+    final Properties properties,
+    final String name,
+    final long defaultValue)
+  {
+    try {
+      return Long.parseUnsignedLong(
+        properties.getProperty(
+          name,
+          String.valueOf(defaultValue)
+        )
+      );
+    } catch (final Exception e) {
+      return defaultValue;
+    }
+  }
+
   private static Stream<String> listKey(
     final Properties properties,
     final String name)
@@ -89,6 +113,18 @@ public final class OBPreferences implements OBPreferencesType
     return this.recents;
   }
 
+  @Override
+  public OBPreferencesAutosaveType autosave()
+  {
+    return this.autosave;
+  }
+
+  @Override
+  public OBPreferencesTrustedFilesType trustedFiles()
+  {
+    return this.trustedFiles;
+  }
+
   @Override
   public void save(
     final OutputStream stream)
@@ -97,6 +133,8 @@ public final class OBPreferences implements OBPreferencesType
     final var properties = new Properties();
     this.undo.save(properties);
     this.recents.save(properties);
+    this.autosave.save(properties);
+    this.trustedFiles.save(properties);
     properties.storeToXML(stream, "", StandardCharsets.UTF_8);
   }
 
@@ -109,6 +147,8 @@ public final class OBPreferences implements OBPreferencesType
     properties.loadFromXML(stream);
     this.undo.load(properties);
     this.recents.load(properties);
+    this.autosave.load(properties);
+    this.trustedFiles.load(properties);
   }
 
   private static final class OBPreferencesRecentItems
@@ -172,7 +212,10 @@ public final class OBPreferences implements OBPreferencesType
   {
     private static final int UNDO_HISTORY_SIZE_DEFAULT = 128;
     private static final String UNDO_HISTORY_SIZE_KEY = "undo.historySize";
+    private static final long UNDO_HISTORY_MEMORY_DEFAULT = 64L * 1024L * 1024L;
+    private static final String UNDO_HISTORY_MEMORY_KEY = "undo.historyMemoryLimit";
     private volatile int historySize = UNDO_HISTORY_SIZE_DEFAULT;
+    private volatile long historyMemoryLimit = UNDO_HISTORY_MEMORY_DEFAULT;
 
     OBPreferencesUndo()
     {
@@ -192,6 +235,19 @@ public final class OBPreferences implements OBPreferencesType
       return this.historySize;
     }
 
+    @Override
+    public void setHistoryMemoryLimit(
+      final long bytes)
+    {
+      this.historyMemoryLimit = Math.max(0L, bytes);
+    }
+
+    @Override
+    public long historyMemoryLimit()
+    {
+      return this.historyMemoryLimit;
+    }
+
     void save(
       final Properties properties)
     {
@@ -199,6 +255,10 @@ public final class OBPreferences implements OBPreferencesType
         UNDO_HISTORY_SIZE_KEY,
         Integer.toUnsignedString(this.historySize)
       );
+      properties.setProperty(
+        UNDO_HISTORY_MEMORY_KEY,
+        Long.toUnsignedString(this.historyMemoryLimit)
+      );
     }
 
     void load(
@@ -206,6 +266,165 @@ public final class OBPreferences implements OBPreferencesType
     {
       this.setHistorySize(
         intKey(properties, UNDO_HISTORY_SIZE_KEY, UNDO_HISTORY_SIZE_DEFAULT));
+      this.setHistoryMemoryLimit(
+        longKey(properties, UNDO_HISTORY_MEMORY_KEY, UNDO_HISTORY_MEMORY_DEFAULT));
+    }
+  }
+
+  private static final class OBPreferencesAutosave
+    implements OBPreferencesAutosaveType
+  {
+    private static final int AUTOSAVE_INTERVAL_DEFAULT = 60;
+    private static final String AUTOSAVE_INTERVAL_KEY = "autosave.intervalSeconds";
+    private volatile int intervalSeconds = AUTOSAVE_INTERVAL_DEFAULT;
+
+    OBPreferencesAutosave()
+    {
+
+    }
+
+    @Override
+    public void setIntervalSeconds(
+      final int seconds)
+    {
+      this.intervalSeconds = Math.max(0, seconds);
+    }
+
+    @Override
+    public int intervalSeconds()
+    {
+      return this.intervalSeconds;
+    }
+
+    void save(
+      final Properties properties)
+    {
+      properties.setProperty(
+        AUTOSAVE_INTERVAL_KEY,
+        Integer.toUnsignedString(this.intervalSeconds)
+      );
+    }
+
+    void load(
+      final Properties properties)
+    {
+      this.setIntervalSeconds(
+        intKey(properties, AUTOSAVE_INTERVAL_KEY, AUTOSAVE_INTERVAL_DEFAULT));
+    }
+  }
+
+  private static final class OBPreferencesTrustedFiles
+    implements OBPreferencesTrustedFilesType
+  {
+    private static final int TRUSTED_FILES_MAXIMUM = 32;
+    private static final String TRUSTED_ENABLED_KEY = "trusted.enabled";
+    private static final String TRUSTED_FILES_KEY = "trusted.files";
+    private static final String TRUSTED_HASHES_KEY = "trusted.hashes";
+    private final LinkedHashMap<Path, String> hashes;
+    private volatile boolean enabled;
+
+    OBPreferencesTrustedFiles()
+    {
+      this.hashes = new LinkedHashMap<>();
+    }
+
+    @Override
+    public void setEnabled(
+      final boolean inEnabled)
+    {
+      this.enabled = inEnabled;
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+      return this.enabled;
+    }
+
+    @Override
+    public Optional<String> savedHashOf(
+      final Path file)
+    {
+      Objects.requireNonNull(file, "file");
+
+      synchronized (this.hashes) {
+        return Optional.ofNullable(this.hashes.get(file.toAbsolutePath()));
+      }
+    }
+
+    @Override
+    public void setSavedHash(
+      final Path file,
+      final String hash)
+    {
+      Objects.requireNonNull(file, "file");
+      Objects.requireNonNull(hash, "hash");
+
+      synchronized (this.hashes) {
+        final var path = file.toAbsolutePath();
+        this.hashes.remove(path);
+        this.hashes.put(path, hash);
+        while (this.hashes.size() > TRUSTED_FILES_MAXIMUM) {
+          this.hashes.remove(this.hashes.keySet().iterator().next());
+        }
+      }
+    }
+
+    @Override
+    public void clearSavedHash(
+      final Path file)
+    {
+      Objects.requireNonNull(file, "file");
+
+      synchronized (this.hashes) {
+        this.hashes.remove(file.toAbsolutePath());
+      }
+    }
+
+    void save(
+      final Properties properties)
+    {
+      properties.setProperty(
+        TRUSTED_ENABLED_KEY,
+        Boolean.toString(this.enabled)
+      );
+
+      synchronized (this.hashes) {
+        int index = 0;
+        for (final var entry : this.hashes.entrySet()) {
+          final var indexValue = Integer.valueOf(index);
+          properties.setProperty(
+            String.format("%s.%d", TRUSTED_FILES_KEY, indexValue),
+            entry.getKey().toString()
+          );
+          properties.setProperty(
+            String.format("%s.%d", TRUSTED_HASHES_KEY, indexValue),
+            entry.getValue()
+          );
+          ++index;
+        }
+      }
+    }
+
+    void load(
+      final Properties properties)
+    {
+      this.setEnabled(
+        Boolean.parseBoolean(properties.getProperty(TRUSTED_ENABLED_KEY)));
+
+      final var files =
+        listKey(properties, TRUSTED_FILES_KEY).collect(Collectors.toList());
+      final var hashValues =
+        listKey(properties, TRUSTED_HASHES_KEY).collect(Collectors.toList());
+
+      synchronized (this.hashes) {
+        this.hashes.clear();
+      }
+
+      final var count = Math.min(files.size(), hashValues.size());
+      for (int index = 0; index < count; ++index) {
+        this.setSavedHash(Paths.get(files.get(index)), hashValues.get(index));
+      }
     }
   }
 }
@@ -19,26 +19,45 @@ package com.io7m.olivebench.preferences;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
 public final class OBPreferencesController
   implements OBPreferencesControllerType
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(OBPreferencesController.class);
 
+  private static final Duration DEFAULT_WRITE_DELAY =
+    Duration.ofMillis(500L);
+
   private final OBPreferencesType preferences;
   private final Path file;
   private final Path fileTmp;
+  private final Duration writeDelay;
+  private final ScheduledThreadPoolExecutor writer;
+  private final AtomicBoolean writePending;
+  private final Object updateLock;
+  private final Object writeLock;
+  private boolean dirty;
 
   private OBPreferencesController(
     final OBPreferencesType inPreferences,
     final Path inFile,
-    final Path inFileTmp)
+    final Path inFileTmp,
+    final Duration inWriteDelay)
   {
     this.preferences =
       Objects.requireNonNull(inPreferences, "inPreferences");
@@ -46,14 +65,42 @@ public final class OBPreferencesController
       Objects.requireNonNull(inFile, "file");
     this.fileTmp =
       Objects.requireNonNull(inFileTmp, "fileTmp");
+    this.writeDelay =
+      Objects.requireNonNull(inWriteDelay, "writeDelay");
+
+    this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+      final var thread = new Thread(runnable);
+      thread.setDaemon(true);
+      thread.setName(
+        String.format(
+          "com.io7m.olivebench.OBPreferencesController.writer[%d]",
+          Long.valueOf(thread.getId())
+        )
+      );
+      return thread;
+    });
+    this.writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+    this.writePending = new AtomicBoolean(false);
+    this.updateLock = new Object();
+    this.writeLock = new Object();
   }
 
   public static OBPreferencesControllerType create(
     final Path file,
     final Path fileTmp)
+  {
+    return create(file, fileTmp, DEFAULT_WRITE_DELAY);
+  }
+
+  public static OBPreferencesControllerType create(
+    final Path file,
+    final Path fileTmp,
+    final Duration writeDelay)
   {
     Objects.requireNonNull(file, "file");
     Objects.requireNonNull(fileTmp, "fileTmp");
+    Objects.requireNonNull(writeDelay, "writeDelay");
 
     final var preferences = OBPreferences.create();
     if (Files.isRegularFile(file)) {
@@ -65,7 +112,7 @@ public final class OBPreferencesController
     }
 
     final var controller =
-      new OBPreferencesController(preferences, file, fileTmp);
+      new OBPreferencesController(preferences, file, fileTmp, writeDelay);
 
     /*
      * Schedule an initial update that does nothing. This is to ensure that
@@ -84,6 +131,15 @@ public final class OBPreferencesController
     return this.preferences;
   }
 
+  /*
+   * Updates are applied to the in-memory preferences immediately, and the
+   * preferences are written to storage later on the writer thread. The
+   * first update after a write schedules the next write, and any updates
+   * that arrive before it runs are carried along with it, so a burst of
+   * updates costs a single write. Errors writing the file are logged by
+   * the writer and the preferences remain dirty until the next attempt.
+   */
+
   @Override
   public void update(
     final Consumer<OBPreferencesType> updater)
@@ -91,10 +147,11 @@ public final class OBPreferencesController
   {
     Objects.requireNonNull(updater, "updater");
 
-    updater.accept(this.preferences);
-    LOG.debug("saving preferences {}", this.file);
-    Files.createDirectories(this.file.getParent());
-    this.preferences.saveTo(this.file, this.fileTmp);
+    synchronized (this.updateLock) {
+      updater.accept(this.preferences);
+      this.dirty = true;
+    }
+    this.scheduleWrite();
   }
 
   @Override
@@ -107,4 +164,81 @@ public final class OBPreferencesController
       LOG.error("unable to save preferences: ", e);
     }
   }
+
+  private void scheduleWrite()
+  {
+    if (!this.writePending.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      this.writer.schedule(
+        this::writeQuietly,
+        this.writeDelay.toMillis(),
+        TimeUnit.MILLISECONDS
+      );
+    } catch (final RejectedExecutionException e) {
+      this.writePending.set(false);
+      LOG.debug("writer shut down; preferences will be saved on flush");
+    }
+  }
+
+  private void writeQuietly()
+  {
+    this.writePending.set(false);
+
+    try {
+      this.flush();
+    } catch (final IOException e) {
+      LOG.error("unable to save preferences: ", e);
+    }
+  }
+
+  /*
+   * The preferences are serialized in memory while holding the update
+   * lock, so that the file always reflects a state between two complete
+   * updates, and then written without holding it so that updates never
+   * wait for the disk.
+   */
+
+  @Override
+  public void flush()
+    throws IOException
+  {
+    synchronized (this.writeLock) {
+      final var bytes = new ByteArrayOutputStream(4096);
+      synchronized (this.updateLock) {
+        if (!this.dirty) {
+          return;
+        }
+        this.preferences.save(bytes);
+        this.dirty = false;
+      }
+
+      try {
+        LOG.debug("saving preferences {}", this.file);
+        Files.createDirectories(this.file.getParent());
+        Files.write(this.fileTmp, bytes.toByteArray());
+        Files.move(this.fileTmp, this.file, ATOMIC_MOVE, REPLACE_EXISTING);
+      } catch (final IOException e) {
+        synchronized (this.updateLock) {
+          this.dirty = true;
+        }
+        throw e;
+      }
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    LOG.debug("shutting down preferences controller");
+    this.writer.shutdown();
+
+    try {
+      this.flush();
+    } catch (final IOException e) {
+      LOG.error("unable to save preferences: ", e);
+    }
+  }
 }
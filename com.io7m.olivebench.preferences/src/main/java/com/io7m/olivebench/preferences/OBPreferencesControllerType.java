@@ -18,10 +18,11 @@ package com.io7m.olivebench.preferences;
 
 import com.io7m.olivebench.services.api.OBServiceType;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.function.Consumer;
 
-public interface OBPreferencesControllerType extends OBServiceType
+public interface OBPreferencesControllerType extends Closeable, OBServiceType
 {
   OBPreferencesReadableType preferences();
 
@@ -31,4 +32,10 @@ public interface OBPreferencesControllerType extends OBServiceType
 
   void updateQuietly(
     Consumer<OBPreferencesType> updater);
+
+  void flush()
+    throws IOException;
+
+  @Override
+  void close();
 }
@@ -45,6 +45,18 @@ public interface OBPreferencesReadableType
 
   OBPreferencesRecentItemsReadableType recentItems();
 
+  /**
+   * @return Preferences related to autosaving
+   */
+
+  OBPreferencesAutosaveReadableType autosave();
+
+  /**
+   * @return Preferences related to trusting previously saved files
+   */
+
+  OBPreferencesTrustedFilesReadableType trustedFiles();
+
   /**
    * Save the current preferences to the given output stream.
    *
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.preferences;
+
+import java.nio.file.Path;
+
+/**
+ * Preferences related to trusting previously saved files.
+ */
+
+public interface OBPreferencesTrustedFilesType
+  extends OBPreferencesTrustedFilesReadableType
+{
+  /**
+   * Enable or disable trusted opening of saved files.
+   *
+   * @param enabled {@code true} if trusted opening is enabled
+   *
+   * @see #isEnabled()
+   */
+
+  void setEnabled(boolean enabled);
+
+  /**
+   * Record the hash of a file that has just been saved.
+   *
+   * @param file The file
+   * @param hash The hash of the file content
+   */
+
+  void setSavedHash(
+    Path file,
+    String hash);
+
+  /**
+   * Forget the hash of the given file.
+   *
+   * @param file The file
+   */
+
+  void clearSavedHash(Path file);
+}
@@ -31,6 +31,12 @@ public interface OBPreferencesType extends OBPreferencesReadableType
   @Override
   OBPreferencesRecentItemsType recentItems();
 
+  @Override
+  OBPreferencesAutosaveType autosave();
+
+  @Override
+  OBPreferencesTrustedFilesType trustedFiles();
+
   /**
    * Load preferences from the given input stream.
    *
@@ -23,4 +23,11 @@ public interface OBPreferencesUndoReadableType
    */
 
   int historySize();
+
+  /**
+   * @return The approximate maximum number of bytes of memory that the undo
+   * history may retain
+   */
+
+  long historyMemoryLimit();
 }
@@ -31,4 +31,14 @@ public interface OBPreferencesUndoType extends OBPreferencesUndoReadableType
    */
 
   void setHistorySize(int size);
+
+  /**
+   * Set the undo history memory limit.
+   *
+   * @param bytes The new limit in bytes
+   *
+   * @see #historyMemoryLimit()
+   */
+
+  void setHistoryMemoryLimit(long bytes);
 }
@@ -20,6 +20,8 @@ import java.nio.file.Path;
 
 public interface OBControllerStringsType extends OBStringResourcesType
 {
+  String controllerBatch(int count);
+
   String controllerCloseComposition();
 
   String controllerCompositionStatusChanged();
@@ -30,6 +32,10 @@ public interface OBControllerStringsType extends OBStringResourcesType
 
   String controllerDeleteChannelFailed();
 
+  String controllerLoadChannels();
+
+  String controllerLoadChannelsFailed();
+
   String controllerNewComposition();
 
   String controllerOpenComposition();
@@ -40,14 +46,20 @@ public interface OBControllerStringsType extends OBStringResourcesType
 
   String controllerOpenCompositionParsingFailed();
 
+  String controllerRecoverComposition();
+
   String controllerSaveComposition();
 
   String controllerSaveCompositionFailed();
 
   String controllerSaveCompositionSaving(Path file);
 
+  String controllerSaveCompositionWritten(Path file, long bytes);
+
   String controllerTaskFinished();
 
+  String controllerTaskCancelled();
+
   String controllerTaskStarted();
 
   String controllerUndoStatusChanged();
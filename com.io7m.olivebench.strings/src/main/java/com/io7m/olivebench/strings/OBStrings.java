@@ -17,6 +17,7 @@
 package com.io7m.olivebench.strings;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.text.MessageFormat;
 import java.util.Locale;
 import java.util.ResourceBundle;
@@ -278,6 +279,18 @@ public final class OBStrings implements OBStringsType
       "controller.event.compositionStatusChanged");
   }
 
+  @Override
+  public String controllerLoadChannels()
+  {
+    return this.resourceBundle.getString("controller.task.loadChannels.name");
+  }
+
+  @Override
+  public String controllerLoadChannelsFailed()
+  {
+    return this.resourceBundle.getString("controller.task.loadChannels.error");
+  }
+
   @Override
   public String controllerOpenComposition()
   {
@@ -297,6 +310,36 @@ public final class OBStrings implements OBStringsType
       "controller.task.openComposition.errorFileParse");
   }
 
+  @Override
+  public String controllerRecoverComposition()
+  {
+    return this.resourceBundle.getString(
+      "controller.task.recoverComposition.name");
+  }
+
+  @Override
+  public String controllerBatch(final int count)
+  {
+    return this.format("controller.task.batch.name", Integer.valueOf(count));
+  }
+
+  @Override
+  public String controllerSaveCompositionWritten(
+    final Path file,
+    final long bytes)
+  {
+    return this.format(
+      "controller.task.saveComposition.written",
+      file,
+      Long.valueOf(bytes));
+  }
+
+  @Override
+  public String controllerTaskCancelled()
+  {
+    return this.resourceBundle.getString("controller.task.cancelled");
+  }
+
   @Override
   public String controllerOpenCompositionParsing(final Path file)
   {
@@ -383,6 +426,32 @@ public final class OBStrings implements OBStringsType
     return this.resourceBundle.getString("ui.unsaved.title");
   }
 
+  @Override
+  public String recoveryRecover()
+  {
+    return this.resourceBundle.getString("ui.recovery.recover");
+  }
+
+  @Override
+  public String recoveryDiscard()
+  {
+    return this.resourceBundle.getString("ui.recovery.discard");
+  }
+
+  @Override
+  public String recoveryMessage(
+    final Path file,
+    final FileTime time)
+  {
+    return this.format("ui.recovery.message", file, time.toString());
+  }
+
+  @Override
+  public String recoveryTitle()
+  {
+    return this.resourceBundle.getString("ui.recovery.title");
+  }
+
   @Override
   public String windowTitle()
   {
@@ -17,6 +17,7 @@
 package com.io7m.olivebench.strings;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 
 public interface OBUIStringsType
 {
@@ -28,6 +29,14 @@ public interface OBUIStringsType
 
   String unsavedChangesTitle();
 
+  String recoveryRecover();
+
+  String recoveryDiscard();
+
+  String recoveryMessage(Path file, FileTime time);
+
+  String recoveryTitle();
+
   String windowTitle();
 
   String windowTitleSaved(Path file);
@@ -0,0 +1,398 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.tests;
+
+import com.io7m.jregions.core.parameterized.areas.PAreaL;
+import com.io7m.jtensors.core.parameterized.vectors.PVector3D;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserError;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserOptions;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParsers;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializerOptions;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializers;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
+import com.io7m.olivebench.model.OBComposition;
+import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.model.graph.OBChannelMetadata;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBCompositionGraph;
+import com.io7m.olivebench.model.graph.OBNodeMetadata;
+import com.io7m.olivebench.model.graph.OBRegionType;
+import com.io7m.olivebench.model.graph.OBTextRegion;
+import com.io7m.olivebench.model.graph.OBTextRegionData;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.metadata.OBMetadataProperty;
+import com.io7m.olivebench.model.names.OBName;
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+import com.io7m.olivebench.strings.OBStrings;
+import com.io7m.olivebench.strings.OBStringsType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class OBBinaryFormatTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBBinaryFormatTest.class);
+
+  private OBCompositionParsersType parsers;
+  private OBCompositionSerializersType serializers;
+  private OBStringsType strings;
+  private Path directory;
+  private OBServiceDirectoryType services;
+
+  private static void logErrors(
+    final List<OBCompositionParserError> errors)
+  {
+    for (final var error : errors) {
+      LOG.error(
+        "{}:{}: {}",
+        Integer.valueOf(error.lexical().line()),
+        Integer.valueOf(error.lexical().column()),
+        error.message());
+    }
+  }
+
+  @BeforeEach
+  public void testSetup()
+    throws IOException
+  {
+    this.strings =
+      OBStrings.of(OBStrings.getResourceBundle());
+    this.parsers =
+      OBCompositionParsers.create();
+    this.serializers =
+      OBCompositionSerializers.create();
+
+    this.services =
+      Mockito.mock(OBServiceDirectoryType.class);
+
+    Mockito.when(this.services.requireService(OBStringsType.class))
+      .thenReturn(this.strings);
+
+    this.directory = OBTestDirectories.createTempDirectory();
+  }
+
+  private OBCompositionType createComposition(
+    final int channels,
+    final int regions)
+    throws Exception
+  {
+    final var graph = OBCompositionGraph.create(this.services);
+    for (int channelIndex = 0; channelIndex < channels; ++channelIndex) {
+      final var channel = graph.createChannel(
+        OBNodeMetadata.builder()
+          .setName(OBName.of("channel" + channelIndex))
+          .setArea(PAreaL.of(0L, 100L, channelIndex, channelIndex + 1L))
+          .build(),
+        OBChannelMetadata.builder()
+          .setColor(PVector3D.of(0.25, 0.5, channelIndex / 100.0))
+          .build()
+      );
+
+      for (int regionIndex = 0; regionIndex < regions; ++regionIndex) {
+        graph.createRegion(
+          channel,
+          OBNodeMetadata.builder()
+            .setName(OBName.of("region" + regionIndex))
+            .setArea(PAreaL.of(regionIndex, regionIndex + 10L, 0L, 1L))
+            .build(),
+          OBTextRegion::create,
+          OBTextRegionData.builder()
+            .setText("Text éè " + regionIndex)
+            .build()
+        );
+      }
+    }
+
+    final var composition = OBComposition.createWith(this.services, graph);
+    composition.metadata().set(
+      OBCompositionMetadata.builder()
+        .addProperties(OBMetadataProperty.of("title", "Binary"))
+        .addProperties(OBMetadataProperty.of("author", "Someone"))
+        .build()
+    );
+    return composition;
+  }
+
+  private static void assertCompositionsEqual(
+    final OBCompositionReadableType expected,
+    final OBCompositionReadableType received)
+  {
+    final var expectedGraph = expected.graph();
+    final var receivedGraph = received.graph();
+
+    Assertions.assertEquals(
+      expected.metadata().read(),
+      received.metadata().read());
+    Assertions.assertEquals(
+      expectedGraph.id(),
+      receivedGraph.id());
+    Assertions.assertEquals(
+      expectedGraph.nodes().keySet(),
+      receivedGraph.nodes().keySet());
+
+    for (final var id : expectedGraph.nodes().keySet()) {
+      final var nodeExpected = expectedGraph.nodes().get(id);
+      final var nodeReceived = receivedGraph.nodes().get(id);
+      if (nodeExpected.equals(expectedGraph.root())) {
+        continue;
+      }
+
+      Assertions.assertEquals(
+        nodeExpected.nodeMetadata().read(),
+        nodeReceived.nodeMetadata().read());
+      Assertions.assertEquals(
+        expectedGraph.graph().incomingEdgesOf(nodeExpected)
+          .iterator().next().nodeSource().id(),
+        receivedGraph.graph().incomingEdgesOf(nodeReceived)
+          .iterator().next().nodeSource().id());
+
+      if (nodeExpected instanceof OBChannelType) {
+        Assertions.assertEquals(
+          ((OBChannelType) nodeExpected).channelMetadata().read(),
+          ((OBChannelType) nodeReceived).channelMetadata().read());
+      } else {
+        Assertions.assertEquals(
+          ((OBRegionType<?>) nodeExpected).data().read(),
+          ((OBRegionType<?>) nodeReceived).data().read());
+      }
+    }
+  }
+
+  private void save(
+    final String formatName,
+    final OBCompositionReadableType composition,
+    final Path file)
+    throws Exception
+  {
+    this.serializers.serializeAtomically(
+      file,
+      file.resolveSibling(file.getFileName() + ".tmp"),
+      composition,
+      OBCompositionSerializerOptions.builder()
+        .setFormat(formatName)
+        .build()
+    );
+  }
+
+  private OBCompositionType open(
+    final Path file)
+    throws Exception
+  {
+    try (var parser = this.parsers.createParser(
+      this.services,
+      file,
+      OBCompositionParserOptions.builder().build())) {
+      final var result = parser.execute();
+      logErrors(parser.errors());
+      return result.orElseThrow();
+    }
+  }
+
+  private List<OBCompositionParserError> openErrors(
+    final Path file)
+    throws Exception
+  {
+    try (var parser = this.parsers.createParser(
+      this.services,
+      file,
+      OBCompositionParserOptions.builder().build())) {
+      Assertions.assertTrue(parser.execute().isEmpty());
+      logErrors(parser.errors());
+      return parser.errors();
+    }
+  }
+
+  @Test
+  public void testRoundTripMapped()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 32);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    final var composition1 = this.open(file);
+    assertCompositionsEqual(composition0, composition1);
+  }
+
+  @Test
+  public void testRoundTripStream()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 32);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    try (var stream = Files.newInputStream(file)) {
+      try (var parser =
+             this.parsers.createParser(
+               this.services,
+               file.toUri(),
+               stream,
+               OBCompositionParserOptions.builder().build())) {
+        final var result = parser.execute();
+        logErrors(parser.errors());
+        assertCompositionsEqual(composition0, result.orElseThrow());
+      }
+    }
+  }
+
+  @Test
+  public void testRoundTripEmpty()
+    throws Exception
+  {
+    final var composition0 = OBComposition.create(this.services);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    final var composition1 = this.open(file);
+    assertCompositionsEqual(composition0, composition1);
+    Assertions.assertEquals(1, composition1.graph().nodes().size());
+  }
+
+  @Test
+  public void testTruncated()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(2, 8);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 10L);
+    }
+
+    Assertions.assertFalse(this.openErrors(file).isEmpty());
+  }
+
+  @Test
+  public void testBadParent()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(2, 8);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    /*
+     * Make the second node claim to be its own parent.
+     */
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      final var parent = ByteBuffer.allocate(4);
+      parent.putInt(1);
+      parent.flip();
+      channel.write(parent, 64L + 88L + 4L);
+    }
+
+    Assertions.assertFalse(this.openErrors(file).isEmpty());
+  }
+
+  @Test
+  public void testBadVersion()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(1, 1);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      final var version = ByteBuffer.allocate(4);
+      version.putInt(2);
+      version.flip();
+      channel.write(version, 8L);
+    }
+
+    Assertions.assertFalse(this.openErrors(file).isEmpty());
+  }
+
+  @Test
+  public void testMappedProgress()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(2, 2100);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    final var received = new ArrayList<String>();
+    try (var parser = this.parsers.createParser(
+      this.services,
+      file,
+      OBCompositionParserOptions.builder()
+        .setProgress((completed, total) -> {
+          received.add(completed + "/" + total);
+        })
+        .build())) {
+      assertCompositionsEqual(composition0, parser.execute().orElseThrow());
+    }
+
+    Assertions.assertEquals(List.of("4096/4203", "4203/4203"), received);
+  }
+
+  @Test
+  public void testMappedProgressAborted()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(2, 2100);
+    final var file = this.directory.resolve("composition.obb");
+    this.save("binary", composition0, file);
+
+    try (var parser = this.parsers.createParser(
+      this.services,
+      file,
+      OBCompositionParserOptions.builder()
+        .setProgress((completed, total) -> {
+          throw new InterruptedIOException("Cancelled");
+        })
+        .build())) {
+      Assertions.assertTrue(parser.execute().isEmpty());
+      Assertions.assertEquals(1, parser.errors().size());
+    }
+  }
+
+  @Test
+  public void testCompareXML()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 32);
+    final var fileXML = this.directory.resolve("composition.xml");
+    final var fileBinary = this.directory.resolve("composition.obb");
+
+    this.save("xml", composition0, fileXML);
+    this.save("binary", composition0, fileBinary);
+
+    final var compositionXML = this.open(fileXML);
+    final var compositionBinary = this.open(fileBinary);
+    assertCompositionsEqual(composition0, compositionXML);
+    assertCompositionsEqual(compositionXML, compositionBinary);
+  }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.tests;
+
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserLoading;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserOptions;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParsers;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializerOptions;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializers;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
+import com.io7m.olivebench.controller.OBController;
+import com.io7m.olivebench.model.OBComposition;
+import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.model.graph.OBCompositionGraph;
+import com.io7m.olivebench.model.graph.OBTextRegion;
+import com.io7m.olivebench.model.graph.OBTextRegionData;
+import com.io7m.olivebench.preferences.OBPreferencesControllerType;
+import com.io7m.olivebench.preferences.OBPreferencesTrustedFilesType;
+import com.io7m.olivebench.preferences.OBPreferencesType;
+import com.io7m.olivebench.preferences.OBPreferencesUndoType;
+import com.io7m.olivebench.services.api.OBServiceDirectory;
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+import com.io7m.olivebench.strings.OBStrings;
+import com.io7m.olivebench.strings.OBStringsType;
+import com.io7m.olivebench.xml.v1.OB1Serializers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/*
+ * Timings of saving and loading large compositions. These are not run as
+ * part of the test suite; run them with the "benchmarks" profile:
+ *
+ *   mvn -P benchmarks -pl com.io7m.olivebench.tests test
+ *
+ * Each measurement is repeated so that the later iterations show the
+ * times once the JIT has warmed up.
+ */
+
+public final class OBCompositionBenchmarks
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBCompositionBenchmarks.class);
+
+  private static final int ITERATIONS = 5;
+  private static final int BATCH_FILES = 32;
+
+  private OBCompositionParsersType parsers;
+  private OBCompositionSerializersType serializers;
+  private OBServiceDirectoryType services;
+  private Path directory;
+
+  @BeforeEach
+  public void setup()
+    throws IOException
+  {
+    final OBStringsType strings =
+      OBStrings.of(OBStrings.getResourceBundle());
+
+    this.parsers =
+      OBCompositionParsers.create();
+    this.serializers =
+      OBCompositionSerializers.create();
+    this.services =
+      Mockito.mock(OBServiceDirectoryType.class);
+
+    Mockito.when(this.services.requireService(OBStringsType.class))
+      .thenReturn(strings);
+    Mockito.when(this.services.requireService(OBCompositionParsersType.class))
+      .thenReturn(this.parsers);
+
+    this.directory = OBTestDirectories.createTempDirectory();
+  }
+
+  private OBCompositionType createComposition(
+    final int channels,
+    final int regions)
+    throws Exception
+  {
+    final var graph = OBCompositionGraph.create(this.services);
+    for (int channelIndex = 0; channelIndex < channels; ++channelIndex) {
+      final var channel = graph.createChannel("channel" + channelIndex);
+      for (int regionIndex = 0; regionIndex < regions; ++regionIndex) {
+        graph.createRegion(
+          channel,
+          OBTextRegion::create,
+          OBTextRegionData.builder()
+            .setText("region" + regionIndex)
+            .build()
+        );
+      }
+    }
+    return OBComposition.createWith(this.services, graph);
+  }
+
+  private static byte[] serializeWith(
+    final OB1Serializers serializers,
+    final Path target,
+    final OBCompositionReadableType composition)
+    throws Exception
+  {
+    final var bytes = new ByteArrayOutputStream();
+    try (var serializer =
+           serializers.create(target.toUri(), bytes, composition)) {
+      serializer.execute();
+    }
+    return bytes.toByteArray();
+  }
+
+  private Duration save(
+    final String formatName,
+    final OBCompositionReadableType composition,
+    final Path file)
+    throws Exception
+  {
+    final var timeThen = Instant.now();
+    this.serializers.serializeAtomically(
+      file,
+      file.resolveSibling(file.getFileName() + ".tmp"),
+      composition,
+      OBCompositionSerializerOptions.builder()
+        .setFormat(formatName)
+        .build()
+    );
+    return Duration.between(timeThen, Instant.now());
+  }
+
+  private Duration open(
+    final Path file)
+    throws Exception
+  {
+    final var timeThen = Instant.now();
+    try (var parser = this.parsers.createParser(
+      this.services,
+      file,
+      OBCompositionParserOptions.builder().build())) {
+      parser.execute().orElseThrow();
+    }
+    return Duration.between(timeThen, Instant.now());
+  }
+
+  private Duration openPartitioned(
+    final Path directory)
+    throws Exception
+  {
+    final var timeThen = Instant.now();
+    try (var parser = this.parsers.createParser(
+      this.services,
+      directory,
+      OBCompositionParserOptions.builder()
+        .setLoading(OBCompositionParserLoading.EAGER)
+        .build())) {
+      parser.execute().orElseThrow();
+    }
+    return Duration.between(timeThen, Instant.now());
+  }
+
+  @Test
+  public void saveFragmentsCached()
+    throws Exception
+  {
+    final var composition = this.createComposition(8, 500);
+    final var target = this.directory.resolve("output.xml");
+
+    for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+      final var serializers = new OB1Serializers();
+      final var time0 = Instant.now();
+      serializeWith(serializers, target, composition);
+      final var time1 = Instant.now();
+      serializeWith(serializers, target, composition);
+      final var time2 = Instant.now();
+
+      LOG.info(
+        "save: encoded {} cached {}",
+        Duration.between(time0, time1),
+        Duration.between(time1, time2));
+    }
+  }
+
+  @Test
+  public void saveParallel()
+    throws Exception
+  {
+    final var composition = this.createComposition(500, 8);
+    final var target = this.directory.resolve("output.xml");
+
+    for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+      final var time0 = Instant.now();
+      serializeWith(new OB1Serializers(), target, composition);
+      final var time1 = Instant.now();
+      serializeWith(new OB1Serializers(Runnable::run), target, composition);
+      final var time2 = Instant.now();
+
+      LOG.info(
+        "save: parallel {} sequential {}",
+        Duration.between(time0, time1),
+        Duration.between(time1, time2));
+    }
+  }
+
+  @Test
+  public void saveCompressed()
+    throws Exception
+  {
+    final var composition = this.createComposition(8, 500);
+    final var plain = this.directory.resolve("output.xml");
+    final var compressed = this.directory.resolve("output.xml.gz");
+
+    for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+      final var savePlain = this.save("xml", composition, plain);
+      final var loadPlain = this.open(plain);
+      final var saveCompressed = this.save("xml", composition, compressed);
+      final var loadCompressed = this.open(compressed);
+
+      LOG.info(
+        "uncompressed: {} octets, save {}, load {}",
+        Long.valueOf(Files.size(plain)),
+        savePlain,
+        loadPlain);
+      LOG.info(
+        "gzip:         {} octets, save {}, load {}",
+        Long.valueOf(Files.size(compressed)),
+        saveCompressed,
+        loadCompressed);
+    }
+  }
+
+  @Test
+  public void saveHeap()
+    throws Exception
+  {
+    final var composition = this.createComposition(8, 500);
+    final var outputFile = this.directory.resolve("output.xml");
+    final var pools =
+      ManagementFactory.getMemoryPoolMXBeans()
+        .stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .collect(Collectors.toList());
+
+    for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+      System.gc();
+      pools.forEach(pool -> pool.resetPeakUsage());
+      final var used =
+        pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+
+      final var time = this.save("xml", composition, outputFile);
+
+      final var peak =
+        pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+      LOG.info(
+        "save {} size {} heap before {} peak {}",
+        time,
+        Long.valueOf(Files.size(outputFile)),
+        Long.valueOf(used),
+        Long.valueOf(peak));
+    }
+  }
+
+  /*
+   * The XML parser builds the composition graph while it reads the file,
+   * and so the peak heap during a load should stay close to the size of
+   * the finished graph rather than a multiple of it.
+   */
+
+  @Test
+  public void loadHeap()
+    throws Exception
+  {
+    final var outputFile = this.directory.resolve("output.xml");
+    this.save("xml", this.createComposition(64, 500), outputFile);
+
+    final var pools =
+      ManagementFactory.getMemoryPoolMXBeans()
+        .stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .collect(Collectors.toList());
+
+    for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+      System.gc();
+      pools.forEach(pool -> pool.resetPeakUsage());
+      final var used =
+        pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+
+      final var time = this.open(outputFile);
+
+      final var peak =
+        pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+      LOG.info(
+        "load {} size {} heap before {} peak {}",
+        time,
+        Long.valueOf(Files.size(outputFile)),
+        Long.valueOf(used),
+        Long.valueOf(peak));
+    }
+  }
+
+  @Test
+  public void loadPartitioned()
+    throws Exception
+  {
+    final var composition = this.createComposition(16, 64);
+    final var outputFile = this.directory.resolve("output.xml");
+    final var outputDirectory = this.directory.resolve("output");
+
+    this.save("xml", composition, outputFile);
+    this.serializers.serializePartitionedAtomically(
+      outputDirectory,
+      this.directory.resolve("output.tmp"),
+      composition,
+      UnaryOperator.identity()
+    );
+
+    for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+      LOG.info(
+        "load: single {} partitioned {}",
+        this.open(outputFile),
+        this.openPartitioned(outputDirectory));
+    }
+  }
+
+  @Test
+  public void compareBinary()
+    throws Exception
+  {
+    final var composition = this.createComposition(8, 160);
+    final var fileXML = this.directory.resolve("composition.xml");
+    final var fileBinary = this.directory.resolve("composition.obb");
+
+    for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+      final var saveXML = this.save("xml", composition, fileXML);
+      final var saveBinary = this.save("binary", composition, fileBinary);
+      final var loadXML = this.open(fileXML);
+      final var loadBinary = this.open(fileBinary);
+
+      LOG.info(
+        "xml: save {} load {} size {}; binary: save {} load {} size {}",
+        saveXML,
+        loadXML,
+        Long.valueOf(Files.size(fileXML)),
+        saveBinary,
+        loadBinary,
+        Long.valueOf(Files.size(fileBinary)));
+    }
+  }
+
+  /*
+   * Many files opened and then saved through the controller at once, as
+   * happens when a batch of compositions is converted. Opens parse on the
+   * controller's I/O executor and saves write on its read executor, and
+   * so this shows the throughput of each executor under load.
+   */
+
+  @Test
+  public void batchThroughput()
+    throws Exception
+  {
+    final var inputs = new ArrayList<Path>();
+    for (int index = 0; index < BATCH_FILES; ++index) {
+      final var file = this.directory.resolve("input" + index + ".xml");
+      this.save("xml", this.createComposition(8, 100), file);
+      inputs.add(file);
+    }
+
+    try (var controller = OBController.create(this.controllerServices())) {
+      controller.newComposition().get();
+
+      for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+        final var time0 = Instant.now();
+        final var opens = new ArrayList<CompletableFuture<?>>();
+        for (final var file : inputs) {
+          opens.add(controller.openComposition(file));
+        }
+        CompletableFuture.allOf(opens.toArray(new CompletableFuture[0]))
+          .get();
+
+        final var time1 = Instant.now();
+        final var saves = new ArrayList<CompletableFuture<?>>();
+        for (int index = 0; index < BATCH_FILES; ++index) {
+          saves.add(controller.saveAsComposition(
+            this.directory.resolve("output" + index + ".xml")));
+        }
+        CompletableFuture.allOf(saves.toArray(new CompletableFuture[0]))
+          .get();
+        final var time2 = Instant.now();
+
+        LOG.info(
+          "batch: {} files, open {} ({} files/s), save {} ({} files/s)",
+          Integer.valueOf(BATCH_FILES),
+          Duration.between(time0, time1),
+          filesPerSecond(Duration.between(time0, time1)),
+          Duration.between(time1, time2),
+          filesPerSecond(Duration.between(time1, time2)));
+      }
+    }
+  }
+
+  private static String filesPerSecond(
+    final Duration time)
+  {
+    final var seconds = Math.max(1L, time.toNanos()) / 1_000_000_000.0;
+    return String.format("%.1f", Double.valueOf(BATCH_FILES / seconds));
+  }
+
+  private OBServiceDirectory controllerServices()
+  {
+    final var preferencesController =
+      Mockito.mock(OBPreferencesControllerType.class);
+    final var preferences =
+      Mockito.mock(OBPreferencesType.class);
+    final var preferencesUndo =
+      Mockito.mock(OBPreferencesUndoType.class);
+
+    Mockito.when(preferencesController.preferences())
+      .thenReturn(preferences);
+    Mockito.when(preferences.undo())
+      .thenReturn(preferencesUndo);
+    Mockito.when(preferences.trustedFiles())
+      .thenReturn(Mockito.mock(OBPreferencesTrustedFilesType.class));
+    Mockito.when(Integer.valueOf(preferencesUndo.historySize()))
+      .thenReturn(Integer.valueOf(100));
+    Mockito.when(Long.valueOf(preferencesUndo.historyMemoryLimit()))
+      .thenReturn(Long.valueOf(1_000_000L));
+
+    final var services = new OBServiceDirectory();
+    services.register(OBCompositionParsersType.class, this.parsers);
+    services.register(OBCompositionSerializersType.class, this.serializers);
+    services.register(
+      OBStringsType.class, this.services.requireService(OBStringsType.class));
+    services.register(OBPreferencesControllerType.class, preferencesController);
+    return services;
+  }
+}
@@ -16,14 +16,34 @@
 
 package com.io7m.olivebench.tests;
 
+import com.io7m.jregions.core.parameterized.areas.PAreaL;
+import com.io7m.olivebench.composition_parser.api.OBChannelStoredContentsType;
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainer;
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainerChunk;
 import com.io7m.olivebench.composition_parser.api.OBCompositionParserError;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserLoading;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserOptions;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserValidation;
 import com.io7m.olivebench.composition_parser.api.OBCompositionParsers;
 import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
+import com.io7m.olivebench.composition_parser.api.OBCompositionPartitions;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIFormatType;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIParsersType;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPISourceType;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializerOptions;
 import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializers;
+import com.io7m.olivebench.model.OBComposition;
 import com.io7m.olivebench.model.OBCompositionType;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBCompositionGraph;
+import com.io7m.olivebench.model.graph.OBTextRegion;
+import com.io7m.olivebench.model.graph.OBTextRegionData;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.metadata.OBMetadataProperty;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import com.io7m.olivebench.strings.OBStrings;
 import com.io7m.olivebench.strings.OBStringsType;
+import com.io7m.olivebench.xml.v1.OB1Serializers;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,10 +52,28 @@ import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static java.nio.file.StandardOpenOption.WRITE;
 
 public final class OBCompositionParsersTest
 {
@@ -57,10 +95,24 @@ public final class OBCompositionParsersTest
     serializers.serializeAtomically(
       outputFile,
       outputTmp,
-      composition0
+      composition0,
+      OBCompositionSerializerOptions.builder().build()
     );
   }
 
+  private static byte[] serializeWith(
+    final OB1Serializers serializers,
+    final URI target,
+    final OBCompositionType composition)
+    throws Exception
+  {
+    final var bytes = new ByteArrayOutputStream();
+    try (var serializer = serializers.create(target, bytes, composition)) {
+      serializer.execute();
+    }
+    return bytes.toByteArray();
+  }
+
   private static void logErrors(
     final List<OBCompositionParserError> errors)
   {
@@ -99,6 +151,14 @@ public final class OBCompositionParsersTest
     this.roundTrip("testComposition0.xml");
   }
 
+  @Test
+  public void testCompositionEdgesBeforeParents()
+    throws Exception
+  {
+    final var composition = this.roundTrip("testComposition1.xml");
+    Assertions.assertEquals(4, composition.graph().nodes().size());
+  }
+
   @Test
   public void testMalformed0()
     throws Exception
@@ -108,7 +168,859 @@ public final class OBCompositionParsersTest
     });
   }
 
-  private void roundTrip(
+  /*
+   * The schema rejects edges to nodes that do not exist, but a trusted
+   * composition is not validated, and so it is the graph builder that must
+   * reject them.
+   */
+
+  @Test
+  public void testDuplicateEdgeTarget()
+    throws Exception
+  {
+    final var errors = this.parseErrors("testDuplicateEdgeTarget.xml");
+    Assertions.assertEquals(1, errors.size());
+    final var error = errors.get(0);
+    Assertions.assertTrue(error.message().contains("more than one edge"));
+    Assertions.assertEquals(61, error.lexical().line());
+  }
+
+  @Test
+  public void testUnknownEdgeTarget()
+    throws Exception
+  {
+    final var errors = this.parseErrors("testUnknownEdgeTarget.xml");
+    Assertions.assertEquals(1, errors.size());
+    final var error = errors.get(0);
+    Assertions.assertTrue(error.message().contains("does not refer to"));
+    Assertions.assertEquals(61, error.lexical().line());
+  }
+
+  private OBCompositionType createComposition(
+    final int channels,
+    final int regions)
+    throws Exception
+  {
+    final var graph = OBCompositionGraph.create(this.services);
+    for (int channelIndex = 0; channelIndex < channels; ++channelIndex) {
+      final var channel = graph.createChannel("channel" + channelIndex);
+      for (int regionIndex = 0; regionIndex < regions; ++regionIndex) {
+        graph.createRegion(
+          channel,
+          OBTextRegion::create,
+          OBTextRegionData.builder()
+            .setText("region" + regionIndex)
+            .build()
+        );
+      }
+    }
+    return OBComposition.createWith(this.services, graph);
+  }
+
+  @Test
+  public void testLargeComposition()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(8, 160);
+    final var outputFile = this.directory.resolve("output.xml");
+    serializeTo(composition0, outputFile);
+    final var composition1 = this.parse(outputFile);
+
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition1.graph().nodes().keySet()
+    );
+  }
+
+  @Test
+  public void testPartitionedComposition()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 8);
+    composition0.metadata().set(
+      OBCompositionMetadata.builder()
+        .addProperties(OBMetadataProperty.of("title", "Partitioned"))
+        .build()
+    );
+
+    final var outputFile = this.directory.resolve("output.xml");
+    serializeTo(composition0, outputFile);
+
+    final var outputDirectory = this.directory.resolve("output");
+    OBCompositionSerializers.create()
+      .serializePartitionedAtomically(
+        outputDirectory,
+        this.directory.resolve("output.tmp"),
+        composition0,
+        UnaryOperator.identity()
+      );
+
+    Assertions.assertTrue(OBCompositionPartitions.isPartitioned(outputDirectory));
+    Assertions.assertEquals(
+      4,
+      OBCompositionPartitions.channelParts(outputDirectory).size());
+
+    final var composition1 = this.parse(outputFile);
+    final var composition2 = this.parsePartitioned(outputDirectory);
+
+    Assertions.assertEquals(
+      composition0.graph().id(),
+      composition2.graph().id()
+    );
+    Assertions.assertEquals(
+      composition0.metadata().read(),
+      composition2.metadata().read()
+    );
+    Assertions.assertEquals(
+      composition1.graph().nodes().keySet(),
+      composition2.graph().nodes().keySet()
+    );
+    for (final var id : composition0.graph().nodes().keySet()) {
+      Assertions.assertEquals(
+        composition0.graph().nodes().get(id).nodeMetadata().read(),
+        composition2.graph().nodes().get(id).nodeMetadata().read()
+      );
+    }
+  }
+
+  @Test
+  public void testPartitionedLazy()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(8, 32);
+    final var outputDirectory = this.directory.resolve("output");
+    final var serializers = OBCompositionSerializers.create();
+    serializers.serializePartitionedAtomically(
+      outputDirectory,
+      this.directory.resolve("output.tmp"),
+      composition0,
+      UnaryOperator.identity()
+    );
+
+    final var composition1 =
+      this.parsePartitioned(outputDirectory, OBCompositionParserLoading.LAZY);
+    final var graph1 = composition1.graph();
+    final var deferred = graph1.channelsDeferred();
+    Assertions.assertEquals(9, graph1.nodes().size());
+    Assertions.assertEquals(8, deferred.size());
+
+    final var events = new ArrayList<Object>();
+    composition1.events().subscribe(events::add);
+
+    final var channelId = deferred.keySet().iterator().next();
+    final var channel = (OBChannelType) graph1.nodes().get(channelId);
+    graph1.channelLoad(
+      channel,
+      OBChannelStoredContentsType.of(deferred.get(channelId)).load());
+    Assertions.assertEquals(9 + 32, graph1.nodes().size());
+    Assertions.assertEquals(7, deferred.size());
+    Assertions.assertEquals(List.of(), events);
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> {
+      serializeTo(composition1, this.directory.resolve("output.xml"));
+    });
+
+    final var savedDirectory = this.directory.resolve("saved");
+    serializers.serializePartitionedAtomically(
+      savedDirectory,
+      this.directory.resolve("saved.tmp"),
+      composition1.snapshot(),
+      UnaryOperator.identity()
+    );
+
+    for (final var id : deferred.keySet()) {
+      Assertions.assertArrayEquals(
+        Files.readAllBytes(
+          OBCompositionPartitions.channelOf(outputDirectory, id)),
+        Files.readAllBytes(
+          OBCompositionPartitions.channelOf(savedDirectory, id))
+      );
+    }
+
+    final var composition2 = this.parsePartitioned(savedDirectory);
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition2.graph().nodes().keySet()
+    );
+    Assertions.assertEquals(
+      Map.of(),
+      composition2.graph().channelsDeferred()
+    );
+  }
+
+  @Test
+  public void testSerializeIndented()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(1, 1);
+    final var outputFile = this.directory.resolve("output.xml");
+    serializeTo(composition0, outputFile);
+
+    final var lines = Files.readAllLines(outputFile);
+    lines.forEach(line -> LOG.debug("{}", line));
+
+    Assertions.assertEquals(
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+      lines.get(0));
+    Assertions.assertTrue(lines.get(1).startsWith("<ob:Composition "));
+    Assertions.assertEquals("  <ob:Metadata/>", lines.get(2));
+    Assertions.assertEquals("  <ob:Graph>", lines.get(3));
+    Assertions.assertEquals("    <ob:Nodes>", lines.get(4));
+    Assertions.assertEquals("</ob:Composition>", lines.get(lines.size() - 1));
+
+    final var composition1 = this.parse(outputFile);
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition1.graph().nodes().keySet()
+    );
+  }
+
+  @Test
+  public void testSerializeDeterministic()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 8);
+    final var outputFile0 = this.directory.resolve("output0.xml");
+    serializeTo(composition0, outputFile0);
+
+    final var composition1 = this.parse(outputFile0);
+    final var outputFile1 = this.directory.resolve("output1.xml");
+    serializeTo(composition1, outputFile1);
+
+    Assertions.assertArrayEquals(
+      Files.readAllBytes(outputFile0),
+      Files.readAllBytes(outputFile1)
+    );
+  }
+
+  @Test
+  public void testSerializeHashedUnchanged()
+    throws Exception
+  {
+    final var composition = this.createComposition(2, 2);
+    final var outputFile = this.directory.resolve("output.xml");
+    final var outputTmp = this.directory.resolve("output.xml.tmp");
+    final var serializers = OBCompositionSerializers.create();
+    final var then = FileTime.from(Instant.parse("2000-01-01T00:00:00Z"));
+
+    final var stamp0 =
+      serializers.serializeAtomically(
+        outputFile,
+        outputTmp,
+        composition,
+        OBCompositionSerializerOptions.builder()
+          .build());
+
+    Assertions.assertEquals(outputFile, stamp0.file());
+    Assertions.assertEquals(Files.size(outputFile), stamp0.size());
+
+    /*
+     * The temporary file is in a directory that does not exist, and so the
+     * save would fail if it tried to write the temporary file.
+     */
+
+    final var stamp1 =
+      serializers.serializeAtomically(
+        outputFile,
+        this.directory.resolve("missing").resolve("output.xml.tmp"),
+        composition,
+        OBCompositionSerializerOptions.builder()
+          .setPrevious(stamp0)
+          .build());
+
+    Assertions.assertEquals(stamp0, stamp1);
+    Assertions.assertEquals(
+      stamp0.lastModified(),
+      Files.getLastModifiedTime(outputFile));
+    Assertions.assertFalse(Files.exists(outputTmp));
+
+    /*
+     * A file that was changed by something else since it was saved is
+     * replaced, even though the hash of the composition is unchanged.
+     */
+
+    final var bytes = Files.readAllBytes(outputFile);
+    final var damaged = bytes.clone();
+    damaged[damaged.length - 2] = (byte) 'x';
+    Files.write(outputFile, damaged);
+    Files.setLastModifiedTime(outputFile, then);
+
+    final var stamp2 =
+      serializers.serializeAtomically(
+        outputFile,
+        outputTmp,
+        composition,
+        OBCompositionSerializerOptions.builder()
+          .setPrevious(stamp0)
+          .build());
+
+    Assertions.assertEquals(stamp0.hash(), stamp2.hash());
+    Assertions.assertNotEquals(then, Files.getLastModifiedTime(outputFile));
+    Assertions.assertArrayEquals(bytes, Files.readAllBytes(outputFile));
+
+    composition.graph().createChannel("extra");
+
+    final var stamp3 =
+      serializers.serializeAtomically(
+        outputFile,
+        outputTmp,
+        composition,
+        OBCompositionSerializerOptions.builder()
+          .setPrevious(stamp2)
+          .build());
+
+    Assertions.assertNotEquals(stamp0.hash(), stamp3.hash());
+    Assertions.assertNotEquals(bytes.length, Files.size(outputFile));
+    Assertions.assertFalse(Files.exists(outputTmp));
+  }
+
+  /*
+   * Channels whose fragments are not cached are encoded on the provider's
+   * executor, and so counting the tasks submitted to the executor counts
+   * the channels that were encoded rather than taken from the cache.
+   */
+
+  @Test
+  public void testSerializeFragmentsReused()
+    throws Exception
+  {
+    final var composition = this.createComposition(4, 8);
+    final var target = this.directory.resolve("output.xml").toUri();
+    final var encoded = new AtomicInteger();
+    final var serializers =
+      new OB1Serializers(task -> {
+        encoded.incrementAndGet();
+        task.run();
+      });
+
+    final var bytes0 = serializeWith(serializers, target, composition);
+    Assertions.assertEquals(4, encoded.getAndSet(0));
+
+    final var bytes1 = serializeWith(serializers, target, composition);
+    Assertions.assertEquals(0, encoded.getAndSet(0));
+    Assertions.assertArrayEquals(bytes0, bytes1);
+
+    final var region =
+      composition.graph()
+        .nodes()
+        .values()
+        .stream()
+        .filter(node -> node instanceof OBTextRegion)
+        .findFirst()
+        .orElseThrow();
+
+    region.setNodeAreaRelative(PAreaL.of(0L, 0L, 23L, 23L));
+
+    final var bytes2 = serializeWith(serializers, target, composition);
+    Assertions.assertEquals(1, encoded.getAndSet(0));
+    Assertions.assertFalse(Arrays.equals(bytes1, bytes2));
+
+    final var bytes3 =
+      serializeWith(new OB1Serializers(Runnable::run), target, composition);
+    Assertions.assertArrayEquals(bytes3, bytes2);
+
+    final var output = this.directory.resolve("output.xml");
+    Files.write(output, bytes2);
+    final var composition2 = this.parse(output);
+    Assertions.assertEquals(
+      region.nodeMetadata().read(),
+      composition2.graph().nodes().get(region.id()).nodeMetadata().read()
+    );
+  }
+
+  /*
+   * More channels are written than are encoded ahead of the channel being
+   * written, so that the window of pending fragments is exercised.
+   */
+
+  @Test
+  public void testSerializeParallel()
+    throws Exception
+  {
+    final var composition = this.createComposition(40, 2);
+    final var target = this.directory.resolve("output.xml").toUri();
+
+    final var parallel =
+      serializeWith(new OB1Serializers(), target, composition);
+    final var sequential =
+      serializeWith(new OB1Serializers(Runnable::run), target, composition);
+
+    Assertions.assertArrayEquals(sequential, parallel);
+  }
+
+  @Test
+  public void testSerializeOverStaleTemporary()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(2, 2);
+
+    final var output = this.directory.resolve("output.xml");
+    final var outputTmp = output.resolveSibling("output.tmp");
+    Files.writeString(outputTmp, "left behind by a crash");
+
+    serializeTo(composition0, output);
+    Assertions.assertFalse(Files.exists(outputTmp));
+
+    final var composition1 = this.parse(output);
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition1.graph().nodes().keySet()
+    );
+  }
+
+  @Test
+  public void testSerializeCompressed()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 8);
+
+    final var plain = this.directory.resolve("output.xml");
+    serializeTo(composition0, plain);
+
+    final var compressed = this.directory.resolve("output.xml.gz");
+    serializeTo(composition0, compressed);
+    final var composition1 = this.parse(compressed);
+
+    final var header = Files.readAllBytes(compressed);
+    Assertions.assertEquals((byte) 0x1f, header[0]);
+    Assertions.assertEquals((byte) 0x8b, header[1]);
+    Assertions.assertTrue(Files.size(compressed) < Files.size(plain));
+
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition1.graph().nodes().keySet()
+    );
+
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             compressed,
+             OBCompositionParserOptions.builder().build())) {
+      final var composition2 = parser.execute();
+      logErrors(parser.errors());
+      Assertions.assertEquals(
+        composition0.graph().nodes().keySet(),
+        composition2.orElseThrow().graph().nodes().keySet()
+      );
+    }
+  }
+
+  @Test
+  public void testContainerIncremental()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(8, 32);
+    final var graph0 = composition0.graph();
+    final var file = this.directory.resolve("output.obc");
+
+    final var chunks0 = this.saveContainer(composition0, file);
+    final var size0 = Files.size(file);
+    Assertions.assertEquals(8, chunks0.size());
+    Assertions.assertEquals(8, graph0.channelOrigins().size());
+
+    final var changedId = chunks0.keySet().iterator().next();
+    final var changed = (OBChannelType) graph0.nodes().get(changedId);
+    graph0.createRegion(
+      changed,
+      OBTextRegion::create,
+      OBTextRegionData.builder()
+        .setText("changed")
+        .build()
+    );
+    Assertions.assertEquals(7, graph0.channelOrigins().size());
+
+    final var chunks1 = this.saveContainer(composition0, file);
+    final var size1 = Files.size(file);
+    for (final var id : chunks0.keySet()) {
+      if (id.equals(changedId)) {
+        Assertions.assertTrue(chunks1.get(id).offset() >= size0);
+      } else {
+        Assertions.assertEquals(chunks0.get(id), chunks1.get(id));
+      }
+    }
+    Assertions.assertTrue(size1 - size0 < size0 / 4L);
+
+    final var composition1 =
+      this.parseContainer(file, OBCompositionParserLoading.EAGER);
+    Assertions.assertEquals(
+      graph0.nodes().keySet(),
+      composition1.graph().nodes().keySet()
+    );
+    Assertions.assertEquals(8, composition1.graph().channelOrigins().size());
+
+    final var composition2 =
+      this.parseContainer(file, OBCompositionParserLoading.LAZY);
+    final var graph2 = composition2.graph();
+    Assertions.assertEquals(9, graph2.nodes().size());
+    Assertions.assertEquals(8, graph2.channelsDeferred().size());
+    graph2.channelLoad(
+      (OBChannelType) graph2.nodes().get(changedId),
+      OBChannelStoredContentsType.of(graph2.channelsDeferred().get(changedId))
+        .load()
+    );
+    Assertions.assertEquals(9 + 33, graph2.nodes().size());
+
+    /*
+     * Changing every channel leaves nothing worth keeping, and the
+     * container is rewritten.
+     */
+
+    for (final var id : chunks0.keySet()) {
+      graph0.createRegion(
+        graph0.nodes().get(id),
+        OBTextRegion::create,
+        OBTextRegionData.builder()
+          .setText("changed")
+          .build()
+      );
+    }
+
+    final var containerId = chunks1.get(changedId).container();
+    final var chunks2 = this.saveContainer(composition0, file);
+    Assertions.assertNotEquals(containerId, chunks2.get(changedId).container());
+    Assertions.assertTrue(Files.size(file) < size1);
+    Assertions.assertFalse(
+      Files.exists(this.directory.resolve("output.obc.tmp")));
+  }
+
+  @Test
+  public void testContainerInterruptedSave()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 8);
+    final var file = this.directory.resolve("output.obc");
+    this.saveContainer(composition0, file);
+
+    /*
+     * Simulate a save that appended some data and then died while writing
+     * the superblock of the next revision.
+     */
+
+    final var size = Files.size(file);
+    try (var channel = FileChannel.open(file, WRITE)) {
+      final var junk = new byte[128];
+      Arrays.fill(junk, (byte) 0x55);
+      channel.write(ByteBuffer.wrap(junk), size);
+      channel.write(ByteBuffer.wrap(junk), 8L);
+    }
+
+    final var composition1 =
+      this.parseContainer(file, OBCompositionParserLoading.EAGER);
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition1.graph().nodes().keySet()
+    );
+
+    final var chunks = this.saveContainer(composition1, file);
+    Assertions.assertEquals(4, chunks.size());
+
+    final var composition2 =
+      this.parseContainer(file, OBCompositionParserLoading.EAGER);
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition2.graph().nodes().keySet()
+    );
+  }
+
+  @Test
+  public void testContainerNotContainer()
+    throws Exception
+  {
+    final var file = this.directory.resolve("output.obc");
+    Files.writeString(file, "Not a container.");
+    Assertions.assertFalse(OBCompositionContainer.isContainer(file));
+
+    try (var parser = this.parsers.createParser(
+      this.services,
+      file,
+      OBCompositionParserOptions.builder()
+        .setLoading(OBCompositionParserLoading.EAGER)
+        .build())) {
+      Assertions.assertEquals(Optional.empty(), parser.execute());
+      Assertions.assertFalse(parser.errors().isEmpty());
+    }
+  }
+
+  @Test
+  public void testPartitionedMissingManifest()
+    throws Exception
+  {
+    final var outputDirectory = this.directory.resolve("output");
+    Files.createDirectories(outputDirectory);
+
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             outputDirectory,
+             OBCompositionParserOptions.builder().build())) {
+      Assertions.assertEquals(Optional.empty(), parser.execute());
+      Assertions.assertFalse(parser.errors().isEmpty());
+    }
+  }
+
+  @Test
+  public void testPartitionedProgress()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 2);
+    final var outputDirectory = this.directory.resolve("output");
+    OBCompositionSerializers.create()
+      .serializePartitionedAtomically(
+        outputDirectory,
+        this.directory.resolve("output.tmp"),
+        composition0,
+        UnaryOperator.identity()
+      );
+
+    final var received = new ArrayList<String>();
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             outputDirectory,
+             OBCompositionParserOptions.builder()
+               .setLoading(OBCompositionParserLoading.EAGER)
+               .setProgress((completed, total) -> {
+                 received.add(completed + "/" + total);
+               })
+               .build())) {
+      Assertions.assertTrue(parser.execute().isPresent());
+    }
+
+    Assertions.assertEquals(
+      List.of("1/5", "2/5", "3/5", "4/5", "5/5"),
+      received
+    );
+  }
+
+  @Test
+  public void testPartitionedProgressAborted()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(4, 2);
+    final var outputDirectory = this.directory.resolve("output");
+    OBCompositionSerializers.create()
+      .serializePartitionedAtomically(
+        outputDirectory,
+        this.directory.resolve("output.tmp"),
+        composition0,
+        UnaryOperator.identity()
+      );
+
+    final var received = new AtomicInteger();
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             outputDirectory,
+             OBCompositionParserOptions.builder()
+               .setLoading(OBCompositionParserLoading.EAGER)
+               .setProgress((completed, total) -> {
+                 if (received.incrementAndGet() == 2) {
+                   throw new InterruptedIOException("Cancelled");
+                 }
+               })
+               .build())) {
+      Assertions.assertEquals(Optional.empty(), parser.execute());
+      Assertions.assertEquals(1, parser.errors().size());
+    }
+    Assertions.assertEquals(2, received.get());
+  }
+
+  @Test
+  public void testContainerProgress()
+    throws Exception
+  {
+    final var composition0 = this.createComposition(3, 2);
+    final var file = this.directory.resolve("output.obc");
+    this.saveContainer(composition0, file);
+
+    final var received = new ArrayList<String>();
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             file,
+             OBCompositionParserOptions.builder()
+               .setLoading(OBCompositionParserLoading.EAGER)
+               .setProgress((completed, total) -> {
+                 received.add(completed + "/" + total);
+               })
+               .build())) {
+      Assertions.assertTrue(parser.execute().isPresent());
+    }
+
+    Assertions.assertEquals(List.of("1/4", "2/4", "3/4", "4/4"), received);
+
+    received.clear();
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             file,
+             OBCompositionParserOptions.builder()
+               .setLoading(OBCompositionParserLoading.LAZY)
+               .setProgress((completed, total) -> {
+                 received.add(completed + "/" + total);
+               })
+               .build())) {
+      Assertions.assertTrue(parser.execute().isPresent());
+    }
+
+    Assertions.assertEquals(List.of("1/1"), received);
+  }
+
+  @Test
+  public void testFormatSniffed()
+    throws Exception
+  {
+    final var format = new TestFormat();
+    final var formatParsers = this.createWithFormat(format);
+
+    final var file = this.directory.resolve("composition.test");
+    Files.writeString(file, "OBTEST01 payload");
+
+    try (var parser = formatParsers.createParser(
+      this.services,
+      file,
+      OBCompositionParserOptions.builder().build())) {
+      Assertions.assertTrue(parser.execute().isPresent());
+      Assertions.assertEquals(List.of(), parser.errors());
+    }
+
+    Assertions.assertEquals("OBTEST01 payload", format.received.get(0));
+    Assertions.assertEquals(Boolean.TRUE, format.channels.get(0));
+
+    try (var stream = Files.newInputStream(file)) {
+      try (var parser = formatParsers.createParser(
+        this.services,
+        file.toUri(),
+        stream,
+        OBCompositionParserOptions.builder().build())) {
+        Assertions.assertTrue(parser.execute().isPresent());
+        Assertions.assertEquals(List.of(), parser.errors());
+      }
+    }
+
+    Assertions.assertEquals("OBTEST01 payload", format.received.get(1));
+    Assertions.assertEquals(Boolean.FALSE, format.channels.get(1));
+  }
+
+  @Test
+  public void testFormatNotSniffedXML()
+    throws Exception
+  {
+    final var format = new TestFormat();
+    final var formatParsers = this.createWithFormat(format);
+
+    final var path =
+      OBTestDirectories.resourceOf(
+        OBCompositionParsersTest.class,
+        this.directory,
+        "testComposition0.xml");
+
+    final var composition0 = this.parse(path);
+    try (var parser = formatParsers.createParser(
+      this.services,
+      path,
+      OBCompositionParserOptions.builder().build())) {
+      final var composition1 = parser.execute();
+      logErrors(parser.errors());
+      Assertions.assertEquals(
+        composition0.graph().nodes().keySet(),
+        composition1.orElseThrow().graph().nodes().keySet()
+      );
+    }
+
+    Assertions.assertEquals(List.of(), format.received);
+  }
+
+  private OBCompositionParsersType createWithFormat(
+    final OBCompositionSPIFormatType format)
+  {
+    final var xmlParsers = new ArrayList<OBCompositionSPIParsersType>();
+    ServiceLoader.load(OBCompositionSPIParsersType.class)
+      .forEach(xmlParsers::add);
+    return OBCompositionParsers.createWith(xmlParsers, List.of(format));
+  }
+
+  private static final class TestFormat implements OBCompositionSPIFormatType
+  {
+    private final List<String> received = new ArrayList<>();
+    private final List<Boolean> channels = new ArrayList<>();
+
+    TestFormat()
+    {
+
+    }
+
+    @Override
+    public byte[] magic()
+    {
+      return "OBTEST01".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public OBCompositionType parse(
+      final OBServiceDirectoryType services,
+      final OBCompositionSPISourceType source)
+      throws Exception
+    {
+      this.received.add(
+        new String(source.stream().readAllBytes(), StandardCharsets.US_ASCII));
+      this.channels.add(Boolean.valueOf(source.channel().isPresent()));
+      return OBComposition.create(services);
+    }
+  }
+
+  @Test
+  public void testTrustedComposition0()
+    throws Exception
+  {
+    final var path =
+      OBTestDirectories.resourceOf(
+        OBCompositionParsersTest.class,
+        this.directory,
+        "testComposition0.xml");
+
+    final var composition0 =
+      this.parse(path, OBCompositionParserValidation.VALIDATE);
+    final var composition1 =
+      this.parse(path, OBCompositionParserValidation.TRUSTED);
+
+    Assertions.assertEquals(
+      composition0.graph().id(),
+      composition1.graph().id()
+    );
+    Assertions.assertEquals(
+      composition0.metadata().read(),
+      composition1.metadata().read()
+    );
+    Assertions.assertEquals(
+      composition0.graph().nodes().keySet(),
+      composition1.graph().nodes().keySet()
+    );
+
+    for (final var id : composition0.graph().nodes().keySet()) {
+      Assertions.assertEquals(
+        composition0.graph().nodes().get(id).nodeMetadata().read(),
+        composition1.graph().nodes().get(id).nodeMetadata().read()
+      );
+    }
+  }
+
+  @Test
+  public void testTrustedMalformed0()
+    throws Exception
+  {
+    final var path =
+      OBTestDirectories.resourceOf(
+        OBCompositionParsersTest.class,
+        this.directory,
+        "testMalformed0.xml");
+
+    Assertions.assertThrows(Exception.class, () -> {
+      this.parse(path, OBCompositionParserValidation.TRUSTED);
+    });
+  }
+
+  private OBCompositionType roundTrip(
     final String name)
     throws Exception
   {
@@ -137,15 +1049,125 @@ public final class OBCompositionParsersTest
       composition0.graph().nodes().keySet(),
       composition1.graph().nodes().keySet()
     );
+    return composition0;
+  }
+
+  private OBCompositionType parsePartitioned(
+    final Path path)
+    throws Exception
+  {
+    return this.parsePartitioned(path, OBCompositionParserLoading.EAGER);
+  }
+
+  private OBCompositionType parsePartitioned(
+    final Path path,
+    final OBCompositionParserLoading loading)
+    throws Exception
+  {
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             path,
+             OBCompositionParserOptions.builder()
+               .setLoading(loading)
+               .build())) {
+      final var result = parser.execute();
+      logErrors(parser.errors());
+      return result.orElseThrow();
+    }
+  }
+
+  private Map<UUID, OBCompositionContainerChunk> saveContainer(
+    final OBCompositionType composition,
+    final Path file)
+    throws Exception
+  {
+    final var graph = composition.graph();
+    final var revisions = Map.copyOf(graph.channelRevisions());
+    final var chunks =
+      OBCompositionSerializers.create()
+        .serializeContainer(
+          file,
+          file.resolveSibling(file.getFileName() + ".tmp"),
+          composition.snapshot(),
+          UnaryOperator.identity());
+
+    for (final var entry : chunks.entrySet()) {
+      final var id = entry.getKey();
+      graph.channelSetOrigin(
+        (OBChannelType) graph.nodes().get(id),
+        revisions.get(id).longValue(),
+        this.parsers.createContainerContents(this.services, entry.getValue())
+      );
+    }
+    return chunks;
+  }
+
+  private OBCompositionType parseContainer(
+    final Path path,
+    final OBCompositionParserLoading loading)
+    throws Exception
+  {
+    try (var parser =
+           this.parsers.createParser(
+             this.services,
+             path,
+             OBCompositionParserOptions.builder()
+               .setLoading(loading)
+               .build())) {
+      final var result = parser.execute();
+      logErrors(parser.errors());
+      return result.orElseThrow();
+    }
+  }
+
+  private List<OBCompositionParserError> parseErrors(
+    final String name)
+    throws Exception
+  {
+    final var path =
+      OBTestDirectories.resourceOf(
+        OBCompositionParsersTest.class,
+        this.directory,
+        name);
+
+    try (var stream = Files.newInputStream(path)) {
+      try (var parser =
+             this.parsers.createParser(
+               this.services,
+               path.toUri(),
+               stream,
+               OBCompositionParserOptions.builder()
+                 .setValidation(OBCompositionParserValidation.TRUSTED)
+                 .build())) {
+        Assertions.assertEquals(Optional.empty(), parser.execute());
+        logErrors(parser.errors());
+        return parser.errors();
+      }
+    }
   }
 
   private OBCompositionType parse(
     final Path path)
     throws Exception
+  {
+    return this.parse(path, OBCompositionParserValidation.VALIDATE);
+  }
+
+  private OBCompositionType parse(
+    final Path path,
+    final OBCompositionParserValidation validation)
+    throws Exception
   {
     try (var stream = Files.newInputStream(path)) {
       try (var parser =
-             this.parsers.createParser(this.services, path.toUri(), stream)) {
+             this.parsers.createParser(
+               this.services,
+               path.toUri(),
+               stream,
+               OBCompositionParserOptions.builder()
+                 .setValidation(validation)
+                 .build())) {
         final var result = parser.execute();
         logErrors(parser.errors());
         return result.orElseThrow();
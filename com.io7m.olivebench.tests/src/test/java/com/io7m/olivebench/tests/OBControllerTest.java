@@ -16,11 +16,20 @@
 
 package com.io7m.olivebench.tests;
 
+import com.io7m.olivebench.composition_parser.api.OBChannelStoredContentsType;
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainer;
+import com.io7m.olivebench.composition_parser.api.OBCompositionContainerChunk;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserOptions;
+import com.io7m.olivebench.composition_parser.api.OBCompositionParserType;
 import com.io7m.olivebench.composition_parser.api.OBCompositionParsers;
 import com.io7m.olivebench.composition_parser.api.OBCompositionParsersType;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionFileStamp;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializerOptions;
+import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializerType;
 import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializers;
 import com.io7m.olivebench.composition_serializer.api.OBCompositionSerializersType;
 import com.io7m.olivebench.controller.OBController;
+import com.io7m.olivebench.controller.OBControllerAutosave;
 import com.io7m.olivebench.controller.OBControllerEventCompositionChanged;
 import com.io7m.olivebench.controller.OBControllerEventCompositionStatusChanged;
 import com.io7m.olivebench.controller.OBControllerEventTaskFailed;
@@ -29,8 +38,19 @@ import com.io7m.olivebench.controller.OBControllerEventTaskProgressChanged;
 import com.io7m.olivebench.controller.OBControllerEventTaskStarted;
 import com.io7m.olivebench.controller.OBControllerEventTaskUndoStatusChanged;
 import com.io7m.olivebench.controller.OBControllerEventType;
+import com.io7m.olivebench.controller.OBControllerType;
+import com.io7m.olivebench.model.OBComposition;
+import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBCompositionGraph;
+import com.io7m.olivebench.model.graph.OBTextRegion;
+import com.io7m.olivebench.model.graph.OBTextRegionData;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.metadata.OBMetadataProperty;
 import com.io7m.olivebench.model.names.OBName;
+import com.io7m.olivebench.preferences.OBPreferencesAutosaveType;
 import com.io7m.olivebench.preferences.OBPreferencesControllerType;
+import com.io7m.olivebench.preferences.OBPreferencesTrustedFilesType;
 import com.io7m.olivebench.preferences.OBPreferencesType;
 import com.io7m.olivebench.preferences.OBPreferencesUndoType;
 import com.io7m.olivebench.services.api.OBServiceDirectory;
@@ -39,6 +59,8 @@ import com.io7m.olivebench.strings.OBStrings;
 import com.io7m.olivebench.strings.OBStringsType;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.disposables.Disposable;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -48,13 +70,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 public final class OBControllerTest
 {
@@ -140,8 +174,12 @@ public final class OBControllerTest
       .thenReturn(this.preferences);
     Mockito.when(this.preferences.undo())
       .thenReturn(this.preferencesUndo);
+    Mockito.when(this.preferences.trustedFiles())
+      .thenReturn(Mockito.mock(OBPreferencesTrustedFilesType.class));
     Mockito.when(Integer.valueOf(this.preferencesUndo.historySize()))
       .thenReturn(Integer.valueOf(100));
+    Mockito.when(Long.valueOf(this.preferencesUndo.historyMemoryLimit()))
+      .thenReturn(Long.valueOf(1_000_000L));
 
     this.eventLog = Collections.synchronizedList(new LinkedList<>());
     this.directory = OBTestDirectories.createTempDirectory();
@@ -239,6 +277,926 @@ public final class OBControllerTest
     checkEvents(eventClasses, this.eventLog);
   }
 
+  @Test
+  public void testSnapshotCachedUntilModified()
+    throws Exception
+  {
+    try {
+      try (var controller = this.createController()) {
+        this.events = controller.events();
+        this.eventSub = this.events.subscribe(this::logEvent);
+
+        Assertions.assertEquals(
+          Optional.empty(),
+          controller.compositionSnapshotAsync().get());
+
+        final var newFuture = controller.newComposition();
+        newFuture.get(3L, TimeUnit.SECONDS);
+
+        final var snapshot0 =
+          controller.compositionSnapshotAsync().get().orElseThrow();
+        final var snapshot1 =
+          controller.compositionSnapshotAsync().get().orElseThrow();
+        Assertions.assertSame(snapshot0, snapshot1);
+        Assertions.assertEquals(1, snapshot0.graph().nodes().size());
+
+        final var channelFuture = controller.createChannel(OBName.of("abc"));
+        channelFuture.get(3L, TimeUnit.SECONDS);
+
+        final var snapshot2 =
+          controller.compositionSnapshotAsync().get().orElseThrow();
+        Assertions.assertNotSame(snapshot0, snapshot2);
+        Assertions.assertEquals(2, snapshot2.graph().nodes().size());
+        Assertions.assertEquals(1, snapshot0.graph().nodes().size());
+
+        final var closeFuture = controller.closeComposition();
+        closeFuture.get(3L, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(
+          Optional.empty(),
+          controller.compositionSnapshotAsync().get());
+      }
+    } finally {
+      this.events.toList().blockingGet();
+    }
+  }
+
+  @Test
+  public void testSnapshotNeverBlocksOffControllerThread()
+    throws Exception
+  {
+    try (var controller = this.createController()) {
+      controller.newComposition().get(3L, TimeUnit.SECONDS);
+      final var snapshot0 =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+
+      final var entered = new CountDownLatch(1);
+      final var release = new CountDownLatch(1);
+      final var blocked =
+        controller.updateMetadata(metadata -> {
+          entered.countDown();
+          try {
+            release.await(10L, TimeUnit.SECONDS);
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return metadata;
+        });
+
+      try {
+        entered.await(3L, TimeUnit.SECONDS);
+
+        final var stale =
+          CompletableFuture.supplyAsync(controller::compositionSnapshot)
+            .get(1L, TimeUnit.SECONDS)
+            .orElseThrow();
+        Assertions.assertSame(snapshot0, stale);
+      } finally {
+        release.countDown();
+      }
+
+      blocked.get(3L, TimeUnit.SECONDS);
+      Assertions.assertEquals(
+        2,
+        controller.compositionSnapshotAsync()
+          .get()
+          .orElseThrow()
+          .graph()
+          .nodes()
+          .size());
+    }
+  }
+
+  @Test
+  public void testBatch()
+    throws Exception
+  {
+    try {
+      try (var controller = this.createController()) {
+        this.events = controller.events();
+        this.eventSub = this.events.subscribe(this::logEvent);
+
+        final var newFuture = controller.newComposition();
+        newFuture.get(3L, TimeUnit.SECONDS);
+
+        final var batchFuture =
+          controller.batch(batch -> {
+            batch.createChannel(OBName.of("a"))
+              .createChannel(OBName.of("b"))
+              .createChannel(OBName.of("c"));
+          });
+        batchFuture.get(3L, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(
+          4,
+          controller.compositionSnapshotAsync().get()
+            .orElseThrow()
+            .graph()
+            .nodes()
+            .size());
+
+        final var undoFuture = controller.undo();
+        undoFuture.get(3L, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(
+          1,
+          controller.compositionSnapshotAsync().get()
+            .orElseThrow()
+            .graph()
+            .nodes()
+            .size());
+      }
+    } finally {
+      this.events.toList().blockingGet();
+    }
+
+    final var started =
+      this.eventLog.stream()
+        .filter(e -> e instanceof OBControllerEventTaskStarted)
+        .count();
+
+    Assertions.assertEquals(3L, started);
+  }
+
+  @Test
+  public void testBatchRollsBack()
+    throws Exception
+  {
+    try {
+      try (var controller = this.createController()) {
+        this.events = controller.events();
+        this.eventSub = this.events.subscribe(this::logEvent);
+
+        final var newFuture = controller.newComposition();
+        newFuture.get(3L, TimeUnit.SECONDS);
+
+        final var batchFuture =
+          controller.batch(batch -> {
+            batch.createChannel(OBName.of("a"))
+              .createChannel(OBName.of("b"))
+              .updateChannelMetadata(UUID.randomUUID(), m -> m);
+          });
+
+        Assertions.assertThrows(ExecutionException.class, () -> {
+          batchFuture.get(3L, TimeUnit.SECONDS);
+        });
+
+        Assertions.assertEquals(
+          1,
+          controller.compositionSnapshotAsync().get()
+            .orElseThrow()
+            .graph()
+            .nodes()
+            .size());
+      }
+    } finally {
+      this.events.toList().blockingGet();
+    }
+  }
+
+  @Test
+  public void testUndoMemoryLimit()
+    throws Exception
+  {
+    Mockito.when(Long.valueOf(this.preferencesUndo.historyMemoryLimit()))
+      .thenReturn(Long.valueOf(1L));
+
+    try {
+      try (var controller = this.createController()) {
+        this.events = controller.events();
+        this.eventSub = this.events.subscribe(this::logEvent);
+
+        final var newFuture = controller.newComposition();
+        newFuture.get(3L, TimeUnit.SECONDS);
+
+        final var metadataFuture =
+          controller.updateMetadata(metadata -> OBCompositionMetadata.of(
+            List.of(OBMetadataProperty.of("title", "x"))));
+        metadataFuture.get(3L, TimeUnit.SECONDS);
+
+        for (final var name : List.of("a", "b", "c")) {
+          final var channelFuture = controller.createChannel(OBName.of(name));
+          channelFuture.get(3L, TimeUnit.SECONDS);
+        }
+
+        /*
+         * Every entry but the most recent is spilled out of memory, and
+         * so every entry can still be undone.
+         */
+
+        for (int index = 0; index < 4; ++index) {
+          final var undoFuture = controller.undo();
+          undoFuture.get(3L, TimeUnit.SECONDS);
+        }
+
+        final var snapshot =
+          controller.compositionSnapshotAsync().get().orElseThrow();
+        Assertions.assertEquals(1, snapshot.graph().nodes().size());
+        Assertions.assertEquals(
+          Optional.empty(),
+          snapshot.metadata().read().findValue("title"));
+      }
+    } finally {
+      this.events.toList().blockingGet();
+    }
+  }
+
+  @Test
+  public void testJournalReplay()
+    throws Exception
+  {
+    final var file = this.directory.resolve("composition.xml");
+
+    try (var controller = this.createController()) {
+      controller.newComposition().get(3L, TimeUnit.SECONDS);
+      controller.saveAsComposition(file).get(3L, TimeUnit.SECONDS);
+      controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+      controller.createChannel(OBName.of("def")).get(3L, TimeUnit.SECONDS);
+    }
+
+    Assertions.assertTrue(Files.isRegularFile(file.resolveSibling(
+      "composition.xml.journal")));
+
+    try (var controller = this.createController()) {
+      controller.openComposition(file).get(3L, TimeUnit.SECONDS);
+
+      final var snapshot =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(3, snapshot.graph().nodes().size());
+      Assertions.assertTrue(controller.unsavedChanges());
+
+      controller.saveComposition().get(3L, TimeUnit.SECONDS);
+      Assertions.assertFalse(controller.unsavedChanges());
+    }
+
+    try (var controller = this.createController()) {
+      controller.openComposition(file).get(3L, TimeUnit.SECONDS);
+
+      final var snapshot =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(3, snapshot.graph().nodes().size());
+      Assertions.assertFalse(controller.unsavedChanges());
+    }
+  }
+
+  @Test
+  public void testOpenPartitionedLazily()
+    throws Exception
+  {
+    final var graph = OBCompositionGraph.create(this.services);
+    for (int index = 0; index < 4; ++index) {
+      final var channel = graph.createChannel("channel" + index);
+      for (int region = 0; region < 8; ++region) {
+        graph.createRegion(
+          channel,
+          OBTextRegion::create,
+          OBTextRegionData.builder()
+            .setText("region" + region)
+            .build()
+        );
+      }
+    }
+
+    final var directory = this.directory.resolve("composition");
+    this.serializers.serializePartitionedAtomically(
+      directory,
+      this.directory.resolve("composition.tmp"),
+      OBComposition.createWith(this.services, graph),
+      UnaryOperator.identity()
+    );
+
+    final var file = this.directory.resolve("composition.xml");
+
+    try (var controller = this.createController()) {
+      controller.openComposition(directory).get(3L, TimeUnit.SECONDS);
+
+      final var snapshot0 =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(5, snapshot0.graph().nodes().size());
+      Assertions.assertEquals(4, snapshot0.graph().channelsDeferred().size());
+
+      final var channelId =
+        snapshot0.graph().channelsDeferred().keySet().iterator().next();
+      controller.loadChannel(channelId).get(3L, TimeUnit.SECONDS);
+      Assertions.assertFalse(controller.unsavedChanges());
+
+      final var snapshot1 =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(5 + 8, snapshot1.graph().nodes().size());
+      Assertions.assertEquals(3, snapshot1.graph().channelsDeferred().size());
+
+      controller.saveComposition().get(3L, TimeUnit.SECONDS);
+      controller.saveAsComposition(file).get(3L, TimeUnit.SECONDS);
+
+      final var snapshot2 =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(
+        graph.nodes().keySet(),
+        snapshot2.graph().nodes().keySet());
+      Assertions.assertEquals(0, snapshot2.graph().channelsDeferred().size());
+    }
+
+    try (var controller = this.createController()) {
+      controller.openComposition(file).get(3L, TimeUnit.SECONDS);
+
+      final var snapshot =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(
+        graph.nodes().keySet(),
+        snapshot.graph().nodes().keySet());
+    }
+  }
+
+  @Test
+  public void testSaveContainerIncrementally()
+    throws Exception
+  {
+    final var graph = OBCompositionGraph.create(this.services);
+    for (int index = 0; index < 4; ++index) {
+      final var channel = graph.createChannel("channel" + index);
+      for (int region = 0; region < 8; ++region) {
+        graph.createRegion(
+          channel,
+          OBTextRegion::create,
+          OBTextRegionData.builder()
+            .setText("region" + region)
+            .build()
+        );
+      }
+    }
+
+    final var file = this.directory.resolve("composition.obc");
+    final var chunks0 =
+      this.serializers.serializeContainer(
+        file,
+        this.directory.resolve("composition.obc.tmp"),
+        OBComposition.createWith(this.services, graph),
+        UnaryOperator.identity()
+      );
+
+    try (var controller = this.createController()) {
+      controller.openComposition(file).get(3L, TimeUnit.SECONDS);
+
+      final var snapshot0 =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(4, snapshot0.graph().channelsDeferred().size());
+
+      final var channelId = chunks0.keySet().iterator().next();
+      controller.loadChannel(channelId).get(3L, TimeUnit.SECONDS);
+      controller.createChannel(OBName.of("extra")).get(3L, TimeUnit.SECONDS);
+      controller.saveComposition().get(3L, TimeUnit.SECONDS);
+      Assertions.assertFalse(controller.unsavedChanges());
+
+      try (var container = OBCompositionContainer.open(file)) {
+        Assertions.assertEquals(5, container.channels().size());
+        for (final var entry : chunks0.entrySet()) {
+          Assertions.assertEquals(
+            entry.getValue().offset(),
+            container.channels().get(entry.getKey()).offset());
+        }
+      }
+
+      final var snapshot1 =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(
+        5,
+        snapshot1.graph().channelOrigins().size()
+          + snapshot1.graph().channelsDeferred().size());
+    }
+
+    try (var controller = this.createController()) {
+      controller.openComposition(file).get(3L, TimeUnit.SECONDS);
+      controller.loadChannel(chunks0.keySet().iterator().next())
+        .get(3L, TimeUnit.SECONDS);
+
+      final var snapshot =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(4 + 1 + 1 + 8, snapshot.graph().nodes().size());
+    }
+  }
+
+  private OBCompositionSerializersType blockingSerializers(
+    final CountDownLatch saveEntered,
+    final CountDownLatch saveRelease)
+  {
+    final var delegate = this.serializers;
+    return new OBCompositionSerializersType()
+    {
+      @Override
+      public OBCompositionSerializerType createSerializer(
+        final URI target,
+        final OutputStream stream,
+        final OBCompositionReadableType composition)
+      {
+        return delegate.createSerializer(target, stream, composition);
+      }
+
+      @Override
+      public OBCompositionSerializerType createSerializer(
+        final int versionMajor,
+        final int versionMinor,
+        final URI target,
+        final OutputStream stream,
+        final OBCompositionReadableType composition)
+      {
+        return delegate.createSerializer(
+          versionMajor, versionMinor, target, stream, composition);
+      }
+
+      @Override
+      public OBCompositionSerializerType createSerializer(
+        final String formatName,
+        final URI target,
+        final OutputStream stream,
+        final OBCompositionReadableType composition)
+      {
+        return delegate.createSerializer(
+          formatName, target, stream, composition);
+      }
+
+      @Override
+      public OBCompositionFileStamp serializeAtomically(
+        final Path output,
+        final Path outputTmp,
+        final OBCompositionReadableType composition,
+        final OBCompositionSerializerOptions options)
+        throws Exception
+      {
+        saveEntered.countDown();
+        saveRelease.await(3L, TimeUnit.SECONDS);
+        return delegate.serializeAtomically(
+          output, outputTmp, composition, options);
+      }
+
+      @Override
+      public OBCompositionSerializerType createPartSerializer(
+        final URI target,
+        final OutputStream stream,
+        final OBCompositionReadableType composition,
+        final Optional<OBChannelType> channel)
+      {
+        return delegate.createPartSerializer(
+          target, stream, composition, channel);
+      }
+
+      @Override
+      public void serializePartitionedAtomically(
+        final Path output,
+        final Path outputTmp,
+        final OBCompositionReadableType composition,
+        final UnaryOperator<OutputStream> filter)
+        throws Exception
+      {
+        saveEntered.countDown();
+        saveRelease.await(3L, TimeUnit.SECONDS);
+        delegate.serializePartitionedAtomically(
+          output, outputTmp, composition, filter);
+      }
+
+      @Override
+      public Map<UUID, OBCompositionContainerChunk> serializeContainer(
+        final Path output,
+        final Path outputTmp,
+        final OBCompositionReadableType composition,
+        final UnaryOperator<OutputStream> filter)
+        throws Exception
+      {
+        saveEntered.countDown();
+        saveRelease.await(3L, TimeUnit.SECONDS);
+        return delegate.serializeContainer(
+          output, outputTmp, composition, filter);
+      }
+    };
+  }
+
+  @Test
+  public void testEditDuringOpen()
+    throws Exception
+  {
+    final var file = this.directory.resolve("composition.xml");
+
+    try (var controller = this.createController()) {
+      controller.newComposition().get(3L, TimeUnit.SECONDS);
+      controller.saveAsComposition(file).get(3L, TimeUnit.SECONDS);
+    }
+
+    final var openEntered = new CountDownLatch(1);
+    final var openRelease = new CountDownLatch(1);
+    final var delegate = this.parsers;
+    this.services.register(
+      OBCompositionParsersType.class,
+      new OBCompositionParsersType()
+      {
+        @Override
+        public OBCompositionParserType createParser(
+          final OBServiceDirectoryType services,
+          final URI source,
+          final InputStream stream,
+          final OBCompositionParserOptions options)
+        {
+          return delegate.createParser(services, source, stream, options);
+        }
+
+        @Override
+        public OBCompositionParserType createParser(
+          final OBServiceDirectoryType services,
+          final Path file,
+          final OBCompositionParserOptions options)
+          throws IOException
+        {
+          openEntered.countDown();
+          try {
+            openRelease.await(3L, TimeUnit.SECONDS);
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return delegate.createParser(services, file, options);
+        }
+
+        @Override
+        public OBChannelStoredContentsType createContainerContents(
+          final OBServiceDirectoryType services,
+          final OBCompositionContainerChunk chunk)
+        {
+          return delegate.createContainerContents(services, chunk);
+        }
+      });
+
+    try (var controller = this.createController()) {
+      controller.newComposition().get(3L, TimeUnit.SECONDS);
+
+      final var openFuture = controller.openComposition(file);
+      openEntered.await(3L, TimeUnit.SECONDS);
+
+      controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+      Assertions.assertFalse(openFuture.isDone());
+
+      openRelease.countDown();
+      openFuture.get(3L, TimeUnit.SECONDS);
+
+      final var snapshot =
+        controller.compositionSnapshotAsync().get().orElseThrow();
+      Assertions.assertEquals(1, snapshot.graph().nodes().size());
+      Assertions.assertFalse(controller.unsavedChanges());
+      Assertions.assertEquals(Optional.of(file), controller.currentFilename());
+    }
+  }
+
+  @Test
+  public void testFlightRecorderEvents()
+    throws Exception
+  {
+    final var file = this.directory.resolve("composition.xml");
+    final var recordingFile = this.directory.resolve("recording.jfr");
+
+    try (var recording = new Recording()) {
+      recording.enable("com.io7m.olivebench.ControllerTask");
+      recording.enable("com.io7m.olivebench.CompositionSnapshot");
+      recording.enable("com.io7m.olivebench.CompositionSerialize");
+      recording.enable("com.io7m.olivebench.CompositionParse");
+      recording.enable("com.io7m.olivebench.GraphEventFanOut");
+      recording.start();
+
+      try (var controller = this.createController()) {
+        controller.newComposition().get(3L, TimeUnit.SECONDS);
+        controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+        controller.saveAsComposition(file).get(3L, TimeUnit.SECONDS);
+        controller.openComposition(file).get(3L, TimeUnit.SECONDS);
+      }
+
+      recording.stop();
+      recording.dump(recordingFile);
+    }
+
+    final var names =
+      RecordingFile.readAllEvents(recordingFile)
+        .stream()
+        .map(event -> event.getEventType().getName())
+        .collect(Collectors.toSet());
+
+    LOG.debug("recorded: {}", names);
+    Assertions.assertTrue(names.contains("com.io7m.olivebench.ControllerTask"));
+    Assertions.assertTrue(names.contains("com.io7m.olivebench.CompositionSnapshot"));
+    Assertions.assertTrue(names.contains("com.io7m.olivebench.CompositionSerialize"));
+    Assertions.assertTrue(names.contains("com.io7m.olivebench.CompositionParse"));
+    Assertions.assertTrue(names.contains("com.io7m.olivebench.GraphEventFanOut"));
+  }
+
+  @Test
+  public void testCancelSave()
+    throws Exception
+  {
+    final var saveEntered = new CountDownLatch(1);
+    final var saveRelease = new CountDownLatch(1);
+    this.services.register(
+      OBCompositionSerializersType.class,
+      this.blockingSerializers(saveEntered, saveRelease));
+
+    final var file = this.directory.resolve("composition.xml");
+
+    try {
+      try (var controller = this.createController()) {
+        this.events = controller.events();
+        this.eventSub = this.events.subscribe(this::logEvent);
+
+        controller.newComposition().get(3L, TimeUnit.SECONDS);
+
+        final var saveFuture = controller.saveAsComposition(file);
+        saveEntered.await(3L, TimeUnit.SECONDS);
+        saveFuture.cancel(true);
+        saveRelease.countDown();
+
+        Assertions.assertTrue(saveFuture.isCancelled());
+        Assertions.assertEquals(
+          Optional.empty(),
+          controller.currentFilename());
+      }
+    } finally {
+      this.events.toList().blockingGet();
+    }
+
+    Assertions.assertFalse(Files.exists(file));
+    Assertions.assertTrue(
+      this.eventLog.stream()
+        .noneMatch(e -> e instanceof OBControllerEventTaskFailed));
+  }
+
+  @Test
+  public void testSavesToSameFileSerialized()
+    throws Exception
+  {
+    final var saveEntered = new CountDownLatch(2);
+    final var saveRelease = new CountDownLatch(1);
+    this.services.register(
+      OBCompositionSerializersType.class,
+      this.blockingSerializers(saveEntered, saveRelease));
+
+    final var file = this.directory.resolve("composition.xml");
+
+    try (var controller = this.createController()) {
+      controller.newComposition().get(3L, TimeUnit.SECONDS);
+
+      final var save0 = controller.saveAsComposition(file);
+      for (int index = 0; index < 100 && saveEntered.getCount() > 1; ++index) {
+        Thread.sleep(10L);
+      }
+      Assertions.assertEquals(1L, saveEntered.getCount());
+
+      controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+      final var save1 = controller.saveAsComposition(file);
+
+      Thread.sleep(250L);
+      Assertions.assertEquals(1L, saveEntered.getCount());
+      Assertions.assertFalse(save1.isDone());
+
+      saveRelease.countDown();
+      save0.get(3L, TimeUnit.SECONDS);
+      save1.get(3L, TimeUnit.SECONDS);
+      Assertions.assertFalse(controller.unsavedChanges());
+    }
+
+    try (var stream = Files.list(this.directory)) {
+      final var names =
+        stream.map(path -> path.getFileName().toString())
+          .collect(Collectors.toSet());
+      Assertions.assertEquals(
+        Set.of("composition.xml", "composition.xml.journal"),
+        names);
+    }
+
+    try (var controller = this.createController()) {
+      controller.openComposition(file).get(3L, TimeUnit.SECONDS);
+      Assertions.assertEquals(
+        2,
+        controller.compositionSnapshotAsync()
+          .get()
+          .orElseThrow()
+          .graph()
+          .nodes()
+          .size());
+    }
+  }
+
+  @Test
+  public void testEditDuringSave()
+    throws Exception
+  {
+    final var saveEntered = new CountDownLatch(1);
+    final var saveRelease = new CountDownLatch(1);
+    this.services.register(
+      OBCompositionSerializersType.class,
+      this.blockingSerializers(saveEntered, saveRelease));
+
+    final var file = this.directory.resolve("composition.xml");
+
+    try (var controller = this.createController()) {
+      controller.newComposition().get(3L, TimeUnit.SECONDS);
+
+      final var saveFuture = controller.saveAsComposition(file);
+      saveEntered.await(3L, TimeUnit.SECONDS);
+
+      controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+      Assertions.assertFalse(saveFuture.isDone());
+
+      saveRelease.countDown();
+      saveFuture.get(3L, TimeUnit.SECONDS);
+
+      Assertions.assertTrue(controller.unsavedChanges());
+      Assertions.assertEquals(Optional.of(file), controller.currentFilename());
+    }
+  }
+
+  /*
+   * Saving a composition that has not changed since it was last saved
+   * leaves the file in place rather than replacing it with a new file.
+   */
+
+  @Test
+  public void testSaveUnchangedLeavesFile()
+    throws Exception
+  {
+    final var file = this.directory.resolve("composition.xml");
+
+    try (var controller = this.createController()) {
+      controller.newComposition().get(3L, TimeUnit.SECONDS);
+      controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+      controller.saveAsComposition(file).get(3L, TimeUnit.SECONDS);
+
+      final var key0 = fileKeyOf(file);
+      controller.saveComposition().get(3L, TimeUnit.SECONDS);
+      Assertions.assertEquals(key0, fileKeyOf(file));
+      Assertions.assertFalse(controller.unsavedChanges());
+
+      controller.createChannel(OBName.of("def")).get(3L, TimeUnit.SECONDS);
+      controller.saveComposition().get(3L, TimeUnit.SECONDS);
+      Assertions.assertNotEquals(key0, fileKeyOf(file));
+      Assertions.assertFalse(controller.unsavedChanges());
+    }
+  }
+
+  private static Object fileKeyOf(
+    final Path file)
+    throws IOException
+  {
+    return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+  }
+
+  @Test
+  public void testAutosave()
+    throws Exception
+  {
+    final var preferencesAutosave =
+      Mockito.mock(OBPreferencesAutosaveType.class);
+    Mockito.when(this.preferences.autosave())
+      .thenReturn(preferencesAutosave);
+    Mockito.when(Integer.valueOf(preferencesAutosave.intervalSeconds()))
+      .thenReturn(Integer.valueOf(1));
+
+    final var autosaveDirectory = this.directory.resolve("autosave");
+
+    try (var controller = this.createController()) {
+      this.services.register(OBControllerType.class, controller);
+
+      try (var autosave =
+             OBControllerAutosave.create(this.services, autosaveDirectory)) {
+        controller.newComposition().get(3L, TimeUnit.SECONDS);
+        controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+
+        final var rootId =
+          controller.compositionSnapshotAsync().get()
+            .orElseThrow()
+            .graph()
+            .root()
+            .id();
+        final var file = autosaveDirectory.resolve(rootId + ".xml");
+
+        for (int index = 0; index < 100; ++index) {
+          if (Files.isRegularFile(file)) {
+            break;
+          }
+          Thread.sleep(100L);
+        }
+
+        Assertions.assertTrue(Files.isRegularFile(file));
+
+        controller.closeComposition().get(3L, TimeUnit.SECONDS);
+
+        for (int index = 0; index < 50; ++index) {
+          if (!Files.exists(file)) {
+            break;
+          }
+          Thread.sleep(100L);
+        }
+
+        Assertions.assertFalse(Files.exists(file));
+      }
+    }
+  }
+
+  @Test
+  public void testAutosaveRecover()
+    throws Exception
+  {
+    final var preferencesAutosave =
+      Mockito.mock(OBPreferencesAutosaveType.class);
+    Mockito.when(this.preferences.autosave())
+      .thenReturn(preferencesAutosave);
+    Mockito.when(Integer.valueOf(preferencesAutosave.intervalSeconds()))
+      .thenReturn(Integer.valueOf(1));
+
+    final var autosaveDirectory = this.directory.resolve("autosave");
+    final UUID rootId;
+    final Path file;
+
+    /*
+     * The first session exits without saving or closing the composition,
+     * leaving the recovery file behind.
+     */
+
+    try (var controller = this.createController()) {
+      this.services.register(OBControllerType.class, controller);
+
+      try (var autosave =
+             OBControllerAutosave.create(this.services, autosaveDirectory)) {
+        controller.newComposition().get(3L, TimeUnit.SECONDS);
+        controller.createChannel(OBName.of("abc")).get(3L, TimeUnit.SECONDS);
+
+        rootId =
+          controller.compositionSnapshotAsync().get()
+            .orElseThrow()
+            .graph()
+            .root()
+            .id();
+        file = autosaveDirectory.resolve(rootId + ".xml");
+
+        for (int index = 0; index < 100; ++index) {
+          if (Files.isRegularFile(file)) {
+            break;
+          }
+          Thread.sleep(100L);
+        }
+        Assertions.assertTrue(Files.isRegularFile(file));
+      }
+    }
+
+    try (var controller = this.createController()) {
+      this.services.register(OBControllerType.class, controller);
+
+      try (var autosave =
+             OBControllerAutosave.create(this.services, autosaveDirectory)) {
+        Assertions.assertEquals(List.of(file), autosave.recoveryFiles());
+        autosave.recover(file).get(3L, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(controller.unsavedChanges());
+        Assertions.assertEquals(Optional.empty(), controller.currentFilename());
+
+        final var snapshot =
+          controller.compositionSnapshotAsync().get().orElseThrow();
+        Assertions.assertEquals(rootId, snapshot.graph().root().id());
+        Assertions.assertEquals(2, snapshot.graph().nodes().size());
+
+        controller.saveAsComposition(this.directory.resolve("recovered.xml"))
+          .get(3L, TimeUnit.SECONDS);
+
+        for (int index = 0; index < 50; ++index) {
+          if (!Files.exists(file)) {
+            break;
+          }
+          Thread.sleep(100L);
+        }
+
+        Assertions.assertFalse(Files.exists(file));
+        Assertions.assertEquals(List.of(), autosave.recoveryFiles());
+      }
+    }
+  }
+
+  @Test
+  public void testAutosaveDiscardRecovery()
+    throws Exception
+  {
+    final var autosaveDirectory = this.directory.resolve("autosave");
+    Files.createDirectories(autosaveDirectory);
+    final var file = autosaveDirectory.resolve(UUID.randomUUID() + ".xml");
+    Files.writeString(file, "");
+
+    try (var controller = this.createController()) {
+      this.services.register(OBControllerType.class, controller);
+
+      try (var autosave =
+             OBControllerAutosave.create(this.services, autosaveDirectory)) {
+        Assertions.assertEquals(List.of(file), autosave.recoveryFiles());
+        autosave.discardRecovery(file);
+        Assertions.assertEquals(List.of(), autosave.recoveryFiles());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+          autosave.discardRecovery(this.directory.resolve("other.xml"));
+        });
+      }
+    }
+  }
+
   @Test
   @Disabled("Unreliable test!")
   public void testCreateSaveOpen()
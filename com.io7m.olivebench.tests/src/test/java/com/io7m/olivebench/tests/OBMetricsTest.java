@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.io7m.olivebench.tests;
+
+import com.io7m.olivebench.metrics.OBMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public final class OBMetricsTest
+{
+  @Test
+  public void testHistogramPercentiles()
+  {
+    try (var metrics = OBMetrics.create()) {
+      final var histogram = metrics.histogram("test.histogram");
+      for (long value = 1L; value <= 100_000L; ++value) {
+        histogram.record(value);
+      }
+
+      Assertions.assertEquals(100_000L, histogram.count());
+      Assertions.assertEquals(100_000L, histogram.max());
+      Assertions.assertEquals(50_000.5, histogram.mean(), 0.001);
+      Assertions.assertEquals(50_000.0, histogram.percentile(50.0), 500.0);
+      Assertions.assertEquals(99_000.0, histogram.percentile(99.0), 990.0);
+      Assertions.assertEquals(1L, histogram.percentile(0.0));
+      Assertions.assertEquals(100_000L, histogram.percentile(100.0));
+    }
+  }
+
+  @Test
+  public void testHistogramExactSmallValues()
+  {
+    try (var metrics = OBMetrics.create()) {
+      final var histogram = metrics.histogram("test.histogramSmall");
+      histogram.record(-1L);
+      histogram.record(3L);
+      histogram.record(7L);
+      Assertions.assertEquals(0L, histogram.percentile(1.0));
+      Assertions.assertEquals(3L, histogram.percentile(50.0));
+      Assertions.assertEquals(7L, histogram.percentile(100.0));
+    }
+  }
+
+  @Test
+  public void testPublishedOverJMX()
+    throws Exception
+  {
+    final var server = ManagementFactory.getPlatformMBeanServer();
+    final var counterName =
+      new ObjectName("com.io7m.olivebench:type=Counter,name=\"test.counter\"");
+    final var gaugeName =
+      new ObjectName("com.io7m.olivebench:type=Gauge,name=\"test.gauge\"");
+
+    try (var metrics = OBMetrics.create()) {
+      final var counter = metrics.counter("test.counter");
+      counter.increment();
+      counter.add(2L);
+      Assertions.assertSame(counter, metrics.counter("test.counter"));
+      metrics.gauge("test.gauge", () -> 23L);
+
+      Assertions.assertEquals(3L, server.getAttribute(counterName, "Count"));
+      Assertions.assertEquals(23L, server.getAttribute(gaugeName, "Value"));
+    }
+
+    Assertions.assertFalse(server.isRegistered(counterName));
+    Assertions.assertFalse(server.isRegistered(gaugeName));
+  }
+}
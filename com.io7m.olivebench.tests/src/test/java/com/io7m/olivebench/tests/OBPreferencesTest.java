@@ -17,13 +17,23 @@
 package com.io7m.olivebench.tests;
 
 import com.io7m.olivebench.preferences.OBPreferences;
+import com.io7m.olivebench.preferences.OBPreferencesController;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 
 public final class OBPreferencesTest
 {
@@ -54,4 +64,136 @@ public final class OBPreferencesTest
       preferences.load(input);
     }
   }
+
+  @Test
+  public void testTrustedFilesSaveLoad()
+    throws IOException
+  {
+    final var preferences = OBPreferences.create();
+    final var trusted = preferences.trustedFiles();
+    Assertions.assertFalse(trusted.isEnabled());
+
+    trusted.setEnabled(true);
+    for (int index = 0; index < 40; ++index) {
+      trusted.setSavedHash(Paths.get("/tmp/" + index), "hash" + index);
+    }
+
+    final var file = this.directory.resolve("preferences.xml");
+    try (var output = Files.newOutputStream(file)) {
+      preferences.save(output);
+    }
+
+    final var loaded = OBPreferences.create();
+    try (var input = Files.newInputStream(file)) {
+      loaded.load(input);
+    }
+
+    final var loadedTrusted = loaded.trustedFiles();
+    Assertions.assertTrue(loadedTrusted.isEnabled());
+    Assertions.assertEquals(
+      Optional.empty(),
+      loadedTrusted.savedHashOf(Paths.get("/tmp/7")));
+    Assertions.assertEquals(
+      Optional.of("hash39"),
+      loadedTrusted.savedHashOf(Paths.get("/tmp/39")));
+
+    loadedTrusted.clearSavedHash(Paths.get("/tmp/39"));
+    Assertions.assertEquals(
+      Optional.empty(),
+      loadedTrusted.savedHashOf(Paths.get("/tmp/39")));
+  }
+
+  @Test
+  public void testControllerWritesDeferred()
+    throws IOException
+  {
+    final var file = this.directory.resolve("preferences.xml");
+    final var fileTmp = this.directory.resolve("preferences.xml.tmp");
+
+    final var controller =
+      OBPreferencesController.create(file, fileTmp, Duration.ofHours(1L));
+
+    for (int index = 0; index < 20; ++index) {
+      final var path = Paths.get("/tmp/" + index);
+      controller.updateQuietly(prefs -> {
+        prefs.recentItems().addRecentFile(path);
+      });
+    }
+
+    Assertions.assertEquals(
+      Paths.get("/tmp/19"),
+      controller.preferences().recentItems().recentFiles().get(9));
+    Assertions.assertFalse(Files.exists(file));
+
+    controller.flush();
+    Assertions.assertTrue(Files.isRegularFile(file));
+    Assertions.assertFalse(Files.exists(fileTmp));
+
+    controller.updateQuietly(prefs -> {
+      prefs.recentItems().clearRecentFiles();
+    });
+    controller.close();
+
+    final var loaded = OBPreferences.create();
+    try (var input = Files.newInputStream(file)) {
+      loaded.load(input);
+    }
+    Assertions.assertEquals(List.of(), loaded.recentItems().recentFiles());
+  }
+
+  /*
+   * Each write replaces the file, and so the number of writes is the number
+   * of times the file is created in the directory. The initial write made
+   * by the controller and twenty updates that all arrive within the write
+   * delay must result in exactly one write.
+   */
+
+  @Test
+  public void testControllerWritesCoalesced()
+    throws Exception
+  {
+    final var file = this.directory.resolve("preferences.xml");
+    final var fileTmp = this.directory.resolve("preferences.xml.tmp");
+
+    try (var watcher = FileSystems.getDefault().newWatchService()) {
+      this.directory.register(watcher, ENTRY_CREATE);
+
+      final var controller =
+        OBPreferencesController.create(
+          file, fileTmp, Duration.ofMillis(500L));
+
+      for (int index = 0; index < 20; ++index) {
+        final var path = Paths.get("/tmp/" + index);
+        controller.updateQuietly(prefs -> {
+          prefs.recentItems().addRecentFile(path);
+        });
+      }
+
+      int writes = 0;
+      final var deadline = System.nanoTime() + 3_000_000_000L;
+      while (System.nanoTime() < deadline) {
+        final var key = watcher.poll(100L, TimeUnit.MILLISECONDS);
+        if (key == null) {
+          continue;
+        }
+        for (final var event : key.pollEvents()) {
+          if (Objects.equals(event.context(), file.getFileName())) {
+            ++writes;
+          }
+        }
+        key.reset();
+      }
+
+      Assertions.assertEquals(1, writes);
+
+      final var loaded = OBPreferences.create();
+      try (var input = Files.newInputStream(file)) {
+        loaded.load(input);
+      }
+      Assertions.assertEquals(
+        Paths.get("/tmp/19"),
+        loaded.recentItems().recentFiles().get(9));
+      controller.close();
+    }
+  }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.tests;
+
+import com.io7m.jregions.core.parameterized.areas.PAreaL;
+import com.io7m.jtensors.core.parameterized.vectors.PVector3D;
+import com.io7m.olivebench.controller.OBTaskSizes;
+import com.io7m.olivebench.model.graph.OBChannelMetadata;
+import com.io7m.olivebench.model.graph.OBNodeMetadata;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+import com.io7m.olivebench.model.metadata.OBMetadataProperty;
+import com.io7m.olivebench.model.names.OBName;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.openjdk.jol.info.GraphLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public final class OBTaskSizesTest
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBTaskSizesTest.class);
+
+  /*
+   * An estimate must never be smaller than the measured size of the value,
+   * and must not be more than twice as large.
+   */
+
+  private static void checkEstimate(
+    final Object value,
+    final long estimate)
+  {
+    final var measured = GraphLayout.parseInstance(value).totalSize();
+    LOG.debug(
+      "{}: estimate {} measured {}",
+      value.getClass().getSimpleName(),
+      Long.valueOf(estimate),
+      Long.valueOf(measured));
+
+    Assertions.assertTrue(
+      estimate >= measured,
+      String.format("Estimate %d >= measured %d", estimate, measured));
+    Assertions.assertTrue(
+      estimate <= 2L * measured,
+      String.format("Estimate %d <= 2 * measured %d", estimate, measured));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testString()
+  {
+    return Stream.of("a", "\u00e9", "\u3042")
+      .flatMap(c -> IntStream.of(0, 1, 7, 8, 9, 100, 1000)
+        .mapToObj(n -> {
+          final var text = new String(c.repeat(n).toCharArray());
+          return DynamicTest.dynamicTest(
+            String.format("testString_%04x_%d", (int) c.charAt(0), n),
+            () -> checkEstimate(text, OBTaskSizes.string(text)));
+        }));
+  }
+
+  @Test
+  public void testName()
+  {
+    final var name = OBName.of(new String("channel0".toCharArray()));
+    checkEstimate(name, OBTaskSizes.name(name));
+  }
+
+  @Test
+  public void testNodeMetadata()
+  {
+    final var metadata =
+      OBNodeMetadata.builder()
+        .setName(OBName.of(new String("channel0".toCharArray())))
+        .setArea(PAreaL.of(0L, 100L, 0L, 200L))
+        .build();
+
+    checkEstimate(metadata, OBTaskSizes.nodeMetadata(metadata));
+  }
+
+  @Test
+  public void testChannelMetadata()
+  {
+    final var metadata =
+      OBChannelMetadata.builder()
+        .setColor(PVector3D.of(0.5, 0.25, 1.0))
+        .build();
+
+    checkEstimate(metadata, OBTaskSizes.channelMetadata(metadata));
+  }
+
+  @TestFactory
+  public Stream<DynamicTest> testCompositionMetadata()
+  {
+    return IntStream.of(0, 1, 2, 10, 100)
+      .mapToObj(count -> DynamicTest.dynamicTest(
+        "testCompositionMetadata_" + count,
+        () -> {
+          final List<OBMetadataProperty> properties = new ArrayList<>(count);
+          for (int index = 0; index < count; ++index) {
+            properties.add(OBMetadataProperty.of(
+              "name" + index,
+              "value".repeat(index)));
+          }
+
+          final var metadata = OBCompositionMetadata.of(properties);
+          checkEstimate(metadata, OBTaskSizes.compositionMetadata(metadata));
+        }));
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.tests;
+
+import com.io7m.olivebench.model.spatial.OBTileGrid;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.quicktheories.QuickTheory;
+import org.quicktheories.generators.SourceDSL;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class OBTileGridTest
+{
+  private List<String> released;
+  private OBTileGrid<String> grid;
+
+  private static String name(
+    final int tileX,
+    final int tileY)
+  {
+    return String.format(
+      "%d,%d",
+      Integer.valueOf(tileX),
+      Integer.valueOf(tileY));
+  }
+
+  private void fill(
+    final int tileMin,
+    final int tileMax)
+  {
+    for (int tileY = tileMin; tileY <= tileMax; ++tileY) {
+      for (int tileX = tileMin; tileX <= tileMax; ++tileX) {
+        this.grid.put(tileX, tileY, name(tileX, tileY));
+      }
+    }
+  }
+
+  @BeforeEach
+  public void setup()
+  {
+    this.released = new ArrayList<>();
+    this.grid = new OBTileGrid<>(256, this.released::add);
+  }
+
+  @Test
+  public void testTileSizeInvalid()
+  {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> {
+      new OBTileGrid<String>(0, this.released::add);
+    });
+  }
+
+  @Test
+  public void testTileKeyIdentity()
+  {
+    QuickTheory.qt()
+      .forAll(
+        SourceDSL.integers().all(),
+        SourceDSL.integers().all())
+      .check((tileX, tileY) -> {
+        final var key =
+          OBTileGrid.tileKey(tileX.intValue(), tileY.intValue());
+        return OBTileGrid.tileKeyX(key) == tileX.intValue()
+          && OBTileGrid.tileKeyY(key) == tileY.intValue();
+      });
+  }
+
+  @Test
+  public void testTileKeyDistinct()
+  {
+    Assertions.assertNotEquals(
+      OBTileGrid.tileKey(0, -1),
+      OBTileGrid.tileKey(-1, 0));
+    Assertions.assertNotEquals(
+      OBTileGrid.tileKey(1, 0),
+      OBTileGrid.tileKey(0, 1));
+  }
+
+  @Test
+  public void testTileIndex()
+  {
+    Assertions.assertEquals(0, this.grid.tileIndex(0.0));
+    Assertions.assertEquals(0, this.grid.tileIndex(255.9));
+    Assertions.assertEquals(1, this.grid.tileIndex(256.0));
+    Assertions.assertEquals(-1, this.grid.tileIndex(-0.1));
+    Assertions.assertEquals(-1, this.grid.tileIndex(-256.0));
+    Assertions.assertEquals(-2, this.grid.tileIndex(-256.1));
+  }
+
+  @Test
+  public void testPutReplaceReleases()
+  {
+    this.grid.put(0, 0, "a");
+    this.grid.put(0, 0, "b");
+
+    Assertions.assertEquals(List.of("a"), this.released);
+    Assertions.assertEquals("b", this.grid.find(0, 0).orElseThrow());
+    Assertions.assertEquals(1, this.grid.size());
+  }
+
+  @Test
+  public void testEvictOutside()
+  {
+    this.fill(-2, 2);
+    Assertions.assertEquals(25, this.grid.size());
+
+    this.grid.evictOutside(-1, -1, 1, 1);
+    Assertions.assertEquals(9, this.grid.size());
+    Assertions.assertEquals(16, this.released.size());
+
+    for (int tileY = -2; tileY <= 2; ++tileY) {
+      for (int tileX = -2; tileX <= 2; ++tileX) {
+        final var inside =
+          tileX >= -1 && tileX <= 1 && tileY >= -1 && tileY <= 1;
+        Assertions.assertEquals(
+          inside,
+          this.grid.find(tileX, tileY).isPresent());
+        Assertions.assertEquals(
+          !inside,
+          this.released.contains(name(tileX, tileY)));
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidateAreaWithinTile()
+  {
+    this.fill(0, 3);
+
+    this.grid.invalidateArea(300.0, 300.0, 10.0, 10.0);
+    Assertions.assertEquals(List.of(name(1, 1)), this.released);
+    Assertions.assertEquals(15, this.grid.size());
+  }
+
+  @Test
+  public void testInvalidateAreaSpanning()
+  {
+    this.fill(0, 3);
+
+    this.grid.invalidateArea(200.0, 0.0, 100.0, 600.0);
+    Assertions.assertEquals(6, this.released.size());
+    for (int tileY = 0; tileY <= 2; ++tileY) {
+      Assertions.assertTrue(this.grid.find(0, tileY).isEmpty());
+      Assertions.assertTrue(this.grid.find(1, tileY).isEmpty());
+    }
+    Assertions.assertTrue(this.grid.find(0, 3).isPresent());
+    Assertions.assertTrue(this.grid.find(2, 0).isPresent());
+  }
+
+  @Test
+  public void testInvalidateAreaEndsOnBoundary()
+  {
+    this.fill(0, 3);
+
+    this.grid.invalidateArea(0.0, 0.0, 256.0, 256.0);
+    Assertions.assertEquals(List.of(name(0, 0)), this.released);
+  }
+
+  @Test
+  public void testInvalidateAreaEmpty()
+  {
+    this.fill(0, 3);
+
+    this.grid.invalidateArea(512.0, 512.0, 0.0, 0.0);
+    Assertions.assertEquals(List.of(name(2, 2)), this.released);
+  }
+
+  @Test
+  public void testInvalidateAreaMissingTiles()
+  {
+    this.grid.invalidateArea(0.0, 0.0, 1000.0, 1000.0);
+    Assertions.assertEquals(List.of(), this.released);
+  }
+
+  @Test
+  public void testClear()
+  {
+    this.fill(0, 1);
+    this.grid.clear();
+
+    Assertions.assertEquals(0, this.grid.size());
+    Assertions.assertEquals(4, this.released.size());
+  }
+}
@@ -20,6 +20,7 @@ import com.io7m.olivebench.controller.OBControllerEventCompositionChanged;
 import com.io7m.olivebench.controller.OBControllerEventCompositionStatusChanged;
 import com.io7m.olivebench.controller.OBControllerType;
 import com.io7m.olivebench.model.OBChannelEventType;
+import com.io7m.olivebench.model.OBCompositionReadableType;
 import com.io7m.olivebench.model.graph.OBChannelType;
 import com.io7m.olivebench.model.names.OBName;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
@@ -35,6 +36,7 @@ import javafx.scene.control.TextInputDialog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 public final class OBChannelsViewController implements OBViewControllerType
@@ -121,25 +123,31 @@ public final class OBChannelsViewController implements OBViewControllerType
 
   private void updateFromSnapshot()
   {
-    Platform.runLater(() -> {
-      final var compositionOpt = this.controller.compositionSnapshot();
-      if (compositionOpt.isPresent()) {
-        final var composition = compositionOpt.get();
-        final var channelList =
-          FXCollections.observableList(
-            composition.graph()
-              .nodes()
-              .values()
-              .stream()
-              .filter(node -> node instanceof OBChannelType)
-              .map(node -> (OBChannelType) node)
-              .collect(Collectors.toList())
-          );
-        this.channels.setItems(channelList);
-      } else {
-        this.channels.setItems(FXCollections.emptyObservableList());
-      }
-    });
+    this.controller.compositionSnapshotAsync()
+      .thenAccept(compositionOpt -> {
+        Platform.runLater(() -> this.showChannels(compositionOpt));
+      });
+  }
+
+  private void showChannels(
+    final Optional<OBCompositionReadableType> compositionOpt)
+  {
+    if (compositionOpt.isPresent()) {
+      final var composition = compositionOpt.get();
+      final var channelList =
+        FXCollections.observableList(
+          composition.graph()
+            .nodes()
+            .values()
+            .stream()
+            .filter(node -> node instanceof OBChannelType)
+            .map(node -> (OBChannelType) node)
+            .collect(Collectors.toList())
+        );
+      this.channels.setItems(channelList);
+    } else {
+      this.channels.setItems(FXCollections.emptyObservableList());
+    }
   }
 
   @Override
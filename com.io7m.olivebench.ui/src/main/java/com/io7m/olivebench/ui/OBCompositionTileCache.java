@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.ui;
+
+import com.io7m.olivebench.model.spatial.OBTileGrid;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.LinkedList;
+import java.util.Objects;
+
+/*
+ * A cache of rendered tiles of the composition view.
+ *
+ * The view is divided into square tiles in content pixel coordinates, and
+ * each tile is rendered once into an image at the current zoom level.
+ * Drawing the view draws the cached images of the visible tiles and only
+ * renders tiles that have become visible or that have been invalidated,
+ * so scrolling costs one image copy per visible tile rather than a redraw
+ * of the whole view. Tiles that move well outside of the visible area are
+ * evicted, and their images are reused for the next tiles rendered.
+ *
+ * Instances must only be used on the FX application thread.
+ */
+
+final class OBCompositionTileCache
+{
+  private final OBTileGrid<WritableImage> tiles;
+  private final TileRendererType renderer;
+  private final LinkedList<WritableImage> free;
+  private final Canvas scratch;
+  private final SnapshotParameters snapshotParameters;
+  private double ticksPerPixel;
+  private double pixelsPerNote;
+
+  OBCompositionTileCache(
+    final int inTileSize,
+    final TileRendererType inRenderer)
+  {
+    this.renderer = Objects.requireNonNull(inRenderer, "renderer");
+    this.free = new LinkedList<>();
+    this.tiles = new OBTileGrid<>(inTileSize, this.free::push);
+    this.scratch = new Canvas(inTileSize, inTileSize);
+    this.snapshotParameters = new SnapshotParameters();
+    this.snapshotParameters.setFill(Color.TRANSPARENT);
+    this.ticksPerPixel = Double.NaN;
+    this.pixelsPerNote = Double.NaN;
+  }
+
+  void setZoom(
+    final double newTicksPerPixel,
+    final double newPixelsPerNote)
+  {
+    if (Double.compare(this.ticksPerPixel, newTicksPerPixel) != 0
+      || Double.compare(this.pixelsPerNote, newPixelsPerNote) != 0) {
+      this.ticksPerPixel = newTicksPerPixel;
+      this.pixelsPerNote = newPixelsPerNote;
+      this.invalidateAll();
+    }
+  }
+
+  void invalidateAll()
+  {
+    this.tiles.clear();
+  }
+
+  void invalidateArea(
+    final double x,
+    final double y,
+    final double width,
+    final double height)
+  {
+    this.tiles.invalidateArea(x, y, width, height);
+  }
+
+  /*
+   * Tiles are rendered with transparent backgrounds, and so the visible
+   * area is cleared before the tiles are drawn over it. Otherwise, the
+   * previous contents of the canvas would show through after scrolling.
+   */
+
+  void draw(
+    final GraphicsContext graphics,
+    final double x,
+    final double y,
+    final double width,
+    final double height)
+  {
+    Objects.requireNonNull(graphics, "graphics");
+
+    final int tileMinX = this.tiles.tileIndex(x);
+    final int tileMinY = this.tiles.tileIndex(y);
+    final int tileMaxX = this.tiles.tileIndex(x + width);
+    final int tileMaxY = this.tiles.tileIndex(y + height);
+
+    this.tiles.evictOutside(
+      tileMinX - 1,
+      tileMinY - 1,
+      tileMaxX + 1,
+      tileMaxY + 1);
+
+    graphics.clearRect(0.0, 0.0, width, height);
+
+    final double size = this.tiles.tileSize();
+    for (int tileY = tileMinY; tileY <= tileMaxY; ++tileY) {
+      for (int tileX = tileMinX; tileX <= tileMaxX; ++tileX) {
+        final var image = this.tile(tileX, tileY);
+        graphics.drawImage(image, tileX * size - x, tileY * size - y);
+      }
+    }
+  }
+
+  private WritableImage tile(
+    final int tileX,
+    final int tileY)
+  {
+    final var existing = this.tiles.find(tileX, tileY);
+    if (existing.isPresent()) {
+      return existing.get();
+    }
+
+    final double size = this.tiles.tileSize();
+    final var graphics = this.scratch.getGraphicsContext2D();
+    graphics.save();
+    graphics.clearRect(0.0, 0.0, size, size);
+    graphics.translate(-tileX * size, -tileY * size);
+    this.renderer.renderTile(graphics, tileX * size, tileY * size, size);
+    graphics.restore();
+
+    final var image =
+      this.scratch.snapshot(this.snapshotParameters, this.free.poll());
+    this.tiles.put(tileX, tileY, image);
+    return image;
+  }
+
+  /*
+   * The graphics context passed to the renderer is transformed such that
+   * content is drawn in view coordinates, and drawing outside of the tile
+   * is discarded.
+   */
+
+  interface TileRendererType
+  {
+    void renderTile(
+      GraphicsContext graphics,
+      double x,
+      double y,
+      double size);
+  }
+}
@@ -16,10 +16,16 @@
 
 package com.io7m.olivebench.ui;
 
+import com.io7m.jregions.core.unparameterized.areas.AreaL;
+import com.io7m.olivebench.controller.OBControllerEventCompositionChanged;
 import com.io7m.olivebench.controller.OBControllerEventCompositionStatusChanged;
 import com.io7m.olivebench.controller.OBControllerEventCompositionStatusChangedType.Status;
 import com.io7m.olivebench.controller.OBControllerType;
 import com.io7m.olivebench.model.OBCompositionReadableType;
+import com.io7m.olivebench.model.OBRegionEventRemovedType;
+import com.io7m.olivebench.model.OBRegionEventType;
+import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBRegionType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 import com.io7m.olivebench.strings.OBStringsType;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
@@ -28,6 +34,7 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.fxml.FXML;
 import javafx.geometry.Pos;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.Pane;
@@ -35,6 +42,14 @@ import javafx.scene.layout.StackPane;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static com.io7m.olivebench.model.graph.OBRegionType.OBDecorativeRegionType.OBTextRegionType;
 
 public final class OBCompositionViewController implements OBViewControllerType
@@ -42,9 +57,15 @@ public final class OBCompositionViewController implements OBViewControllerType
   private static final Logger LOG =
     LoggerFactory.getLogger(OBCompositionViewController.class);
 
+  private static final int TILE_SIZE = 256;
+
   private final CompositeDisposable subscriptions;
   private final SimpleDoubleProperty ticksPerPixel;
   private final SimpleDoubleProperty pixelsPerNote;
+  private final AtomicBoolean invalidationPending;
+  private final AtomicBoolean invalidationAll;
+  private final ConcurrentLinkedQueue<RegionInvalidation> invalidationRegions;
+  private final Map<UUID, AreaL> regionAreas;
 
   @FXML
   private ScrollPane compositionScrollArea;
@@ -57,12 +78,17 @@ public final class OBCompositionViewController implements OBViewControllerType
 
   private OBStringsType strings;
   private OBControllerType controller;
+  private OBCompositionTileCache tiles;
 
   public OBCompositionViewController()
   {
     this.subscriptions = new CompositeDisposable();
     this.ticksPerPixel = new SimpleDoubleProperty(60.0);
     this.pixelsPerNote = new SimpleDoubleProperty(16.0);
+    this.invalidationPending = new AtomicBoolean(false);
+    this.invalidationAll = new AtomicBoolean(false);
+    this.invalidationRegions = new ConcurrentLinkedQueue<>();
+    this.regionAreas = new HashMap<>();
   }
 
   @FXML
@@ -92,6 +118,9 @@ public final class OBCompositionViewController implements OBViewControllerType
     this.controller =
       services.requireService(OBControllerType.class);
 
+    this.tiles =
+      new OBCompositionTileCache(TILE_SIZE, this::renderTile);
+
     this.compositionScrollContent.setScaleY(-1.0);
 
     this.compositionGridCanvasContainer.widthProperty()
@@ -112,11 +141,21 @@ public final class OBCompositionViewController implements OBViewControllerType
     this.compositionScrollArea.vvalueProperty()
       .addListener((observable, oldValue, newValue) -> this.redrawCanvas());
 
+    this.ticksPerPixel
+      .addListener((observable, oldValue, newValue) -> this.redrawCanvas());
+    this.pixelsPerNote
+      .addListener((observable, oldValue, newValue) -> this.redrawCanvas());
+
     this.subscriptions.add(
       this.controller.events()
         .ofType(OBControllerEventCompositionStatusChanged.class)
         .subscribe(this::onCompositionStatusChanged)
     );
+    this.subscriptions.add(
+      this.controller.events()
+        .ofType(OBControllerEventCompositionChanged.class)
+        .subscribe(this::invalidateCanvas)
+    );
 
     this.compositionGridCanvas.setWidth(
       this.compositionGridCanvasContainer.getWidth());
@@ -125,6 +164,115 @@ public final class OBCompositionViewController implements OBViewControllerType
     this.redrawCanvas();
   }
 
+  /*
+   * Graph changes arrive on the controller thread, often in bursts. Each
+   * burst is applied and the canvas redrawn once on the FX application
+   * thread. A change to a region invalidates only the tiles that the region
+   * covered before and after the change. Any other change, such as to the
+   * color of a channel, may affect the whole view and so discards every
+   * tile.
+   *
+   * The area that a region covers after a change is computed here, on the
+   * controller thread that owns the model, so that the FX application
+   * thread never reads the geometry of the live graph.
+   */
+
+  private void invalidateCanvas(
+    final OBControllerEventCompositionChanged event)
+  {
+    final var compositionEvent = event.event();
+    if (compositionEvent instanceof OBRegionEventType) {
+      final var regionEvent = (OBRegionEventType) compositionEvent;
+      final var region = regionEvent.region();
+      if (regionEvent instanceof OBRegionEventRemovedType) {
+        this.invalidationRegions.add(
+          new RegionInvalidation(region.id(), Optional.empty()));
+      } else {
+        this.invalidationRegions.add(
+          new RegionInvalidation(
+            region.id(),
+            Optional.of(regionArea(regionEvent.channel(), region))));
+      }
+    } else {
+      this.invalidationAll.set(true);
+    }
+
+    if (!this.invalidationPending.compareAndSet(false, true)) {
+      return;
+    }
+
+    Platform.runLater(() -> {
+      this.invalidationPending.set(false);
+      this.applyInvalidations();
+      this.redrawCanvas();
+    });
+  }
+
+  private void applyInvalidations()
+  {
+    final var all = this.invalidationAll.getAndSet(false);
+    while (true) {
+      final var invalidation = this.invalidationRegions.poll();
+      if (invalidation == null) {
+        break;
+      }
+
+      final var areaThen = this.regionAreas.remove(invalidation.id);
+      if (areaThen != null) {
+        this.invalidateArea(areaThen);
+      }
+
+      invalidation.areaNow.ifPresent(areaNow -> {
+        this.regionAreas.put(invalidation.id, areaNow);
+        this.invalidateArea(areaNow);
+      });
+    }
+
+    if (all) {
+      this.tiles.invalidateAll();
+    }
+  }
+
+  /*
+   * Region areas are held relative to their channels, in ticks on the X
+   * axis and notes on the Y axis. Channels are children of the root node,
+   * which is always at the origin.
+   */
+
+  private static AreaL regionArea(
+    final OBChannelType channel,
+    final OBRegionType<?> region)
+  {
+    final var channelArea = channel.nodeArea();
+    final var area = region.nodeArea();
+    final var minX = area.minimumX() + channelArea.minimumX();
+    final var minY = area.minimumY() + channelArea.minimumY();
+    return AreaL.of(
+      minX,
+      minX + area.sizeX(),
+      minY,
+      minY + area.sizeY());
+  }
+
+  private void invalidateArea(
+    final AreaL area)
+  {
+    final double tpp = this.ticksPerPixel.get();
+    final double ppn = this.pixelsPerNote.get();
+    this.tiles.invalidateArea(
+      (double) area.minimumX() / tpp,
+      (double) area.minimumY() * ppn,
+      (double) area.sizeX() / tpp,
+      (double) area.sizeY() * ppn);
+  }
+
+  /*
+   * The canvas covers the viewport of the scroll area, and so redrawing it
+   * draws the tiles that cover the visible part of the content. Tiles are
+   * cached at the current zoom level, and so scrolling only renders the
+   * tiles that have newly become visible.
+   */
+
   private void redrawCanvas()
   {
     final double hmin =
@@ -143,9 +291,6 @@ public final class OBCompositionViewController implements OBViewControllerType
         0.0,
         contentWidth - viewportWidth) * (hvalue - hmin) / (hmax - hmin);
 
-    final double xMaximum =
-      xMinimum + viewportWidth;
-
     final double vmin =
       this.compositionScrollArea.getVmin();
     final double vmax =
@@ -162,23 +307,23 @@ public final class OBCompositionViewController implements OBViewControllerType
         0.0,
         contentHeight - viewportHeight) * (vvalue - vmin) / (vmax - vmin);
 
-    final double yMaximum =
-      yMinimum + viewportHeight;
-
-    final var graphics = this.compositionGridCanvas.getGraphicsContext2D();
-    graphics.clearRect(
-      0.0,
-      0.0,
+    this.tiles.setZoom(this.ticksPerPixel.get(), this.pixelsPerNote.get());
+    this.tiles.draw(
+      this.compositionGridCanvas.getGraphicsContext2D(),
+      xMinimum,
+      yMinimum,
       this.compositionGridCanvas.getWidth(),
       this.compositionGridCanvas.getHeight()
     );
+  }
 
-    graphics.fillRect(
-      0.0,
-      0.0,
-      this.compositionGridCanvas.getWidth(),
-      this.compositionGridCanvas.getHeight()
-    );
+  private void renderTile(
+    final GraphicsContext graphics,
+    final double x,
+    final double y,
+    final double size)
+  {
+    graphics.fillRect(x, y, size, size);
   }
 
   private static double roundUp(
@@ -198,22 +343,33 @@ public final class OBCompositionViewController implements OBViewControllerType
   private void onCompositionStatusChanged(
     final OBControllerEventCompositionStatusChanged event)
   {
-    Platform.runLater(() -> {
-      if ((event.statusThen() == Status.STATUS_NOT_LOADED)
-        && (event.statusNow() != Status.STATUS_NOT_LOADED)) {
-        this.ticksPerPixel.set(60.0);
-        this.createInitialRegions(
-          this.controller.compositionSnapshot().orElseThrow()
-        );
-      }
-    });
+    if ((event.statusThen() == Status.STATUS_NOT_LOADED)
+      && (event.statusNow() != Status.STATUS_NOT_LOADED)) {
+      this.controller.compositionSnapshotAsync()
+        .thenAccept(snapshotOpt -> Platform.runLater(() -> {
+          this.ticksPerPixel.set(60.0);
+          this.tiles.invalidateAll();
+          this.regionAreas.clear();
+          snapshotOpt.ifPresent(this::createInitialRegions);
+          this.redrawCanvas();
+        }));
+    }
   }
 
   private void createInitialRegions(
     final OBCompositionReadableType composition)
   {
-    composition.graph()
-      .nodes()
+    final var graph = composition.graph();
+    graph.nodes()
+      .values()
+      .stream()
+      .filter(n -> n instanceof OBRegionType)
+      .map(n -> (OBRegionType<?>) n)
+      .forEach(region -> this.regionAreas.put(
+        region.id(),
+        regionArea(graph.channelOf(region), region)));
+
+    graph.nodes()
       .values()
       .stream()
       .filter(n -> n instanceof OBTextRegionType)
@@ -240,4 +396,18 @@ public final class OBCompositionViewController implements OBViewControllerType
       "[OBCompositionViewController 0x%s]",
       Long.toUnsignedString(System.identityHashCode(this)));
   }
+
+  private static final class RegionInvalidation
+  {
+    private final UUID id;
+    private final Optional<AreaL> areaNow;
+
+    RegionInvalidation(
+      final UUID inId,
+      final Optional<AreaL> inAreaNow)
+    {
+      this.id = Objects.requireNonNull(inId, "id");
+      this.areaNow = Objects.requireNonNull(inAreaNow, "areaNow");
+    }
+  }
 }
@@ -21,6 +21,7 @@ import com.io7m.jwheatsheaf.api.JWFileChooserConfiguration;
 import com.io7m.jwheatsheaf.api.JWFileChooserFilterType;
 import com.io7m.jwheatsheaf.api.JWFileChoosersType;
 import com.io7m.jwheatsheaf.ui.JWFileChoosers;
+import com.io7m.olivebench.controller.OBControllerAutosave;
 import com.io7m.olivebench.controller.OBControllerEventCompositionStatusChanged;
 import com.io7m.olivebench.controller.OBControllerEventTaskFailed;
 import com.io7m.olivebench.controller.OBControllerEventTaskFinished;
@@ -54,6 +55,7 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -156,26 +158,21 @@ public final class OBMainViewController implements Initializable
 
   @FXML
   private void onMenuOpenSelected()
-    throws MalformedURLException
   {
     LOG.trace("onMenuOpenSelected");
 
-    final var preferences =
-      this.mainServices.requireService(OBPreferencesControllerType.class);
+    this.recentFiles()
+      .thenAcceptAsync(this::chooseFileAndOpen, Platform::runLater);
+  }
 
+  private void chooseFileAndOpen(
+    final List<Path> recentFiles)
+  {
     final var config =
-      JWFileChooserConfiguration.builder()
-        .setFileImageSet(new OBFileChooserIconSet())
-        .setAction(JWFileChooserAction.OPEN_EXISTING_SINGLE)
-        .addAllFileFilters(fileNameFilters())
-        .setAllowDirectoryCreation(true)
-        .setCssStylesheet(new URL(OBCSS.stylesheet()))
-        .setFileSystem(FileSystems.getDefault())
-        .addAllRecentFiles(
-          preferences.preferences()
-            .recentItems()
-            .recentFiles()
-        ).build();
+      fileChooserConfiguration(
+        JWFileChooserAction.OPEN_EXISTING_SINGLE,
+        recentFiles
+      );
 
     final var chooser = this.fileChoosers.create(this.stage, config);
     final var selected = chooser.showAndWait();
@@ -184,6 +181,40 @@ public final class OBMainViewController implements Initializable
     }
   }
 
+  /*
+   * The recent files are probed by the controller on its I/O executor, so
+   * that a recent file on a slow or missing device cannot stall the UI
+   * thread while a file chooser is being opened.
+   */
+
+  private CompletableFuture<List<Path>> recentFiles()
+  {
+    return this.controller.recentFiles()
+      .exceptionally(e -> {
+        LOG.error("unable to probe recent files: ", e);
+        return List.of();
+      });
+  }
+
+  private static JWFileChooserConfiguration fileChooserConfiguration(
+    final JWFileChooserAction action,
+    final List<Path> recentFiles)
+  {
+    try {
+      return JWFileChooserConfiguration.builder()
+        .setFileImageSet(new OBFileChooserIconSet())
+        .setAction(action)
+        .addAllFileFilters(fileNameFilters())
+        .setAllowDirectoryCreation(true)
+        .setCssStylesheet(new URL(OBCSS.stylesheet()))
+        .setFileSystem(FileSystems.getDefault())
+        .addAllRecentFiles(recentFiles)
+        .build();
+    } catch (final MalformedURLException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   @FXML
   private void onMenuItemCompositionChannelsSelected()
     throws IOException
@@ -224,7 +255,6 @@ public final class OBMainViewController implements Initializable
 
   @FXML
   private void onMenuSaveAsSelected()
-    throws MalformedURLException
   {
     LOG.trace("onMenuSaveAsSelected");
     this.chooseFileAndSave();
@@ -232,7 +262,6 @@ public final class OBMainViewController implements Initializable
 
   @FXML
   private void onMenuSaveSelected()
-    throws MalformedURLException
   {
     LOG.trace("onMenuSaveSelected");
 
@@ -246,24 +275,16 @@ public final class OBMainViewController implements Initializable
   }
 
   private void chooseFileAndSave()
-    throws MalformedURLException
   {
-    final var preferences =
-      this.mainServices.requireService(OBPreferencesControllerType.class);
+    this.recentFiles()
+      .thenAcceptAsync(this::chooseFileAndSave, Platform::runLater);
+  }
 
+  private void chooseFileAndSave(
+    final List<Path> recentFiles)
+  {
     final var config =
-      JWFileChooserConfiguration.builder()
-        .setFileImageSet(new OBFileChooserIconSet())
-        .setAction(JWFileChooserAction.CREATE)
-        .addAllFileFilters(fileNameFilters())
-        .setAllowDirectoryCreation(true)
-        .setCssStylesheet(new URL(OBCSS.stylesheet()))
-        .setFileSystem(FileSystems.getDefault())
-        .addAllRecentFiles(
-          preferences.preferences()
-            .recentItems()
-            .recentFiles()
-        ).build();
+      fileChooserConfiguration(JWFileChooserAction.CREATE, recentFiles);
 
     final var chooser = this.fileChoosers.create(this.stage, config);
     final var selected = chooser.showAndWait();
@@ -526,6 +547,8 @@ public final class OBMainViewController implements Initializable
   private void shutDown()
   {
     LOG.debug("exiting");
+    this.mainServices.requireService(OBPreferencesControllerType.class)
+      .close();
     System.exit(0);
   }
 
@@ -572,5 +595,9 @@ public final class OBMainViewController implements Initializable
         .ofType(OBControllerEventCompositionStatusChanged.class)
         .subscribe(this::onCompositionStatusChanged)
     );
+    services.optionalService(OBControllerAutosave.class)
+      .ifPresent(autosave -> {
+        Platform.runLater(() -> OBRecoveryDialog.show(this.strings, autosave));
+      });
   }
 }
\ No newline at end of file
@@ -200,26 +200,25 @@ public final class OBMetadataViewController implements OBViewControllerType
   private void onCompositionStatusChanged(
     final OBControllerEventCompositionStatusChanged event)
   {
-    Platform.runLater(() -> {
-      switch (event.statusNow()) {
-        case STATUS_SAVED:
-        case STATUS_UNSAVED: {
-          this.configureFieldsForMetadata(
-            this.controller.compositionSnapshot()
-              .orElseThrow()
-              .metadata()
-              .read()
-          );
-          break;
-        }
-        case STATUS_NOT_LOADED: {
+    switch (event.statusNow()) {
+      case STATUS_SAVED:
+      case STATUS_UNSAVED: {
+        this.controller.compositionSnapshotAsync()
+          .thenAccept(snapshotOpt -> snapshotOpt.ifPresent(snapshot -> {
+            final var meta = snapshot.metadata().read();
+            Platform.runLater(() -> this.configureFieldsForMetadata(meta));
+          }));
+        break;
+      }
+      case STATUS_NOT_LOADED: {
+        Platform.runLater(() -> {
           for (final var field : this.fields) {
             field.clear();
           }
-          break;
-        }
+        });
+        break;
       }
-    });
+    }
   }
 
   @Override
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.ui;
+
+import com.io7m.olivebench.controller.OBControllerAutosave;
+import com.io7m.olivebench.strings.OBStringsType;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Objects;
+
+/*
+ * Offers each recovery file left by a previous session in turn, most recent
+ * first. Only one composition can be open at a time, and so the first file
+ * that is recovered ends the offer; files that are neither recovered nor
+ * discarded are offered again on the next start.
+ */
+
+public final class OBRecoveryDialog
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OBRecoveryDialog.class);
+
+  private OBRecoveryDialog()
+  {
+
+  }
+
+  public static void show(
+    final OBStringsType strings,
+    final OBControllerAutosave autosave)
+  {
+    Objects.requireNonNull(strings, "strings");
+    Objects.requireNonNull(autosave, "autosave");
+
+    try {
+      for (final var file : autosave.recoveryFiles()) {
+        final var recover =
+          new ButtonType(
+            strings.recoveryRecover(),
+            ButtonBar.ButtonData.OK_DONE);
+        final var discard =
+          new ButtonType(
+            strings.recoveryDiscard(),
+            ButtonBar.ButtonData.OTHER);
+
+        final var alert =
+          new Alert(
+            Alert.AlertType.CONFIRMATION,
+            strings.recoveryMessage(file, Files.getLastModifiedTime(file)),
+            discard,
+            ButtonType.CANCEL,
+            recover);
+
+        alert.setTitle(strings.recoveryTitle());
+        final var dialogPane = alert.getDialogPane();
+        dialogPane.getStylesheets().add(OBCSS.stylesheet());
+        dialogPane.setHeaderText(strings.recoveryTitle());
+
+        final var resultOpt = alert.showAndWait();
+        if (resultOpt.isPresent()) {
+          final var result = resultOpt.get();
+          if (Objects.equals(result, recover)) {
+            autosave.recover(file);
+            return;
+          }
+          if (Objects.equals(result, discard)) {
+            autosave.discardRecovery(file);
+          }
+        }
+      }
+    } catch (final IOException e) {
+      LOG.error("unable to examine recovery files: ", e);
+    }
+  }
+}
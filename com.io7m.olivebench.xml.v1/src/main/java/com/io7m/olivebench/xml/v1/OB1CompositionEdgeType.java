@@ -17,14 +17,21 @@
 package com.io7m.olivebench.xml.v1;
 
 import com.io7m.immutables.styles.ImmutablesStyleType;
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.jlexing.core.LexicalType;
 import org.immutables.value.Value;
 
+import java.net.URI;
 import java.util.UUID;
 
 @ImmutablesStyleType
 @Value.Immutable
-public interface OB1CompositionEdgeType
+public interface OB1CompositionEdgeType extends LexicalType<URI>
 {
+  @Override
+  @Value.Auxiliary
+  LexicalPosition<URI> lexical();
+
   UUID source();
 
   UUID target();
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.xml.v1;
+
+import com.io7m.blackthorne.api.BTElementHandlerConstructorType;
+import com.io7m.blackthorne.api.BTElementHandlerType;
+import com.io7m.blackthorne.api.BTElementParsingContextType;
+import com.io7m.blackthorne.api.BTQualifiedName;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIPartType;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
+
+import java.util.Map;
+
+/*
+ * A parser for one part of a partitioned composition. Parts are ordinary
+ * composition documents, but rather than building a graph, the nodes and
+ * edges are collected so that the parts can be parsed concurrently and
+ * the graph built from all of them afterwards.
+ */
+
+public final class OB1CompositionPartParser
+  implements BTElementHandlerType<Object, OBCompositionSPIPartType>,
+  OB1GraphReceiverType
+{
+  private final OB1CompositionPart.Builder builder;
+
+  private OB1CompositionPartParser()
+  {
+    this.builder = OB1CompositionPart.builder();
+  }
+
+  public static BTElementHandlerType<Object, OBCompositionSPIPartType> create()
+  {
+    return new OB1CompositionPartParser();
+  }
+
+  @Override
+  public OBCompositionSPIPartType onElementFinished(
+    final BTElementParsingContextType context)
+  {
+    return this.builder.build();
+  }
+
+  @Override
+  public Map<BTQualifiedName, BTElementHandlerConstructorType<?, ?>> onChildHandlersRequested(
+    final BTElementParsingContextType context)
+  {
+    final var namespace = OB1Schemas.NAMESPACE_1_URI.toString();
+    return Map.ofEntries(
+      Map.entry(
+        BTQualifiedName.of(namespace, "Metadata"),
+        ignored -> new OB1MetadataParser()
+      ),
+      Map.entry(
+        BTQualifiedName.of(namespace, "Graph"),
+        ignored -> new OB1GraphPartParser(this)
+      )
+    );
+  }
+
+  @Override
+  public void onChildValueProduced(
+    final BTElementParsingContextType context,
+    final Object result)
+  {
+    if (result instanceof OBCompositionMetadata) {
+      this.builder.setMetadata((OBCompositionMetadata) result);
+    }
+  }
+
+  @Override
+  public void onNode(
+    final BTElementParsingContextType context,
+    final OB1CompositionNodeType node)
+  {
+    this.builder.addNodes(node);
+  }
+
+  @Override
+  public void onEdge(
+    final BTElementParsingContextType context,
+    final OB1CompositionEdge edge)
+  {
+    this.builder.addEdges(edge);
+  }
+}
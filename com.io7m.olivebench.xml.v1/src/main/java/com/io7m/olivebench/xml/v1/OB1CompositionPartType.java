@@ -17,13 +17,19 @@
 package com.io7m.olivebench.xml.v1;
 
 import com.io7m.immutables.styles.ImmutablesStyleType;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIPartType;
+import com.io7m.olivebench.model.metadata.OBCompositionMetadata;
 import org.immutables.value.Value;
 
 import java.util.List;
 
 @ImmutablesStyleType
 @Value.Immutable
-public interface OB1NodesType
+public interface OB1CompositionPartType extends OBCompositionSPIPartType
 {
+  OBCompositionMetadata metadata();
+
   List<OB1CompositionNodeType> nodes();
+
+  List<OB1CompositionEdge> edges();
 }
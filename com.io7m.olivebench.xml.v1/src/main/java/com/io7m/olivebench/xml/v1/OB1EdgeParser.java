@@ -18,9 +18,12 @@ package com.io7m.olivebench.xml.v1;
 
 import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.blackthorne.api.BTElementParsingContextType;
+import com.io7m.jlexing.core.LexicalPosition;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
+import java.net.URI;
+import java.util.Optional;
 import java.util.UUID;
 
 public final class OB1EdgeParser
@@ -40,6 +43,13 @@ public final class OB1EdgeParser
     throws SAXException
   {
     try {
+      final var locator = context.documentLocator();
+      this.builder.setLexical(
+        LexicalPosition.<URI>builder()
+          .setLine(locator.getLineNumber())
+          .setColumn(locator.getColumnNumber())
+          .setFile(Optional.ofNullable(locator.getSystemId()).map(URI::create))
+          .build());
       this.builder.setSource(
         UUID.fromString(attributes.getValue("source")));
       this.builder.setTarget(
@@ -14,30 +14,35 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
+
 package com.io7m.olivebench.xml.v1;
 
 import com.io7m.blackthorne.api.BTElementHandlerConstructorType;
 import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.blackthorne.api.BTElementParsingContextType;
 import com.io7m.blackthorne.api.BTQualifiedName;
+import org.xml.sax.SAXException;
 
 import java.util.Map;
+import java.util.Objects;
 
 public final class OB1EdgesParser
-  implements BTElementHandlerType<OB1CompositionEdge, OB1Edges>
+  implements BTElementHandlerType<OB1CompositionEdge, Integer>
 {
-  private final OB1Edges.Builder edges;
+  private final OB1GraphReceiverType receiver;
+  private int count;
 
-  public OB1EdgesParser()
+  public OB1EdgesParser(
+    final OB1GraphReceiverType inReceiver)
   {
-    this.edges = OB1Edges.builder();
+    this.receiver = Objects.requireNonNull(inReceiver, "receiver");
   }
 
   @Override
-  public OB1Edges onElementFinished(
+  public Integer onElementFinished(
     final BTElementParsingContextType context)
   {
-    return this.edges.build();
+    return Integer.valueOf(this.count);
   }
 
   @Override
@@ -58,7 +63,9 @@ public final class OB1EdgesParser
   public void onChildValueProduced(
     final BTElementParsingContextType context,
     final OB1CompositionEdge result)
+    throws SAXException
   {
-    this.edges.addEdges(result);
+    ++this.count;
+    this.receiver.onEdge(context, result);
   }
 }
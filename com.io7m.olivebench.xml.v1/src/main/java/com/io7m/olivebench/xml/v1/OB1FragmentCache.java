@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.xml.v1;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * The encoded nodes and edges of the contents of each channel, as written
+ * at the last save. Every change to the contents of a channel gives the
+ * channel a new revision, and revisions are never reused by any graph, so
+ * a fragment encoded at the current revision of a channel is still exactly
+ * what the channel's contents would be encoded as. Fragments from older
+ * revisions are replaced when the channel is next written.
+ *
+ * A provider is shared by every composition that is saved, and so the
+ * fragments are kept per composition, and saving one composition only
+ * discards the fragments of channels that composition no longer has. The
+ * cache holds at most a fixed number of bytes; the fragments that were
+ * least recently used are evicted first, and a composition that is no
+ * longer being saved is eventually evicted entirely.
+ */
+
+final class OB1FragmentCache
+{
+  private static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024L * 1024L;
+
+  private final LinkedHashMap<Key, Fragment> fragments;
+  private final long maximumBytes;
+  private long bytes;
+
+  OB1FragmentCache()
+  {
+    this(DEFAULT_MAXIMUM_BYTES);
+  }
+
+  OB1FragmentCache(
+    final long inMaximumBytes)
+  {
+    this.maximumBytes = inMaximumBytes;
+    this.fragments = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  synchronized Optional<Fragment> get(
+    final UUID composition,
+    final UUID channel,
+    final long revision)
+  {
+    Objects.requireNonNull(composition, "composition");
+    Objects.requireNonNull(channel, "channel");
+
+    final var fragment = this.fragments.get(new Key(composition, channel));
+    if (fragment != null && fragment.revision == revision) {
+      return Optional.of(fragment);
+    }
+    return Optional.empty();
+  }
+
+  synchronized void put(
+    final UUID composition,
+    final UUID channel,
+    final Fragment fragment)
+  {
+    Objects.requireNonNull(composition, "composition");
+    Objects.requireNonNull(channel, "channel");
+    Objects.requireNonNull(fragment, "fragment");
+
+    if (fragment.size() > this.maximumBytes) {
+      this.remove(new Key(composition, channel));
+      return;
+    }
+
+    final var previous =
+      this.fragments.put(new Key(composition, channel), fragment);
+    if (previous != null) {
+      this.bytes -= previous.size();
+    }
+    this.bytes += fragment.size();
+
+    final var iterator = this.fragments.entrySet().iterator();
+    while (this.bytes > this.maximumBytes && iterator.hasNext()) {
+      this.bytes -= iterator.next().getValue().size();
+      iterator.remove();
+    }
+  }
+
+  synchronized void retainAll(
+    final UUID composition,
+    final Set<UUID> channels)
+  {
+    Objects.requireNonNull(composition, "composition");
+    Objects.requireNonNull(channels, "channels");
+
+    final var iterator = this.fragments.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<Key, Fragment> entry = iterator.next();
+      final var key = entry.getKey();
+      if (key.composition.equals(composition)
+        && !channels.contains(key.channel)) {
+        this.bytes -= entry.getValue().size();
+        iterator.remove();
+      }
+    }
+  }
+
+  private void remove(
+    final Key key)
+  {
+    final var previous = this.fragments.remove(key);
+    if (previous != null) {
+      this.bytes -= previous.size();
+    }
+  }
+
+  private static final class Key
+  {
+    private final UUID composition;
+    private final UUID channel;
+
+    Key(
+      final UUID inComposition,
+      final UUID inChannel)
+    {
+      this.composition = inComposition;
+      this.channel = inChannel;
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || !Objects.equals(this.getClass(), o.getClass())) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return this.composition.equals(key.composition)
+        && this.channel.equals(key.channel);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash(this.composition, this.channel);
+    }
+  }
+
+  static final class Fragment
+  {
+    private final long revision;
+    private final byte[] nodes;
+    private final byte[] edges;
+
+    Fragment(
+      final long inRevision,
+      final byte[] inNodes,
+      final byte[] inEdges)
+    {
+      this.revision = inRevision;
+      this.nodes = Objects.requireNonNull(inNodes, "nodes");
+      this.edges = Objects.requireNonNull(inEdges, "edges");
+    }
+
+    byte[] nodes()
+    {
+      return this.nodes;
+    }
+
+    byte[] edges()
+    {
+      return this.edges;
+    }
+
+    long size()
+    {
+      return (long) this.nodes.length + (long) this.edges.length;
+    }
+  }
+}
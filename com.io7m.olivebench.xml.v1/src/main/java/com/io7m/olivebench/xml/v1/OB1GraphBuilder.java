@@ -0,0 +1,353 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.xml.v1;
+
+import com.io7m.jlexing.core.LexicalPosition;
+import com.io7m.olivebench.exceptions.OBException;
+import com.io7m.olivebench.model.graph.OBCompositionGraph;
+import com.io7m.olivebench.model.graph.OBCompositionGraphType;
+import com.io7m.olivebench.model.graph.OBCompositionNodeType;
+import com.io7m.olivebench.model.graph.OBTextRegion;
+import com.io7m.olivebench.model.graph.OBTextRegionData;
+import com.io7m.olivebench.services.api.OBServiceDirectoryType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXParseException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Builds a graph from the nodes and edges produced by the parser. The
+ * parser thread submits records to a bounded queue, and the queue is
+ * drained by a task on a pool thread so that graph construction overlaps
+ * with tokenizing and validation. At most one drain task runs at any
+ * given time, and a drain task exits as soon as the queue is empty rather
+ * than waiting for more records, so an abandoned parse never leaves a
+ * thread behind. The parser thread blocks when the queue is full.
+ *
+ * Nodes are held in a table until an edge places them in the graph, at
+ * which point they are removed from the table. An edge whose source has not
+ * yet been placed is held in a table of pending edges, and is resolved as
+ * soon as the source is placed. Nodes that are never reached from the root
+ * are discarded.
+ *
+ * Every node other than the root must be the target of exactly one edge.
+ * An edge that targets a node that is already the target of another edge,
+ * or that targets a node that does not exist, is reported as a parse error
+ * at the position of the edge in the document. The error is raised on the
+ * builder's thread, and so it carries the position that was recorded when
+ * the edge was parsed rather than the position the parser has reached.
+ */
+
+final class OB1GraphBuilder
+{
+  private static final Logger LOG =
+    LoggerFactory.getLogger(OB1GraphBuilder.class);
+
+  private static final int QUEUE_CAPACITY = 1024;
+  private static final Object FINISH = new Object();
+
+  private final OBServiceDirectoryType services;
+  private final Executor executor;
+  private final ArrayBlockingQueue<Object> queue;
+  private final AtomicBoolean draining;
+  private final CompletableFuture<OBCompositionGraphType> result;
+  private final HashMap<UUID, OB1CompositionNodeType> unplaced;
+  private final HashMap<UUID, List<OB1CompositionEdge>> pending;
+  private final HashSet<UUID> targets;
+  private OBCompositionGraphType graph;
+
+  private OB1GraphBuilder(
+    final OBServiceDirectoryType inServices,
+    final Executor inExecutor)
+  {
+    this.services =
+      Objects.requireNonNull(inServices, "services");
+    this.executor =
+      Objects.requireNonNull(inExecutor, "executor");
+    this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    this.draining = new AtomicBoolean(false);
+    this.result = new CompletableFuture<>();
+    this.unplaced = new HashMap<>();
+    this.pending = new HashMap<>();
+    this.targets = new HashSet<>();
+  }
+
+  /*
+   * On a single core there is nothing to overlap, so the queue is drained
+   * on the parser thread immediately after each submission.
+   */
+
+  static OB1GraphBuilder create(
+    final OBServiceDirectoryType services)
+  {
+    if (Runtime.getRuntime().availableProcessors() > 1) {
+      return new OB1GraphBuilder(services, ForkJoinPool.commonPool());
+    }
+    return new OB1GraphBuilder(services, Runnable::run);
+  }
+
+  void submitNode(
+    final OB1CompositionNodeType node)
+    throws Exception
+  {
+    this.submit(Objects.requireNonNull(node, "node"));
+  }
+
+  void submitEdge(
+    final OB1CompositionEdge edge)
+    throws Exception
+  {
+    this.submit(Objects.requireNonNull(edge, "edge"));
+  }
+
+  OBCompositionGraphType finish()
+    throws Exception
+  {
+    this.submit(FINISH);
+
+    try {
+      return this.result.get();
+    } catch (final ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  private static Exception unwrap(
+    final ExecutionException e)
+  {
+    final var cause = e.getCause();
+    if (cause instanceof Exception) {
+      return (Exception) cause;
+    }
+    return e;
+  }
+
+  private void submit(
+    final Object item)
+    throws Exception
+  {
+    /*
+     * A failure in the builder is reported to the parser at the next
+     * submission so that the parse is abandoned early.
+     */
+
+    if (this.result.isCompletedExceptionally()) {
+      try {
+        this.result.get();
+      } catch (final ExecutionException e) {
+        throw unwrap(e);
+      }
+    }
+
+    this.queue.put(item);
+    if (this.draining.compareAndSet(false, true)) {
+      this.executor.execute(this::drain);
+    }
+  }
+
+  private void drain()
+  {
+    while (true) {
+      final var item = this.queue.poll();
+      if (item == null) {
+        this.draining.set(false);
+        if (this.queue.isEmpty() || !this.draining.compareAndSet(false, true)) {
+          return;
+        }
+        continue;
+      }
+
+      if (this.result.isDone()) {
+        continue;
+      }
+
+      try {
+        this.process(item);
+      } catch (final Exception e) {
+        this.result.completeExceptionally(e);
+      }
+    }
+  }
+
+  private void process(
+    final Object item)
+    throws OBException, SAXParseException
+  {
+    if (item == FINISH) {
+      this.processFinish();
+    } else if (item instanceof OB1CompositionNodeType) {
+      this.processNode((OB1CompositionNodeType) item);
+    } else if (item instanceof OB1CompositionEdge) {
+      this.processEdge((OB1CompositionEdge) item);
+    } else {
+      throw new IllegalStateException(
+        String.format("Unrecognized item %s", item));
+    }
+  }
+
+  private void processFinish()
+  {
+    if (this.graph == null) {
+      throw new IllegalStateException("The graph does not contain a root node");
+    }
+
+    if (!this.unplaced.isEmpty() || !this.pending.isEmpty()) {
+      LOG.warn(
+        "discarded {} unreachable nodes and {} unresolved edge sources",
+        Integer.valueOf(this.unplaced.size()),
+        Integer.valueOf(this.pending.size()));
+    }
+
+    this.unplaced.clear();
+    this.pending.clear();
+    this.targets.clear();
+    this.result.complete(this.graph);
+  }
+
+  private void processNode(
+    final OB1CompositionNodeType node)
+  {
+    if (node instanceof OB1Root) {
+      if (this.graph != null) {
+        throw new IllegalStateException(
+          "The graph contains multiple root nodes");
+      }
+      this.graph = OBCompositionGraph.createWith(this.services, node.id());
+      return;
+    }
+
+    this.unplaced.put(node.id(), node);
+  }
+
+  private void processEdge(
+    final OB1CompositionEdge edge)
+    throws OBException, SAXParseException
+  {
+    if (this.graph == null) {
+      throw new IllegalStateException("The graph does not contain a root node");
+    }
+
+    final var target = edge.target();
+    if (Objects.equals(target, this.graph.root().id())
+      || !this.targets.add(target)) {
+      throw errorAt(
+        edge.lexical(),
+        String.format(
+          "The node %s is the target of more than one edge", target));
+    }
+
+    final var parent = this.graph.nodes().get(edge.source());
+    if (parent != null) {
+      this.place(parent, edge);
+    } else {
+      this.pending.computeIfAbsent(edge.source(), id -> new ArrayList<>(4))
+        .add(edge);
+    }
+  }
+
+  private void place(
+    final OBCompositionNodeType parent,
+    final OB1CompositionEdge child)
+    throws OBException, SAXParseException
+  {
+    final var stackParents = new LinkedList<OBCompositionNodeType>();
+    final var stackChildren = new LinkedList<OB1CompositionEdge>();
+    stackParents.push(parent);
+    stackChildren.push(child);
+
+    while (!stackChildren.isEmpty()) {
+      final var parentNode = stackParents.pop();
+      final var edge = stackChildren.pop();
+      final var node = this.createNode(parentNode, edge);
+
+      final var waiting = this.pending.remove(node.id());
+      if (waiting != null) {
+        for (final var waitingChild : waiting) {
+          stackParents.push(node);
+          stackChildren.push(waitingChild);
+        }
+      }
+    }
+  }
+
+  private OBCompositionNodeType createNode(
+    final OBCompositionNodeType parentNode,
+    final OB1CompositionEdge edge)
+    throws OBException, SAXParseException
+  {
+    final var id = edge.target();
+    final var node = this.unplaced.remove(id);
+    if (node == null) {
+      throw errorAt(
+        edge.lexical(),
+        String.format("The edge target %s does not refer to any node", id));
+    }
+
+    if (node instanceof OB1Channel) {
+      final var channel = (OB1Channel) node;
+      return this.graph.createChannel(
+        id,
+        channel.nodeMetadata(),
+        channel.channelMetadata()
+      );
+    }
+
+    if (node instanceof OB1TextRegion) {
+      final var textRegion = (OB1TextRegion) node;
+      return this.graph.createRegion(
+        parentNode,
+        id,
+        textRegion.nodeMetadata(),
+        OBTextRegion::create,
+        OBTextRegionData.builder()
+          .setText(textRegion.text())
+          .build()
+      );
+    }
+
+    throw errorAt(
+      edge.lexical(),
+      String.format("The node %s cannot be the target of an edge", id));
+  }
+
+  private static SAXParseException errorAt(
+    final LexicalPosition<URI> lexical,
+    final String message)
+  {
+    return new SAXParseException(
+      message,
+      null,
+      lexical.file().map(URI::toString).orElse(null),
+      lexical.line(),
+      lexical.column()
+    );
+  }
+}
@@ -14,46 +14,44 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
+
 package com.io7m.olivebench.xml.v1;
 
 import com.io7m.blackthorne.api.BTElementHandlerConstructorType;
 import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.blackthorne.api.BTElementParsingContextType;
 import com.io7m.blackthorne.api.BTQualifiedName;
-import com.io7m.jaffirm.core.Preconditions;
-import com.io7m.olivebench.exceptions.OBException;
-import com.io7m.olivebench.model.graph.OBCompositionGraph;
 import com.io7m.olivebench.model.graph.OBCompositionGraphType;
-import com.io7m.olivebench.model.graph.OBCompositionNodeType;
-import com.io7m.olivebench.model.graph.OBTextRegion;
-import com.io7m.olivebench.model.graph.OBTextRegionData;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
-import org.jgrapht.graph.DirectedAcyclicGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+
+/*
+ * The graph is built as the document is parsed. The schema requires that
+ * all nodes appear before any edges, and that the root node appears first.
+ * Nodes and edges are passed to a builder as soon as they are parsed, and
+ * the builder constructs the graph on another thread.
+ */
 
 public final class OB1GraphParser
-  implements BTElementHandlerType<Object, OBCompositionGraphType>
+  implements BTElementHandlerType<Object, OBCompositionGraphType>,
+  OB1GraphReceiverType
 {
   private static final Logger LOG =
     LoggerFactory.getLogger(OB1GraphParser.class);
 
-  private final OBServiceDirectoryType services;
-  private OB1Nodes nodes;
-  private OB1Edges edges;
+  private final OB1GraphBuilder builder;
 
   OB1GraphParser(
     final OBServiceDirectoryType inServices)
   {
-    this.services = Objects.requireNonNull(inServices, "services");
+    this.builder =
+      OB1GraphBuilder.create(Objects.requireNonNull(inServices, "services"));
   }
 
   @Override
@@ -62,117 +60,42 @@ public final class OB1GraphParser
     throws SAXParseException
   {
     try {
-      final var root =
-        this.nodes.nodes()
-          .stream()
-          .filter(node -> node instanceof OB1Root)
-          .map(node -> (OB1Root) node)
-          .findFirst()
-          .orElseThrow();
-
-      final var compositionGraph =
-        OBCompositionGraph.createWith(this.services, root.id());
-
-      final var edgeGraph =
-        new DirectedAcyclicGraph<UUID, OB1CompositionEdge>(
-          OB1CompositionEdge.class);
-
-      edgeGraph.addVertex(root.id());
-      for (final var edge : this.edges.edges()) {
-        edgeGraph.addVertex(edge.source());
-        edgeGraph.addVertex(edge.target());
-        edgeGraph.addEdge(edge.source(), edge.target(), edge);
-      }
-
-      final var channels =
-        this.nodes.nodes()
-          .stream()
-          .filter(node -> node instanceof OB1Channel)
-          .map(node -> (OB1Channel) node)
-          .collect(Collectors.toMap(OB1Channel::id, Function.identity()));
-
-      final var regions =
-        this.nodes.nodes()
-          .stream()
-          .filter(node -> node instanceof OB1RegionType)
-          .map(node -> (OB1RegionType) node)
-          .collect(Collectors.toMap(OB1RegionType::id, Function.identity()));
-
-      final var stack = new LinkedList<OBCompositionNodeType>();
-      stack.push(compositionGraph.root());
-
-      final var compositionNodes = compositionGraph.nodes();
-      while (!stack.isEmpty()) {
-        final var parent = stack.pop();
-        final var parentNode = compositionNodes.get(parent.id());
-        final var edgesOutgoing = edgeGraph.outgoingEdgesOf(parent.id());
-        for (final var edge : edgesOutgoing) {
-          final var child = edge.target();
-          stack.push(
-            this.processNode(
-              compositionGraph,
-              parentNode,
-              channels,
-              regions,
-              child
-            )
-          );
-        }
-      }
-
-      return compositionGraph;
+      return this.builder.finish();
+    } catch (final SAXParseException e) {
+      throw e;
     } catch (final Exception e) {
       throw context.parseException(e);
     }
   }
 
-  private OBCompositionNodeType processNode(
-    final OBCompositionGraphType compositionGraph,
-    final OBCompositionNodeType parentNode,
-    final Map<UUID, OB1Channel> channels,
-    final Map<UUID, OB1RegionType> regions,
-    final UUID id)
-    throws OBException
+  @Override
+  public void onNode(
+    final BTElementParsingContextType context,
+    final OB1CompositionNodeType node)
+    throws SAXException
   {
-    final var channel = channels.get(id);
-    if (channel != null) {
-      Preconditions.checkPreconditionV(
-        Objects.equals(channel.id(), id),
-        "Channel ID %s must match %s",
-        channel.id(),
-        id
-      );
-      return compositionGraph.createChannel(
-        id,
-        channel.nodeMetadata(),
-        channel.channelMetadata()
-      );
+    try {
+      this.builder.submitNode(node);
+    } catch (final SAXParseException e) {
+      throw e;
+    } catch (final Exception e) {
+      throw context.parseException(e);
     }
+  }
 
-    final var region = regions.get(id);
-    if (region != null) {
-      Preconditions.checkPreconditionV(
-        Objects.equals(region.id(), id),
-        "Region ID %s must match %s",
-        region.id(),
-        id
-      );
-
-      if (region instanceof OB1TextRegion) {
-        final var textRegion = (OB1TextRegion) region;
-        return compositionGraph.createRegion(
-          parentNode,
-          id,
-          region.nodeMetadata(),
-          OBTextRegion::create,
-          OBTextRegionData.builder()
-            .setText(textRegion.text())
-            .build()
-        );
-      }
+  @Override
+  public void onEdge(
+    final BTElementParsingContextType context,
+    final OB1CompositionEdge edge)
+    throws SAXException
+  {
+    try {
+      this.builder.submitEdge(edge);
+    } catch (final SAXParseException e) {
+      throw e;
+    } catch (final Exception e) {
+      throw context.parseException(e);
     }
-
-    throw new UnsupportedOperationException();
   }
 
   @Override
@@ -184,11 +107,11 @@ public final class OB1GraphParser
     return Map.ofEntries(
       Map.entry(
         BTQualifiedName.of(namespace, "Edges"),
-        context1 -> new OB1EdgesParser()
+        context1 -> new OB1EdgesParser(this)
       ),
       Map.entry(
         BTQualifiedName.of(namespace, "Nodes"),
-        context1 -> new OB1NodesParser()
+        context1 -> new OB1NodesParser(this)
       )
     );
   }
@@ -198,10 +121,6 @@ public final class OB1GraphParser
     final BTElementParsingContextType context,
     final Object result)
   {
-    if (result instanceof OB1Nodes) {
-      this.nodes = (OB1Nodes) result;
-    } else if (result instanceof OB1Edges) {
-      this.edges = (OB1Edges) result;
-    }
+    LOG.trace("received {} items", result);
   }
 }
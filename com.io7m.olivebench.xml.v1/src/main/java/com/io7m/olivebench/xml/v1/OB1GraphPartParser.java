@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.olivebench.xml.v1;
+
+import com.io7m.blackthorne.api.BTElementHandlerConstructorType;
+import com.io7m.blackthorne.api.BTElementHandlerType;
+import com.io7m.blackthorne.api.BTElementParsingContextType;
+import com.io7m.blackthorne.api.BTQualifiedName;
+
+import java.util.Map;
+import java.util.Objects;
+
+public final class OB1GraphPartParser
+  implements BTElementHandlerType<Object, Integer>
+{
+  private final OB1GraphReceiverType receiver;
+  private int count;
+
+  OB1GraphPartParser(
+    final OB1GraphReceiverType inReceiver)
+  {
+    this.receiver = Objects.requireNonNull(inReceiver, "receiver");
+  }
+
+  @Override
+  public Integer onElementFinished(
+    final BTElementParsingContextType context)
+  {
+    return Integer.valueOf(this.count);
+  }
+
+  @Override
+  public Map<BTQualifiedName, BTElementHandlerConstructorType<?, ?>>
+  onChildHandlersRequested(
+    final BTElementParsingContextType context)
+  {
+    final var namespace = OB1Schemas.NAMESPACE_1_URI.toString();
+    return Map.ofEntries(
+      Map.entry(
+        BTQualifiedName.of(namespace, "Edges"),
+        context1 -> new OB1EdgesParser(this.receiver)
+      ),
+      Map.entry(
+        BTQualifiedName.of(namespace, "Nodes"),
+        context1 -> new OB1NodesParser(this.receiver)
+      )
+    );
+  }
+
+  @Override
+  public void onChildValueProduced(
+    final BTElementParsingContextType context,
+    final Object result)
+  {
+    this.count += ((Integer) result).intValue();
+  }
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright © 2020 Mark Raynsford <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package com.io7m.olivebench.xml.v1;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Objects;
+
+/*
+ * A stream writer that indents elements as they are written. Elements that
+ * contain other elements have each child on its own line, and elements
+ * that turn out to be empty are written as empty elements. To know whether
+ * an element is empty, the start of each element (and its attributes) is
+ * held back until the next event; nothing else is buffered, so the memory
+ * used does not depend on the size of the document.
+ */
+
+final class OB1IndentingStreamWriter implements XMLStreamWriter
+{
+  private final XMLStreamWriter writer;
+  private final LinkedList<Boolean> hasChildren;
+  private final ArrayList<String> indents;
+  private final ArrayList<PendingType> pendingActions;
+  private boolean pending;
+  private String pendingPrefix;
+  private String pendingNamespace;
+  private String pendingLocalName;
+  private boolean started;
+
+  OB1IndentingStreamWriter(
+    final XMLStreamWriter inWriter)
+  {
+    this.writer = Objects.requireNonNull(inWriter, "writer");
+    this.hasChildren = new LinkedList<>();
+    this.indents = new ArrayList<>();
+    this.pendingActions = new ArrayList<>();
+    this.indents.add("\n");
+  }
+
+  /*
+   * A fragment is a run of elements encoded on its own, to be spliced into
+   * a document later. A writer for a fragment starts as if it were already
+   * inside {@code depth} elements that have children, and so the elements
+   * are indented exactly as they would have been in the document.
+   */
+
+  static OB1IndentingStreamWriter forFragment(
+    final XMLStreamWriter inWriter,
+    final int depth)
+  {
+    final var result = new OB1IndentingStreamWriter(inWriter);
+    for (int index = 0; index < depth; ++index) {
+      result.hasChildren.push(Boolean.TRUE);
+    }
+    result.started = true;
+    return result;
+  }
+
+  /*
+   * The underlying writer holds the start tag of an empty element open
+   * until the next event, and writing no characters closes it.
+   */
+
+  void finishFragment()
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeCharacters("");
+    this.writer.flush();
+  }
+
+  /*
+   * A fragment written at the current depth is spliced in by writing its
+   * bytes straight to the stream that the underlying writer writes to,
+   * once everything before it has been flushed.
+   */
+
+  void splice(
+    final OutputStream output,
+    final byte[] fragment)
+    throws XMLStreamException, IOException
+  {
+    if (fragment.length == 0) {
+      return;
+    }
+
+    this.flushPending(false);
+    if (!this.hasChildren.isEmpty()) {
+      this.hasChildren.set(0, Boolean.TRUE);
+    }
+    this.started = true;
+    this.writer.writeCharacters("");
+    this.writer.flush();
+    output.write(fragment);
+  }
+
+  private interface PendingType
+  {
+    void apply(XMLStreamWriter target)
+      throws XMLStreamException;
+  }
+
+  private String indent(
+    final int depth)
+  {
+    while (this.indents.size() <= depth) {
+      this.indents.add(this.indents.get(this.indents.size() - 1) + "  ");
+    }
+    return this.indents.get(depth);
+  }
+
+  private void flushPending(
+    final boolean empty)
+    throws XMLStreamException
+  {
+    if (!this.pending) {
+      return;
+    }
+
+    this.pending = false;
+    if (empty) {
+      if (this.pendingPrefix != null) {
+        this.writer.writeEmptyElement(
+          this.pendingPrefix, this.pendingLocalName, this.pendingNamespace);
+      } else if (this.pendingNamespace != null) {
+        this.writer.writeEmptyElement(
+          this.pendingNamespace, this.pendingLocalName);
+      } else {
+        this.writer.writeEmptyElement(this.pendingLocalName);
+      }
+    } else {
+      if (this.pendingPrefix != null) {
+        this.writer.writeStartElement(
+          this.pendingPrefix, this.pendingLocalName, this.pendingNamespace);
+      } else if (this.pendingNamespace != null) {
+        this.writer.writeStartElement(
+          this.pendingNamespace, this.pendingLocalName);
+      } else {
+        this.writer.writeStartElement(this.pendingLocalName);
+      }
+    }
+
+    for (final var action : this.pendingActions) {
+      action.apply(this.writer);
+    }
+    this.pendingActions.clear();
+  }
+
+  private void beforeElement()
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    if (!this.hasChildren.isEmpty()) {
+      this.hasChildren.set(0, Boolean.TRUE);
+    }
+    if (this.started) {
+      this.writer.writeCharacters(this.indent(this.hasChildren.size()));
+    }
+    this.started = true;
+  }
+
+  private void startElement(
+    final String prefix,
+    final String namespace,
+    final String localName)
+    throws XMLStreamException
+  {
+    this.beforeElement();
+    this.pending = true;
+    this.pendingPrefix = prefix;
+    this.pendingNamespace = namespace;
+    this.pendingLocalName = localName;
+    this.hasChildren.push(Boolean.FALSE);
+  }
+
+  private void addPending(
+    final PendingType action)
+    throws XMLStreamException
+  {
+    if (this.pending) {
+      this.pendingActions.add(action);
+    } else {
+      action.apply(this.writer);
+    }
+  }
+
+  @Override
+  public void writeStartElement(
+    final String localName)
+    throws XMLStreamException
+  {
+    this.startElement(null, null, localName);
+  }
+
+  @Override
+  public void writeStartElement(
+    final String namespaceURI,
+    final String localName)
+    throws XMLStreamException
+  {
+    this.startElement(null, namespaceURI, localName);
+  }
+
+  @Override
+  public void writeStartElement(
+    final String prefix,
+    final String localName,
+    final String namespaceURI)
+    throws XMLStreamException
+  {
+    this.startElement(prefix, namespaceURI, localName);
+  }
+
+  @Override
+  public void writeEmptyElement(
+    final String namespaceURI,
+    final String localName)
+    throws XMLStreamException
+  {
+    this.beforeElement();
+    this.writer.writeEmptyElement(namespaceURI, localName);
+  }
+
+  @Override
+  public void writeEmptyElement(
+    final String prefix,
+    final String localName,
+    final String namespaceURI)
+    throws XMLStreamException
+  {
+    this.beforeElement();
+    this.writer.writeEmptyElement(prefix, localName, namespaceURI);
+  }
+
+  @Override
+  public void writeEmptyElement(
+    final String localName)
+    throws XMLStreamException
+  {
+    this.beforeElement();
+    this.writer.writeEmptyElement(localName);
+  }
+
+  @Override
+  public void writeEndElement()
+    throws XMLStreamException
+  {
+    final var children = this.hasChildren.pop();
+    if (this.pending) {
+      this.flushPending(true);
+      return;
+    }
+    if (children.booleanValue()) {
+      this.writer.writeCharacters(this.indent(this.hasChildren.size()));
+    }
+    this.writer.writeEndElement();
+  }
+
+  @Override
+  public void writeEndDocument()
+    throws XMLStreamException
+  {
+    while (!this.hasChildren.isEmpty()) {
+      this.writeEndElement();
+    }
+    this.writer.writeEndDocument();
+  }
+
+  @Override
+  public void close()
+    throws XMLStreamException
+  {
+    this.writer.close();
+  }
+
+  @Override
+  public void flush()
+    throws XMLStreamException
+  {
+    this.writer.flush();
+  }
+
+  @Override
+  public void writeAttribute(
+    final String localName,
+    final String value)
+    throws XMLStreamException
+  {
+    this.addPending(target -> target.writeAttribute(localName, value));
+  }
+
+  @Override
+  public void writeAttribute(
+    final String prefix,
+    final String namespaceURI,
+    final String localName,
+    final String value)
+    throws XMLStreamException
+  {
+    this.addPending(target -> target.writeAttribute(
+      prefix, namespaceURI, localName, value));
+  }
+
+  @Override
+  public void writeAttribute(
+    final String namespaceURI,
+    final String localName,
+    final String value)
+    throws XMLStreamException
+  {
+    this.addPending(target -> target.writeAttribute(
+      namespaceURI, localName, value));
+  }
+
+  @Override
+  public void writeNamespace(
+    final String prefix,
+    final String namespaceURI)
+    throws XMLStreamException
+  {
+    this.addPending(target -> target.writeNamespace(prefix, namespaceURI));
+  }
+
+  @Override
+  public void writeDefaultNamespace(
+    final String namespaceURI)
+    throws XMLStreamException
+  {
+    this.addPending(target -> target.writeDefaultNamespace(namespaceURI));
+  }
+
+  @Override
+  public void writeComment(
+    final String data)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeComment(data);
+  }
+
+  @Override
+  public void writeProcessingInstruction(
+    final String target)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeProcessingInstruction(target);
+  }
+
+  @Override
+  public void writeProcessingInstruction(
+    final String target,
+    final String data)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeProcessingInstruction(target, data);
+  }
+
+  @Override
+  public void writeCData(
+    final String data)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeCData(data);
+  }
+
+  @Override
+  public void writeDTD(
+    final String dtd)
+    throws XMLStreamException
+  {
+    this.writer.writeDTD(dtd);
+  }
+
+  @Override
+  public void writeEntityRef(
+    final String name)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeEntityRef(name);
+  }
+
+  @Override
+  public void writeStartDocument()
+    throws XMLStreamException
+  {
+    this.writer.writeStartDocument();
+    this.started = true;
+  }
+
+  @Override
+  public void writeStartDocument(
+    final String version)
+    throws XMLStreamException
+  {
+    this.writer.writeStartDocument(version);
+    this.started = true;
+  }
+
+  @Override
+  public void writeStartDocument(
+    final String encoding,
+    final String version)
+    throws XMLStreamException
+  {
+    this.writer.writeStartDocument(encoding, version);
+    this.started = true;
+  }
+
+  @Override
+  public void writeCharacters(
+    final String text)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeCharacters(text);
+  }
+
+  @Override
+  public void writeCharacters(
+    final char[] text,
+    final int start,
+    final int len)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.writeCharacters(text, start, len);
+  }
+
+  /*
+   * Bindings made while an element is being held back belong to that
+   * element, and so it must be started first.
+   */
+
+  @Override
+  public String getPrefix(
+    final String uri)
+    throws XMLStreamException
+  {
+    return this.writer.getPrefix(uri);
+  }
+
+  @Override
+  public void setPrefix(
+    final String prefix,
+    final String uri)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.setPrefix(prefix, uri);
+  }
+
+  @Override
+  public void setDefaultNamespace(
+    final String uri)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.setDefaultNamespace(uri);
+  }
+
+  @Override
+  public void setNamespaceContext(
+    final NamespaceContext context)
+    throws XMLStreamException
+  {
+    this.flushPending(false);
+    this.writer.setNamespaceContext(context);
+  }
+
+  @Override
+  public NamespaceContext getNamespaceContext()
+  {
+    return this.writer.getNamespaceContext();
+  }
+
+  @Override
+  public Object getProperty(
+    final String name)
+  {
+    return this.writer.getProperty(name);
+  }
+}
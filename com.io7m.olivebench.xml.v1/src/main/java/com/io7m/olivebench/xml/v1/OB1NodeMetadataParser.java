@@ -28,6 +28,7 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import java.util.Map;
+import java.util.Objects;
 
 public final class OB1NodeMetadataParser
   implements BTElementHandlerType<Object, OBNodeMetadata>
@@ -69,9 +70,14 @@ public final class OB1NodeMetadataParser
     final Attributes attributes)
     throws SAXException
   {
+    /*
+     * The schema supplies an empty name if the attribute is missing, but
+     * documents parsed without validation do not have the default applied.
+     */
+
     try {
       this.builder.setName(
-        OBName.of(attributes.getValue("name")));
+        OBName.of(Objects.requireNonNullElse(attributes.getValue("name"), "")));
     } catch (final Exception e) {
       throw context.parseException(e);
     }
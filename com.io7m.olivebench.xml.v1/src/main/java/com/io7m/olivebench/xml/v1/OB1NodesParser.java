@@ -14,30 +14,35 @@
  * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
  */
 
+
 package com.io7m.olivebench.xml.v1;
 
 import com.io7m.blackthorne.api.BTElementHandlerConstructorType;
 import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.blackthorne.api.BTElementParsingContextType;
 import com.io7m.blackthorne.api.BTQualifiedName;
+import org.xml.sax.SAXException;
 
 import java.util.Map;
+import java.util.Objects;
 
 public final class OB1NodesParser
-  implements BTElementHandlerType<OB1CompositionNodeType, OB1Nodes>
+  implements BTElementHandlerType<OB1CompositionNodeType, Integer>
 {
-  private final OB1Nodes.Builder nodes;
+  private final OB1GraphReceiverType receiver;
+  private int count;
 
-  public OB1NodesParser()
+  public OB1NodesParser(
+    final OB1GraphReceiverType inReceiver)
   {
-    this.nodes = OB1Nodes.builder();
+    this.receiver = Objects.requireNonNull(inReceiver, "receiver");
   }
 
   @Override
-  public OB1Nodes onElementFinished(
+  public Integer onElementFinished(
     final BTElementParsingContextType context)
   {
-    return this.nodes.build();
+    return Integer.valueOf(this.count);
   }
 
   @Override
@@ -66,7 +71,9 @@ public final class OB1NodesParser
   public void onChildValueProduced(
     final BTElementParsingContextType context,
     final OB1CompositionNodeType result)
+    throws SAXException
   {
-    this.nodes.addNodes(result);
+    ++this.count;
+    this.receiver.onNode(context, result);
   }
 }
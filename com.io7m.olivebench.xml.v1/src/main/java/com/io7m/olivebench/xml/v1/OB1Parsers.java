@@ -19,9 +19,17 @@ package com.io7m.olivebench.xml.v1;
 import com.io7m.blackthorne.api.BTElementHandlerType;
 import com.io7m.jxe.core.JXESchemaDefinition;
 import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIParsersType;
+import com.io7m.olivebench.composition_parser.spi.OBCompositionSPIPartType;
+import com.io7m.olivebench.model.OBComposition;
 import com.io7m.olivebench.model.OBCompositionType;
 import com.io7m.olivebench.services.api.OBServiceDirectoryType;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
 /**
  * A provider of parsers for the 1.0 XML collection format.
  */
@@ -50,6 +58,105 @@ public final class OB1Parsers implements OBCompositionSPIParsersType
     return OB1CompositionParser.create(services);
   }
 
+  @Override
+  public BTElementHandlerType<?, OBCompositionSPIPartType> createPartHandler(
+    final OBServiceDirectoryType services)
+  {
+    return OB1CompositionPartParser.create();
+  }
+
+  /*
+   * Every part contains a copy of the root node so that it is a complete
+   * document in its own right. The root is taken from the manifest, and the
+   * copies in the parts serve only to check that the parts belong to the
+   * same composition as the manifest.
+   *
+   * Manifests written by later versions also contain the channel nodes.
+   * The channel nodes in the manifest take precedence over the copies in
+   * the channel parts, as the manifest is rewritten on every save whereas
+   * the channel parts might not be.
+   */
+
+  @Override
+  public OBCompositionType stitch(
+    final OBServiceDirectoryType services,
+    final OBCompositionSPIPartType manifest,
+    final List<OBCompositionSPIPartType> parts)
+    throws Exception
+  {
+    final var manifestPart = checkPart(manifest);
+    final var root = rootOf(manifestPart);
+    final var builder = OB1GraphBuilder.create(services);
+
+    builder.submitNode(root);
+    submitPart(builder, manifestPart, Set.of());
+
+    final var manifestIds =
+      manifestPart.nodes()
+        .stream()
+        .map(OB1CompositionNodeType::id)
+        .collect(Collectors.toSet());
+
+    for (final var part : parts) {
+      final var channelPart = checkPart(part);
+      final var partRoot = rootOf(channelPart);
+      if (!Objects.equals(partRoot.id(), root.id())) {
+        throw new IllegalArgumentException(
+          String.format(
+            "Part root %s does not match the manifest root %s",
+            partRoot.id(),
+            root.id()));
+      }
+      submitPart(builder, channelPart, manifestIds);
+    }
+
+    final var composition =
+      OBComposition.createWith(services, builder.finish());
+    composition.metadata().set(manifestPart.metadata());
+    return composition;
+  }
+
+  private static void submitPart(
+    final OB1GraphBuilder builder,
+    final OB1CompositionPartType part,
+    final Set<UUID> exclude)
+    throws Exception
+  {
+    for (final var node : part.nodes()) {
+      if (!(node instanceof OB1Root) && !exclude.contains(node.id())) {
+        builder.submitNode(node);
+      }
+    }
+    for (final var edge : part.edges()) {
+      if (!exclude.contains(edge.target())) {
+        builder.submitEdge(edge);
+      }
+    }
+  }
+
+  private static OB1CompositionPartType checkPart(
+    final OBCompositionSPIPartType part)
+  {
+    Objects.requireNonNull(part, "part");
+    if (part instanceof OB1CompositionPartType) {
+      return (OB1CompositionPartType) part;
+    }
+    throw new IllegalArgumentException(
+      String.format("Unrecognized part type %s", part.getClass()));
+  }
+
+  private static OB1Root rootOf(
+    final OB1CompositionPartType part)
+  {
+    return part.nodes()
+      .stream()
+      .filter(node -> node instanceof OB1Root)
+      .map(OB1Root.class::cast)
+      .findFirst()
+      .orElseThrow(() -> new IllegalArgumentException(
+        "The part does not contain a root node"));
+  }
+
   @Override
   public String toString()
   {
@@ -25,6 +25,7 @@ import com.io7m.olivebench.composition_serializer.spi.OBCompositionSPISerializer
 import com.io7m.olivebench.model.OBCompositionReadableType;
 import com.io7m.olivebench.model.graph.OBChannelMetadata;
 import com.io7m.olivebench.model.graph.OBChannelType;
+import com.io7m.olivebench.model.graph.OBCompositionEdge;
 import com.io7m.olivebench.model.graph.OBCompositionGraphReadableType;
 import com.io7m.olivebench.model.graph.OBCompositionNodeType;
 import com.io7m.olivebench.model.graph.OBNodeMetadata;
@@ -36,16 +37,22 @@ import com.io7m.olivebench.model.spaces.OBSpaceRegionType;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.io7m.olivebench.model.graph.OBRegionType.OBDecorativeRegionType.OBTextRegionType;
 
@@ -55,13 +62,30 @@ import static com.io7m.olivebench.model.graph.OBRegionType.OBDecorativeRegionTyp
 
 public final class OB1Serializers implements OBCompositionSPISerializersType
 {
+  private final OB1FragmentCache fragments;
+  private final Executor executor;
+
   /**
-   * Construct a provider.
+   * Construct a provider that encodes channels on the common fork-join
+   * pool.
    */
 
   public OB1Serializers()
   {
+    this(ForkJoinPool.commonPool());
+  }
 
+  /**
+   * Construct a provider that encodes channels using the given executor.
+   *
+   * @param inExecutor The executor
+   */
+
+  public OB1Serializers(
+    final Executor inExecutor)
+  {
+    this.executor = Objects.requireNonNull(inExecutor, "executor");
+    this.fragments = new OB1FragmentCache();
   }
 
   @Override
@@ -82,7 +106,33 @@ public final class OB1Serializers implements OBCompositionSPISerializersType
     final OutputStream output,
     final OBCompositionReadableType collection)
   {
-    return new Serializer(target, output, collection);
+    return new Serializer(
+      target,
+      output,
+      collection,
+      Optional.empty(),
+      false,
+      this.fragments,
+      this.executor
+    );
+  }
+
+  @Override
+  public OBCompositionSPISerializerType createPart(
+    final URI target,
+    final OutputStream output,
+    final OBCompositionReadableType composition,
+    final Optional<OBChannelType> channel)
+  {
+    return new Serializer(
+      target,
+      output,
+      composition,
+      Objects.requireNonNull(channel, "channel").map(OBChannelType::id),
+      true,
+      this.fragments,
+      this.executor
+    );
   }
 
   @Override
@@ -99,21 +149,44 @@ public final class OB1Serializers implements OBCompositionSPISerializersType
   private static final class Serializer implements
     OBCompositionSPISerializerType
   {
+    private static final int WINDOW = 16;
+
     private final URI target;
     private final OutputStream output;
     private final OBCompositionReadableType composition;
-    private final ByteArrayOutputStream buffer;
+    private final BufferedOutputStream buffer;
     private final String namespace;
+    private final Optional<UUID> channel;
+    private final boolean part;
+    private final OB1FragmentCache fragments;
+    private final Executor executor;
+    private XMLOutputFactory outputs;
+
+    /*
+     * A complete composition contains every node. A part contains the root
+     * node and, unless it is the manifest, the subtree of a single channel.
+     * The manifest contains the channel nodes, so that a composition can be
+     * opened without reading any of the channel parts. Only the manifest
+     * carries the composition metadata.
+     */
 
     Serializer(
       final URI inTarget,
       final OutputStream inOutput,
-      final OBCompositionReadableType inComposition)
+      final OBCompositionReadableType inComposition,
+      final Optional<UUID> inChannel,
+      final boolean inPart,
+      final OB1FragmentCache inFragments,
+      final Executor inExecutor)
     {
       this.target = inTarget;
       this.output = inOutput;
       this.composition = inComposition;
-      this.buffer = new ByteArrayOutputStream(1024);
+      this.channel = inChannel;
+      this.part = inPart;
+      this.fragments = inFragments;
+      this.executor = inExecutor;
+      this.buffer = new BufferedOutputStream(inOutput, 65536);
 
       this.namespace = OB1Schemas.NAMESPACE_1_URI.toString();
     }
@@ -122,77 +195,301 @@ public final class OB1Serializers implements OBCompositionSPISerializersType
     public void execute()
       throws Exception
     {
-      final var outputs = XMLOutputFactory.newInstance();
+      /*
+       * The document is indented as it is written, straight through to
+       * the output. The writers produced by the factory encode characters
+       * one at a time, and so the output is buffered.
+       */
+
+      this.outputs = XMLOutputFactory.newInstance();
+      final var writer =
+        new OB1IndentingStreamWriter(
+          this.outputs.createXMLStreamWriter(this.buffer, "UTF-8"));
 
-      final var writer = outputs.createXMLStreamWriter(this.buffer, "UTF-8");
       writer.writeStartDocument("UTF-8", "1.0");
       writer.setPrefix("ob", this.namespace);
       writer.writeStartElement(this.namespace, "Composition");
       writer.writeNamespace("ob", this.namespace);
 
-      this.writeMetadata(writer, this.composition.metadata().read());
+      if (this.part && this.channel.isPresent()) {
+        this.writeMetadata(writer, OBCompositionMetadata.of(List.of()));
+      } else {
+        this.writeMetadata(writer, this.composition.metadata().read());
+      }
       this.writeGraph(writer, this.composition.graph());
 
       writer.writeEndElement();
       writer.writeEndDocument();
+      writer.flush();
+      writer.close();
+      this.buffer.write('\n');
       this.buffer.flush();
-
-      final var transformer = TransformerFactory.newInstance().newTransformer();
-      transformer.setOutputProperty(OutputKeys.STANDALONE, "yes");
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-      transformer.setOutputProperty(
-        "{http://xml.apache.org/xslt}indent-amount",
-        "2");
-      transformer.transform(
-        new StreamSource(new ByteArrayInputStream(this.buffer.toByteArray())),
-        new StreamResult(this.output));
-
-      this.output.flush();
     }
 
     private void writeGraph(
-      final XMLStreamWriter writer,
+      final OB1IndentingStreamWriter writer,
       final OBCompositionGraphReadableType graph)
-      throws XMLStreamException
+      throws XMLStreamException, IOException
     {
       writer.writeStartElement(this.namespace, "Graph");
-      this.writeGraphNodes(writer, graph);
-      this.writeGraphEdges(writer, graph);
+      if (this.part) {
+        final var edges = this.partEdges(graph);
+        this.writeNodes(writer, graph, edges);
+        this.writeEdges(writer, edges);
+      } else {
+        this.writeChannels(writer, graph.snapshot());
+      }
       writer.writeEndElement();
     }
 
-    private void writeGraphEdges(
-      final XMLStreamWriter writer,
+    /*
+     * A complete composition is written one channel at a time: the channel
+     * node is encoded, and then the nodes and edges of its contents are
+     * spliced in as fragments. Most saves change the contents of very few
+     * channels, and the fragments of the others are taken from the cache.
+     * The contents of channels are independent, and so the fragments that
+     * are not cached are encoded in parallel from an immutable snapshot of
+     * the graph. At most WINDOW channels are encoded ahead of the channel
+     * being written, and each fragment is dropped as soon as it has been
+     * spliced, so the memory used by a save does not grow with the number
+     * of channels. The fragments are spliced in the same order whatever
+     * order they were encoded in, and so the result is exactly what
+     * encoding every node in turn would have produced.
+     */
+
+    private void writeChannels(
+      final OB1IndentingStreamWriter writer,
       final OBCompositionGraphReadableType graph)
-      throws XMLStreamException
+      throws XMLStreamException, IOException
     {
+      final var channelEdges = graph.childEdgesOf(graph.root());
+      final var channelIds = new HashSet<UUID>(channelEdges.size());
+      for (final var edge : channelEdges) {
+        channelIds.add(edge.nodeTarget().id());
+      }
+
+      writer.writeStartElement(this.namespace, "Nodes");
+      this.writeNode(writer, graph.root());
+      final var nodes = new LinkedList<CompletableFuture<byte[]>>();
+      int nodesNext = 0;
+      for (int index = 0; index < channelEdges.size(); ++index) {
+        while (nodesNext < channelEdges.size()
+          && nodesNext < index + WINDOW) {
+          final var node = channelEdges.get(nodesNext).nodeTarget();
+          nodes.add(this.fragmentNodesOf(graph, node));
+          ++nodesNext;
+        }
+        this.writeNode(writer, channelEdges.get(index).nodeTarget());
+        writer.splice(this.buffer, await(nodes.removeFirst()));
+      }
+      writer.writeEndElement();
+
       writer.writeStartElement(this.namespace, "Edges");
-      for (final var edge : graph.graph().edgeSet()) {
-        writer.writeStartElement(this.namespace, "Edge");
-        writer.writeAttribute("source", edge.nodeSource().id().toString());
-        writer.writeAttribute("target", edge.nodeTarget().id().toString());
-        writer.writeEndElement();
+      final var edges = new LinkedList<CompletableFuture<byte[]>>();
+      int edgesNext = 0;
+      for (int index = 0; index < channelEdges.size(); ++index) {
+        while (edgesNext < channelEdges.size()
+          && edgesNext < index + WINDOW) {
+          final var node = channelEdges.get(edgesNext).nodeTarget();
+          edges.add(this.fragmentEdgesOf(graph, node));
+          ++edgesNext;
+        }
+        this.writeEdge(writer, channelEdges.get(index));
+        writer.splice(this.buffer, await(edges.removeFirst()));
       }
       writer.writeEndElement();
+
+      this.fragments.retainAll(graph.root().id(), channelIds);
     }
 
-    private void writeGraphNodes(
-      final XMLStreamWriter writer,
+    private static byte[] await(
+      final CompletableFuture<byte[]> task)
+      throws XMLStreamException
+    {
+      try {
+        return task.join();
+      } catch (final CompletionException e) {
+        final var cause = e.getCause();
+        if (cause instanceof XMLStreamException) {
+          throw (XMLStreamException) cause;
+        }
+        throw e;
+      }
+    }
+
+    /*
+     * The nodes of a channel are written first, and so a channel that is
+     * not cached has both its nodes and its edges encoded at once so that
+     * the whole fragment can be cached. The edges are then normally taken
+     * from the cache when they are written; they are encoded again only if
+     * the channel has no revision, or if its fragment has been evicted.
+     */
+
+    private CompletableFuture<byte[]> fragmentNodesOf(
+      final OBCompositionGraphReadableType graph,
+      final OBCompositionNodeType node)
+    {
+      final var revision = graph.channelRevisions().get(node.id());
+      if (revision != null) {
+        final var existing =
+          this.fragments.get(
+            graph.root().id(), node.id(), revision.longValue());
+        if (existing.isPresent()) {
+          return CompletableFuture.completedFuture(existing.get().nodes());
+        }
+      }
+
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          final var edges = graph.descendantEdgesOf(node);
+          final var nodeBytes = this.encodeNodes(edges);
+          if (revision != null) {
+            this.fragments.put(
+              graph.root().id(),
+              node.id(),
+              new OB1FragmentCache.Fragment(
+                revision.longValue(),
+                nodeBytes,
+                this.encodeEdges(edges)));
+          }
+          return nodeBytes;
+        } catch (final XMLStreamException e) {
+          throw new CompletionException(e);
+        }
+      }, this.executor);
+    }
+
+    private CompletableFuture<byte[]> fragmentEdgesOf(
+      final OBCompositionGraphReadableType graph,
+      final OBCompositionNodeType node)
+    {
+      final var revision = graph.channelRevisions().get(node.id());
+      if (revision != null) {
+        final var existing =
+          this.fragments.get(
+            graph.root().id(), node.id(), revision.longValue());
+        if (existing.isPresent()) {
+          return CompletableFuture.completedFuture(existing.get().edges());
+        }
+      }
+
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return this.encodeEdges(graph.descendantEdgesOf(node));
+        } catch (final XMLStreamException e) {
+          throw new CompletionException(e);
+        }
+      }, this.executor);
+    }
+
+    private byte[] encodeNodes(
+      final List<OBCompositionEdge> edges)
+      throws XMLStreamException
+    {
+      final var bytes = new ByteArrayOutputStream();
+      final var writer = this.fragmentWriter(bytes);
+      for (final var edge : edges) {
+        this.writeNode(writer, edge.nodeTarget());
+      }
+      writer.finishFragment();
+      return bytes.toByteArray();
+    }
+
+    private byte[] encodeEdges(
+      final List<OBCompositionEdge> edges)
+      throws XMLStreamException
+    {
+      final var bytes = new ByteArrayOutputStream();
+      final var writer = this.fragmentWriter(bytes);
+      for (final var edge : edges) {
+        this.writeEdge(writer, edge);
+      }
+      writer.finishFragment();
+      return bytes.toByteArray();
+    }
+
+    /*
+     * The contents of channels are the children of the Nodes and Edges
+     * elements, inside the Composition and Graph elements. Factories are not
+     * required to be safe to use from several threads at once.
+     */
+
+    private OB1IndentingStreamWriter fragmentWriter(
+      final ByteArrayOutputStream bytes)
+      throws XMLStreamException
+    {
+      final XMLStreamWriter base;
+      synchronized (this.outputs) {
+        base = this.outputs.createXMLStreamWriter(bytes, "UTF-8");
+      }
+
+      final var writer = OB1IndentingStreamWriter.forFragment(base, 3);
+      writer.setPrefix("ob", this.namespace);
+      return writer;
+    }
+
+    /*
+     * Nodes and edges are written in the order of a depth-first traversal
+     * of the graph, so that a composition is always written as the same
+     * bytes however its graph was built.
+     */
+
+    private List<OBCompositionEdge> partEdges(
       final OBCompositionGraphReadableType graph)
+    {
+      if (this.channel.isEmpty()) {
+        return graph.childEdgesOf(graph.root());
+      }
+
+      final var channelNode = graph.nodes().get(this.channel.get());
+      if (channelNode == null) {
+        throw new IllegalArgumentException(
+          String.format("No such channel %s", this.channel.get()));
+      }
+
+      final var edges =
+        new ArrayList<>(graph.graph().incomingEdgesOf(channelNode));
+      edges.addAll(graph.descendantEdgesOf(channelNode));
+      return edges;
+    }
+
+    private void writeNodes(
+      final XMLStreamWriter writer,
+      final OBCompositionGraphReadableType graph,
+      final List<OBCompositionEdge> edges)
       throws XMLStreamException
     {
       writer.writeStartElement(this.namespace, "Nodes");
       this.writeNode(writer, graph.root());
-      for (final var entry : graph.nodes().entrySet()) {
-        final var node = entry.getValue();
-        if (Objects.equals(node, graph.root())) {
-          continue;
-        }
-        this.writeNode(writer, node);
+      for (final var edge : edges) {
+        this.writeNode(writer, edge.nodeTarget());
       }
       writer.writeEndElement();
     }
 
+    private void writeEdges(
+      final XMLStreamWriter writer,
+      final List<OBCompositionEdge> edges)
+      throws XMLStreamException
+    {
+      writer.writeStartElement(this.namespace, "Edges");
+      for (final var edge : edges) {
+        this.writeEdge(writer, edge);
+      }
+      writer.writeEndElement();
+    }
+
+    private void writeEdge(
+      final XMLStreamWriter writer,
+      final OBCompositionEdge edge)
+      throws XMLStreamException
+    {
+      writer.writeStartElement(this.namespace, "Edge");
+      writer.writeAttribute("source", edge.nodeSource().id().toString());
+      writer.writeAttribute("target", edge.nodeTarget().id().toString());
+      writer.writeEndElement();
+    }
+
     private void writeNode(
       final XMLStreamWriter writer,
       final OBCompositionNodeType node)
@@ -324,7 +621,7 @@ public final class OB1Serializers implements OBCompositionSPISerializersType
     public void close()
       throws IOException
     {
-      this.output.flush();
+      this.buffer.flush();
       this.output.close();
     }
   }
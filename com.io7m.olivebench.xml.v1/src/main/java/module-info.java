@@ -31,7 +31,7 @@ module com.io7m.olivebench.xml.v1
   requires static org.osgi.annotation.versioning;
 
   requires com.io7m.blackthorne.api;
-  requires com.io7m.jaffirm.core;
+  requires com.io7m.jlexing.core;
   requires com.io7m.jregions.core;
   requires com.io7m.jtensors.core;
   requires com.io7m.junreachable.core;